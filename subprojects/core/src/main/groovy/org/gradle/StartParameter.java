@@ -75,6 +75,9 @@ public class StartParameter extends LoggingConfiguration implements Serializable
     private boolean offline;
     private RefreshOptions refreshOptions = RefreshOptions.NONE;
     private File projectCacheDir;
+    private int parallelThreadCount;
+    private boolean buildCacheEnabled;
+    private boolean continuous;
 
     /**
      * Sets the project's cache location. Set to null to use the default location.
@@ -139,6 +142,9 @@ public class StartParameter extends LoggingConfiguration implements Serializable
         startParameter.continueOnFailure = continueOnFailure;
         startParameter.offline = offline;
         startParameter.refreshOptions = refreshOptions;
+        startParameter.parallelThreadCount = parallelThreadCount;
+        startParameter.buildCacheEnabled = buildCacheEnabled;
+        startParameter.continuous = continuous;
         return startParameter;
     }
 
@@ -160,6 +166,9 @@ public class StartParameter extends LoggingConfiguration implements Serializable
         startParameter.continueOnFailure = continueOnFailure;
         startParameter.offline = offline;
         startParameter.refreshOptions = refreshOptions;
+        startParameter.parallelThreadCount = parallelThreadCount;
+        startParameter.buildCacheEnabled = buildCacheEnabled;
+        startParameter.continuous = continuous;
         return startParameter;
     }
 
@@ -594,6 +603,61 @@ public class StartParameter extends LoggingConfiguration implements Serializable
         return refreshOptions;
     }
 
+    /**
+     * Returns the number of threads to use to execute tasks concurrently. A value of 0 or 1 means that tasks are executed
+     * one at a time. The default is 0. When greater than 1, this number of threads is also used to hash the files of a task
+     * when checking whether the task is up-to-date.
+     */
+    public int getParallelThreadCount() {
+        return parallelThreadCount;
+    }
+
+    /**
+     * Specifies the number of threads to use to execute tasks concurrently. Use 0 or 1 to execute tasks one at a time.
+     * A task is executed only once all of its dependencies have executed.
+     *
+     * @param parallelThreadCount The number of threads. Must not be negative.
+     */
+    public void setParallelThreadCount(int parallelThreadCount) {
+        if (parallelThreadCount < 0) {
+            throw new IllegalArgumentException(String.format("Cannot use a negative number of parallel threads: %s.", parallelThreadCount));
+        }
+        this.parallelThreadCount = parallelThreadCount;
+    }
+
+    /**
+     * Returns true if task outputs should be reused from the task output cache. The default is false.
+     */
+    public boolean isBuildCacheEnabled() {
+        return buildCacheEnabled;
+    }
+
+    /**
+     * Specifies whether task outputs should be reused from the task output cache. When enabled, the outputs of a task
+     * which is not up-to-date are restored from the cache if the task has previously been executed with the same inputs,
+     * instead of executing the task.
+     */
+    public void setBuildCacheEnabled(boolean buildCacheEnabled) {
+        this.buildCacheEnabled = buildCacheEnabled;
+    }
+
+    /**
+     * Returns true if the build should be executed again each time an input file of its tasks changes. The default is
+     * false.
+     */
+    public boolean isContinuous() {
+        return continuous;
+    }
+
+    /**
+     * Specifies whether the build should be executed continuously. When enabled, the build waits after it has completed
+     * for a change to one of the input files of the tasks which were executed, and then executes the requested tasks
+     * again.
+     */
+    public void setContinuous(boolean continuous) {
+        this.continuous = continuous;
+    }
+
     @Override
     public String toString() {
         return "StartParameter{"
@@ -615,6 +679,9 @@ public class StartParameter extends LoggingConfiguration implements Serializable
                 + ", dryRun=" + dryRun
                 + ", noOpt=" + noOpt
                 + ", profile=" + profile
+                + ", parallelThreadCount=" + parallelThreadCount
+                + ", buildCacheEnabled=" + buildCacheEnabled
+                + ", continuous=" + continuous
                 + '}';
     }
 }
\ No newline at end of file
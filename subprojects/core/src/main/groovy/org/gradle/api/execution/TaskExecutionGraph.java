@@ -108,7 +108,7 @@ public interface TaskExecutionGraph {
      * <p>Returns the tasks which are included in the execution plan. The tasks are returned in the order that they will
      * be executed.</p>
      *
-     * @return The tasks. Returns an empty set if no tasks are to be executed.
+     * @return The tasks. Returns an empty set if no tasks are to be executed. The returned list is read-only.
      * @throws IllegalStateException When this graph has not been populated.
      */
     List<Task> getAllTasks();
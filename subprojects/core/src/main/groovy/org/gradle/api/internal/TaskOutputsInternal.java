@@ -25,5 +25,10 @@ public interface TaskOutputsInternal extends TaskOutputs {
 
     FileCollection getPreviousFiles();
 
+    /**
+     * Returns the history of the task, which is available only while the task is executing.
+     */
+    TaskExecutionHistory getHistory();
+
     void setHistory(TaskExecutionHistory history);
 }
@@ -15,30 +15,94 @@
  */
 package org.gradle.api.internal.changedetection;
 
+import org.gradle.cache.DefaultSerializer;
 import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.UncheckedException;
+import org.gradle.util.hash.HashUtil;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Serializable;
+
+/**
+ * Stores file collection snapshots by content. When a snapshot is added which has the same content as a snapshot
+ * already in the repository, the existing snapshot is reused and its reference count is incremented. A snapshot is
+ * discarded once it has been removed as many times as it has been added.
+ */
 public class CacheBackedFileSnapshotRepository implements FileSnapshotRepository {
     private final PersistentIndexedCache<Object, Object> cache;
+    private final PersistentIndexedCache<Object, Object> referenceCache;
+    private final DefaultSerializer<FileCollectionSnapshot> serializer = new DefaultSerializer<FileCollectionSnapshot>();
 
     public CacheBackedFileSnapshotRepository(TaskArtifactStateCacheAccess cacheAccess) {
         cache = cacheAccess.createCache("fileSnapshots", Object.class, Object.class);
+        referenceCache = cacheAccess.createCache("fileSnapshotReferences", Object.class, Object.class);
     }
 
     public Long add(FileCollectionSnapshot snapshot) {
-        Long id = (Long) cache.get("nextId");
+        byte[] content = serialize(snapshot);
+        String contentHash = HashUtil.createHash(content, "MD5").asHexString();
+        Long id = (Long) referenceCache.get(contentHash);
+        if (id != null) {
+            SnapshotReference reference = (SnapshotReference) referenceCache.get(id);
+            referenceCache.put(id, new SnapshotReference(contentHash, reference.count + 1));
+            return id;
+        }
+
+        id = (Long) cache.get("nextId");
         if (id == null) {
             id = 1L;
         }
         cache.put("nextId", id + 1);
-        cache.put(id, snapshot);
+        cache.put(id, content);
+        referenceCache.put(contentHash, id);
+        referenceCache.put(id, new SnapshotReference(contentHash, 1));
         return id;
     }
 
     public FileCollectionSnapshot get(Long id) {
-        return (FileCollectionSnapshot) cache.get(id);
+        byte[] content = (byte[]) cache.get(id);
+        return content == null ? null : deserialize(content);
     }
 
     public void remove(Long id) {
+        SnapshotReference reference = (SnapshotReference) referenceCache.get(id);
+        if (reference != null && reference.count > 1) {
+            referenceCache.put(id, new SnapshotReference(reference.contentHash, reference.count - 1));
+            return;
+        }
         cache.remove(id);
+        if (reference != null) {
+            referenceCache.remove(id);
+            referenceCache.remove(reference.contentHash);
+        }
+    }
+
+    private byte[] serialize(FileCollectionSnapshot snapshot) {
+        ByteArrayOutputStream outstr = new ByteArrayOutputStream();
+        try {
+            serializer.write(outstr, snapshot);
+        } catch (Exception e) {
+            throw UncheckedException.asUncheckedException(e);
+        }
+        return outstr.toByteArray();
+    }
+
+    private FileCollectionSnapshot deserialize(byte[] content) {
+        try {
+            return serializer.read(new ByteArrayInputStream(content));
+        } catch (Exception e) {
+            throw UncheckedException.asUncheckedException(e);
+        }
+    }
+
+    private static class SnapshotReference implements Serializable {
+        private final String contentHash;
+        private final int count;
+
+        private SnapshotReference(String contentHash, int count) {
+            this.contentHash = contentHash;
+            this.count = count;
+        }
     }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection;
+
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.execution.TaskDurationHistory;
+import org.gradle.internal.Factory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link TaskDurationHistory} which persists the most recent duration of each task in the task artifact cache, keyed by task path.
+ */
+public class CacheBackedTaskDurationHistory implements TaskDurationHistory {
+    private final TaskArtifactStateCacheAccess cacheAccess;
+    private final PersistentIndexedCache<String, Long> durationCache;
+
+    public CacheBackedTaskDurationHistory(TaskArtifactStateCacheAccess cacheAccess) {
+        this.cacheAccess = cacheAccess;
+        durationCache = cacheAccess.createCache("taskDurations", String.class, Long.class);
+    }
+
+    public Map<TaskInternal, Long> getDurations(final Collection<? extends TaskInternal> tasks) {
+        return cacheAccess.useCache("read task durations", new Factory<Map<TaskInternal, Long>>() {
+            public Map<TaskInternal, Long> create() {
+                Map<TaskInternal, Long> durations = new HashMap<TaskInternal, Long>();
+                for (TaskInternal task : tasks) {
+                    Long duration = durationCache.get(task.getPath());
+                    if (duration != null) {
+                        durations.put(task, duration);
+                    }
+                }
+                return durations;
+            }
+        });
+    }
+
+    public void recordDuration(final TaskInternal task, final long duration) {
+        cacheAccess.useCache(String.format("record duration of %s", task), new Runnable() {
+            public void run() {
+                durationCache.put(task.getPath(), duration);
+            }
+        });
+    }
+}
@@ -19,23 +19,50 @@ import org.gradle.internal.Factory;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.cache.DefaultSerializer;
 import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.internal.UncheckedException;
 
 import java.io.File;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
+/**
+ * A {@link TaskHistoryRepository} which stores task history in the task artifact cache.
+ *
+ * <p>History updates are written behind: they are queued in memory and written to the cache in batches. When the queue
+ * reaches the batch size, the batch is handed to a single background writer, so that the task which queued the update does
+ * not wait for the cache. The remaining updates are written when {@link #flush()} is called, which first waits for the
+ * background writer. Each batch is written as a single {@link TaskArtifactStateCacheAccess#batchUpdate(String, Runnable)},
+ * so the cache is marked dirty and clean once per batch rather than once per update. Queued updates, and updates which are
+ * being written, are visible to {@link #getHistory(TaskInternal)}.</p>
+ */
 public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
+    public static final int DEFAULT_BATCH_SIZE = 20;
     private final TaskArtifactStateCacheAccess cacheAccess;
     private final FileSnapshotRepository snapshotRepository;
     private final PersistentIndexedCache<String, TaskHistory> taskHistoryCache;
     private final DefaultSerializer<TaskHistory> serializer = new DefaultSerializer<TaskHistory>();
+    private final int batchSize;
+    private final Executor writer;
+    private final Map<String, PendingUpdate> pendingUpdates = new LinkedHashMap<String, PendingUpdate>();
+    private final Map<String, PendingUpdate> writingUpdates = new LinkedHashMap<String, PendingUpdate>();
+    private boolean writing;
+    private RuntimeException writeFailure;
+
+    public CacheBackedTaskHistoryRepository(TaskArtifactStateCacheAccess cacheAccess, FileSnapshotRepository snapshotRepository, Executor writer) {
+        this(cacheAccess, snapshotRepository, writer, DEFAULT_BATCH_SIZE);
+    }
 
-    public CacheBackedTaskHistoryRepository(TaskArtifactStateCacheAccess cacheAccess, FileSnapshotRepository snapshotRepository) {
+    public CacheBackedTaskHistoryRepository(TaskArtifactStateCacheAccess cacheAccess, FileSnapshotRepository snapshotRepository, Executor writer, int batchSize) {
         this.cacheAccess = cacheAccess;
         this.snapshotRepository = snapshotRepository;
+        this.writer = writer;
+        this.batchSize = batchSize;
         taskHistoryCache = cacheAccess.createCache("taskArtifacts", String.class, TaskHistory.class, serializer);
     }
 
@@ -62,37 +89,159 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
             }
 
             public void update() {
-                if (currentExecution.inputFilesSnapshotId == null && currentExecution.inputFilesSnapshot != null) {
-                    currentExecution.inputFilesSnapshotId = snapshotRepository.add(currentExecution.inputFilesSnapshot);
-                }
-                if (currentExecution.outputFilesSnapshotId == null && currentExecution.outputFilesSnapshot != null) {
-                    currentExecution.outputFilesSnapshotId = snapshotRepository.add(currentExecution.outputFilesSnapshot);
+                queueUpdate(task.getPath(), history);
+            }
+        };
+    }
+
+    /**
+     * Waits for the background writer, then writes any remaining queued updates. Rethrows any failure of the background
+     * writer.
+     */
+    public void flush() {
+        synchronized (pendingUpdates) {
+            while (writing) {
+                try {
+                    pendingUpdates.wait();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.asUncheckedException(e);
                 }
-                while (history.configurations.size() > TaskHistory.MAX_HISTORY_ENTRIES) {
-                    LazyTaskExecution execution = history.configurations.remove(history.configurations.size() - 1);
-                    if (execution.inputFilesSnapshotId != null) {
-                        snapshotRepository.remove(execution.inputFilesSnapshotId);
+            }
+            if (writeFailure != null) {
+                RuntimeException failure = writeFailure;
+                writeFailure = null;
+                throw failure;
+            }
+        }
+        writeBatch();
+    }
+
+    private void writeBatch() {
+        final List<PendingUpdate> updates;
+        synchronized (pendingUpdates) {
+            if (pendingUpdates.isEmpty()) {
+                return;
+            }
+            updates = new ArrayList<PendingUpdate>(pendingUpdates.values());
+            writingUpdates.putAll(pendingUpdates);
+            pendingUpdates.clear();
+        }
+        try {
+            cacheAccess.batchUpdate("write task history", new Runnable() {
+                public void run() {
+                    Map<String, TaskHistory> histories = new LinkedHashMap<String, TaskHistory>();
+                    for (PendingUpdate update : updates) {
+                        writeSnapshots(update);
+                        histories.put(update.taskPath, update.history);
                     }
-                    if (execution.outputFilesSnapshotId != null) {
-                        snapshotRepository.remove(execution.outputFilesSnapshotId);
+                    taskHistoryCache.putAll(histories);
+                }
+            });
+        } finally {
+            synchronized (pendingUpdates) {
+                for (PendingUpdate update : updates) {
+                    if (writingUpdates.get(update.taskPath) == update) {
+                        writingUpdates.remove(update.taskPath);
                     }
                 }
-                taskHistoryCache.put(task.getPath(), history);
             }
-        };
+        }
+    }
+
+    private void queueUpdate(String taskPath, TaskHistory history) {
+        synchronized (pendingUpdates) {
+            PendingUpdate update = pendingUpdates.get(taskPath);
+            if (update == null) {
+                update = new PendingUpdate(taskPath);
+                pendingUpdates.put(taskPath, update);
+            }
+            update.history = history;
+            while (history.configurations.size() > TaskHistory.MAX_HISTORY_ENTRIES) {
+                update.discarded.add(history.configurations.remove(history.configurations.size() - 1));
+            }
+            if (writing || pendingUpdates.size() < batchSize) {
+                return;
+            }
+            writing = true;
+        }
+        writer.execute(new Runnable() {
+            public void run() {
+                writeFullBatches();
+            }
+        });
     }
 
-    private TaskHistory loadHistory(TaskInternal task) {
-        ClassLoader original = serializer.getClassLoader();
-        serializer.setClassLoader(task.getClass().getClassLoader());
+    /**
+     * Runs on the background writer. Writes batches until fewer than a full batch of updates are queued.
+     */
+    private void writeFullBatches() {
         try {
-            TaskHistory history = taskHistoryCache.get(task.getPath());
-            return history == null ? new TaskHistory() : history;
+            while (true) {
+                synchronized (pendingUpdates) {
+                    if (pendingUpdates.size() < batchSize) {
+                        return;
+                    }
+                }
+                writeBatch();
+            }
+        } catch (RuntimeException e) {
+            synchronized (pendingUpdates) {
+                writeFailure = e;
+            }
         } finally {
-            serializer.setClassLoader(original);
+            synchronized (pendingUpdates) {
+                writing = false;
+                pendingUpdates.notifyAll();
+            }
+        }
+    }
+
+    private void writeSnapshots(PendingUpdate update) {
+        for (LazyTaskExecution execution : update.history.configurations) {
+            if (execution.inputFilesSnapshotId == null && execution.inputFilesSnapshot != null) {
+                execution.inputFilesSnapshotId = snapshotRepository.add(execution.inputFilesSnapshot);
+            }
+            if (execution.outputFilesSnapshotId == null && execution.outputFilesSnapshot != null) {
+                execution.outputFilesSnapshotId = snapshotRepository.add(execution.outputFilesSnapshot);
+            }
+        }
+        for (LazyTaskExecution execution : update.discarded) {
+            if (execution.inputFilesSnapshotId != null) {
+                snapshotRepository.remove(execution.inputFilesSnapshotId);
+            }
+            if (execution.outputFilesSnapshotId != null) {
+                snapshotRepository.remove(execution.outputFilesSnapshotId);
+            }
         }
     }
 
+    private TaskHistory loadHistory(final TaskInternal task) {
+        synchronized (pendingUpdates) {
+            PendingUpdate update = pendingUpdates.get(task.getPath());
+            if (update == null) {
+                update = writingUpdates.get(task.getPath());
+            }
+            if (update != null) {
+                // Use a copy, so that the queued history is not changed until the task history is updated again
+                TaskHistory history = new TaskHistory();
+                history.configurations.addAll(update.history.configurations);
+                return history;
+            }
+        }
+        return cacheAccess.useCache(String.format("read history of %s", task), new Factory<TaskHistory>() {
+            public TaskHistory create() {
+                ClassLoader original = serializer.getClassLoader();
+                serializer.setClassLoader(task.getClass().getClassLoader());
+                try {
+                    TaskHistory history = taskHistoryCache.get(task.getPath());
+                    return history == null ? new TaskHistory() : history;
+                } finally {
+                    serializer.setClassLoader(original);
+                }
+            }
+        });
+    }
+
     private static Set<String> outputFiles(TaskInternal task) {
         Set<String> outputFiles = new HashSet<String>();
         for (File file : task.getOutputs().getFiles()) {
@@ -126,6 +275,16 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
         return bestMatch;
     }
 
+    private static class PendingUpdate {
+        private final String taskPath;
+        private final List<LazyTaskExecution> discarded = new ArrayList<LazyTaskExecution>();
+        private TaskHistory history;
+
+        private PendingUpdate(String taskPath) {
+            this.taskPath = taskPath;
+        }
+    }
+
     private static class TaskHistory implements Serializable {
         private static final int MAX_HISTORY_ENTRIES = 3;
         private final List<LazyTaskExecution> configurations = new ArrayList<LazyTaskExecution>();
@@ -142,7 +301,11 @@ public class CacheBackedTaskHistoryRepository implements TaskHistoryRepository {
         @Override
         public FileCollectionSnapshot getInputFilesSnapshot() {
             if (inputFilesSnapshot == null) {
-                inputFilesSnapshot = snapshotRepository.get(inputFilesSnapshotId);
+                inputFilesSnapshot = cacheAccess.useCache("fetch input files", new Factory<FileCollectionSnapshot>() {
+                    public FileCollectionSnapshot create() {
+                        return snapshotRepository.get(inputFilesSnapshotId);
+                    }
+                });
             }
             return inputFilesSnapshot;
         }
@@ -17,39 +17,127 @@ package org.gradle.api.internal.changedetection;
 
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.Serializer;
+import org.gradle.internal.Factory;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * A {@link Hasher} which caches the hashes of files in the persistent {@code fileHashes} cache. An {@link
+ * InMemoryFileHashCache} sits in front of the persistent cache, so that files which were hashed by an earlier build
+ * in this process do not need to be looked up in the persistent cache again.
+ *
+ * <p>The persistent cache is locked only while hashes are looked up and stored. Files are hashed without holding the lock.</p>
+ */
 public class CachingHasher implements Hasher {
     private final PersistentIndexedCache<File, FileInfo> cache;
+    private final InMemoryFileHashCache inMemoryCache;
     private final Hasher hasher;
-    private long timestamp;
+    private final TaskArtifactStateCacheAccess cacheAccess;
 
-    public CachingHasher(Hasher hasher, TaskArtifactStateCacheAccess cacheAccess) {
+    public CachingHasher(Hasher hasher, TaskArtifactStateCacheAccess cacheAccess, InMemoryFileHashCache inMemoryCache) {
         this.hasher = hasher;
+        this.cacheAccess = cacheAccess;
+        this.inMemoryCache = inMemoryCache;
         cache = cacheAccess.createCache("fileHashes", File.class, FileInfo.class, new FileInfoSerializer());
     }
 
-    public byte[] hash(File file) {
-        FileInfo info = cache.get(file);
+    public byte[] hash(final File file) {
+        final long length = file.length();
+        final long timestamp = file.lastModified();
+        byte[] hash = cacheAccess.useCache("look up file hash", new Factory<byte[]>() {
+            public byte[] create() {
+                return getCachedHash(file, length, timestamp);
+            }
+        });
+        if (hash != null) {
+            return hash;
+        }
+
+        final byte[] newHash = hasher.hash(file);
+        cacheAccess.useCache("store file hash", new Runnable() {
+            public void run() {
+                cacheHash(file, newHash, length, timestamp);
+            }
+        });
+        return newHash;
+    }
+
+    /**
+     * Looks up the cached hashes and updates the cache on the calling thread, and uses the delegate hasher to hash
+     * all changed files in one batch. This means that the delegate is free to hash the files concurrently.
+     */
+    public List<byte[]> hash(final List<File> files) {
+        final List<byte[]> hashes = new ArrayList<byte[]>(files.size());
+        final List<File> changedFiles = new ArrayList<File>();
+        final List<long[]> changedFileDetails = new ArrayList<long[]>();
+        cacheAccess.useCache("look up file hashes", new Runnable() {
+            public void run() {
+                for (File file : files) {
+                    long length = file.length();
+                    long timestamp = file.lastModified();
+                    byte[] hash = getCachedHash(file, length, timestamp);
+                    hashes.add(hash);
+                    if (hash == null) {
+                        changedFiles.add(file);
+                        changedFileDetails.add(new long[]{length, timestamp});
+                    }
+                }
+            }
+        });
+        if (changedFiles.isEmpty()) {
+            return hashes;
+        }
 
-        long length = file.length();
-        timestamp = file.lastModified();
-        if (info != null && length == info.length && timestamp == info.timestamp) {
+        final List<byte[]> changedHashes = hasher.hash(changedFiles);
+        cacheAccess.useCache("store file hashes", new Runnable() {
+            public void run() {
+                int changed = 0;
+                for (int i = 0; i < hashes.size(); i++) {
+                    if (hashes.get(i) == null) {
+                        byte[] hash = changedHashes.get(changed);
+                        long[] details = changedFileDetails.get(changed);
+                        cacheHash(files.get(i), hash, details[0], details[1]);
+                        hashes.set(i, hash);
+                        changed++;
+                    }
+                }
+            }
+        });
+        return hashes;
+    }
+
+    private byte[] getCachedHash(File file, long length, long timestamp) {
+        byte[] hash = inMemoryCache.get(file, getAlgorithm(), length, timestamp);
+        if (hash != null) {
+            return hash;
+        }
+        FileInfo info = cache.get(file);
+        if (info != null && length == info.length && timestamp == info.timestamp && getAlgorithm().equals(info.algorithm)) {
+            inMemoryCache.put(file, info.algorithm, info.hash, length, timestamp);
             return info.hash;
         }
+        return null;
+    }
+
+    private void cacheHash(File file, byte[] hash, long length, long timestamp) {
+        cache.put(file, new FileInfo(getAlgorithm(), hash, length, timestamp));
+        inMemoryCache.put(file, getAlgorithm(), hash, length, timestamp);
+    }
 
-        byte[] hash = hasher.hash(file);
-        cache.put(file, new FileInfo(hash, length, timestamp));
-        return hash;
+    public String getAlgorithm() {
+        return hasher.getAlgorithm();
     }
 
     public static class FileInfo implements Serializable {
+        private final String algorithm;
         private final byte[] hash;
         private final long timestamp;
         private final long length;
 
-        public FileInfo(byte[] hash, long length, long timestamp) {
+        public FileInfo(String algorithm, byte[] hash, long length, long timestamp) {
+            this.algorithm = algorithm;
             this.hash = hash;
             this.length = length;
             this.timestamp = timestamp;
@@ -59,16 +147,18 @@ public class CachingHasher implements Hasher {
     private static class FileInfoSerializer implements Serializer<FileInfo> {
         public FileInfo read(InputStream instr) throws Exception {
             DataInputStream input = new DataInputStream(instr);
+            String algorithm = input.readUTF();
             int hashLength = input.readInt();
             byte[] hash = new byte[hashLength];
             input.readFully(hash);
             long timestamp = input.readLong();
             long length = input.readLong();
-            return new FileInfo(hash, length, timestamp);
+            return new FileInfo(algorithm, hash, length, timestamp);
         }
 
         public void write(OutputStream outstr, FileInfo value) throws Exception {
             DataOutputStream output = new DataOutputStream(outstr);
+            output.writeUTF(value.algorithm);
             output.writeInt(value.hash.length);
             output.write(value.hash);
             output.writeLong(value.timestamp);
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection;
+
+import org.gradle.api.Action;
+import org.gradle.api.tasks.incremental.IncrementalTaskInputs;
+import org.gradle.api.tasks.incremental.InputFileDetails;
+import org.gradle.util.ChangeListener;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The inputs of a task which only has to process the input files which have changed since its previous execution.
+ */
+public class ChangesOnlyIncrementalTaskInputs implements IncrementalTaskInputs {
+    private final FileCollectionSnapshot inputFilesSnapshot;
+    private final FileCollectionSnapshot previousInputFilesSnapshot;
+    private List<InputFileDetails> outOfDate;
+    private List<InputFileDetails> removed;
+
+    public ChangesOnlyIncrementalTaskInputs(FileCollectionSnapshot inputFilesSnapshot, FileCollectionSnapshot previousInputFilesSnapshot) {
+        this.inputFilesSnapshot = inputFilesSnapshot;
+        this.previousInputFilesSnapshot = previousInputFilesSnapshot;
+    }
+
+    public boolean isIncremental() {
+        return true;
+    }
+
+    public void outOfDate(Action<? super InputFileDetails> outOfDateAction) {
+        calculateChanges();
+        for (InputFileDetails details : outOfDate) {
+            outOfDateAction.execute(details);
+        }
+    }
+
+    public void removed(Action<? super InputFileDetails> removedAction) {
+        calculateChanges();
+        for (InputFileDetails details : removed) {
+            removedAction.execute(details);
+        }
+    }
+
+    private void calculateChanges() {
+        if (outOfDate != null) {
+            return;
+        }
+        outOfDate = new ArrayList<InputFileDetails>();
+        removed = new ArrayList<InputFileDetails>();
+        inputFilesSnapshot.changesSince(previousInputFilesSnapshot, new ChangeListener<File>() {
+            public void added(File file) {
+                outOfDate.add(new DefaultInputFileDetails(file, DefaultInputFileDetails.ChangeType.ADDED));
+            }
+
+            public void removed(File file) {
+                removed.add(new DefaultInputFileDetails(file, DefaultInputFileDetails.ChangeType.REMOVED));
+            }
+
+            public void changed(File file) {
+                outOfDate.add(new DefaultInputFileDetails(file, DefaultInputFileDetails.ChangeType.MODIFIED));
+            }
+        });
+    }
+}
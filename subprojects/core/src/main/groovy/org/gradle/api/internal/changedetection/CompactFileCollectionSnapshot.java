@@ -0,0 +1,416 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.internal.file.collections.SimpleFileCollection;
+import org.gradle.util.ChangeListener;
+import org.gradle.util.NoOpChangeListener;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A {@link FileCollectionSnapshot} which holds its entries in a few flat arrays, sorted by path, rather than as a map
+ * of snapshot objects. Two snapshots are compared by walking their entries in path order.
+ *
+ * <p>The hashes of all files are stored in a single array, using a fixed number of bytes per entry. When a snapshot
+ * contains hashes of different lengths, which happens when the hash algorithm has changed, the file hashes which have
+ * a different length to the first file hash are discarded. These files are treated as changed the next time they are
+ * compared.</p>
+ *
+ * <p>This snapshot is serialized using a compact binary format, where each path is encoded as the length of the prefix
+ * it shares with the preceding path plus the remaining characters.</p>
+ */
+class CompactFileCollectionSnapshot implements FileCollectionSnapshot {
+    static final byte FILE = 0;
+    static final byte DIRECTORY = 1;
+    static final byte MISSING = 2;
+    static final byte FILE_WITH_UNKNOWN_HASH = 3;
+    private static final byte FORMAT_VERSION = 1;
+    private final String[] paths;
+    private final byte[] types;
+    private final int hashLength;
+    private final byte[] hashes;
+
+    private CompactFileCollectionSnapshot(String[] paths, byte[] types, int hashLength, byte[] hashes) {
+        this.paths = paths;
+        this.types = types;
+        this.hashLength = hashLength;
+        this.hashes = hashes;
+    }
+
+    int getSize() {
+        return paths.length;
+    }
+
+    public FileCollection getFiles() {
+        List<File> files = new ArrayList<File>();
+        for (int i = 0; i < paths.length; i++) {
+            if (types[i] == FILE || types[i] == FILE_WITH_UNKNOWN_HASH) {
+                files.add(new File(paths[i]));
+            }
+        }
+        return new SimpleFileCollection(files);
+    }
+
+    public void changesSince(FileCollectionSnapshot oldSnapshot, final ChangeListener<File> listener) {
+        final CompactFileCollectionSnapshot other = (CompactFileCollectionSnapshot) oldSnapshot;
+        diff(other, new EntryChangeListener() {
+            public void added(int index) {
+                listener.added(new File(paths[index]));
+            }
+
+            public void removed(int otherIndex) {
+                listener.removed(new File(other.paths[otherIndex]));
+            }
+
+            public void changed(int index) {
+                listener.changed(new File(paths[index]));
+            }
+        });
+    }
+
+    public Diff changesSince(FileCollectionSnapshot oldSnapshot) {
+        final CompactFileCollectionSnapshot other = (CompactFileCollectionSnapshot) oldSnapshot;
+        return new Diff() {
+            public FileCollectionSnapshot applyTo(FileCollectionSnapshot snapshot) {
+                return applyTo(snapshot, new NoOpChangeListener<Merge>());
+            }
+
+            public FileCollectionSnapshot applyTo(FileCollectionSnapshot snapshot, ChangeListener<Merge> listener) {
+                return merge(other, (CompactFileCollectionSnapshot) snapshot, listener);
+            }
+        };
+    }
+
+    /**
+     * Applies the changes from the given old snapshot to this snapshot, to the given target snapshot.
+     */
+    private FileCollectionSnapshot merge(final CompactFileCollectionSnapshot other, CompactFileCollectionSnapshot target,
+                                         ChangeListener<Merge> listener) {
+        // Collect the changes, in path order. A change is the index of an added or changed entry of this snapshot,
+        // or -1 for a removed entry
+        final List<String> changedPaths = new ArrayList<String>();
+        final List<Integer> changes = new ArrayList<Integer>();
+        diff(other, new EntryChangeListener() {
+            public void added(int index) {
+                changedPaths.add(paths[index]);
+                changes.add(index);
+            }
+
+            public void removed(int otherIndex) {
+                changedPaths.add(other.paths[otherIndex]);
+                changes.add(-1);
+            }
+
+            public void changed(int index) {
+                changedPaths.add(paths[index]);
+                changes.add(index);
+            }
+        });
+
+        Builder builder = new Builder();
+        int targetIndex = 0;
+        for (int i = 0; i < changes.size(); i++) {
+            String path = changedPaths.get(i);
+            while (targetIndex < target.paths.length && target.paths[targetIndex].compareTo(path) < 0) {
+                target.addTo(builder, targetIndex++);
+            }
+            boolean inTarget = targetIndex < target.paths.length && target.paths[targetIndex].equals(path);
+
+            int change = changes.get(i);
+            DefaultMerge merge = new DefaultMerge();
+            if (change < 0) {
+                listener.removed(merge);
+            } else if (Arrays.binarySearch(other.paths, path) < 0) {
+                listener.added(merge);
+            } else {
+                listener.changed(merge);
+            }
+
+            if (merge.ignore) {
+                if (inTarget) {
+                    target.addTo(builder, targetIndex);
+                }
+            } else if (change >= 0) {
+                addTo(builder, change);
+            }
+            if (inTarget) {
+                targetIndex++;
+            }
+        }
+        while (targetIndex < target.paths.length) {
+            target.addTo(builder, targetIndex++);
+        }
+        return builder.build();
+    }
+
+    private void addTo(Builder builder, int index) {
+        byte[] hash = null;
+        if (types[index] == FILE) {
+            hash = new byte[hashLength];
+            System.arraycopy(hashes, index * hashLength, hash, 0, hashLength);
+        }
+        builder.add(paths[index], types[index], hash);
+    }
+
+    /**
+     * Walks the entries of this snapshot and the given old snapshot in path order.
+     */
+    private void diff(CompactFileCollectionSnapshot other, EntryChangeListener listener) {
+        int index = 0;
+        int otherIndex = 0;
+        while (index < paths.length || otherIndex < other.paths.length) {
+            int comparison;
+            if (index == paths.length) {
+                comparison = 1;
+            } else if (otherIndex == other.paths.length) {
+                comparison = -1;
+            } else {
+                comparison = paths[index].compareTo(other.paths[otherIndex]);
+            }
+            if (comparison < 0) {
+                listener.added(index++);
+            } else if (comparison > 0) {
+                listener.removed(otherIndex++);
+            } else {
+                if (!isUpToDate(index, other, otherIndex)) {
+                    listener.changed(index);
+                }
+                index++;
+                otherIndex++;
+            }
+        }
+    }
+
+    private boolean isUpToDate(int index, CompactFileCollectionSnapshot other, int otherIndex) {
+        byte type = types[index];
+        if (type != other.types[otherIndex] || type == FILE_WITH_UNKNOWN_HASH) {
+            return false;
+        }
+        if (type != FILE) {
+            return true;
+        }
+        if (hashLength != other.hashLength) {
+            return false;
+        }
+        int offset = index * hashLength;
+        int otherOffset = otherIndex * hashLength;
+        for (int i = 0; i < hashLength; i++) {
+            if (hashes[offset + i] != other.hashes[otherOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Object writeReplace() throws ObjectStreamException {
+        return new SerializedForm(encode());
+    }
+
+    byte[] encode() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            output.writeByte(FORMAT_VERSION);
+            writeSize(output, paths.length);
+            writeSize(output, hashLength);
+            String previous = "";
+            for (int i = 0; i < paths.length; i++) {
+                String path = paths[i];
+                int prefix = 0;
+                int maxPrefix = Math.min(path.length(), previous.length());
+                while (prefix < maxPrefix && path.charAt(prefix) == previous.charAt(prefix)) {
+                    prefix++;
+                }
+                byte[] suffix = path.substring(prefix).getBytes("UTF-8");
+                output.writeByte(types[i]);
+                writeSize(output, prefix);
+                writeSize(output, suffix.length);
+                output.write(suffix);
+                if (types[i] == FILE) {
+                    output.write(hashes, i * hashLength, hashLength);
+                }
+                previous = path;
+            }
+            output.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static CompactFileCollectionSnapshot decode(byte[] encoded) {
+        try {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(encoded));
+            byte version = input.readByte();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException(String.format("Unexpected file snapshot format version %s.", version));
+            }
+            int count = readSize(input);
+            int hashLength = readSize(input);
+            String[] paths = new String[count];
+            byte[] types = new byte[count];
+            byte[] hashes = new byte[count * hashLength];
+            String previous = "";
+            for (int i = 0; i < count; i++) {
+                types[i] = input.readByte();
+                int prefix = readSize(input);
+                byte[] suffix = new byte[readSize(input)];
+                input.readFully(suffix);
+                paths[i] = previous.substring(0, prefix) + new String(suffix, "UTF-8");
+                if (types[i] == FILE) {
+                    input.readFully(hashes, i * hashLength, hashLength);
+                }
+                previous = paths[i];
+            }
+            return new CompactFileCollectionSnapshot(paths, types, hashLength, hashes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeSize(DataOutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    private static int readSize(DataInputStream input) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private interface EntryChangeListener {
+        void added(int index);
+
+        void removed(int otherIndex);
+
+        void changed(int index);
+    }
+
+    private static class DefaultMerge implements Merge {
+        private boolean ignore;
+
+        public void ignore() {
+            ignore = true;
+        }
+    }
+
+    private static class SerializedForm implements Serializable {
+        private final byte[] encoded;
+
+        private SerializedForm(byte[] encoded) {
+            this.encoded = encoded;
+        }
+
+        private Object readResolve() throws ObjectStreamException {
+            return decode(encoded);
+        }
+    }
+
+    /**
+     * Collects the entries of a snapshot. Entries can be added in any order. When the same path is added more than once,
+     * the last entry wins.
+     */
+    static class Builder {
+        private final List<String> paths = new ArrayList<String>();
+        private final List<Byte> types = new ArrayList<Byte>();
+        private final List<byte[]> hashes = new ArrayList<byte[]>();
+        private boolean sorted = true;
+
+        public void addFile(String path, byte[] hash) {
+            add(path, FILE, hash);
+        }
+
+        public void addDirectory(String path) {
+            add(path, DIRECTORY, null);
+        }
+
+        public void addMissingFile(String path) {
+            add(path, MISSING, null);
+        }
+
+        void add(String path, byte type, byte[] hash) {
+            if (sorted && !paths.isEmpty() && paths.get(paths.size() - 1).compareTo(path) >= 0) {
+                sorted = false;
+            }
+            paths.add(path);
+            types.add(type);
+            hashes.add(hash);
+        }
+
+        public CompactFileCollectionSnapshot build() {
+            List<Integer> order = new ArrayList<Integer>(paths.size());
+            for (int i = 0; i < paths.size(); i++) {
+                order.add(i);
+            }
+            if (!sorted) {
+                // A stable sort, so that later entries for the same path follow earlier entries
+                Collections.sort(order, new Comparator<Integer>() {
+                    public int compare(Integer left, Integer right) {
+                        return paths.get(left).compareTo(paths.get(right));
+                    }
+                });
+                List<Integer> unique = new ArrayList<Integer>(order.size());
+                for (int i = 0; i < order.size(); i++) {
+                    if (i + 1 < order.size() && paths.get(order.get(i)).equals(paths.get(order.get(i + 1)))) {
+                        continue;
+                    }
+                    unique.add(order.get(i));
+                }
+                order = unique;
+            }
+
+            int hashLength = 0;
+            for (int index : order) {
+                if (types.get(index) == FILE) {
+                    hashLength = hashes.get(index).length;
+                    break;
+                }
+            }
+
+            String[] sortedPaths = new String[order.size()];
+            byte[] sortedTypes = new byte[order.size()];
+            byte[] sortedHashes = new byte[order.size() * hashLength];
+            for (int i = 0; i < order.size(); i++) {
+                int index = order.get(i);
+                sortedPaths[i] = paths.get(index);
+                sortedTypes[i] = types.get(index);
+                if (sortedTypes[i] == FILE) {
+                    byte[] hash = hashes.get(index);
+                    if (hash.length == hashLength) {
+                        System.arraycopy(hash, 0, sortedHashes, i * hashLength, hashLength);
+                    } else {
+                        sortedTypes[i] = FILE_WITH_UNKNOWN_HASH;
+                    }
+                }
+            }
+            return new CompactFileCollectionSnapshot(sortedPaths, sortedTypes, hashLength, sortedHashes);
+        }
+    }
+}
@@ -18,9 +18,40 @@ package org.gradle.api.internal.changedetection;
 import org.gradle.util.hash.HashUtil;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
+/**
+ * Hashes the content of files using a {@link java.security.MessageDigest}. Uses MD5 by default. The faster, but not
+ * cryptographic, {@value org.gradle.util.hash.Murmur3MessageDigest#ALGORITHM} algorithm can be selected using the
+ * {@value #ALGORITHM_PROPERTY} system property.
+ */
 public class DefaultHasher implements Hasher {
+    public static final String ALGORITHM_PROPERTY = "org.gradle.internal.changedetection.hash";
+    public static final String DEFAULT_ALGORITHM = "MD5";
+    private final String algorithm;
+
+    public DefaultHasher() {
+        this(DEFAULT_ALGORITHM);
+    }
+
+    public DefaultHasher(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
     public byte[] hash(File file) {
-        return HashUtil.createHash(file, "MD5").asByteArray();
+        return HashUtil.createHash(file, algorithm).asByteArray();
+    }
+
+    public List<byte[]> hash(List<File> files) {
+        List<byte[]> hashes = new ArrayList<byte[]>(files.size());
+        for (File file : files) {
+            hashes.add(hash(file));
+        }
+        return hashes;
     }
 }
\ No newline at end of file
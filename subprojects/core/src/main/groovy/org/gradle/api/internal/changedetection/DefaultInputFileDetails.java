@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection;
+
+import org.gradle.api.tasks.incremental.InputFileDetails;
+
+import java.io.File;
+
+class DefaultInputFileDetails implements InputFileDetails {
+    private final File file;
+    private final ChangeType changeType;
+
+    enum ChangeType { ADDED, MODIFIED, REMOVED }
+
+    DefaultInputFileDetails(File file, ChangeType changeType) {
+        this.file = file;
+        this.changeType = changeType;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public boolean isAdded() {
+        return changeType == ChangeType.ADDED;
+    }
+
+    public boolean isModified() {
+        return changeType == ChangeType.MODIFIED;
+    }
+
+    public boolean isRemoved() {
+        return changeType == ChangeType.REMOVED;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Input file %s %s", file, changeType.name().toLowerCase());
+    }
+}
@@ -16,6 +16,7 @@
 package org.gradle.api.internal.changedetection;
 
 import org.gradle.internal.Factory;
+import org.gradle.api.Action;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentCache;
@@ -23,10 +24,25 @@ import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.Serializer;
 import org.gradle.cache.internal.FileLockManager;
 import org.gradle.listener.LazyCreationProxy;
+import org.gradle.util.GFileUtils;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 public class DefaultTaskArtifactStateCacheAccess implements TaskArtifactStateCacheAccess {
+    /**
+     * The format of the caches in the task artifact state cache. Change this whenever the format of any of those caches
+     * changes, so that caches written in an older format are discarded.
+     */
+    static final String CACHE_FORMAT = "2";
+    /**
+     * The caches which refer to each other's entries: the task history refers to file snapshots, which are counted by the snapshot references.
+     * Each cache is journaled on its own, so these caches can disagree with each other after a crash, and are discarded together. The other
+     * caches do not refer to other caches, and are kept.
+     */
+    static final List<String> DEPENDENT_CACHES = Arrays.asList("taskArtifacts", "fileSnapshots", "fileSnapshotReferences");
     private final Gradle gradle;
     private final CacheRepository cacheRepository;
     private PersistentCache cache;
@@ -36,13 +52,15 @@ public class DefaultTaskArtifactStateCacheAccess implements TaskArtifactStateCac
         this.cacheRepository = cacheRepository;
     }
 
-    private PersistentCache getCache() {
+    private synchronized PersistentCache getCache() {
         if (cache == null) {
             cache = cacheRepository
                     .cache("taskArtifacts")
                     .forObject(gradle)
                     .withDisplayName("task artifact state cache")
-                    .withLockMode(FileLockManager.LockMode.Exclusive)
+                    .withProperties(Collections.singletonMap("format", CACHE_FORMAT))
+                    .withLockMode(FileLockManager.LockMode.None) // Lock only while the cache is in use, so concurrent builds can share it
+                    .withCrashRecovery(new DiscardDependentCaches()) // Contains only journaled indexed caches
                     .open();
         }
         return cache;
@@ -79,7 +97,24 @@ public class DefaultTaskArtifactStateCacheAccess implements TaskArtifactStateCac
         getCache().useCache(operationDisplayName, action);
     }
 
+    public void batchUpdate(String operationDisplayName, Runnable action) {
+        getCache().batchUpdate(operationDisplayName, action);
+    }
+
     public void longRunningOperation(String operationDisplayName, Runnable action) {
         getCache().longRunningOperation(operationDisplayName, action);
     }
-}
\ No newline at end of file
+
+    private static class DiscardDependentCaches implements Action<PersistentCache> {
+        public void execute(PersistentCache cache) {
+            for (File file : cache.getBaseDir().listFiles()) {
+                for (String cacheName : DEPENDENT_CACHES) {
+                    // Also discard the journal, and any file left by an interrupted compaction
+                    if (file.getName().startsWith(cacheName + ".bin")) {
+                        GFileUtils.forceDelete(file);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.file.collections.SimpleFileCollection;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
+import org.gradle.api.tasks.incremental.IncrementalTaskInputs;
 
 import java.util.ArrayList;
 import java.util.Formatter;
@@ -34,14 +35,15 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
     private static final Logger LOGGER = Logging.getLogger(DefaultTaskArtifactStateRepository.class);
     private final TaskHistoryRepository taskHistoryRepository;
     private final UpToDateRule upToDateRule;
+    private final InputFilesChangedUpToDateRule inputFilesRule;
 
     public DefaultTaskArtifactStateRepository(TaskHistoryRepository taskHistoryRepository, FileSnapshotter inputFilesSnapshotter, FileSnapshotter outputFilesSnapshotter) {
         this.taskHistoryRepository = taskHistoryRepository;
         upToDateRule = new CompositeUpToDateRule(
                 new TaskTypeChangedUpToDateRule(),
                 new InputPropertiesChangedUpToDateRule(),
-                new OutputFilesChangedUpToDateRule(outputFilesSnapshotter),
-                new InputFilesChangedUpToDateRule(inputFilesSnapshotter));
+                new OutputFilesChangedUpToDateRule(outputFilesSnapshotter));
+        inputFilesRule = new InputFilesChangedUpToDateRule(inputFilesSnapshotter);
     }
 
     public TaskArtifactState getStateFor(final TaskInternal task) {
@@ -54,6 +56,8 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
         boolean snapshot();
 
         FileCollection getPreviousOutputFiles();
+
+        IncrementalTaskInputs getInputChanges();
     }
 
     private static class HistoricExecution implements TaskExecutionState {
@@ -61,14 +65,18 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
         private final TaskExecution lastExecution;
         private boolean upToDate;
         private final UpToDateRule rule;
+        private final InputFilesChangedUpToDateRule inputFilesRule;
         private TaskExecution thisExecution;
         private UpToDateRule.TaskUpToDateState upToDateState;
+        private InputFilesChangedUpToDateRule.InputFilesState inputFilesState;
+        private IncrementalTaskInputs inputChanges;
 
-        public HistoricExecution(TaskInternal task, TaskHistoryRepository.History history, UpToDateRule rule) {
+        public HistoricExecution(TaskInternal task, TaskHistoryRepository.History history, UpToDateRule rule, InputFilesChangedUpToDateRule inputFilesRule) {
             this.task = task;
             this.lastExecution = history.getPreviousExecution();
             this.thisExecution = history.getCurrentExecution();
             this.rule = rule;
+            this.inputFilesRule = inputFilesRule;
         }
 
         private void calcCurrentState() {
@@ -78,6 +86,7 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
 
             // Calculate initial state - note this is potentially expensive
             upToDateState = rule.create(task, lastExecution, thisExecution);
+            inputFilesState = inputFilesRule.create(task, lastExecution, thisExecution);
         }
 
         public FileCollection getPreviousOutputFiles() {
@@ -94,6 +103,9 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
 
             List<String> messages = new ArrayList<String>();
             upToDateState.checkUpToDate(messages);
+            if (messages.isEmpty()) {
+                inputFilesState.checkUpToDate(messages);
+            }
 
             if (messages.isEmpty()) {
                 upToDate = true;
@@ -101,6 +113,25 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
             return messages;
         }
 
+        public IncrementalTaskInputs getInputChanges() {
+            if (inputChanges != null) {
+                return inputChanges;
+            }
+            calcCurrentState();
+
+            // Only the input files may have changed for the task to be able to process the changes incrementally
+            List<String> messages = new ArrayList<String>();
+            if (lastExecution != null) {
+                upToDateState.checkUpToDate(messages);
+            }
+            if (lastExecution == null || !messages.isEmpty()) {
+                inputChanges = new RebuildIncrementalTaskInputs(task);
+            } else {
+                inputChanges = inputFilesState.getInputChanges();
+            }
+            return inputChanges;
+        }
+
         public boolean snapshot() {
             calcCurrentState();
             
@@ -109,6 +140,7 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
             }
 
             upToDateState.snapshotAfterTask();
+            inputFilesState.snapshotAfterTask();
             return true;
         }
     }
@@ -149,12 +181,16 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
             return execution.getPreviousOutputFiles();
         }
 
+        public IncrementalTaskInputs getInputChanges() {
+            return execution.getInputChanges();
+        }
+
         public TaskExecutionHistory getExecutionHistory() {
             return this;
         }
 
         public TaskExecutionState getExecution() {
-            return new HistoricExecution(task, history, upToDateRule);
+            return new HistoricExecution(task, history, upToDateRule, inputFilesRule);
         }
 
         public void afterTask() {
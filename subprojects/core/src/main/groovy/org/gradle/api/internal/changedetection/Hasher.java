@@ -16,7 +16,20 @@
 package org.gradle.api.internal.changedetection;
 
 import java.io.File;
+import java.util.List;
 
 public interface Hasher {
     byte[] hash(File file);
+
+    /**
+     * Calculates the hashes of the given files.
+     *
+     * @return The hashes, in the same order as the given files.
+     */
+    List<byte[]> hash(List<File> files);
+
+    /**
+     * Returns the name of the algorithm used to calculate the hashes returned by this hasher.
+     */
+    String getAlgorithm();
 }
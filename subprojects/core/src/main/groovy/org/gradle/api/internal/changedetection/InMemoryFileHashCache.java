@@ -0,0 +1,94 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection;
+
+import net.jcip.annotations.ThreadSafe;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * An in-heap cache of file hashes, which is shared by all builds run by this process. Each entry is keyed by the
+ * absolute path of the file, and is used only when the length and last modified time of the file, and the hash
+ * algorithm, are the same as when the entry was added. When full, the least recently used entry is discarded.
+ */
+@ThreadSafe
+public class InMemoryFileHashCache {
+    public static final int DEFAULT_MAX_ENTRIES = 100000;
+    private final Map<String, Entry> entries;
+    private long hitCount;
+    private long missCount;
+
+    public InMemoryFileHashCache(final int maxEntries) {
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached hash of the given file, or null when there is no up-to-date hash for the file.
+     */
+    public synchronized byte[] get(File file, String algorithm, long length, long timestamp) {
+        Entry entry = entries.get(file.getAbsolutePath());
+        if (entry != null && entry.length == length && entry.timestamp == timestamp && entry.algorithm.equals(algorithm)) {
+            hitCount++;
+            return entry.hash;
+        }
+        missCount++;
+        return null;
+    }
+
+    public synchronized void put(File file, String algorithm, byte[] hash, long length, long timestamp) {
+        entries.put(file.getAbsolutePath(), new Entry(algorithm, hash, length, timestamp));
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of lookups which found an up-to-date hash.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups which did not find an up-to-date hash.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    private static class Entry {
+        private final String algorithm;
+        private final byte[] hash;
+        private final long length;
+        private final long timestamp;
+
+        private Entry(String algorithm, byte[] hash, long length, long timestamp) {
+            this.algorithm = algorithm;
+            this.hash = hash;
+            this.length = length;
+            this.timestamp = timestamp;
+        }
+    }
+}
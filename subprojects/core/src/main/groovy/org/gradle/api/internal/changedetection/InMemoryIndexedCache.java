@@ -15,11 +15,13 @@
  */
 package org.gradle.api.internal.changedetection;
 
+import org.gradle.api.Action;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.internal.UncheckedException;
 
 import java.io.*;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,7 +29,7 @@ import java.util.Map;
  * A simple in-memory cache, used by the testing fixtures.
  */
 public class InMemoryIndexedCache<K, V> implements PersistentIndexedCache<K, V> {
-    Map<Object, byte[]> entries = new HashMap<Object, byte[]>();
+    Map<K, byte[]> entries = new HashMap<K, byte[]>();
 
     public V get(K key) {
         byte[] serialised = entries.get(key);
@@ -42,6 +44,17 @@ public class InMemoryIndexedCache<K, V> implements PersistentIndexedCache<K, V>
         }
     }
 
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> result = new HashMap<K, V>();
+        for (K key : keys) {
+            V value = get(key);
+            if (value != null) {
+                result.put(key, value);
+            }
+        }
+        return result;
+    }
+
     public void put(K key, V value) {
         ByteArrayOutputStream outstr = new ByteArrayOutputStream();
         try {
@@ -55,7 +68,23 @@ public class InMemoryIndexedCache<K, V> implements PersistentIndexedCache<K, V>
         entries.put(key, outstr.toByteArray());
     }
 
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        for (Map.Entry<? extends K, ? extends V> entry : entries.entrySet()) {
+            put(entry.getKey(), entry.getValue());
+        }
+    }
+
     public void remove(K key) {
         entries.remove(key);
     }
+
+    public void visitEntries(Action<? super Map.Entry<K, V>> action) {
+        Map<K, V> snapshot = new HashMap<K, V>();
+        for (K key : entries.keySet()) {
+            snapshot.put(key, get(key));
+        }
+        for (Map.Entry<K, V> entry : snapshot.entrySet()) {
+            action.execute(entry);
+        }
+    }
 }
@@ -16,6 +16,7 @@
 package org.gradle.api.internal.changedetection;
 
 import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.tasks.incremental.IncrementalTaskInputs;
 import org.gradle.util.ChangeListener;
 
 import java.io.File;
@@ -31,10 +32,10 @@ public class InputFilesChangedUpToDateRule implements UpToDateRule {
         this.inputFilesSnapshotter = inputFilesSnapshotter;
     }
 
-    public TaskUpToDateState create(final TaskInternal task, final TaskExecution previousExecution, final TaskExecution currentExecution) {
+    public InputFilesState create(final TaskInternal task, final TaskExecution previousExecution, final TaskExecution currentExecution) {
         final FileCollectionSnapshot inputFilesSnapshot = inputFilesSnapshotter.snapshot(task.getInputs().getFiles());
 
-        return new TaskUpToDateState() {
+        return new InputFilesState() {
             public void checkUpToDate(final Collection<String> messages) {
                 if (previousExecution.getInputFilesSnapshot() == null) {
                     messages.add(String.format("Input file history is not available for %s.", task));
@@ -58,6 +59,20 @@ public class InputFilesChangedUpToDateRule implements UpToDateRule {
             public void snapshotAfterTask() {
                 currentExecution.setInputFilesSnapshot(inputFilesSnapshot);
             }
+
+            public IncrementalTaskInputs getInputChanges() {
+                if (previousExecution == null || previousExecution.getInputFilesSnapshot() == null) {
+                    return new RebuildIncrementalTaskInputs(task);
+                }
+                return new ChangesOnlyIncrementalTaskInputs(inputFilesSnapshot, previousExecution.getInputFilesSnapshot());
+            }
         };
     }
+
+    interface InputFilesState extends TaskUpToDateState {
+        /**
+         * Returns the changes to the input files since the previous execution.
+         */
+        IncrementalTaskInputs getInputChanges();
+    }
 }
@@ -42,11 +42,13 @@ public class OutputFilesSnapshotter implements FileSnapshotter {
     private final FileSnapshotter snapshotter;
     private final IdGenerator<Long> idGenerator;
     private final PersistentIndexedCache<String, Long> dirIdentiferCache;
+    private final TaskArtifactStateCacheAccess cacheAccess;
 
     public OutputFilesSnapshotter(FileSnapshotter snapshotter, IdGenerator<Long> idGenerator,
                                   TaskArtifactStateCacheAccess cacheAccess) {
         this.snapshotter = snapshotter;
         this.idGenerator = idGenerator;
+        this.cacheAccess = cacheAccess;
         dirIdentiferCache = cacheAccess.createCache("outputFileStates", String.class, Long.class);
     }
 
@@ -54,22 +56,26 @@ public class OutputFilesSnapshotter implements FileSnapshotter {
         return new OutputFilesSnapshot(new HashMap<String, Long>(), snapshotter.emptySnapshot());
     }
 
-    public FileCollectionSnapshot snapshot(FileCollection files) {
-        Map<String, Long> snapshotDirIds = new HashMap<String, Long>();
-        for (File file : files) {
-            Long dirId;
-            if (file.exists()) {
-                dirId = dirIdentiferCache.get(file.getAbsolutePath());
-                if (dirId == null) {
-                    dirId = idGenerator.generateId();
-                    dirIdentiferCache.put(file.getAbsolutePath(), dirId);
+    public FileCollectionSnapshot snapshot(final FileCollection files) {
+        final Map<String, Long> snapshotDirIds = new HashMap<String, Long>();
+        cacheAccess.useCache("snapshot output file ids", new Runnable() {
+            public void run() {
+                for (File file : files) {
+                    Long dirId;
+                    if (file.exists()) {
+                        dirId = dirIdentiferCache.get(file.getAbsolutePath());
+                        if (dirId == null) {
+                            dirId = idGenerator.generateId();
+                            dirIdentiferCache.put(file.getAbsolutePath(), dirId);
+                        }
+                    } else {
+                        dirIdentiferCache.remove(file.getAbsolutePath());
+                        dirId = null;
+                    }
+                    snapshotDirIds.put(file.getAbsolutePath(), dirId);
                 }
-            } else {
-                dirIdentiferCache.remove(file.getAbsolutePath());
-                dirId = null;
             }
-            snapshotDirIds.put(file.getAbsolutePath(), dirId);
-        }
+        });
         return new OutputFilesSnapshot(snapshotDirIds, snapshotter.snapshot(files));
     }
 
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection;
+
+import org.gradle.internal.Stoppable;
+import org.gradle.internal.UncheckedException;
+import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.messaging.concurrent.StoppableExecutor;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A {@link Hasher} which hashes a batch of files using several worker threads. Each worker takes the next unhashed
+ * file from the batch until all files have been hashed, so that a few large files do not hold up the other workers.
+ * Small batches are hashed on the calling thread.
+ *
+ * <p>The workers of all batches share a single executor, which is created when this hasher is created and is stopped
+ * along with the given {@link ExecutorFactory}, or when this hasher is stopped.</p>
+ */
+public class ParallelHasher implements Hasher, Stoppable {
+    static final int MIN_FILES_PER_WORKER = 16;
+    private final Hasher hasher;
+    private final StoppableExecutor executor;
+    private final int maxWorkers;
+
+    public ParallelHasher(Hasher hasher, ExecutorFactory executorFactory, int maxWorkers) {
+        if (maxWorkers < 1) {
+            throw new IllegalArgumentException("Not a valid number of worker threads: " + maxWorkers);
+        }
+        this.hasher = hasher;
+        this.maxWorkers = maxWorkers;
+        executor = executorFactory.create("File hasher");
+    }
+
+    public void stop() {
+        executor.stop();
+    }
+
+    public String getAlgorithm() {
+        return hasher.getAlgorithm();
+    }
+
+    public byte[] hash(File file) {
+        return hasher.hash(file);
+    }
+
+    public List<byte[]> hash(final List<File> files) {
+        int workers = Math.min(maxWorkers, files.size() / MIN_FILES_PER_WORKER);
+        if (workers <= 1) {
+            return hasher.hash(files);
+        }
+
+        final byte[][] hashes = new byte[files.size()][];
+        final AtomicInteger nextFile = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch finished = new CountDownLatch(workers);
+        for (int i = 0; i < workers; i++) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        int index;
+                        while (failure.get() == null && (index = nextFile.getAndIncrement()) < hashes.length) {
+                            try {
+                                hashes[index] = hasher.hash(files.get(index));
+                            } catch (Throwable t) {
+                                failure.compareAndSet(null, t);
+                            }
+                        }
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            });
+        }
+        try {
+            finished.await();
+        } catch (InterruptedException e) {
+            throw UncheckedException.asUncheckedException(e);
+        }
+
+        Throwable t = failure.get();
+        if (t instanceof Error) {
+            throw (Error) t;
+        }
+        if (t != null) {
+            throw UncheckedException.asUncheckedException(t);
+        }
+        return Arrays.asList(hashes);
+    }
+}
@@ -22,6 +22,7 @@ import org.gradle.api.internal.TaskExecutionHistory;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
+import org.gradle.api.tasks.incremental.IncrementalTaskInputs;
 
 public class ShortCircuitTaskArtifactStateRepository implements TaskArtifactStateRepository {
     private static final Logger LOGGER = Logging.getLogger(ShortCircuitTaskArtifactStateRepository.class);
@@ -38,10 +39,16 @@ public class ShortCircuitTaskArtifactStateRepository implements TaskArtifactStat
             return new ShortCircuitArtifactState(task, repository.getStateFor(task));
         }
         LOGGER.info(String.format("%s has not declared any outputs, assuming that it is out-of-date.", StringUtils.capitalize(task.toString())));
-        return new NoHistoryArtifactState();
+        return new NoHistoryArtifactState(task);
     }
 
     private static class NoHistoryArtifactState implements TaskArtifactState, TaskExecutionHistory {
+        private final TaskInternal task;
+
+        public NoHistoryArtifactState(TaskInternal task) {
+            this.task = task;
+        }
+
         public boolean isUpToDate() {
             return false;
         }
@@ -62,6 +69,10 @@ public class ShortCircuitTaskArtifactStateRepository implements TaskArtifactStat
         public FileCollection getOutputFiles() {
             throw new UnsupportedOperationException();
         }
+
+        public IncrementalTaskInputs getInputChanges() {
+            return new RebuildIncrementalTaskInputs(task);
+        }
     }
 
     private class ShortCircuitArtifactState implements TaskArtifactState {
@@ -74,11 +85,28 @@ public class ShortCircuitTaskArtifactStateRepository implements TaskArtifactStat
         }
 
         public boolean isUpToDate() {
-            return !startParameter.isNoOpt() && task.getOutputs().getUpToDateSpec().isSatisfiedBy(task) && state.isUpToDate();
+            return canUseHistory() && state.isUpToDate();
+        }
+
+        private boolean canUseHistory() {
+            return !startParameter.isNoOpt() && task.getOutputs().getUpToDateSpec().isSatisfiedBy(task);
         }
 
         public TaskExecutionHistory getExecutionHistory() {
-            return state.getExecutionHistory();
+            final TaskExecutionHistory history = state.getExecutionHistory();
+            if (canUseHistory()) {
+                return history;
+            }
+            return new TaskExecutionHistory() {
+                public FileCollection getOutputFiles() {
+                    return history.getOutputFiles();
+                }
+
+                public IncrementalTaskInputs getInputChanges() {
+                    // The task is not allowed to use its history, so it has to process all of its inputs
+                    return new RebuildIncrementalTaskInputs(task);
+                }
+            };
         }
 
         public void beforeTask() {
@@ -36,9 +36,17 @@ public interface TaskArtifactStateCacheAccess {
      */
     void useCache(String operationDisplayName, Runnable action);
 
+    /**
+     * Performs a batch of updates against the cache. The cache is marked as being updated once for the whole batch, so that a crash part
+     * way through the batch invalidates the cache as a whole.
+     *
+     * <p>This method is re-entrant, so that an action can call back into this method.</p>
+     */
+    void batchUpdate(String operationDisplayName, Runnable action);
+
     /**
      * Performs some long running operation. Releases all locks while the operation is running, and reacquires the locks at the end of
-     * the long running operation.
+     * the long running operation. Runs the operation without any locking when the calling thread does not hold the cache.
      *
      * <p>This method is re-entrant, so that an action can call back into this method.</p>
      */
@@ -17,19 +17,42 @@ package org.gradle.api.internal.changedetection;
 
 import org.gradle.execution.BuildExecutionAction;
 import org.gradle.execution.BuildExecutionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+/**
+ * Writes any pending task history once the tasks have executed. The task artifact cache is not locked while the tasks execute.
+ * Instead, each task locks the cache only while it reads or writes its history, so that tasks and other builds can use the cache
+ * concurrently.
+ */
 public class TaskCacheLockHandlingBuildExecuter implements BuildExecutionAction {
-    private final TaskArtifactStateCacheAccess cacheAccess;
+    private static final Logger LOGGER = LoggerFactory.getLogger(TaskCacheLockHandlingBuildExecuter.class);
+    private final TaskHistoryRepository taskHistoryRepository;
 
-    public TaskCacheLockHandlingBuildExecuter(TaskArtifactStateCacheAccess cacheAccess) {
-        this.cacheAccess = cacheAccess;
+    public TaskCacheLockHandlingBuildExecuter(TaskHistoryRepository taskHistoryRepository) {
+        this.taskHistoryRepository = taskHistoryRepository;
     }
 
-    public void execute(final BuildExecutionContext context) {
-        cacheAccess.useCache("execute tasks", new Runnable(){
-            public void run() {
-                context.proceed();
+    public void execute(BuildExecutionContext context) {
+        boolean succeeded = false;
+        try {
+            context.proceed();
+            succeeded = true;
+        } finally {
+            if (succeeded) {
+                taskHistoryRepository.flush();
+            } else {
+                flushAfterFailure();
             }
-        });
+        }
+    }
+
+    private void flushAfterFailure() {
+        // Do not replace the failure of the build with a failure to write the task history
+        try {
+            taskHistoryRepository.flush();
+        } catch (RuntimeException e) {
+            LOGGER.error("Could not write task history.", e);
+        }
     }
 }
@@ -20,6 +20,11 @@ import org.gradle.api.internal.TaskInternal;
 public interface TaskHistoryRepository {
     History getHistory(TaskInternal task);
 
+    /**
+     * Writes any history updates which have not yet been written to persistent storage.
+     */
+    void flush();
+
     interface History {
         TaskExecution getPreviousExecution();
 
@@ -17,14 +17,15 @@ package org.gradle.api.internal.project;
 
 import org.gradle.api.internal.GradleInternal;
 import org.gradle.api.internal.artifacts.dsl.dependencies.ProjectFinder;
-import org.gradle.api.internal.changedetection.TaskArtifactStateCacheAccess;
 import org.gradle.api.internal.changedetection.TaskCacheLockHandlingBuildExecuter;
+import org.gradle.api.internal.changedetection.TaskHistoryRepository;
 import org.gradle.api.internal.plugins.DefaultPluginRegistry;
 import org.gradle.api.internal.plugins.PluginRegistry;
 import org.gradle.internal.service.DefaultServiceRegistry;
 import org.gradle.execution.*;
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.listener.ListenerManager;
+import org.gradle.messaging.concurrent.ExecutorFactory;
 
 import static java.util.Arrays.asList;
 
@@ -46,7 +47,7 @@ public class GradleInternalServiceRegistry extends DefaultServiceRegistry implem
                         new ExcludedTaskFilteringBuildConfigurationAction(),
                         new TaskNameResolvingBuildConfigurationAction()),
                 asList(new DryRunBuildExecutionAction(),
-                        new TaskCacheLockHandlingBuildExecuter(get(TaskArtifactStateCacheAccess.class)),
+                        new TaskCacheLockHandlingBuildExecuter(get(TaskHistoryRepository.class)),
                         new SelectedTaskExecutionAction()));
     }
 
@@ -63,7 +64,15 @@ public class GradleInternalServiceRegistry extends DefaultServiceRegistry implem
     }
 
     protected TaskGraphExecuter createTaskGraphExecuter() {
-        return new DefaultTaskGraphExecuter(get(ListenerManager.class));
+        return new DefaultTaskGraphExecuter(get(ListenerManager.class), get(TaskPlanExecuter.class));
+    }
+
+    protected TaskPlanExecuter createTaskPlanExecuter() {
+        int parallelThreads = gradle.getStartParameter().getParallelThreadCount();
+        if (parallelThreads > 1) {
+            return new ParallelTaskPlanExecuter(get(ExecutorFactory.class), get(TaskDurationHistory.class), parallelThreads);
+        }
+        return new DefaultTaskPlanExecuter();
     }
 
     protected PluginRegistry createPluginRegistry() {
@@ -20,13 +20,22 @@ import org.gradle.api.execution.TaskActionListener;
 import org.gradle.api.internal.changedetection.*;
 import org.gradle.internal.service.DefaultServiceRegistry;
 import org.gradle.api.internal.tasks.TaskExecuter;
+import org.gradle.api.internal.tasks.cache.LocalDirectoryTaskOutputCache;
+import org.gradle.api.internal.tasks.cache.TaskCacheKeyCalculator;
+import org.gradle.api.internal.tasks.cache.TaskOutputCache;
+import org.gradle.api.internal.tasks.cache.TaskOutputPacker;
 import org.gradle.api.internal.tasks.execution.*;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentCache;
+import org.gradle.execution.TaskDurationHistory;
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.listener.ListenerManager;
+import org.gradle.messaging.concurrent.ExecutorFactory;
 import org.gradle.util.RandomLongIdGenerator;
 
+import java.io.File;
+
 public class TaskExecutionServices extends DefaultServiceRegistry {
     private final Gradle gradle;
 
@@ -36,41 +45,78 @@ public class TaskExecutionServices extends DefaultServiceRegistry {
     }
 
     protected TaskExecuter createTaskExecuter() {
+        TaskExecuter executer = new ExecuteActionsTaskExecuter(
+                get(ListenerManager.class).getBroadcaster(TaskActionListener.class));
+        if (get(StartParameter.class).getParallelThreadCount() > 1) {
+            // Durations are used to schedule tasks for parallel execution
+            executer = new DurationRecordingTaskExecuter(executer, get(TaskDurationHistory.class));
+        }
+        executer = new CacheLockHandlingTaskExecuter(
+                new PostExecutionAnalysisTaskExecuter(executer),
+                get(TaskArtifactStateCacheAccess.class));
+        if (get(StartParameter.class).isBuildCacheEnabled()) {
+            executer = new SkipCachedTaskExecuter(
+                    executer,
+                    get(TaskOutputCache.class),
+                    new TaskCacheKeyCalculator(get(Hasher.class)),
+                    new TaskOutputPacker(),
+                    get(StartParameter.class));
+        }
         return new ExecuteAtMostOnceTaskExecuter(
                 new SkipOnlyIfTaskExecuter(
                         new SkipTaskWithNoActionsExecuter(
                                 new SkipEmptySourceFilesTaskExecuter(
                                         new ValidatingTaskExecuter(
                                                 new SkipUpToDateTaskExecuter(
-                                                        new CacheLockHandlingTaskExecuter(
-                                                                new PostExecutionAnalysisTaskExecuter(
-                                                                        new ExecuteActionsTaskExecuter(
-                                                                                get(ListenerManager.class).getBroadcaster(TaskActionListener.class))),
-                                                                get(TaskArtifactStateCacheAccess.class)),
+                                                        executer,
                                                         get(TaskArtifactStateRepository.class)))))));
     }
 
+    protected TaskOutputCache createTaskOutputCache() {
+        PersistentCache cache = get(CacheRepository.class)
+                .cache("taskOutputs")
+                .withDisplayName("task output cache")
+                .open();
+        // Keep the entries apart from the cache's own files, as the output cache removes whatever else is in its directory
+        return new LocalDirectoryTaskOutputCache(new File(cache.getBaseDir(), "entries"), LocalDirectoryTaskOutputCache.DEFAULT_MAX_SIZE);
+    }
+
     protected TaskArtifactStateCacheAccess createCacheAccess() {
         return new DefaultTaskArtifactStateCacheAccess(gradle, get(CacheRepository.class));
     }
 
+    protected TaskDurationHistory createTaskDurationHistory() {
+        return new CacheBackedTaskDurationHistory(get(TaskArtifactStateCacheAccess.class));
+    }
+
+    protected Hasher createHasher() {
+        String algorithm = System.getProperty(DefaultHasher.ALGORITHM_PROPERTY, DefaultHasher.DEFAULT_ALGORITHM);
+        Hasher hasher = new DefaultHasher(algorithm);
+        int parallelThreads = get(StartParameter.class).getParallelThreadCount();
+        if (parallelThreads > 1) {
+            hasher = new ParallelHasher(hasher, get(ExecutorFactory.class), parallelThreads);
+        }
+        return new CachingHasher(hasher, get(TaskArtifactStateCacheAccess.class), get(InMemoryFileHashCache.class));
+    }
+
+    protected TaskHistoryRepository createTaskHistoryRepository() {
+        TaskArtifactStateCacheAccess cacheAccess = get(TaskArtifactStateCacheAccess.class);
+        return new CacheBackedTaskHistoryRepository(cacheAccess, new CacheBackedFileSnapshotRepository(cacheAccess),
+                get(ExecutorFactory.class).create("Task history writer"));
+    }
+
     protected TaskArtifactStateRepository createTaskArtifactStateRepository() {
         TaskArtifactStateCacheAccess cacheAccess = get(TaskArtifactStateCacheAccess.class);
 
-        FileSnapshotter fileSnapshotter = new DefaultFileSnapshotter(
-                new CachingHasher(
-                        new DefaultHasher(),
-                        cacheAccess));
+        FileSnapshotter fileSnapshotter = new DefaultFileSnapshotter(get(Hasher.class));
 
         FileSnapshotter outputFilesSnapshotter = new OutputFilesSnapshotter(fileSnapshotter, new RandomLongIdGenerator(), cacheAccess);
 
-        TaskHistoryRepository taskHistoryRepository = new CacheBackedTaskHistoryRepository(cacheAccess, new CacheBackedFileSnapshotRepository(cacheAccess));
-
         return new FileCacheBroadcastTaskArtifactStateRepository(
                 new ShortCircuitTaskArtifactStateRepository(
                         get(StartParameter.class),
                         new DefaultTaskArtifactStateRepository(
-                                taskHistoryRepository,
+                                get(TaskHistoryRepository.class),
                                 fileSnapshotter,
                                 outputFilesSnapshotter)),
                 new DefaultFileCacheListener());
@@ -54,6 +54,7 @@ import org.gradle.messaging.concurrent.ExecutorFactory;
 import org.gradle.messaging.remote.MessagingServer;
 import org.gradle.process.internal.DefaultWorkerProcessFactory;
 import org.gradle.process.internal.WorkerProcessBuilder;
+import org.gradle.process.internal.WorkerProcessPool;
 import org.gradle.process.internal.child.WorkerProcessClassPathProvider;
 import org.gradle.util.*;
 
@@ -63,10 +64,22 @@ import org.gradle.util.*;
  */
 public class TopLevelBuildServiceRegistry extends DefaultServiceRegistry implements ServiceRegistryFactory {
     private final StartParameter startParameter;
+    private final WorkerProcessPool workerProcessPool;
 
     public TopLevelBuildServiceRegistry(final ServiceRegistry parent, final StartParameter startParameter) {
+        this(parent, startParameter, null);
+    }
+
+    /**
+     * Creates the services for a build which keeps its reusable worker processes in the given pool.
+     *
+     * @param workerProcessPool The pool to keep reusable worker processes in, or null to not reuse worker processes.
+     */
+    public TopLevelBuildServiceRegistry(final ServiceRegistry parent, final StartParameter startParameter,
+                                        final WorkerProcessPool workerProcessPool) {
         super(parent);
         this.startParameter = startParameter;
+        this.workerProcessPool = workerProcessPool;
         add(StartParameter.class, startParameter);
     }
 
@@ -207,7 +220,7 @@ public class TopLevelBuildServiceRegistry extends DefaultServiceRegistry impleme
     protected Factory<WorkerProcessBuilder> createWorkerProcessFactory() {
         ClassPathRegistry classPathRegistry = get(ClassPathRegistry.class);
         return new DefaultWorkerProcessFactory(startParameter.getLogLevel(), get(MessagingServer.class), classPathRegistry,
-                new IdentityFileResolver(), new LongIdGenerator());
+                new IdentityFileResolver(), new LongIdGenerator(), workerProcessPool);
     }
 
     protected BuildConfigurer createBuildConfigurer() {
@@ -24,6 +24,7 @@ import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.internal.tasks.execution.TaskValidator;
 import org.gradle.api.tasks.*;
+import org.gradle.api.tasks.incremental.IncrementalTaskInputs;
 import org.gradle.util.ReflectionUtil;
 
 import java.io.File;
@@ -133,11 +134,18 @@ public class AnnotationProcessingTaskFactory implements ITaskFactory {
             throw new GradleException(String.format("Cannot use @TaskAction annotation on static method %s.%s().",
                     method.getDeclaringClass().getSimpleName(), method.getName()));
         }
-        if (method.getParameterTypes().length > 0) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        if (parameterTypes.length > 1) {
             throw new GradleException(String.format(
-                    "Cannot use @TaskAction annotation on method %s.%s() as this method takes parameters.",
+                    "Cannot use @TaskAction annotation on method %s.%s() as this method takes multiple parameters.",
                     method.getDeclaringClass().getSimpleName(), method.getName()));
         }
+        final boolean incremental = parameterTypes.length == 1;
+        if (incremental && !parameterTypes[0].equals(IncrementalTaskInputs.class)) {
+            throw new GradleException(String.format(
+                    "Cannot use @TaskAction annotation on method %s.%s() because %s is not a valid parameter to an action method.",
+                    method.getDeclaringClass().getSimpleName(), method.getName(), parameterTypes[0]));
+        }
         if (methods.contains(method.getName())) {
             return;
         }
@@ -147,7 +155,12 @@ public class AnnotationProcessingTaskFactory implements ITaskFactory {
                 ClassLoader original = Thread.currentThread().getContextClassLoader();
                 Thread.currentThread().setContextClassLoader(method.getDeclaringClass().getClassLoader());
                 try {
-                    ReflectionUtil.invoke(task, method.getName());
+                    if (incremental) {
+                        IncrementalTaskInputs inputChanges = ((TaskInternal) task).getOutputs().getHistory().getInputChanges();
+                        ReflectionUtil.invoke(task, method.getName(), inputChanges);
+                    } else {
+                        ReflectionUtil.invoke(task, method.getName());
+                    }
                 } finally {
                     Thread.currentThread().setContextClassLoader(original);
                 }
@@ -74,10 +74,14 @@ public class DefaultTaskOutputs implements TaskOutputsInternal {
     }
 
     public FileCollection getPreviousFiles() {
+        return getHistory().getOutputFiles();
+    }
+
+    public TaskExecutionHistory getHistory() {
         if (history == null) {
             throw new IllegalStateException("Task history is currently not available for this task.");
         }
-        return history.getOutputFiles();
+        return history;
     }
 
     public void setHistory(TaskExecutionHistory history) {
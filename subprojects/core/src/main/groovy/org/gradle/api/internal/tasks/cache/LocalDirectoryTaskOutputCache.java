@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache;
+
+import org.gradle.api.Action;
+import org.gradle.api.UncheckedIOException;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A {@link TaskOutputCache} which keeps each entry in a file in a local directory. When the total size of the entries
+ * exceeds the maximum size, the least recently used entries are removed.
+ *
+ * <p>Entries are written to a temporary file and then renamed, so that the directory can be shared by multiple
+ * processes. Any other file in the directory is treated as an entry, so the directory should not be shared with anything
+ * other than another instance of this cache.</p>
+ */
+public class LocalDirectoryTaskOutputCache implements TaskOutputCache {
+    public static final long DEFAULT_MAX_SIZE = 5L * 1024 * 1024 * 1024;
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private final File directory;
+    private final long maxSize;
+
+    public LocalDirectoryTaskOutputCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+    }
+
+    public boolean load(String key, Action<? super InputStream> reader) {
+        File file = new File(directory, key);
+        InputStream inputStream;
+        try {
+            inputStream = new BufferedInputStream(new FileInputStream(file));
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+        try {
+            // Record the use of this entry, so that it is not evicted
+            file.setLastModified(System.currentTimeMillis());
+            reader.execute(inputStream);
+        } finally {
+            close(inputStream);
+        }
+        return true;
+    }
+
+    public void store(String key, Action<? super OutputStream> writer) {
+        File file = new File(directory, key);
+        File tempFile = null;
+        try {
+            directory.mkdirs();
+            tempFile = File.createTempFile("entry", TEMP_FILE_SUFFIX, directory);
+            OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(tempFile));
+            try {
+                writer.execute(outputStream);
+            } finally {
+                outputStream.close();
+            }
+            if (!tempFile.renameTo(file)) {
+                file.delete();
+                if (!tempFile.renameTo(file)) {
+                    throw new IOException(String.format("Could not rename %s to %s.", tempFile, file));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Removes the least recently used entries until the total size of the entries no longer exceeds the maximum size.
+     */
+    private void evict() {
+        File[] files = directory.listFiles(new FileFilter() {
+            public boolean accept(File file) {
+                return file.isFile() && !file.getName().endsWith(TEMP_FILE_SUFFIX);
+            }
+        });
+        if (files == null) {
+            return;
+        }
+        List<Entry> entries = new ArrayList<Entry>(files.length);
+        long totalSize = 0;
+        for (File file : files) {
+            Entry entry = new Entry(file);
+            entries.add(entry);
+            totalSize += entry.length;
+        }
+        if (totalSize <= maxSize) {
+            return;
+        }
+
+        Collections.sort(entries);
+        for (Entry entry : entries) {
+            if (totalSize <= maxSize) {
+                break;
+            }
+            if (entry.file.delete()) {
+                totalSize -= entry.length;
+            }
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class Entry implements Comparable<Entry> {
+        private final File file;
+        private final long length;
+        private final long lastModified;
+
+        private Entry(File file) {
+            this.file = file;
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+
+        public int compareTo(Entry other) {
+            if (lastModified == other.lastModified) {
+                return 0;
+            }
+            return lastModified < other.lastModified ? -1 : 1;
+        }
+    }
+}
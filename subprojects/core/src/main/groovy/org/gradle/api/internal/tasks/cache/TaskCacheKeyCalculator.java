@@ -0,0 +1,204 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache;
+
+import org.apache.commons.io.output.NullOutputStream;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.changedetection.Hasher;
+import org.gradle.internal.UncheckedException;
+import org.gradle.util.GradleVersion;
+import org.gradle.util.hash.HashValue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Calculates the key for the outputs of a task in the {@link TaskOutputCache}. The key is a hash of the Gradle version, the
+ * task implementation, the input properties, the contents of the input files and the locations of the output files.
+ *
+ * <p>The task implementation is made up of the task type and the contents of the classpath it was loaded from. Classes
+ * loaded by Gradle itself are covered by the Gradle version, so only the classpath of build script and plugin class
+ * loaders is hashed.</p>
+ *
+ * <p>Locations of files in the root project directory are made relative to that directory, so that a copy of the build
+ * in a different directory uses the same keys.</p>
+ *
+ * <p>All of the files which make up the key are hashed in one batch, so that the hasher can look up and hash them
+ * together.</p>
+ */
+public class TaskCacheKeyCalculator {
+    private final Hasher hasher;
+    private final String gradleVersion;
+    private final Set<ClassLoader> gradleClassLoaders = new HashSet<ClassLoader>();
+
+    public TaskCacheKeyCalculator(Hasher hasher) {
+        this(hasher, GradleVersion.current().getVersion());
+    }
+
+    TaskCacheKeyCalculator(Hasher hasher, String gradleVersion) {
+        this.hasher = hasher;
+        this.gradleVersion = gradleVersion;
+        for (ClassLoader classLoader = getClass().getClassLoader(); classLoader != null; classLoader = classLoader.getParent()) {
+            gradleClassLoaders.add(classLoader);
+        }
+    }
+
+    /**
+     * Returns the key for the outputs of the given task, or null if the outputs of the task cannot be cached.
+     */
+    public String calculateKey(TaskInternal task) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw UncheckedException.asUncheckedException(e);
+        }
+        File rootDir = task.getProject().getRootProject().getProjectDir();
+
+        try {
+            List<Object> implementation = new ArrayList<Object>();
+            collectImplementation(task.getClass(), implementation);
+
+            SortedMap<String, File> inputFiles = new TreeMap<String, File>();
+            for (File file : task.getInputs().getFiles().getAsFileTree()) {
+                inputFiles.put(relativePath(rootDir, file), file);
+            }
+
+            List<File> files = new ArrayList<File>();
+            for (Object part : implementation) {
+                if (part instanceof File) {
+                    files.add((File) part);
+                }
+            }
+            files.addAll(inputFiles.values());
+            Iterator<byte[]> hashes = hasher.hash(files).iterator();
+
+            ObjectOutputStream output = new ObjectOutputStream(new DigestOutputStream(new NullOutputStream(), digest));
+            output.writeUTF(gradleVersion);
+            for (Object part : implementation) {
+                if (part instanceof File) {
+                    output.write(hashes.next());
+                } else if (part instanceof Integer) {
+                    output.writeInt((Integer) part);
+                } else {
+                    output.writeUTF((String) part);
+                }
+            }
+
+            SortedMap<String, Object> inputProperties = new TreeMap<String, Object>(task.getInputs().getProperties());
+            output.writeInt(inputProperties.size());
+            for (Map.Entry<String, Object> entry : inputProperties.entrySet()) {
+                output.writeUTF(entry.getKey());
+                output.writeObject(entry.getValue());
+            }
+
+            output.writeInt(inputFiles.size());
+            for (String path : inputFiles.keySet()) {
+                output.writeUTF(path);
+                output.write(hashes.next());
+            }
+
+            output.writeInt(task.getOutputs().getFiles().getFiles().size());
+            for (File file : task.getOutputs().getFiles()) {
+                output.writeUTF(relativePath(rootDir, file));
+            }
+            output.close();
+        } catch (NotSerializableException e) {
+            // An input property cannot be hashed
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new HashValue(digest.digest()).asHexString();
+    }
+
+    /**
+     * Collects the parts which make up the implementation of the given type: names as strings, counts as integers and
+     * the files whose contents are to be hashed.
+     */
+    private void collectImplementation(Class<?> type, List<Object> parts) {
+        parts.add(type.getName());
+        Set<ClassLoader> visited = new HashSet<ClassLoader>();
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (ClassLoader classLoader = current.getClassLoader(); classLoader != null && !gradleClassLoaders.contains(classLoader) && visited.add(classLoader); classLoader = classLoader.getParent()) {
+                if (classLoader instanceof URLClassLoader) {
+                    for (URL url : ((URLClassLoader) classLoader).getURLs()) {
+                        collectClasspathEntry(url, parts);
+                    }
+                }
+            }
+        }
+    }
+
+    private void collectClasspathEntry(URL url, List<Object> parts) {
+        if (!url.getProtocol().equals("file")) {
+            parts.add(url.toString());
+            return;
+        }
+        File file;
+        try {
+            file = new File(url.toURI());
+        } catch (URISyntaxException e) {
+            throw UncheckedException.asUncheckedException(e);
+        }
+        if (file.isFile()) {
+            parts.add(file);
+        } else if (file.isDirectory()) {
+            SortedMap<String, File> files = new TreeMap<String, File>();
+            collectFiles(file, "", files);
+            parts.add(files.size());
+            for (Map.Entry<String, File> entry : files.entrySet()) {
+                parts.add(entry.getKey());
+                parts.add(entry.getValue());
+            }
+        }
+    }
+
+    private void collectFiles(File dir, String prefix, Map<String, File> files) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            String path = prefix + child.getName();
+            if (child.isDirectory()) {
+                collectFiles(child, path + "/", files);
+            } else {
+                files.put(path, child);
+            }
+        }
+    }
+
+    private String relativePath(File rootDir, File file) {
+        String rootPath = rootDir.getAbsolutePath() + File.separator;
+        String path = file.getAbsolutePath();
+        if (path.startsWith(rootPath)) {
+            return path.substring(rootPath.length()).replace(File.separatorChar, '/');
+        }
+        return path;
+    }
+}
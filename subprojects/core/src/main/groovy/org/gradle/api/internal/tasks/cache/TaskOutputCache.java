@@ -0,0 +1,40 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache;
+
+import org.gradle.api.Action;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * A store of task outputs, keyed by a hash of the task inputs.
+ */
+public interface TaskOutputCache {
+    /**
+     * Loads the entry with the given key, if present, passing its content to the given reader.
+     *
+     * @return true if the entry was found, false if not.
+     */
+    boolean load(String key, Action<? super InputStream> reader);
+
+    /**
+     * Stores an entry with the given key, using the given writer to write its content. Replaces any existing entry with the
+     * given key.
+     */
+    void store(String key, Action<? super OutputStream> writer);
+}
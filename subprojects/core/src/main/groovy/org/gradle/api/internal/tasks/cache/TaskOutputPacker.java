@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.cache;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.util.GFileUtils;
+
+import java.io.*;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Packs the output files of a task into a zip archive, and unpacks them again. The contents of each output file or
+ * directory are stored under an entry named for the index of the output in the list of outputs.
+ */
+public class TaskOutputPacker {
+    public void pack(List<File> outputs, OutputStream outputStream) {
+        try {
+            ZipOutputStream zipOutput = new ZipOutputStream(outputStream);
+            for (int i = 0; i < outputs.size(); i++) {
+                File output = outputs.get(i);
+                if (output.isFile()) {
+                    packFile(output, String.valueOf(i), zipOutput);
+                } else if (output.isDirectory()) {
+                    packDirectory(output, i + "/", zipOutput);
+                }
+            }
+            zipOutput.finish();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void packDirectory(File dir, String entryName, ZipOutputStream zipOutput) throws IOException {
+        zipOutput.putNextEntry(new ZipEntry(entryName));
+        zipOutput.closeEntry();
+        File[] children = dir.listFiles();
+        Arrays.sort(children);
+        for (File child : children) {
+            if (child.isDirectory()) {
+                packDirectory(child, entryName + child.getName() + "/", zipOutput);
+            } else {
+                packFile(child, entryName + child.getName(), zipOutput);
+            }
+        }
+    }
+
+    private void packFile(File file, String entryName, ZipOutputStream zipOutput) throws IOException {
+        ZipEntry entry = new ZipEntry(entryName);
+        entry.setTime(file.lastModified());
+        zipOutput.putNextEntry(entry);
+        InputStream inputStream = new FileInputStream(file);
+        try {
+            IOUtils.copy(inputStream, zipOutput);
+        } finally {
+            inputStream.close();
+        }
+        zipOutput.closeEntry();
+    }
+
+    /**
+     * Replaces the given outputs with the contents of the given archive. Outputs which are not present in the archive are
+     * removed. Removes all of the outputs if the archive cannot be unpacked.
+     */
+    public void unpack(List<File> outputs, InputStream inputStream) {
+        delete(outputs);
+        try {
+            ZipInputStream zipInput = new ZipInputStream(inputStream);
+            ZipEntry entry;
+            while ((entry = zipInput.getNextEntry()) != null) {
+                unpackEntry(outputs, entry, zipInput);
+            }
+        } catch (IOException e) {
+            delete(outputs);
+            throw new UncheckedIOException(e);
+        } catch (RuntimeException e) {
+            delete(outputs);
+            throw e;
+        }
+    }
+
+    private void unpackEntry(List<File> outputs, ZipEntry entry, ZipInputStream zipInput) throws IOException {
+        String name = entry.getName();
+        int separator = name.indexOf('/');
+        File output = outputs.get(Integer.parseInt(separator < 0 ? name : name.substring(0, separator)));
+        File target = separator < 0 ? output : new File(output, name.substring(separator + 1));
+        if (!isWithin(target, output)) {
+            throw new IOException(String.format("Cannot unpack entry '%s' as it is outside of output %s.", name, output));
+        }
+        if (entry.isDirectory()) {
+            target.mkdirs();
+            return;
+        }
+        target.getParentFile().mkdirs();
+        OutputStream outputStream = new FileOutputStream(target);
+        try {
+            IOUtils.copy(zipInput, outputStream);
+        } finally {
+            outputStream.close();
+        }
+        target.setLastModified(entry.getTime());
+    }
+
+    private boolean isWithin(File target, File output) throws IOException {
+        String outputPath = output.getCanonicalPath();
+        String targetPath = target.getCanonicalPath();
+        return targetPath.equals(outputPath) || targetPath.startsWith(outputPath + File.separator);
+    }
+
+    private void delete(List<File> outputs) {
+        for (File output : outputs) {
+            if (output.isDirectory()) {
+                GFileUtils.deleteDirectory(output);
+            } else {
+                output.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.execution;
+
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.tasks.TaskExecuter;
+import org.gradle.api.internal.tasks.TaskStateInternal;
+import org.gradle.execution.TaskDurationHistory;
+
+/**
+ * A {@link TaskExecuter} which records how long the actions of a task take to execute. Tasks whose actions fail are not recorded.
+ */
+public class DurationRecordingTaskExecuter implements TaskExecuter {
+    private final TaskExecuter executer;
+    private final TaskDurationHistory durationHistory;
+
+    public DurationRecordingTaskExecuter(TaskExecuter executer, TaskDurationHistory durationHistory) {
+        this.executer = executer;
+        this.durationHistory = durationHistory;
+    }
+
+    public void execute(TaskInternal task, TaskStateInternal state) {
+        long start = System.currentTimeMillis();
+        executer.execute(task, state);
+        if (state.getFailure() == null) {
+            durationHistory.recordDuration(task, System.currentTimeMillis() - start);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.execution;
+
+import org.gradle.StartParameter;
+import org.gradle.api.Action;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.api.internal.tasks.TaskExecuter;
+import org.gradle.api.internal.tasks.TaskStateInternal;
+import org.gradle.api.internal.tasks.cache.TaskCacheKeyCalculator;
+import org.gradle.api.internal.tasks.cache.TaskOutputCache;
+import org.gradle.api.internal.tasks.cache.TaskOutputPacker;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link TaskExecuter} which restores the outputs of a task from the {@link TaskOutputCache} when the task has previously
+ * executed with the same inputs, and otherwise stores the outputs of the task in the cache once it has executed.
+ *
+ * <p>Outputs are not restored when the build is run with {@code --rerun-tasks}, though they are still stored. Tasks whose
+ * outputs are never up-to-date, as declared using {@link org.gradle.api.tasks.TaskOutputs#upToDateWhen}, do not use the
+ * cache at all.</p>
+ */
+public class SkipCachedTaskExecuter implements TaskExecuter {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SkipCachedTaskExecuter.class);
+    private final TaskExecuter executer;
+    private final TaskOutputCache cache;
+    private final TaskCacheKeyCalculator keyCalculator;
+    private final TaskOutputPacker packer;
+    private final StartParameter startParameter;
+
+    public SkipCachedTaskExecuter(TaskExecuter executer, TaskOutputCache cache, TaskCacheKeyCalculator keyCalculator, TaskOutputPacker packer, StartParameter startParameter) {
+        this.executer = executer;
+        this.startParameter = startParameter;
+        this.cache = cache;
+        this.keyCalculator = keyCalculator;
+        this.packer = packer;
+    }
+
+    public void execute(TaskInternal task, TaskStateInternal state) {
+        String key = isCacheable(task) ? keyCalculator.calculateKey(task) : null;
+        if (key == null) {
+            LOGGER.debug("Not using the task output cache for {}, as its outputs cannot be cached.", task);
+            executer.execute(task, state);
+            return;
+        }
+
+        final List<File> outputs = new ArrayList<File>(task.getOutputs().getFiles().getFiles());
+        if (startParameter.isNoOpt()) {
+            LOGGER.debug("Not restoring the outputs of {} from the task output cache, as tasks are being rerun.", task);
+        } else if (load(task, state, key, outputs)) {
+            return;
+        }
+
+        executer.execute(task, state);
+
+        if (state.getFailure() != null || state.getSkipped()) {
+            return;
+        }
+        try {
+            cache.store(key, new Action<OutputStream>() {
+                public void execute(OutputStream outputStream) {
+                    packer.pack(outputs, outputStream);
+                }
+            });
+        } catch (Exception e) {
+            LOGGER.warn(String.format("Could not store the outputs of %s in the task output cache.", task), e);
+        }
+    }
+
+    private boolean isCacheable(TaskInternal task) {
+        return task.getOutputs().getHasOutput() && task.getOutputs().getUpToDateSpec().isSatisfiedBy(task);
+    }
+
+    private boolean load(TaskInternal task, TaskStateInternal state, String key, final List<File> outputs) {
+        try {
+            boolean found = cache.load(key, new Action<InputStream>() {
+                public void execute(InputStream inputStream) {
+                    packer.unpack(outputs, inputStream);
+                }
+            });
+            if (found) {
+                LOGGER.info("Restored the outputs of {} from the task output cache.", task);
+                state.skipped("FROM-CACHE");
+                return true;
+            }
+        } catch (Exception e) {
+            LOGGER.warn(String.format("Could not restore the outputs of %s from the task output cache.", task), e);
+        }
+        return false;
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.tasks.incremental;
+
+import org.gradle.api.Action;
+
+/**
+ * Provides access to any input files that need to be processed by an incremental task.
+ * <p>
+ * An incremental task action is one that accepts a single {@link IncrementalTaskInputs} parameter.
+ * The task can then provide an action to execute for all input files that are out of date with respect to the previous execution of the task,
+ * and a separate action for all input files that have been removed since the previous execution.
+ *
+ * <pre autoTested="true">
+ * class IncrementalReverseTask extends DefaultTask {
+ *     {@literal @}InputDirectory
+ *     def File inputDir
+ *
+ *     {@literal @}OutputDirectory
+ *     def File outputDir
+ *
+ *     {@literal @}TaskAction
+ *     void execute(IncrementalTaskInputs inputs) {
+ *         if (!inputs.incremental) {
+ *             project.delete(outputDir.listFiles())
+ *         }
+ *
+ *         inputs.outOfDate { change ->
+ *             def targetFile = project.file("$outputDir/${change.file.name}")
+ *             targetFile.text = change.file.text.reverse()
+ *         }
+ *
+ *         inputs.removed { change ->
+ *             def targetFile = project.file("$outputDir/${change.file.name}")
+ *             targetFile.delete()
+ *         }
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>
+ * In the case where Gradle is unable to determine which input files need to be reprocessed, then all of the input files will be reported as out-of-date,
+ * and {@link #isIncremental()} returns false. Cases where this occurs include:
+ * <ul>
+ *     <li>There is no history available from a previous execution.</li>
+ *     <li>An {@link org.gradle.api.tasks.TaskOutputs#upToDateWhen(groovy.lang.Closure)} criteria added to the task returns <code>false</code>.</li>
+ *     <li>An input property has changed since the previous execution.</li>
+ *     <li>One or more output files have changed since the previous execution.</li>
+ *     <li>The task has not declared any outputs.</li>
+ *     <li>The build is run with <code>--rerun-tasks</code>.</li>
+ * </ul>
+ * In these cases the task should discard any outputs of previous executions before processing the input files.
+ */
+public interface IncrementalTaskInputs {
+    /**
+     * Indicates if it was possible for Gradle to determine which input files were out of date compared to a previous execution.
+     * When this is false, all input files are considered out of date and none are reported as removed.
+     *
+     * @return true if the execution is incremental, false otherwise.
+     */
+    boolean isIncremental();
+
+    /**
+     * Executes the action for all of the input files that are out-of-date since the previous task execution. The action is executed
+     * for each input file which has been added or modified since the previous execution. When the execution is not incremental,
+     * the action is executed for every input file.
+     *
+     * @param outOfDateAction The action to execute for each out-of-date input file.
+     */
+    void outOfDate(Action<? super InputFileDetails> outOfDateAction);
+
+    /**
+     * Executes the action for all of the input files that were removed since the previous task execution. The action is never
+     * executed when the execution is not incremental.
+     *
+     * @param removedAction The action to execute for each removed input file.
+     */
+    void removed(Action<? super InputFileDetails> removedAction);
+}
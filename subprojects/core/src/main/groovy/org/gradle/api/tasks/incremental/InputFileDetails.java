@@ -0,0 +1,44 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.tasks.incremental;
+
+import java.io.File;
+
+/**
+ * A change to an input file, passed to the actions of an {@link IncrementalTaskInputs}.
+ */
+public interface InputFileDetails {
+    /**
+     * Was the file added since the previous execution? Every input file is reported as added when the execution is not incremental.
+     */
+    boolean isAdded();
+
+    /**
+     * Was the file modified since the previous execution?
+     */
+    boolean isModified();
+
+    /**
+     * Was the file removed since the previous execution?
+     */
+    boolean isRemoved();
+
+    /**
+     * The input file, which may no longer exist.
+     */
+    File getFile();
+}
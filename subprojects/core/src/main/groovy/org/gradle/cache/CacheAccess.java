@@ -37,9 +37,19 @@ public interface CacheAccess {
      */
     void useCache(String operationDisplayName, Runnable action);
 
+    /**
+     * Performs a batch of updates against the cache. Behaves like {@link #useCache(String, Runnable)}, except that the cache is marked as
+     * being updated once for the whole batch rather than once for each update. If the process crashes part way through the batch, the
+     * cache is treated as uncleanly unlocked.
+     *
+     * <p>This method is re-entrant, so that an action can call back into this method.</p>
+     */
+    void batchUpdate(String operationDisplayName, Runnable action);
+
     /**
      * Performs some long running operation within an action invoked by {@link #useCache(String, org.gradle.internal.Factory)}. Releases all
-     * locks while the operation is running, and reacquires the locks at the end of the long running operation.
+     * locks while the operation is running, and reacquires the locks at the end of the long running operation. Other threads may use the
+     * cache while the operation is running. When the calling thread does not hold the cache, runs the operation without any locking.
      *
      * <p>This method is re-entrant, so that an action can call back into this method.</p>
      */
@@ -47,7 +57,8 @@ public interface CacheAccess {
 
     /**
      * Performs some long running operation within an action invoked by {@link #useCache(String, org.gradle.internal.Factory)}. Releases all
-     * locks while the operation is running, and reacquires the locks at the end of the long running operation.
+     * locks while the operation is running, and reacquires the locks at the end of the long running operation. Other threads may use the
+     * cache while the operation is running. When the calling thread does not hold the cache, runs the operation without any locking.
      *
      * <p>This method is re-entrant, so that an action can call back into this method.</p>
      */
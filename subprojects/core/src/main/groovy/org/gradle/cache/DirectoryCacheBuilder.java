@@ -39,6 +39,24 @@ public interface DirectoryCacheBuilder extends CacheBuilder<PersistentCache> {
      */
     DirectoryCacheBuilder withLockMode(FileLockManager.LockMode lockMode);
 
+    /**
+     * Specifies that the contents of this cache can recover from a process which dies while updating the cache, and so the cache should be
+     * kept when it was not closed cleanly. This should only be used when the cache contains only indexed caches created using {@link
+     * PersistentCache#createCache}, whose files are journaled.
+     *
+     * <p>Each indexed cache is journaled on its own, so indexed caches which refer to each other's entries may disagree after a crash. The
+     * given action is executed when the cache was not closed cleanly, to bring them back in line. An exclusive lock is held while the action
+     * is executing.</p>
+     */
+    DirectoryCacheBuilder withCrashRecovery(Action<? super PersistentCache> recoveryAction);
+
+    /**
+     * Specifies that the indexed caches created using {@link PersistentCache#createCache} should access their files through a memory
+     * mapping, rather than reading and writing the files for each block. The files of such caches are not journaled, so this cannot be
+     * combined with {@link #withCrashRecovery(Action)}.
+     */
+    DirectoryCacheBuilder withMappedFiles();
+
     /**
      * Specifies an action to execute to initialize the cache contents, if the cache does not exist or is invalid. An exclusive lock is held while the initializer is executing, to prevent
      * cross-process access.
@@ -15,6 +15,11 @@
  */
 package org.gradle.cache;
 
+import org.gradle.api.Action;
+
+import java.util.Collection;
+import java.util.Map;
+
 /**
  * A persistent store of objects of type V indexed by a key of type K.
  */
@@ -26,13 +31,32 @@ public interface PersistentIndexedCache<K, V> {
      */
     V get(K key);
 
+    /**
+     * Fetches the values of the given keys from this cache. A shared or exclusive lock is held while fetching the values, depending on
+     * implementation.
+     *
+     * @return The values, indexed by key. Keys with no associated value are not included.
+     */
+    Map<K, V> getAll(Collection<? extends K> keys);
+
     /**
      * Puts/replaces the value of a key in this cache. A shared lock is held while updating the value.
      */
     void put(K key, V value);
 
+    /**
+     * Puts/replaces the values of the given keys in this cache. A shared lock is held while updating the values.
+     */
+    void putAll(Map<? extends K, ? extends V> entries);
+
     /**
      * Removes a key-value mapping from this cache. A shared lock is held while updating the value.
      */
     void remove(K key);
+
+    /**
+     * Visits every entry in this cache, in no particular order. A shared or exclusive lock is held while visiting the entries, depending
+     * on implementation. The action must not modify this cache.
+     */
+    void visitEntries(Action<? super Map.Entry<K, V>> action);
 }
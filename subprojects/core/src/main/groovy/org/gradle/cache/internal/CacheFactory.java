@@ -21,14 +21,21 @@ import org.gradle.cache.*;
 import org.gradle.cache.internal.FileLockManager.LockMode;
 
 import java.io.File;
+import java.util.List;
 import java.util.Map;
 
 public interface CacheFactory {
     PersistentCache openStore(File storeDir, String displayName, LockMode lockMode, Action<? super PersistentCache> initializer) throws CacheOpenException;
 
-    PersistentCache open(File cacheDir, String displayName, CacheUsage usage, Map<String, ?> properties, LockMode lockMode, Action<? super PersistentCache> initializer) throws CacheOpenException;
+    PersistentCache open(File cacheDir, String displayName, CacheUsage usage, Map<String, ?> properties, LockMode lockMode, Action<? super PersistentCache> recoveryAction, boolean mappedFiles, Action<? super PersistentCache> initializer) throws CacheOpenException;
 
     <E> PersistentStateCache<E> openStateCache(File cacheDir, CacheUsage usage, Map<String, ?> properties, LockMode lockMode, Serializer<E> serializer) throws CacheOpenException;
 
     <K, V> PersistentIndexedCache<K, V> openIndexedCache(File cacheDir, CacheUsage usage, Map<String, ?> properties, LockMode lockMode, Serializer<V> serializer) throws CacheOpenException;
+
+    /**
+     * Returns the block cache statistics of the indexed caches in the caches opened through this factory, including those which have
+     * since been closed.
+     */
+    List<IndexedCacheStatistics> getIndexedCacheStatistics();
 }
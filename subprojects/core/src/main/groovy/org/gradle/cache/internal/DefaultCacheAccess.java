@@ -22,44 +22,73 @@ import org.gradle.cache.DefaultSerializer;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.Serializer;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.btree.BlockStore;
+import org.gradle.cache.internal.btree.FileBackedBlockStore;
+import org.gradle.cache.internal.btree.MappedFileBlockStore;
 import org.gradle.internal.UncheckedException;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static org.gradle.cache.internal.FileLockManager.LockMode.Exclusive;
+import static org.gradle.cache.internal.FileLockManager.LockMode.None;
+import static org.gradle.cache.internal.FileLockManager.LockMode.Shared;
 
 @ThreadSafe
 public class DefaultCacheAccess implements CacheAccess {
     private final String cacheDiplayName;
     private final File lockFile;
     private final FileLockManager lockManager;
+    private final boolean mappedFiles;
     private final FileAccess fileAccess = new UnitOfWorkFileAccess();
     private final Set<MultiProcessSafePersistentIndexedCache<?, ?>> caches = new HashSet<MultiProcessSafePersistentIndexedCache<?, ?>>();
+    private final Map<File, IndexedCacheStatistics> statistics = new LinkedHashMap<File, IndexedCacheStatistics>();
     private final Lock lock = new ReentrantLock();
     private final Condition condition = lock.newCondition();
     private Thread owner;
     private FileLockManager.LockMode lockMode;
     private FileLock fileLock;
+    private FileLockManager.LockMode fileLockMode;
+    private final Runnable whenContended = new Runnable() {
+        public void run() {
+            releaseLockIfIdle();
+        }
+    };
     private boolean started;
     private final List<String> operationStack = new ArrayList<String>();
+    private final ThreadLocal<LongRunningOperation> longRunningOperation = new ThreadLocal<LongRunningOperation>();
 
     public DefaultCacheAccess(String cacheDisplayName, File lockFile, FileLockManager lockManager) {
+        this(cacheDisplayName, lockFile, lockManager, false);
+    }
+
+    /**
+     * @param mappedFiles true if the indexed caches should access their files through a memory mapping, using a {@link MappedFileBlockStore}.
+     */
+    public DefaultCacheAccess(String cacheDisplayName, File lockFile, FileLockManager lockManager, boolean mappedFiles) {
         this.cacheDiplayName = cacheDisplayName;
         this.lockFile = lockFile;
         this.lockManager = lockManager;
+        this.mappedFiles = mappedFiles;
     }
 
     /**
      * Opens this cache access with the given lock mode. Calling this with {@link org.gradle.cache.internal.FileLockManager.LockMode#Exclusive} will
      * lock the cache for exclusive access from all other threads (including those in this process and all other processes), until
      * {@link #close()} is called.
+     *
+     * <p>Calling this with {@link org.gradle.cache.internal.FileLockManager.LockMode#None} will lock the cache on demand, when it is first
+     * used in a cache action. The cache is locked with a shared lock to read from it, so that multiple processes can read from the cache
+     * concurrently, and an exclusive lock to write to it. The lock and the caches are kept open across cache actions until another process
+     * asks for the lock, or {@link #close()} is called.</p>
      */
     public void open(FileLockManager.LockMode lockMode) {
         lock.lock();
@@ -68,11 +97,12 @@ public class DefaultCacheAccess implements CacheAccess {
                 throw new IllegalStateException(String.format("Cannot open the %s, as it is already in use.", cacheDiplayName));
             }
             this.lockMode = lockMode;
-            if (lockMode == FileLockManager.LockMode.None) {
+            if (lockMode == None) {
                 return;
             }
             started = true;
             fileLock = lockManager.lock(lockFile, lockMode, cacheDiplayName);
+            fileLockMode = lockMode;
             lockCache(String.format("Access %s", cacheDiplayName));
         } finally {
             lock.unlock();
@@ -82,6 +112,12 @@ public class DefaultCacheAccess implements CacheAccess {
     public void close() {
         lock.lock();
         try {
+            if (lockMode == None && fileLock != null) {
+                // Close the caches left open by the last cache action while the lock is still held
+                owner = Thread.currentThread();
+                operationStack.add(0, String.format("Close %s", cacheDiplayName));
+                started = true;
+            }
             for (MultiProcessSafePersistentIndexedCache<?, ?> cache : caches) {
                 cache.close();
             }
@@ -94,6 +130,7 @@ public class DefaultCacheAccess implements CacheAccess {
                     fileLock.close();
                 } finally {
                     fileLock = null;
+                    fileLockMode = null;
                 }
             }
         } finally {
@@ -114,11 +151,15 @@ public class DefaultCacheAccess implements CacheAccess {
         });
     }
 
-    public <T> T useCache(String operationDisplayName, Factory<? extends T> action) {
-        if (lockMode == FileLockManager.LockMode.Shared) {
-            throw new UnsupportedOperationException("Not implemented yet.");
-        }
+    public void batchUpdate(String operationDisplayName, final Runnable action) {
+        useCache(operationDisplayName, new Runnable() {
+            public void run() {
+                fileAccess.writeToFile(action);
+            }
+        });
+    }
 
+    public <T> T useCache(String operationDisplayName, Factory<? extends T> action) {
         lockCache(operationDisplayName);
         try {
             boolean wasStarted = onStartWork();
@@ -127,6 +168,8 @@ public class DefaultCacheAccess implements CacheAccess {
             } finally {
                 if (wasStarted) {
                     onEndWork();
+                } else {
+                    releaseLockIfContended();
                 }
             }
         } finally {
@@ -165,33 +208,67 @@ public class DefaultCacheAccess implements CacheAccess {
     }
 
     public <T> T longRunningOperation(String operationDisplayName, Factory<? extends T> action) {
-        startLongRunningOperation();
+        if (!isLockedByCurrentThread()) {
+            // Nothing to release
+            return action.create();
+        }
+
+        LongRunningOperation operation = startLongRunningOperation();
         try {
-            boolean wasEnded = onEndWork();
-            try {
-                return action.create();
-            } finally {
-                if (wasEnded) {
-                    onStartWork();
-                }
-            }
+            return action.create();
+        } finally {
+            endLongRunningOperation(operation);
+        }
+    }
+
+    private boolean isLockedByCurrentThread() {
+        lock.lock();
+        try {
+            return owner == Thread.currentThread();
         } finally {
-            endLongRunningOperation();
+            lock.unlock();
         }
     }
 
-    private void startLongRunningOperation() {
+    private LongRunningOperation startLongRunningOperation() {
         lock.lock();
         try {
             if (owner != Thread.currentThread()) {
                 throw new IllegalStateException(String.format("Cannot start long running operation, as the %s has not been locked.", cacheDiplayName));
             }
+            boolean wasEnded = onEndWork();
+            LongRunningOperation operation = new LongRunningOperation(longRunningOperation.get(), operationStack, wasEnded);
+            longRunningOperation.set(operation);
+
+            // Release the cache so that other threads can use it while this operation runs
+            operationStack.clear();
+            owner = null;
+            condition.signalAll();
+            return operation;
         } finally {
             lock.unlock();
         }
     }
 
-    private void endLongRunningOperation() {
+    private void endLongRunningOperation(LongRunningOperation operation) {
+        lock.lock();
+        try {
+            while (owner != null) {
+                try {
+                    condition.await();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.asUncheckedException(e);
+                }
+            }
+            owner = Thread.currentThread();
+            operationStack.addAll(operation.suspendedOperations);
+            longRunningOperation.set(operation.outer);
+            if (operation.wasEnded) {
+                onStartWork();
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     public void longRunningOperation(String operationDisplayName, final Runnable action) {
@@ -213,7 +290,7 @@ public class DefaultCacheAccess implements CacheAccess {
                 return doCreateCache(cacheFile, new DefaultSerializer<K>(keyType.getClassLoader()), valueSerializer);
             }
         };
-        MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new MultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess);
+        MultiProcessSafePersistentIndexedCache<K, V> indexedCache = new MultiProcessSafePersistentIndexedCache<K, V>(indexedCacheFactory, fileAccess, cacheFile);
         lock.lock();
         try {
             caches.add(indexedCache);
@@ -227,7 +304,39 @@ public class DefaultCacheAccess implements CacheAccess {
     }
 
     <K, V> BTreePersistentIndexedCache<K, V> doCreateCache(final File cacheFile, final Serializer<K> keySerializer, final Serializer<V> valueSerializer) {
-        return new BTreePersistentIndexedCache<K, V>(cacheFile, keySerializer, valueSerializer);
+        IndexedCacheStatistics cacheStatistics = getStatistics(cacheFile);
+        BlockStore store = mappedFiles ? new MappedFileBlockStore(cacheFile) : new FileBackedBlockStore(cacheFile);
+        return new BTreePersistentIndexedCache<K, V>(cacheFile, store, keySerializer, valueSerializer,
+                BTreePersistentIndexedCache.DEFAULT_MAX_CHILD_INDEX_ENTRIES, BTreePersistentIndexedCache.DEFAULT_MAX_FREE_LIST_ENTRIES,
+                BTreePersistentIndexedCache.DEFAULT_INDEX_CACHE_BYTES, BTreePersistentIndexedCache.DEFAULT_DATA_CACHE_BYTES,
+                cacheStatistics.getIndexCacheStatistics(), cacheStatistics.getDataCacheStatistics());
+    }
+
+    private IndexedCacheStatistics getStatistics(File cacheFile) {
+        lock.lock();
+        try {
+            IndexedCacheStatistics cacheStatistics = statistics.get(cacheFile);
+            if (cacheStatistics == null) {
+                cacheStatistics = new IndexedCacheStatistics(cacheFile);
+                statistics.put(cacheFile, cacheStatistics);
+            }
+            return cacheStatistics;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the block cache statistics of each indexed cache which has been opened, counted since this cache access was created. The
+     * indexed caches are closed and reopened as the lock is released and reacquired, so this covers every time they were opened.
+     */
+    public List<IndexedCacheStatistics> getIndexedCacheStatistics() {
+        lock.lock();
+        try {
+            return new ArrayList<IndexedCacheStatistics>(statistics.values());
+        } finally {
+            lock.unlock();
+        }
     }
 
     private boolean onStartWork() {
@@ -248,20 +357,29 @@ public class DefaultCacheAccess implements CacheAccess {
         }
 
         try {
-            for (MultiProcessSafePersistentIndexedCache<?, ?> cache : caches) {
-                cache.onEndWork();
-            }
-            if (fileLock != null) {
-                fileLock.close();
+            if (lockMode == None) {
+                // Keep the lock and the caches open for the next cache action, unless another process wants to use the cache
+                releaseLockIfContended();
+            } else {
+                for (MultiProcessSafePersistentIndexedCache<?, ?> cache : caches) {
+                    cache.onEndWork();
+                }
+                if (fileLock != null) {
+                    releaseFileLock();
+                }
             }
         } finally {
             started = false;
-            fileLock = null;
         }
         return true;
     }
 
-    private FileLock getLock() {
+    /**
+     * Returns the file lock for the current unit of work, acquiring it if required. When the initial lock mode is none, a shared lock is
+     * acquired to read from the caches and an exclusive lock is acquired to write to them. The lock is held until another process asks
+     * for it at the end of a cache action, and is then reacquired on the next cache operation.
+     */
+    private FileLock getLock(FileLockManager.LockMode mode) {
         lock.lock();
         try {
             if (Thread.currentThread() != owner || !started) {
@@ -270,19 +388,97 @@ public class DefaultCacheAccess implements CacheAccess {
         } finally {
             lock.unlock();
         }
+        if (lockMode != None) {
+            if (fileLock == null) {
+                fileLock = lockManager.lock(lockFile, Exclusive, cacheDiplayName, operationStack.get(0));
+                fileLockMode = Exclusive;
+            }
+            return fileLock;
+        }
+        if (fileLock != null && fileLockMode == Shared && mode == Exclusive) {
+            // The shared lock is released to escalate it, so another process may write to the caches in the meantime. Release the caches,
+            // so that they are reopened with the contents written by that process
+            releaseLock();
+        }
         if (fileLock == null) {
-            fileLock = lockManager.lock(lockFile, Exclusive, cacheDiplayName, operationStack.get(0));
+            fileLock = lockManager.lock(lockFile, mode, cacheDiplayName, operationStack.get(0), whenContended);
+            fileLockMode = mode;
         }
         return fileLock;
     }
 
+    /**
+     * Releases the file lock if another process has asked for it, so that the other process can use the cache. This happens at the end
+     * of a cache action, where no cache operation is in progress. The lock is reacquired on the next cache operation.
+     */
+    private void releaseLockIfContended() {
+        if (lockMode != None || fileLock == null || !fileLock.isContended()) {
+            return;
+        }
+        releaseLock();
+    }
+
+    /**
+     * Releases the file lock straight away when another process asks for it while no cache action is running, such as between tasks or
+     * while a long running operation runs. Otherwise, the lock is released at the end of the current cache action.
+     */
+    private void releaseLockIfIdle() {
+        lock.lock();
+        try {
+            if (owner != null || lockMode != None || fileLock == null || !fileLock.isContended()) {
+                return;
+            }
+            owner = Thread.currentThread();
+            operationStack.add(0, String.format("Release %s", cacheDiplayName));
+            started = true;
+            try {
+                releaseLock();
+            } finally {
+                started = false;
+                operationStack.remove(0);
+                owner = null;
+                condition.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void releaseLock() {
+        for (MultiProcessSafePersistentIndexedCache<?, ?> cache : caches) {
+            cache.release();
+        }
+        releaseFileLock();
+    }
+
+    private void releaseFileLock() {
+        try {
+            fileLock.close();
+        } finally {
+            fileLock = null;
+            fileLockMode = null;
+        }
+    }
+
+    private static class LongRunningOperation {
+        private final LongRunningOperation outer;
+        private final List<String> suspendedOperations;
+        private final boolean wasEnded;
+
+        private LongRunningOperation(LongRunningOperation outer, List<String> suspendedOperations, boolean wasEnded) {
+            this.outer = outer;
+            this.suspendedOperations = new ArrayList<String>(suspendedOperations);
+            this.wasEnded = wasEnded;
+        }
+    }
+
     private class UnitOfWorkFileAccess extends AbstractFileAccess {
         public <T> T readFromFile(Factory<? extends T> action) throws LockTimeoutException {
-            return getLock().readFromFile(action);
+            return getLock(Shared).readFromFile(action);
         }
 
         public void writeToFile(Runnable action) throws LockTimeoutException {
-            getLock().writeToFile(action);
+            getLock(Exclusive).writeToFile(action);
         }
     }
 
@@ -53,12 +53,13 @@ public class DefaultCacheFactory implements Factory<CacheFactory> {
 
     private class CacheFactoryImpl implements CacheFactory {
         private final Set<BasicCacheReference<?>> caches = new LinkedHashSet<BasicCacheReference<?>>();
+        private final Set<DefaultPersistentDirectoryStore> stores = new LinkedHashSet<DefaultPersistentDirectoryStore>();
 
-        private DirCacheReference doOpenDir(File cacheDir, String displayName, CacheUsage usage, Map<String, ?> properties, FileLockManager.LockMode lockMode, Action<? super PersistentCache> action) {
+        private DirCacheReference doOpenDir(File cacheDir, String displayName, CacheUsage usage, Map<String, ?> properties, FileLockManager.LockMode lockMode, Action<? super PersistentCache> recoveryAction, boolean mappedFiles, Action<? super PersistentCache> action) {
             File canonicalDir = GFileUtils.canonicalise(cacheDir);
             DirCacheReference dirCacheReference = dirCaches.get(canonicalDir);
             if (dirCacheReference == null) {
-                DefaultPersistentDirectoryCache cache = new DefaultPersistentDirectoryCache(canonicalDir, displayName, usage, properties, lockMode, action, lockManager);
+                DefaultPersistentDirectoryCache cache = new DefaultPersistentDirectoryCache(canonicalDir, displayName, usage, properties, lockMode, recoveryAction, mappedFiles, action, lockManager);
                 cache.open();
                 dirCacheReference = new DirCacheReference(cache, properties, lockMode);
                 dirCaches.put(canonicalDir, dirCacheReference);
@@ -77,6 +78,7 @@ public class DefaultCacheFactory implements Factory<CacheFactory> {
                 dirCacheReference.rebuiltBy = this;
             }
             dirCacheReference.addReference(this);
+            stores.add(dirCacheReference.getCache());
             return dirCacheReference;
         }
 
@@ -93,16 +95,17 @@ public class DefaultCacheFactory implements Factory<CacheFactory> {
                 dirCaches.put(canonicalDir, dirCacheReference);
             }
             dirCacheReference.addReference(this);
+            stores.add(dirCacheReference.getCache());
             return dirCacheReference.getCache();
         }
 
-        public PersistentCache open(File cacheDir, String displayName, CacheUsage usage, Map<String, ?> properties, LockMode lockMode, Action<? super PersistentCache> initializer) {
-            DirCacheReference dirCacheReference = doOpenDir(cacheDir, displayName, usage, properties, lockMode, initializer);
+        public PersistentCache open(File cacheDir, String displayName, CacheUsage usage, Map<String, ?> properties, LockMode lockMode, Action<? super PersistentCache> recoveryAction, boolean mappedFiles, Action<? super PersistentCache> initializer) {
+            DirCacheReference dirCacheReference = doOpenDir(cacheDir, displayName, usage, properties, lockMode, recoveryAction, mappedFiles, initializer);
             return dirCacheReference.getCache();
         }
 
         public <E> PersistentStateCache<E> openStateCache(File cacheDir, CacheUsage usage, Map<String, ?> properties, LockMode lockMode, Serializer<E> serializer) {
-            StateCacheReference<E> cacheReference = doOpenDir(cacheDir, null, usage, properties, lockMode, null).getStateCache(serializer);
+            StateCacheReference<E> cacheReference = doOpenDir(cacheDir, null, usage, properties, lockMode, null, false, null).getStateCache(serializer);
             cacheReference.addReference(this);
             return cacheReference.getCache();
         }
@@ -111,11 +114,19 @@ public class DefaultCacheFactory implements Factory<CacheFactory> {
             if (lockMode != LockMode.Exclusive) {
                 throw new UnsupportedOperationException(String.format("No %s mode indexed cache implementation is available.", lockMode));
             }
-            IndexedCacheReference<K, V> cacheReference = doOpenDir(cacheDir, null, usage, properties, LockMode.Exclusive, null).getIndexedCache(serializer);
+            IndexedCacheReference<K, V> cacheReference = doOpenDir(cacheDir, null, usage, properties, LockMode.Exclusive, null, false, null).getIndexedCache(serializer);
             cacheReference.addReference(this);
             return cacheReference.getCache();
         }
 
+        public List<IndexedCacheStatistics> getIndexedCacheStatistics() {
+            List<IndexedCacheStatistics> statistics = new ArrayList<IndexedCacheStatistics>();
+            for (DefaultPersistentDirectoryStore store : stores) {
+                statistics.addAll(store.getIndexedCacheStatistics());
+            }
+            return statistics;
+        }
+
         public void close() {
             try {
                 List<BasicCacheReference<?>> caches = new ArrayList<BasicCacheReference<?>>(this.caches);
@@ -183,7 +194,8 @@ public class DefaultCacheFactory implements Factory<CacheFactory> {
 
         public <K, V> IndexedCacheReference<K, V> getIndexedCache(Serializer<V> serializer) {
             if (indexedCache == null) {
-                final BTreePersistentIndexedCache<K, V> indexedCache = new BTreePersistentIndexedCache<K, V>(new File(getCache().getBaseDir(), "cache.bin"),
+                File cacheFile = new File(getCache().getBaseDir(), "cache.bin");
+                final BTreePersistentIndexedCache<K, V> indexedCache = new BTreePersistentIndexedCache<K, V>(cacheFile,
                         new DefaultSerializer<K>(),
                         serializer);
                 Factory<BTreePersistentIndexedCache<K, V>> cacheFactory = new Factory<BTreePersistentIndexedCache<K, V>>() {
@@ -191,7 +203,7 @@ public class DefaultCacheFactory implements Factory<CacheFactory> {
                         return indexedCache;
                     }
                 };
-                MultiProcessSafePersistentIndexedCache<K, V> safeCache = new MultiProcessSafePersistentIndexedCache<K, V>(cacheFactory, getCache().getLock());
+                MultiProcessSafePersistentIndexedCache<K, V> safeCache = new MultiProcessSafePersistentIndexedCache<K, V>(cacheFactory, getCache().getLock(), cacheFile);
                 this.indexedCache = new IndexedCacheReference<K, V>(safeCache, this);
             }
             return indexedCache;
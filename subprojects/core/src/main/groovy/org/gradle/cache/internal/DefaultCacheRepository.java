@@ -126,6 +126,8 @@ public class DefaultCacheRepository implements CacheRepository {
     private class PersistentCacheBuilder extends AbstractCacheBuilder<PersistentCache> implements DirectoryCacheBuilder {
         Action<? super PersistentCache> initializer;
         LockMode lockMode = LockMode.Shared;
+        Action<? super PersistentCache> recoveryAction;
+        boolean mappedFiles;
         String displayName;
 
         protected PersistentCacheBuilder(String key) {
@@ -165,9 +167,22 @@ public class DefaultCacheRepository implements CacheRepository {
             return this;
         }
 
+        public DirectoryCacheBuilder withCrashRecovery(Action<? super PersistentCache> recoveryAction) {
+            this.recoveryAction = recoveryAction;
+            return this;
+        }
+
+        public DirectoryCacheBuilder withMappedFiles() {
+            this.mappedFiles = true;
+            return this;
+        }
+
         @Override
         protected PersistentCache doOpen(File cacheDir, Map<String, ?> properties) {
-            return factory.open(cacheDir, displayName, cacheUsage, properties, lockMode, initializer);
+            if (recoveryAction != null && mappedFiles) {
+                throw new UnsupportedOperationException("Crash recovery is not supported for caches which use mapped files.");
+            }
+            return factory.open(cacheDir, displayName, cacheUsage, properties, lockMode, recoveryAction, mappedFiles, initializer);
         }
     }
 
@@ -16,6 +16,7 @@
 package org.gradle.cache.internal;
 
 import org.gradle.internal.Factory;
+import org.gradle.internal.Stoppable;
 import org.gradle.internal.UncheckedException;
 import org.gradle.util.GFileUtils;
 import org.slf4j.Logger;
@@ -25,8 +26,13 @@ import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
 
 /**
@@ -34,10 +40,15 @@ import java.util.concurrent.CopyOnWriteArraySet;
  *
  * <ul>
  *     <li>State region: 1 byte version field, 1 byte clean flag.</li>
- *     <li>Owner information region: 1 byte version field, utf-8 encoded owner process id, utf-8 encoded owner operation display name.</li>
+ *     <li>Owner information region: 1 byte version field, utf-8 encoded owner process id, utf-8 encoded owner operation display name,
+ *     4 byte port that the owner receives lock hand-off messages on.</li>
  * </ul>
+ *
+ * <p>A process waiting for a lock held by another process asks the owner to release the lock, using the port from the information
+ * region, and is notified as soon as the owner has released it. The owner releases the lock at its next convenient point, see {@link
+ * FileLock#isContended()}.</p>
  */
-public class DefaultFileLockManager implements FileLockManager {
+public class DefaultFileLockManager implements FileLockManager, Stoppable {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultFileLockManager.class);
     private static final int LOCK_TIMEOUT = 60000;
     private static final byte STATE_REGION_PROTOCOL = 1;
@@ -45,18 +56,36 @@ public class DefaultFileLockManager implements FileLockManager {
     private static final int STATE_REGION_POS = 0;
     private static final byte INFORMATION_REGION_PROTOCOL = 2;
     private static final int INFORMATION_REGION_POS = STATE_REGION_POS + STATE_REGION_SIZE;
+    private static final long RELEASE_WAIT_INTERVAL = 200L;
     private final Set<File> lockedFiles = new CopyOnWriteArraySet<File>();
+    private final Map<File, DefaultFileLock> openLocks = new ConcurrentHashMap<File, DefaultFileLock>();
     private final ProcessMetaDataProvider metaDataProvider;
+    private final FileLockCommunicator communicator = new FileLockCommunicator(new FileLockCommunicator.ReleaseRequestHandler() {
+        public void releaseRequested(File lockFile, int requesterPort) {
+            DefaultFileLock lock = openLocks.get(lockFile);
+            if (lock != null) {
+                lock.releaseRequested(requesterPort);
+            }
+        }
+    });
 
     public DefaultFileLockManager(ProcessMetaDataProvider metaDataProvider) {
         this.metaDataProvider = metaDataProvider;
     }
 
+    public void stop() {
+        communicator.stop();
+    }
+
     public FileLock lock(File target, LockMode mode, String targetDisplayName) throws LockTimeoutException {
         return lock(target, mode, targetDisplayName, "");
     }
 
     public FileLock lock(File target, LockMode mode, String targetDisplayName, String operationDisplayName) {
+        return lock(target, mode, targetDisplayName, operationDisplayName, null);
+    }
+
+    public FileLock lock(File target, LockMode mode, String targetDisplayName, String operationDisplayName, Runnable whenContended) {
         if (mode == LockMode.None) {
             throw new UnsupportedOperationException(String.format("No %s mode lock implementation available.", mode));
         }
@@ -65,7 +94,7 @@ public class DefaultFileLockManager implements FileLockManager {
             throw new IllegalStateException(String.format("Cannot lock %s as it has already been locked by this process.", targetDisplayName));
         }
         try {
-            return new DefaultFileLock(canonicalTarget, mode, targetDisplayName, operationDisplayName);
+            return new DefaultFileLock(canonicalTarget, mode, targetDisplayName, operationDisplayName, whenContended);
         } catch (Throwable t) {
             lockedFiles.remove(canonicalTarget);
             throw UncheckedException.asUncheckedException(t);
@@ -78,14 +107,19 @@ public class DefaultFileLockManager implements FileLockManager {
         private final LockMode mode;
         private final String displayName;
         private final String operationDisplayName;
+        private final Runnable whenContended;
         private java.nio.channels.FileLock lock;
         private RandomAccessFile lockFileAccess;
+        private boolean writing;
+        private volatile boolean contended;
+        private final Set<Integer> waitingPorts = new HashSet<Integer>();
 
-        public DefaultFileLock(File target, LockMode mode, String displayName, String operationDisplayName) throws Throwable {
+        public DefaultFileLock(File target, LockMode mode, String displayName, String operationDisplayName, Runnable whenContended) throws Throwable {
             this.target = target;
             this.mode = mode;
             this.displayName = displayName;
             this.operationDisplayName = operationDisplayName;
+            this.whenContended = whenContended;
             if (target.isDirectory()) {
                 lockFile = new File(target, target.getName() + ".lock");
             } else {
@@ -101,6 +135,34 @@ public class DefaultFileLockManager implements FileLockManager {
                 lockFileAccess.close();
                 throw t;
             }
+            openLocks.put(lockFile.getAbsoluteFile(), this);
+        }
+
+        public boolean isContended() {
+            if (contended) {
+                return true;
+            }
+            if (lock == null || !lock.isShared()) {
+                return false;
+            }
+            // Only the most recent owner of a shared lock is recorded in the information region, and can be asked to release the lock.
+            // Once that owner has released the lock, the other owners cannot be asked, so they treat the lock as contended
+            try {
+                return readOwnerPort() < 0;
+            } catch (IOException e) {
+                return true;
+            }
+        }
+
+        private void releaseRequested(int requesterPort) {
+            LOGGER.debug("Release of {} requested by another process.", displayName);
+            synchronized (waitingPorts) {
+                waitingPorts.add(requesterPort);
+            }
+            contended = true;
+            if (whenContended != null) {
+                whenContended.run();
+            }
         }
 
         public boolean isLockFile(File file) {
@@ -132,6 +194,11 @@ public class DefaultFileLockManager implements FileLockManager {
 
         public void writeToFile(Runnable action) {
             assertOpen();
+            if (writing) {
+                // Nested update: the outermost update marks the target dirty and clean around the whole batch
+                action.run();
+                return;
+            }
             try {
                 // TODO - need to escalate without releasing lock
                 java.nio.channels.FileLock updateLock = null;
@@ -140,11 +207,13 @@ public class DefaultFileLockManager implements FileLockManager {
                     lock = null;
                     updateLock = lock(LockMode.Exclusive);
                 }
+                writing = true;
                 try {
                     markDirty();
                     action.run();
                     markClean();
                 } finally {
+                    writing = false;
                     if (mode != LockMode.Exclusive) {
                         updateLock.release();
                         lock = lock(mode);
@@ -181,12 +250,15 @@ public class DefaultFileLockManager implements FileLockManager {
             }
             try {
                 LOGGER.debug("Releasing lock on {}.", displayName);
+                openLocks.remove(lockFile.getAbsoluteFile());
                 lockedFiles.remove(target);
                 // Also releases any locks
                 try {
                     if (lock != null && !lock.isShared()) {
                         // Discard information region
                         lockFileAccess.setLength(INFORMATION_REGION_POS);
+                    } else if (lock != null) {
+                        discardInformationRegionIfOwner();
                     }
                 } finally {
                     lockFileAccess.close();
@@ -196,9 +268,20 @@ public class DefaultFileLockManager implements FileLockManager {
             } finally {
                 lock = null;
                 lockFileAccess = null;
+                notifyWaiters();
             }
         }
 
+        private void notifyWaiters() {
+            List<Integer> ports;
+            synchronized (waitingPorts) {
+                ports = new ArrayList<Integer>(waitingPorts);
+                waitingPorts.clear();
+            }
+            contended = false;
+            communicator.notifyReleased(lockFile.getAbsoluteFile(), ports);
+        }
+
         private java.nio.channels.FileLock lock(FileLockManager.LockMode lockMode) throws Throwable {
             LOGGER.debug("Waiting to acquire {} lock on {}.", lockMode.toString().toLowerCase(), displayName);
             long timeout = System.currentTimeMillis() + LOCK_TIMEOUT;
@@ -250,7 +333,11 @@ public class DefaultFileLockManager implements FileLockManager {
                         lockFileAccess.writeByte(STATE_REGION_PROTOCOL);
                         lockFileAccess.writeBoolean(false);
                     }
-                    // Acquire an exclusive lock on the information region and write our details there
+                }
+
+                if (!stateRegionLock.isShared() || lockFileAccess.length() >= STATE_REGION_SIZE) {
+                    // Acquire an exclusive lock on the information region and write our details there, so that a process waiting for
+                    // the lock can ask us to release it. For a shared lock, this replaces the details of any other owner
                     java.nio.channels.FileLock informationRegionLock = lockInformationRegion(LockMode.Exclusive, timeout);
                     if (informationRegionLock == null) {
                         throw new IllegalStateException(String.format("Timeout waiting to lock the information region for lock %s", displayName));
@@ -260,6 +347,7 @@ public class DefaultFileLockManager implements FileLockManager {
                         lockFileAccess.writeByte(INFORMATION_REGION_PROTOCOL);
                         lockFileAccess.writeUTF(metaDataProvider.getProcessIdentifier());
                         lockFileAccess.writeUTF(operationDisplayName);
+                        lockFileAccess.writeInt(communicator.getPort());
                         lockFileAccess.setLength(lockFileAccess.getFilePointer());
                     } finally {
                         informationRegionLock.release();
@@ -275,7 +363,72 @@ public class DefaultFileLockManager implements FileLockManager {
         }
 
         private java.nio.channels.FileLock lockStateRegion(LockMode lockMode, long timeout) throws IOException, InterruptedException {
-            return lockRegion(lockMode, timeout, STATE_REGION_POS, STATE_REGION_SIZE);
+            File lockFile = this.lockFile.getAbsoluteFile();
+            do {
+                int releaseCount = communicator.getReleaseCount(lockFile);
+                java.nio.channels.FileLock fileLock = lockFileAccess.getChannel().tryLock(STATE_REGION_POS, STATE_REGION_SIZE, lockMode == LockMode.Shared);
+                if (fileLock != null) {
+                    return fileLock;
+                }
+                // Ask the owner to release the lock, and wait until it has done so. Keep polling in case the owner does not respond
+                int ownerPort = readOwnerPort();
+                if (ownerPort > 0) {
+                    communicator.requestRelease(lockFile, ownerPort);
+                }
+                communicator.awaitRelease(lockFile, releaseCount, RELEASE_WAIT_INTERVAL);
+            } while (System.currentTimeMillis() < timeout);
+            return null;
+        }
+
+        private int readOwnerPort() throws IOException {
+            java.nio.channels.FileLock informationRegionLock = lockFileAccess.getChannel().tryLock(INFORMATION_REGION_POS, Long.MAX_VALUE - INFORMATION_REGION_POS, true);
+            if (informationRegionLock == null) {
+                return -1;
+            }
+            try {
+                return readOwnerPortFromInformationRegion();
+            } finally {
+                informationRegionLock.release();
+            }
+        }
+
+        /**
+         * Discards the information region when it still contains our details, so that the other owners of a shared lock know that
+         * they can no longer be asked to release the lock.
+         */
+        private void discardInformationRegionIfOwner() throws IOException {
+            java.nio.channels.FileLock informationRegionLock = lockFileAccess.getChannel().tryLock(INFORMATION_REGION_POS, Long.MAX_VALUE - INFORMATION_REGION_POS, false);
+            if (informationRegionLock == null) {
+                return;
+            }
+            try {
+                if (readOwnerPortFromInformationRegion() == communicator.getPort()) {
+                    lockFileAccess.setLength(INFORMATION_REGION_POS);
+                }
+            } finally {
+                informationRegionLock.release();
+            }
+        }
+
+        private int readOwnerPortFromInformationRegion() throws IOException {
+            try {
+                if (lockFileAccess.length() <= INFORMATION_REGION_POS) {
+                    return -1;
+                }
+                lockFileAccess.seek(INFORMATION_REGION_POS);
+                if (lockFileAccess.readByte() != INFORMATION_REGION_PROTOCOL) {
+                    return -1;
+                }
+                lockFileAccess.readUTF();
+                lockFileAccess.readUTF();
+                if (lockFileAccess.getFilePointer() + 4 > lockFileAccess.length()) {
+                    // Owner does not support lock hand-off
+                    return -1;
+                }
+                return lockFileAccess.readInt();
+            } catch (EOFException e) {
+                return -1;
+            }
         }
 
         private java.nio.channels.FileLock lockInformationRegion(LockMode lockMode, long timeout) throws IOException, InterruptedException {
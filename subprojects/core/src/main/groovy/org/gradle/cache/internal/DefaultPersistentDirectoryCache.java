@@ -35,14 +35,28 @@ public class DefaultPersistentDirectoryCache extends DefaultPersistentDirectoryS
     private final File propertiesFile;
     private final Properties properties = new Properties();
     private final CacheUsage cacheUsage;
+    private final Action<? super PersistentCache> recoveryAction;
     private final Action<? super PersistentCache> initAction;
+    private final FileLockManager lockManager;
 
     public DefaultPersistentDirectoryCache(File dir, String displayName, CacheUsage cacheUsage, Map<String, ?> properties, LockMode lockMode, Action<? super PersistentCache> initAction, FileLockManager lockManager) {
-        super(dir, displayName, lockMode, lockManager);
-        if (lockMode == LockMode.None) {
-            throw new UnsupportedOperationException("Locking mode None is not supported.");
-        }
+        this(dir, displayName, cacheUsage, properties, lockMode, null, initAction, lockManager);
+    }
+
+    public DefaultPersistentDirectoryCache(File dir, String displayName, CacheUsage cacheUsage, Map<String, ?> properties, LockMode lockMode, Action<? super PersistentCache> recoveryAction, Action<? super PersistentCache> initAction, FileLockManager lockManager) {
+        this(dir, displayName, cacheUsage, properties, lockMode, recoveryAction, false, initAction, lockManager);
+    }
+
+    /**
+     * @param recoveryAction the action which brings the contents of the cache back in line with each other when a process died while updating
+     * them, in which case the cache is not rebuilt when it was not closed cleanly. May be null, in which case such a cache is rebuilt.
+     * @param mappedFiles true if the indexed caches of this cache should access their files through a memory mapping.
+     */
+    public DefaultPersistentDirectoryCache(File dir, String displayName, CacheUsage cacheUsage, Map<String, ?> properties, LockMode lockMode, Action<? super PersistentCache> recoveryAction, boolean mappedFiles, Action<? super PersistentCache> initAction, FileLockManager lockManager) {
+        super(dir, displayName, lockMode, mappedFiles, lockManager);
+        this.lockManager = lockManager;
         this.cacheUsage = cacheUsage;
+        this.recoveryAction = recoveryAction;
         this.initAction = initAction;
         propertiesFile = new File(dir, "cache.properties");
         this.properties.putAll(properties);
@@ -55,12 +69,35 @@ public class DefaultPersistentDirectoryCache extends DefaultPersistentDirectoryS
     }
 
     protected void init() throws IOException {
-        boolean valid = determineIfCacheIsValid(getLock());
+        FileLock lock = getLock();
+        if (lock != null) {
+            init(lock);
+            return;
+        }
+
+        // No lock is held while the cache is not in use, so lock the cache while it is validated
+        lock = lockManager.lock(getLockTarget(), LockMode.Shared, toString(), "Initialize cache");
+        try {
+            init(lock);
+        } finally {
+            lock.close();
+        }
+    }
+
+    private void init(final FileLock lock) throws IOException {
+        boolean valid = determineIfCacheIsValid(lock);
         if (!valid) {
             // Escalate to exclusive lock and rebuild the cache
-            getLock().writeToFile(new Runnable() {
+            lock.writeToFile(new Runnable() {
                 public void run() {
-                    buildCacheDir(initAction, getLock());
+                    buildCacheDir(initAction, lock);
+                }
+            });
+        } else if (!lock.getUnlockedCleanly()) {
+            // Escalate to exclusive lock and recover the cache
+            lock.writeToFile(new Runnable() {
+                public void run() {
+                    recoveryAction.execute(DefaultPersistentDirectoryCache.this);
                 }
             });
         }
@@ -84,10 +121,17 @@ public class DefaultPersistentDirectoryCache extends DefaultPersistentDirectoryS
             LOGGER.debug("Invalidating {} as cache usage is set to rebuild.", this);
             return false;
         }
-        if (!lock.getUnlockedCleanly()) {
-            LOGGER.debug("Invalidating {} as it was not closed cleanly.", this);
+        if (!propertiesFile.isFile()) {
+            LOGGER.debug("Invalidating {} as it has not been built.", this);
             return false;
         }
+        if (!lock.getUnlockedCleanly()) {
+            if (recoveryAction == null) {
+                LOGGER.debug("Invalidating {} as it was not closed cleanly.", this);
+                return false;
+            }
+            LOGGER.debug("{} was not closed cleanly. Keeping its contents, which will be recovered.", this);
+        }
         Properties currentProperties = GUtil.loadProperties(propertiesFile);
         for (Map.Entry<?, ?> entry : properties.entrySet()) {
             if (!entry.getValue().toString().equals(currentProperties.getProperty(entry.getKey().toString()))) {
@@ -23,24 +23,33 @@ import org.gradle.cache.Serializer;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 public class DefaultPersistentDirectoryStore implements PersistentCache {
     private final File dir;
     private final FileLockManager.LockMode lockMode;
     private final FileLockManager lockManager;
     private final String displayName;
+    private final boolean mappedFiles;
     private DefaultCacheAccess cacheAccess;
+    private List<IndexedCacheStatistics> indexedCacheStatistics = Collections.emptyList();
 
     public DefaultPersistentDirectoryStore(File dir, String displayName, FileLockManager.LockMode lockMode, FileLockManager fileLockManager) {
+        this(dir, displayName, lockMode, false, fileLockManager);
+    }
+
+    public DefaultPersistentDirectoryStore(File dir, String displayName, FileLockManager.LockMode lockMode, boolean mappedFiles, FileLockManager fileLockManager) {
         this.dir = dir;
         this.lockMode = lockMode;
+        this.mappedFiles = mappedFiles;
         this.lockManager = fileLockManager;
         this.displayName = displayName != null ? String.format("%s (%s)", displayName, dir) : String.format("cache directory %s (%s)", dir.getName(), dir);
     }
 
     public DefaultPersistentDirectoryStore open() {
         dir.mkdirs();
-        cacheAccess = new DefaultCacheAccess(displayName, getLockTarget(), lockManager);
+        cacheAccess = new DefaultCacheAccess(displayName, getLockTarget(), lockManager, mappedFiles);
         try {
             cacheAccess.open(lockMode);
             try {
@@ -68,12 +77,20 @@ public class DefaultPersistentDirectoryStore implements PersistentCache {
             try {
                 cacheAccess.close();
             } finally {
+                indexedCacheStatistics = cacheAccess.getIndexedCacheStatistics();
                 cacheAccess = null;
             }
         }
 
     }
 
+    /**
+     * Returns the block cache statistics of the indexed caches of this store, including once the store has been closed.
+     */
+    public List<IndexedCacheStatistics> getIndexedCacheStatistics() {
+        return cacheAccess != null ? cacheAccess.getIndexedCacheStatistics() : indexedCacheStatistics;
+    }
+
     protected FileLock getLock() {
         return cacheAccess.getFileLock();
     }
@@ -103,6 +120,10 @@ public class DefaultPersistentDirectoryStore implements PersistentCache {
         cacheAccess.useCache(operationDisplayName, action);
     }
 
+    public void batchUpdate(String operationDisplayName, Runnable action) {
+        cacheAccess.batchUpdate(operationDisplayName, action);
+    }
+
     public <T> T longRunningOperation(String operationDisplayName, Factory<? extends T> action) {
         return cacheAccess.longRunningOperation(operationDisplayName, action);
     }
@@ -52,6 +52,9 @@ public interface FileAccess {
      * the lock is escalated to an exclusive lock, and reverted back to a shared lock when the action completes. If no lock is already held, an
      * exclusive lock is acquired, the action executed, and the lock released.
      *
+     * <p>This method is re-entrant. A nested call runs as part of the outermost call, so that a batch of updates is marked as uncleanly
+     * unlocked as a whole if the process crashes part way through the batch.</p>
+     *
      * @throws LockTimeoutException On timeout acquiring lock, if required.
      * @throws IllegalStateException When this lock has been closed.
      */
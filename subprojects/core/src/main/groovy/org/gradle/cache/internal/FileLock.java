@@ -30,6 +30,12 @@ public interface FileLock extends Closeable, FileAccess {
      */
     boolean isLockFile(File file);
 
+    /**
+     * Returns true if another process has asked for this lock to be released. The owner should release the lock at its next convenient
+     * point, so that the other process can acquire it.
+     */
+    boolean isContended();
+
     /**
      * Closes this lock, releasing the lock and any resources associated with it.
      */
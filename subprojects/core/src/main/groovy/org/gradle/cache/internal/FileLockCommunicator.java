@@ -0,0 +1,210 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Exchanges lock hand-off messages with other processes, using a datagram socket bound to the loopback interface. A process waiting
+ * for a lock asks the owner of the lock to release it, and the owner tells the waiting processes when it has released the lock, so that
+ * a waiting process does not need to poll for the lock.
+ */
+class FileLockCommunicator {
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileLockCommunicator.class);
+    private static final byte PROTOCOL_VERSION = 1;
+    private static final byte RELEASE_REQUEST = 1;
+    private static final byte RELEASED = 2;
+    private final ReleaseRequestHandler handler;
+    private final Object lock = new Object();
+    private final Map<File, Integer> releaseCounts = new HashMap<File, Integer>();
+    private DatagramSocket socket;
+    private boolean stopped;
+
+    interface ReleaseRequestHandler {
+        /**
+         * Called when another process requests that the given lock file be released. The requester should be notified using {@link
+         * FileLockCommunicator#notifyReleased(File, Collection)} once the lock has been released.
+         */
+        void releaseRequested(File lockFile, int requesterPort);
+    }
+
+    FileLockCommunicator(ReleaseRequestHandler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Returns the port that other processes should send messages to, or -1 if messages cannot be received.
+     */
+    int getPort() {
+        DatagramSocket socket = getSocket();
+        return socket == null ? -1 : socket.getLocalPort();
+    }
+
+    /**
+     * Asks the process listening on the given port to release the given lock file.
+     */
+    void requestRelease(File lockFile, int ownerPort) {
+        int port = getPort();
+        if (port < 0) {
+            return;
+        }
+        send(RELEASE_REQUEST, lockFile, port, ownerPort);
+    }
+
+    /**
+     * Tells the processes listening on the given ports that the given lock file has been released.
+     */
+    void notifyReleased(File lockFile, Collection<Integer> ports) {
+        for (Integer port : ports) {
+            send(RELEASED, lockFile, -1, port);
+        }
+    }
+
+    /**
+     * Returns the number of release notifications received for the given lock file.
+     */
+    int getReleaseCount(File lockFile) {
+        synchronized (lock) {
+            Integer count = releaseCounts.get(lockFile);
+            return count == null ? 0 : count;
+        }
+    }
+
+    /**
+     * Waits until a release notification is received for the given lock file, or the given timeout expires.
+     *
+     * @param releaseCount The release count, as returned by {@link #getReleaseCount(File)}, before the release was requested.
+     */
+    void awaitRelease(File lockFile, int releaseCount, long timeoutMillis) throws InterruptedException {
+        long expiry = System.currentTimeMillis() + timeoutMillis;
+        synchronized (lock) {
+            while (getReleaseCount(lockFile) == releaseCount) {
+                long remaining = expiry - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return;
+                }
+                lock.wait(remaining);
+            }
+        }
+    }
+
+    void stop() {
+        DatagramSocket socket;
+        synchronized (lock) {
+            stopped = true;
+            socket = this.socket;
+            this.socket = null;
+        }
+        if (socket != null) {
+            socket.close();
+        }
+    }
+
+    private DatagramSocket getSocket() {
+        synchronized (lock) {
+            if (socket == null && !stopped) {
+                try {
+                    socket = new DatagramSocket(0, InetAddress.getByName(null));
+                } catch (IOException e) {
+                    LOGGER.debug("Could not create socket to receive file lock messages. Will poll for contended locks.", e);
+                    stopped = true;
+                    return null;
+                }
+                Thread receiver = new Thread(new Receiver(socket), "File lock message receiver");
+                receiver.setDaemon(true);
+                receiver.start();
+            }
+            return socket;
+        }
+    }
+
+    private void send(byte type, File lockFile, int replyPort, int targetPort) {
+        DatagramSocket socket = getSocket();
+        if (socket == null) {
+            return;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream outstr = new DataOutputStream(bytes);
+            outstr.writeByte(PROTOCOL_VERSION);
+            outstr.writeByte(type);
+            outstr.writeUTF(lockFile.getAbsolutePath());
+            outstr.writeInt(replyPort);
+            outstr.flush();
+            byte[] message = bytes.toByteArray();
+            socket.send(new DatagramPacket(message, message.length, InetAddress.getByName(null), targetPort));
+        } catch (IOException e) {
+            LOGGER.debug(String.format("Could not send file lock message for %s to port %s.", lockFile, targetPort), e);
+        }
+    }
+
+    private void received(byte[] message, int length) throws IOException {
+        DataInputStream instr = new DataInputStream(new ByteArrayInputStream(message, 0, length));
+        if (instr.readByte() != PROTOCOL_VERSION) {
+            return;
+        }
+        byte type = instr.readByte();
+        File lockFile = new File(instr.readUTF());
+        int replyPort = instr.readInt();
+        if (type == RELEASE_REQUEST) {
+            handler.releaseRequested(lockFile, replyPort);
+        } else if (type == RELEASED) {
+            synchronized (lock) {
+                releaseCounts.put(lockFile, getReleaseCount(lockFile) + 1);
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private class Receiver implements Runnable {
+        private final DatagramSocket socket;
+
+        private Receiver(DatagramSocket socket) {
+            this.socket = socket;
+        }
+
+        public void run() {
+            byte[] buffer = new byte[8192];
+            while (true) {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                try {
+                    socket.receive(packet);
+                } catch (SocketException e) {
+                    // Socket has been closed
+                    return;
+                } catch (IOException e) {
+                    LOGGER.debug("Could not receive file lock message.", e);
+                    continue;
+                }
+                try {
+                    received(packet.getData(), packet.getLength());
+                } catch (Exception e) {
+                    LOGGER.debug("Ignoring unexpected file lock message.", e);
+                }
+            }
+        }
+    }
+}
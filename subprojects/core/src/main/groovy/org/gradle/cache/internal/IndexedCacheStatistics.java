@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal;
+
+import org.gradle.cache.internal.btree.BlockCacheStatistics;
+
+import java.io.File;
+
+/**
+ * The block cache statistics of an indexed cache, counted over each time the cache file is opened while its cache directory is open.
+ */
+public class IndexedCacheStatistics {
+    private final File cacheFile;
+    private final BlockCacheStatistics indexCacheStatistics = new BlockCacheStatistics();
+    private final BlockCacheStatistics dataCacheStatistics = new BlockCacheStatistics();
+
+    public IndexedCacheStatistics(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    public File getCacheFile() {
+        return cacheFile;
+    }
+
+    public BlockCacheStatistics getIndexCacheStatistics() {
+        return indexCacheStatistics;
+    }
+
+    public BlockCacheStatistics getDataCacheStatistics() {
+        return dataCacheStatistics;
+    }
+}
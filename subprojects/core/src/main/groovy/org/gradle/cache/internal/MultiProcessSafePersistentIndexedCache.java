@@ -15,20 +15,34 @@
  */
 package org.gradle.cache.internal;
 
+import org.gradle.api.Action;
 import org.gradle.internal.Factory;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache;
+import org.gradle.cache.internal.btree.FileBackedBlockStore;
 
 import java.io.Closeable;
+import java.io.File;
+import java.util.Collection;
+import java.util.Map;
 
+/**
+ * A {@link PersistentIndexedCache} which uses a {@link FileAccess} to synchronise access to the backing cache with other processes.
+ * Reads, and opening and closing an existing cache file which has not been written to, are performed under a shared lock. Writes are
+ * performed under an exclusive lock. A cache which has been written to is compacted, if required, when it is closed. It is not
+ * compacted when it is released because another process wants the lock.
+ */
 public class MultiProcessSafePersistentIndexedCache<K, V> implements PersistentIndexedCache<K, V>, UnitOfWorkParticipant, Closeable {
     private final FileAccess fileAccess;
     private final Factory<BTreePersistentIndexedCache<K, V>> factory;
+    private final File cacheFile;
     private BTreePersistentIndexedCache<K, V> cache;
+    private boolean written;
 
-    public MultiProcessSafePersistentIndexedCache(Factory<BTreePersistentIndexedCache<K, V>> factory, FileAccess fileAccess) {
+    public MultiProcessSafePersistentIndexedCache(Factory<BTreePersistentIndexedCache<K, V>> factory, FileAccess fileAccess, File cacheFile) {
         this.factory = factory;
         this.fileAccess = fileAccess;
+        this.cacheFile = cacheFile;
     }
 
     public V get(final K key) {
@@ -40,20 +54,49 @@ public class MultiProcessSafePersistentIndexedCache<K, V> implements PersistentI
         });
     }
 
-    public void put(final K key, final V value) {
+    public Map<K, V> getAll(final Collection<? extends K> keys) {
         final PersistentIndexedCache<K, V> cache = getCache();
+        return fileAccess.readFromFile(new Factory<Map<K, V>>() {
+            public Map<K, V> create() {
+                return cache.getAll(keys);
+            }
+        });
+    }
+
+    public void put(final K key, final V value) {
         fileAccess.writeToFile(new Runnable() {
             public void run() {
-                cache.put(key, value);
+                // Open the cache once the exclusive lock is held, as escalating the lock closes the cache
+                getCache().put(key, value);
+                written = true;
+            }
+        });
+    }
+
+    public void putAll(final Map<? extends K, ? extends V> entries) {
+        fileAccess.writeToFile(new Runnable() {
+            public void run() {
+                getCache().putAll(entries);
+                written = true;
             }
         });
     }
 
     public void remove(final K key) {
-        final PersistentIndexedCache<K, V> cache = getCache();
         fileAccess.writeToFile(new Runnable() {
             public void run() {
-                cache.remove(key);
+                getCache().remove(key);
+                written = true;
+            }
+        });
+    }
+
+    public void visitEntries(final Action<? super Map.Entry<K, V>> action) {
+        final PersistentIndexedCache<K, V> cache = getCache();
+        fileAccess.readFromFile(new Factory<Object>() {
+            public Object create() {
+                cache.visitEntries(action);
+                return null;
             }
         });
     }
@@ -66,26 +109,61 @@ public class MultiProcessSafePersistentIndexedCache<K, V> implements PersistentI
     }
 
     public void close() {
+        close(true);
+    }
+
+    /**
+     * Closes this cache without compacting it, so that another process which is waiting for the lock does not also wait for the
+     * compaction.
+     */
+    public void release() {
+        close(false);
+    }
+
+    private void close(final boolean compact) {
         if (cache != null) {
             try {
-                fileAccess.writeToFile(new Runnable() {
-                    public void run() {
-                        cache.close();
-                    }
-                });
+                if (written) {
+                    fileAccess.writeToFile(new Runnable() {
+                        public void run() {
+                            try {
+                                if (compact) {
+                                    cache.compactIfFragmented();
+                                }
+                            } finally {
+                                cache.close();
+                            }
+                        }
+                    });
+                } else {
+                    fileAccess.readFromFile(new Factory<Object>() {
+                        public Object create() {
+                            cache.close();
+                            return null;
+                        }
+                    });
+                }
             } finally {
                 cache = null;
+                written = false;
             }
         }
     }
 
     private PersistentIndexedCache<K, V> getCache() {
         if (cache == null) {
-            fileAccess.writeToFile(new Runnable() {
-                public void run() {
-                    cache = factory.create();
-                }
-            });
+            if (cacheFile.length() == 0 || FileBackedBlockStore.getJournalFile(cacheFile).length() > 0
+                    || BTreePersistentIndexedCache.getCompactionBackupFile(cacheFile).exists()) {
+                // Opening the cache initialises the cache file, or replays the journal or finishes the compaction left by a process
+                // which died while writing
+                fileAccess.writeToFile(new Runnable() {
+                    public void run() {
+                        cache = factory.create();
+                    }
+                });
+            } else {
+                cache = fileAccess.readFromFile(factory);
+            }
         }
         return cache;
     }
@@ -15,6 +15,7 @@
  */
 package org.gradle.cache.internal.btree;
 
+import org.gradle.api.Action;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.Serializer;
@@ -41,27 +42,68 @@ import java.util.*;
 // todo - use more efficient lookup for free block with nearest size
 public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache<K, V> {
     private static final Logger LOGGER = LoggerFactory.getLogger(BTreePersistentIndexedCache.class);
+    public static final short DEFAULT_MAX_CHILD_INDEX_ENTRIES = 512;
+    public static final int DEFAULT_MAX_FREE_LIST_ENTRIES = 512;
+    public static final long DEFAULT_INDEX_CACHE_BYTES = 2 * 1024 * 1024;
+    public static final long DEFAULT_DATA_CACHE_BYTES = 2 * 1024 * 1024;
+    public static final double DEFAULT_COMPACTION_THRESHOLD = 0.5;
+    public static final long DEFAULT_MIN_COMPACTION_FILE_SIZE = 1024 * 1024;
+    private static final int COMPACTION_FLUSH_INTERVAL = 1000;
     private final File cacheFile;
     private final Serializer<K> keySerializer;
     private final Serializer<V> serializer;
     private final short maxChildIndexEntries;
     private final int minIndexChildNodes;
+    private final int maxFreeListEntries;
+    private final CachingBlockStore cachingStore;
+    private final FreeListBlockStore freeListStore;
     private final StateCheckBlockStore store;
     private HeaderBlock header;
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer) {
-        this(cacheFile, keySerializer, valueSerializer, (short) 512, 512);
+        this(cacheFile, keySerializer, valueSerializer, DEFAULT_MAX_CHILD_INDEX_ENTRIES, DEFAULT_MAX_FREE_LIST_ENTRIES);
     }
 
     public BTreePersistentIndexedCache(File cacheFile, Serializer<K> keySerializer, Serializer<V> valueSerializer,
                                        short maxChildIndexEntries, int maxFreeListEntries) {
+        this(cacheFile, new FileBackedBlockStore(cacheFile), keySerializer, valueSerializer, maxChildIndexEntries, maxFreeListEntries);
+    }
+
+    /**
+     * Creates a cache which stores its blocks in the given store, for example a {@link MappedFileBlockStore}.
+     */
+    public BTreePersistentIndexedCache(File cacheFile, BlockStore backingStore, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                       short maxChildIndexEntries, int maxFreeListEntries) {
+        this(cacheFile, backingStore, keySerializer, valueSerializer, maxChildIndexEntries, maxFreeListEntries, DEFAULT_INDEX_CACHE_BYTES, DEFAULT_DATA_CACHE_BYTES);
+    }
+
+    /**
+     * Creates a cache which keeps at most the given number of bytes of index and data blocks in memory.
+     */
+    public BTreePersistentIndexedCache(File cacheFile, BlockStore backingStore, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                       short maxChildIndexEntries, int maxFreeListEntries, long maxIndexCacheBytes, long maxDataCacheBytes) {
+        this(cacheFile, backingStore, keySerializer, valueSerializer, maxChildIndexEntries, maxFreeListEntries, maxIndexCacheBytes, maxDataCacheBytes,
+                new BlockCacheStatistics(), new BlockCacheStatistics());
+    }
+
+    /**
+     * Creates a cache which counts the hits, misses and evictions of its block caches in the given statistics, rather than in statistics
+     * of its own. This allows the counts to be accumulated over each time the cache file is opened.
+     */
+    public BTreePersistentIndexedCache(File cacheFile, BlockStore backingStore, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                       short maxChildIndexEntries, int maxFreeListEntries, long maxIndexCacheBytes, long maxDataCacheBytes,
+                                       BlockCacheStatistics indexCacheStatistics, BlockCacheStatistics dataCacheStatistics) {
         this.cacheFile = cacheFile;
         this.keySerializer = keySerializer;
         this.serializer = valueSerializer;
         this.maxChildIndexEntries = maxChildIndexEntries;
         this.minIndexChildNodes = maxChildIndexEntries / 2;
-        BlockStore cachingStore = new CachingBlockStore(new FileBackedBlockStore(cacheFile), IndexBlock.class, FreeListBlockStore.FreeListBlock.class);
-        store = new StateCheckBlockStore(new FreeListBlockStore(cachingStore, maxFreeListEntries));
+        cachingStore = new CachingBlockStore(backingStore,
+                maxIndexCacheBytes, Arrays.asList(IndexBlock.class, FreeListBlockStore.FreeListBlock.class), indexCacheStatistics,
+                maxDataCacheBytes, Collections.singleton(DataBlock.class), dataCacheStatistics);
+        this.maxFreeListEntries = maxFreeListEntries;
+        freeListStore = new FreeListBlockStore(cachingStore, maxFreeListEntries);
+        store = new StateCheckBlockStore(freeListStore);
         try {
             open();
         } catch (Exception e) {
@@ -74,8 +116,17 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         return String.format("cache %s (%s)", cacheFile.getName(), cacheFile);
     }
 
+    /**
+     * Returns the file which holds the previous cache file while a compacted cache file is moved into its place. The file exists only
+     * when the move could not be done in one step, and the process died before it finished.
+     */
+    public static File getCompactionBackupFile(File cacheFile) {
+        return new File(cacheFile.getParentFile(), cacheFile.getName() + ".old");
+    }
+
     private void open() throws Exception {
         LOGGER.debug("Opening {}", this);
+        restoreAfterInterruptedCompaction();
         try {
             doOpen();
         } catch (CorruptedCacheException e) {
@@ -114,8 +165,9 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
     public V get(K key) {
         try {
             try {
-                DataBlock block = header.getRoot().get(key);
-                if (block != null) {
+                HashedKey<K> hashedKey = hashKey(key);
+                DataBlock block = header.getRoot().get(hashedKey);
+                if (block != null && block.hasKey(hashedKey)) {
                     return block.getValue();
                 }
                 return null;
@@ -128,39 +180,119 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         }
     }
 
+    /**
+     * Fetches the values of the given keys. The keys are looked up in hash order, so that a single walk down the tree is shared by
+     * all keys which fall under the same index block.
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        try {
+            List<HashedKey<K>> hashedKeys = hashKeys(keys);
+            Map<K, V> result = new HashMap<K, V>();
+            try {
+                header.getRoot().getAll(hashedKeys, 0, hashedKeys.size(), result);
+                return result;
+            } catch (CorruptedCacheException e) {
+                rebuild();
+                return new HashMap<K, V>();
+            }
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not read entries from %s.", this), e);
+        }
+    }
+
     public void put(K key, V value) {
         try {
-            MessageDigestStream digestStream = new MessageDigestStream();
-            keySerializer.write(digestStream, key);
-            long hashCode = digestStream.getChecksum();
-            Lookup lookup = header.getRoot().find(hashCode);
-            boolean needNewBlock = true;
-            if (lookup.entry != null) {
-                DataBlock block = store.read(lookup.entry.dataBlock, DataBlock.class);
-                needNewBlock = !block.useNewValue(value);
-                if (needNewBlock) {
-                    store.remove(block);
-                }
+            doPut(hashKey(key), value);
+            store.flush();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        }
+    }
+
+    /**
+     * Puts the given entries in hash order, and flushes the changes once at the end.
+     */
+    public void putAll(Map<? extends K, ? extends V> entries) {
+        try {
+            for (HashedKey<K> key : hashKeys(entries.keySet())) {
+                doPut(key, entries.get(key.key));
             }
+            store.flush();
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not add entries to %s.", this), e);
+        }
+    }
+
+    private void doPut(HashedKey<K> key, V value) throws Exception {
+        Lookup lookup = header.getRoot().find(key.hashCode);
+        boolean needNewBlock = true;
+        if (lookup.entry != null) {
+            DataBlock block = store.read(lookup.entry.dataBlock, DataBlock.class);
+            needNewBlock = !block.useNewValue(key, value);
             if (needNewBlock) {
-                DataBlock block = new DataBlock(value);
-                store.write(block);
-                lookup.indexBlock.put(hashCode, block.getPos());
+                store.remove(block);
+            }
+        }
+        if (needNewBlock) {
+            DataBlock block = new DataBlock(key, value);
+            store.write(block);
+            lookup.indexBlock.put(key.hashCode, block.getPos());
+        }
+    }
+
+    /**
+     * Visits every entry of this cache, in hash order. The action must not modify this cache.
+     */
+    public void visitEntries(Action<? super Map.Entry<K, V>> action) {
+        try {
+            try {
+                header.getRoot().visit(action);
+            } catch (CorruptedCacheException e) {
+                rebuild();
             }
-            store.flush();
         } catch (Exception e) {
-            throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+            throw new UncheckedIOException(String.format("Could not read entries from %s.", this), e);
         }
     }
 
+    private HashedKey<K> hashKey(K key) throws Exception {
+        ByteArrayOutputStream outstr = new ByteArrayOutputStream();
+        keySerializer.write(outstr, key);
+        byte[] serialisedKey = outstr.toByteArray();
+        return new HashedKey<K>(key, serialisedKey, hash(serialisedKey));
+    }
+
+    /**
+     * Calculates the hash which the index is ordered by. Different keys may have the same hash, so an entry is only returned when
+     * its serialized key matches the requested key.
+     */
+    long hash(byte[] serialisedKey) throws Exception {
+        MessageDigestStream digestStream = new MessageDigestStream();
+        digestStream.write(serialisedKey);
+        return digestStream.getChecksum();
+    }
+
+    private List<HashedKey<K>> hashKeys(Collection<? extends K> keys) throws Exception {
+        List<HashedKey<K>> hashedKeys = new ArrayList<HashedKey<K>>(keys.size());
+        for (K key : keys) {
+            hashedKeys.add(hashKey(key));
+        }
+        Collections.sort(hashedKeys);
+        return hashedKeys;
+    }
+
     public void remove(K key) {
         try {
-            Lookup lookup = header.getRoot().find(key);
+            HashedKey<K> hashedKey = hashKey(key);
+            Lookup lookup = header.getRoot().find(hashedKey.hashCode);
             if (lookup.entry == null) {
                 return;
             }
-            lookup.indexBlock.remove(lookup.entry);
             DataBlock block = store.read(lookup.entry.dataBlock, DataBlock.class);
+            if (!block.hasKey(hashedKey)) {
+                return;
+            }
+            lookup.indexBlock.remove(lookup.entry);
             store.remove(block);
             store.flush();
         } catch (Exception e) {
@@ -176,6 +308,113 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         return block;
     }
 
+    /**
+     * Compacts the cache file when it is at least {@link #DEFAULT_MIN_COMPACTION_FILE_SIZE} bytes long and more than
+     * {@link #DEFAULT_COMPACTION_THRESHOLD} of it is free space. The caller must hold an exclusive lock on the cache file.
+     *
+     * @return true if the cache file was compacted.
+     */
+    public boolean compactIfFragmented() {
+        return compactIfFragmented(DEFAULT_COMPACTION_THRESHOLD, DEFAULT_MIN_COMPACTION_FILE_SIZE);
+    }
+
+    /**
+     * Compacts the cache file when it is at least the given size and the given fraction of it is free space. The caller must hold an
+     * exclusive lock on the cache file.
+     *
+     * @return true if the cache file was compacted.
+     */
+    public boolean compactIfFragmented(double threshold, long minFileSize) {
+        long fileSize = cacheFile.length();
+        if (fileSize < minFileSize || fileSize == 0) {
+            return false;
+        }
+        long freeSpace;
+        try {
+            freeSpace = freeListStore.getFreeSpace();
+        } catch (CorruptedCacheException e) {
+            // Will be rebuilt on next access
+            return false;
+        }
+        if ((double) freeSpace / fileSize <= threshold) {
+            return false;
+        }
+        LOGGER.debug("Compacting {}. {} of {} bytes are free.", new Object[]{this, freeSpace, fileSize});
+        compact();
+        return true;
+    }
+
+    /**
+     * Rewrites the live entries of this cache into a new file, in key order, then replaces the cache file with the new file. The
+     * existing cache file is left unchanged if the rewrite fails. The caller must hold an exclusive lock on the cache file.
+     */
+    public void compact() {
+        File compactFile = new File(cacheFile.getParentFile(), cacheFile.getName() + ".compact");
+        try {
+            try {
+                store.flush();
+                compactFile.delete();
+                BTreePersistentIndexedCache<K, V> target = new BTreePersistentIndexedCache<K, V>(compactFile, keySerializer, serializer, maxChildIndexEntries, maxFreeListEntries);
+                try {
+                    header.getRoot().copyTo(target);
+                    target.store.flush();
+                } finally {
+                    target.close();
+                }
+            } catch (CorruptedCacheException e) {
+                compactFile.delete();
+                rebuild();
+                return;
+            }
+            close();
+            replaceCacheFile(compactFile);
+            open();
+        } catch (Exception e) {
+            compactFile.delete();
+            throw new UncheckedIOException(String.format("Could not compact %s.", this), e);
+        }
+    }
+
+    private void replaceCacheFile(File compactFile) throws IOException {
+        if (compactFile.renameTo(cacheFile)) {
+            return;
+        }
+        // Some platforms will not rename over an existing file. Move the cache file aside rather than deleting it, so that there is
+        // always a complete cache file to go back to
+        File backupFile = getCompactionBackupFile(cacheFile);
+        backupFile.delete();
+        if (!cacheFile.renameTo(backupFile)) {
+            throw new IOException(String.format("Could not replace %s with %s.", cacheFile, compactFile));
+        }
+        if (!compactFile.renameTo(cacheFile)) {
+            backupFile.renameTo(cacheFile);
+            throw new IOException(String.format("Could not replace %s with %s.", cacheFile, compactFile));
+        }
+        backupFile.delete();
+    }
+
+    private void restoreAfterInterruptedCompaction() throws IOException {
+        File backupFile = getCompactionBackupFile(cacheFile);
+        if (!backupFile.exists()) {
+            return;
+        }
+        if (cacheFile.exists()) {
+            // The compacted file was moved into place
+            backupFile.delete();
+        } else if (!backupFile.renameTo(cacheFile)) {
+            throw new IOException(String.format("Could not restore %s from %s.", cacheFile, backupFile));
+        }
+    }
+
+    private void append(long hashCode, DataBlock source, int count) throws Exception {
+        DataBlock block = new DataBlock(source);
+        store.write(block);
+        header.getRoot().find(hashCode).indexBlock.put(hashCode, block.getPos());
+        if (count % COMPACTION_FLUSH_INTERVAL == 0) {
+            store.flush();
+        }
+    }
+
     public void reset() {
         close();
         try {
@@ -185,8 +424,16 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         }
     }
 
+    public BlockCacheStatistics getIndexCacheStatistics() {
+        return cachingStore.getIndexCacheStatistics();
+    }
+
+    public BlockCacheStatistics getDataCacheStatistics() {
+        return cachingStore.getDataCacheStatistics();
+    }
+
     public void close() {
-        LOGGER.debug("Closing {}", this);
+        LOGGER.debug("Closing {}. Index block cache: {}. Data block cache: {}.", new Object[]{this, getIndexCacheStatistics(), getDataCacheStatistics()});
         try {
             store.close();
         } catch (Exception e) {
@@ -436,8 +683,8 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
             maybeSplit();
         }
 
-        public DataBlock get(K key) throws Exception {
-            Lookup lookup = find(key);
+        public DataBlock get(HashedKey<K> key) throws Exception {
+            Lookup lookup = find(key.hashCode);
             if (lookup.entry == null) {
                 return null;
             }
@@ -445,11 +692,60 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
             return store.read(lookup.entry.dataBlock, DataBlock.class);
         }
 
-        public Lookup find(K key) throws Exception {
-            MessageDigestStream digestStream = new MessageDigestStream();
-            keySerializer.write(digestStream, key);
-            long checksum = digestStream.getChecksum();
-            return find(checksum);
+        public void getAll(List<HashedKey<K>> keys, int from, int to, Map<K, V> result) throws Exception {
+            int next = from;
+            for (int index = 0; index <= entries.size() && next < to; index++) {
+                IndexEntry entry = index < entries.size() ? entries.get(index) : null;
+                int start = next;
+                while (next < to && (entry == null || keys.get(next).hashCode < entry.hashCode)) {
+                    next++;
+                }
+                if (next > start) {
+                    BlockPointer childBlockPos = entry == null ? tailPos : entry.childIndexBlock;
+                    if (!childBlockPos.isNull()) {
+                        load(childBlockPos, root, this, index).getAll(keys, start, next, result);
+                    }
+                }
+                while (entry != null && next < to && keys.get(next).hashCode == entry.hashCode) {
+                    DataBlock block = store.read(entry.dataBlock, DataBlock.class);
+                    if (block.hasKey(keys.get(next))) {
+                        result.put(keys.get(next).key, block.getValue());
+                    }
+                    next++;
+                }
+            }
+        }
+
+        public int copyTo(BTreePersistentIndexedCache<K, V> target) throws Exception {
+            return copyTo(target, 0);
+        }
+
+        private int copyTo(BTreePersistentIndexedCache<K, V> target, int count) throws Exception {
+            for (int index = 0; index < entries.size(); index++) {
+                IndexEntry entry = entries.get(index);
+                if (!entry.childIndexBlock.isNull()) {
+                    count = load(entry.childIndexBlock, root, this, index).copyTo(target, count);
+                }
+                target.append(entry.hashCode, store.read(entry.dataBlock, DataBlock.class), ++count);
+            }
+            if (!tailPos.isNull()) {
+                count = load(tailPos, root, this, entries.size()).copyTo(target, count);
+            }
+            return count;
+        }
+
+        public void visit(Action<? super Map.Entry<K, V>> action) throws Exception {
+            for (int index = 0; index < entries.size(); index++) {
+                IndexEntry entry = entries.get(index);
+                if (!entry.childIndexBlock.isNull()) {
+                    load(entry.childIndexBlock, root, this, index).visit(action);
+                }
+                DataBlock block = store.read(entry.dataBlock, DataBlock.class);
+                action.execute(new CacheEntry<K, V>(block.getKey(), block.getValue()));
+            }
+            if (!tailPos.isNull()) {
+                load(tailPos, root, this, entries.size()).visit(action);
+            }
         }
 
         private Lookup find(long hashCode) throws Exception {
@@ -631,43 +927,60 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
 
     private class DataBlock extends BlockPayload {
         private int size;
+        private byte[] serialisedKey;
         private byte[] serialisedValue;
-        private V value;
 
         private DataBlock() {
         }
 
-        public DataBlock(V value) throws Exception {
-            this.value = value;
+        public DataBlock(DataBlock source) {
+            serialisedKey = source.serialisedKey;
+            serialisedValue = source.serialisedValue;
+            size = serialisedValue.length;
+        }
+
+        public DataBlock(HashedKey<K> key, V value) throws Exception {
+            serialisedKey = key.serialisedKey;
             setValue(value);
             size = serialisedValue.length;
         }
 
+        public K getKey() throws Exception {
+            return keySerializer.read(new ByteArrayInputStream(serialisedKey));
+        }
+
         public void setValue(V value) throws Exception {
+            this.serialisedValue = serialise(value);
+        }
+
+        private byte[] serialise(V value) throws Exception {
             ByteArrayOutputStream outStr = new ByteArrayOutputStream();
             serializer.write(outStr, value);
-            this.serialisedValue = outStr.toByteArray();
+            return outStr.toByteArray();
         }
 
+        /**
+         * Deserializes a fresh value on each call. Data blocks are shared through the block cache, so a memoized value could be
+         * modified by one caller and seen by the next.
+         */
         public V getValue() throws Exception {
-            if (value == null) {
-                value = serializer.read(new ByteArrayInputStream(serialisedValue));
-            }
-            return value;
+            return serializer.read(new ByteArrayInputStream(serialisedValue));
         }
 
         @Override
         protected int getType() {
-            return 0x33;
+            return 0x34;
         }
 
         @Override
         protected int getSize() {
-            return 2 * Block.INT_SIZE + size;
+            return 3 * Block.INT_SIZE + serialisedKey.length + size;
         }
 
         public void read(DataInputStream instr) throws Exception {
             size = instr.readInt();
+            serialisedKey = new byte[instr.readInt()];
+            instr.readFully(serialisedKey);
             int bytes = instr.readInt();
             serialisedValue = new byte[bytes];
             instr.readFully(serialisedValue);
@@ -675,17 +988,74 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
 
         public void write(DataOutputStream outstr) throws Exception {
             outstr.writeInt(size);
+            outstr.writeInt(serialisedKey.length);
+            outstr.write(serialisedKey);
             outstr.writeInt(serialisedValue.length);
             outstr.write(serialisedValue);
         }
 
-        public boolean useNewValue(V value) throws Exception {
-            setValue(value);
-            boolean ok = serialisedValue.length <= size;
-            if (ok) {
-                store.write(this);
+        /**
+         * Returns true if this block holds the entry for the given key, rather than for another key with the same hash.
+         */
+        public boolean hasKey(HashedKey<K> key) {
+            return Arrays.equals(serialisedKey, key.serialisedKey);
+        }
+
+        public boolean useNewValue(HashedKey<K> key, V value) throws Exception {
+            if (!hasKey(key)) {
+                return false;
+            }
+            byte[] newValue = serialise(value);
+            if (newValue.length > size) {
+                return false;
             }
-            return ok;
+            serialisedValue = newValue;
+            store.write(this);
+            return true;
+        }
+    }
+
+    private static class HashedKey<K> implements Comparable<HashedKey<K>> {
+        final K key;
+        final byte[] serialisedKey;
+        final long hashCode;
+
+        private HashedKey(K key, byte[] serialisedKey, long hashCode) {
+            this.key = key;
+            this.serialisedKey = serialisedKey;
+            this.hashCode = hashCode;
+        }
+
+        public int compareTo(HashedKey<K> other) {
+            if (hashCode > other.hashCode) {
+                return 1;
+            }
+            if (hashCode < other.hashCode) {
+                return -1;
+            }
+            return 0;
+        }
+    }
+
+    private static class CacheEntry<K, V> implements Map.Entry<K, V> {
+        private final K key;
+        private final V value;
+
+        private CacheEntry(K key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public V setValue(V value) {
+            throw new UnsupportedOperationException();
         }
     }
 
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.btree;
+
+import java.io.*;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A redo log for the block writes made to a file between two flushes. The writes are first written to the journal file, then applied
+ * to the target file, then the journal is truncated. When a process dies part way through applying the writes, the complete journal is
+ * replayed the next time the file is opened. When it dies part way through writing the journal, the incomplete journal is discarded and
+ * the target file is left at its state as of the previous flush.
+ *
+ * <p>The journal is forced to disk before and after its commit marker is written, and the target file is forced to disk before the
+ * journal is truncated, so that the ordering above also holds when the machine, rather than just the process, fails.</p>
+ */
+class BlockJournal {
+    private static final int COMMIT_MARKER = 0x4A4E4C31;
+    private final File journalFile;
+    private final Map<Long, PendingWrite> pending = new LinkedHashMap<Long, PendingWrite>();
+    private RandomAccessFile journal;
+
+    BlockJournal(File journalFile) {
+        this.journalFile = journalFile;
+    }
+
+    /**
+     * Replays the journal into the given file, if the journal is complete, and then opens the journal.
+     *
+     * @return true if a journal was replayed.
+     */
+    public boolean open(RandomAccessFile target) throws IOException {
+        pending.clear();
+        boolean replayed = false;
+        if (journalFile.length() > 0) {
+            Map<Long, PendingWrite> writes = readJournal();
+            if (writes != null) {
+                apply(writes, target);
+                target.getFD().sync();
+                replayed = true;
+            }
+        }
+        journal = new RandomAccessFile(journalFile, "rw");
+        journal.setLength(0);
+        return replayed;
+    }
+
+    public void close() throws IOException {
+        pending.clear();
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
+        journalFile.delete();
+    }
+
+    public void add(long pos, long end, byte[] content) {
+        pending.put(pos, new PendingWrite(pos, end, content));
+    }
+
+    public PendingWrite get(long pos) {
+        return pending.get(pos);
+    }
+
+    public void discard() throws IOException {
+        pending.clear();
+        journal.setLength(0);
+    }
+
+    /**
+     * Writes the pending writes to the journal, then applies them to the given file.
+     */
+    public void commit(RandomAccessFile target) throws IOException {
+        if (pending.isEmpty()) {
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream outputStream = new DataOutputStream(bytes);
+        outputStream.writeInt(pending.size());
+        for (PendingWrite write : pending.values()) {
+            outputStream.writeLong(write.pos);
+            outputStream.writeLong(write.end);
+            outputStream.writeInt(write.content.length);
+            outputStream.write(write.content);
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes.toByteArray());
+        outputStream.writeLong(checksum.getValue());
+        outputStream.close();
+
+        journal.seek(0);
+        journal.write(bytes.toByteArray());
+        journal.getFD().sync();
+        journal.writeInt(COMMIT_MARKER);
+        journal.getFD().sync();
+
+        apply(pending, target);
+        target.getFD().sync();
+        pending.clear();
+        journal.setLength(0);
+    }
+
+    private Map<Long, PendingWrite> readJournal() throws IOException {
+        byte[] bytes = new byte[(int) journalFile.length()];
+        DataInputStream inputStream = new DataInputStream(new FileInputStream(journalFile));
+        try {
+            inputStream.readFully(bytes);
+        } finally {
+            inputStream.close();
+        }
+
+        try {
+            inputStream = new DataInputStream(new ByteArrayInputStream(bytes));
+            Map<Long, PendingWrite> writes = new LinkedHashMap<Long, PendingWrite>();
+            int count = inputStream.readInt();
+            for (int i = 0; i < count; i++) {
+                long pos = inputStream.readLong();
+                long end = inputStream.readLong();
+                int length = inputStream.readInt();
+                if (length < 0 || length > inputStream.available()) {
+                    return null;
+                }
+                byte[] content = new byte[length];
+                inputStream.readFully(content);
+                writes.put(pos, new PendingWrite(pos, end, content));
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(bytes, 0, bytes.length - inputStream.available());
+            if (inputStream.readLong() != checksum.getValue() || inputStream.readInt() != COMMIT_MARKER) {
+                return null;
+            }
+            return writes;
+        } catch (EOFException e) {
+            // Incomplete journal
+            return null;
+        }
+    }
+
+    private void apply(Map<Long, PendingWrite> writes, RandomAccessFile target) throws IOException {
+        for (PendingWrite write : writes.values()) {
+            target.seek(write.pos);
+            target.write(write.content);
+            if (target.length() < write.end) {
+                target.setLength(write.end);
+            }
+        }
+    }
+
+    static class PendingWrite {
+        final long pos;
+        final long end;
+        final byte[] content;
+
+        PendingWrite(long pos, long end, byte[] content) {
+            this.pos = pos;
+            this.end = end;
+            this.content = content;
+        }
+    }
+}
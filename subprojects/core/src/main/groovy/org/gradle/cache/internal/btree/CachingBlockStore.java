@@ -15,19 +15,44 @@
  */
 package org.gradle.cache.internal.btree;
 
-import org.apache.commons.collections.map.LRUMap;
-
 import java.util.*;
 
+/**
+ * A {@link BlockStore} which keeps recently used blocks in memory. Index and data blocks are cached separately, each bounded by a
+ * maximum number of bytes, so that a burst of data reads cannot evict the index.
+ */
 public class CachingBlockStore implements BlockStore {
     private final BlockStore store;
     private final Map<BlockPointer, BlockPayload> dirty = new LinkedHashMap<BlockPointer, BlockPayload>();
-    private final Map<BlockPointer, BlockPayload> indexBlockCache = new LRUMap(100);
-    private final Set<Class<?>> cachableTypes = new HashSet<Class<?>>();
+    private final BlockCache indexBlockCache;
+    private final BlockCache dataBlockCache;
+    private final Set<Class<?>> indexBlockTypes;
+    private final Set<Class<?>> dataBlockTypes;
+
+    public CachingBlockStore(BlockStore store, long maxIndexCacheBytes, Collection<? extends Class<? extends BlockPayload>> indexBlockTypes,
+                             long maxDataCacheBytes, Collection<? extends Class<? extends BlockPayload>> dataBlockTypes) {
+        this(store, maxIndexCacheBytes, indexBlockTypes, new BlockCacheStatistics(), maxDataCacheBytes, dataBlockTypes, new BlockCacheStatistics());
+    }
 
-    public CachingBlockStore(BlockStore store, Class<? extends BlockPayload>... cacheableBlockTypes) {
+    /**
+     * Creates a store which counts the hits, misses and evictions of its caches in the given statistics. The statistics can be shared
+     * by several stores for the same file, to count over more than one store.
+     */
+    public CachingBlockStore(BlockStore store, long maxIndexCacheBytes, Collection<? extends Class<? extends BlockPayload>> indexBlockTypes, BlockCacheStatistics indexCacheStatistics,
+                             long maxDataCacheBytes, Collection<? extends Class<? extends BlockPayload>> dataBlockTypes, BlockCacheStatistics dataCacheStatistics) {
         this.store = store;
-        cachableTypes.addAll(Arrays.asList(cacheableBlockTypes));
+        this.indexBlockCache = new BlockCache(maxIndexCacheBytes, indexCacheStatistics);
+        this.dataBlockCache = new BlockCache(maxDataCacheBytes, dataCacheStatistics);
+        this.indexBlockTypes = new HashSet<Class<?>>(indexBlockTypes);
+        this.dataBlockTypes = new HashSet<Class<?>>(dataBlockTypes);
+    }
+
+    public BlockCacheStatistics getIndexCacheStatistics() {
+        return indexBlockCache.statistics;
+    }
+
+    public BlockCacheStatistics getDataCacheStatistics() {
+        return dataBlockCache.statistics;
     }
 
     public void open(Runnable initAction, Factory factory) {
@@ -37,12 +62,14 @@ public class CachingBlockStore implements BlockStore {
     public void close() {
         flush();
         indexBlockCache.clear();
+        dataBlockCache.clear();
         store.close();
     }
 
     public void clear() {
         dirty.clear();
         indexBlockCache.clear();
+        dataBlockCache.clear();
         store.clear();
     }
 
@@ -63,6 +90,7 @@ public class CachingBlockStore implements BlockStore {
     public void remove(BlockPayload block) {
         dirty.remove(block.getPos());
         indexBlockCache.remove(block.getPos());
+        dataBlockCache.remove(block.getPos());
         store.remove(block);
     }
 
@@ -77,9 +105,12 @@ public class CachingBlockStore implements BlockStore {
         if (block != null) {
             return block;
         }
-        block = payloadType.cast(indexBlockCache.get(pos));
-        if (block != null) {
-            return block;
+        BlockCache cache = cacheFor(payloadType);
+        if (cache != null) {
+            block = payloadType.cast(cache.get(pos));
+            if (block != null) {
+                return block;
+            }
         }
         block = store.read(pos, payloadType);
         maybeCache(block);
@@ -92,9 +123,84 @@ public class CachingBlockStore implements BlockStore {
         dirty.put(block.getPos(), block);
     }
 
+    private BlockCache cacheFor(Class<?> payloadType) {
+        if (indexBlockTypes.contains(payloadType)) {
+            return indexBlockCache;
+        }
+        if (dataBlockTypes.contains(payloadType)) {
+            return dataBlockCache;
+        }
+        return null;
+    }
+
     private <T extends BlockPayload> void maybeCache(T block) {
-        if (cachableTypes.contains(block.getClass())) {
-            indexBlockCache.put(block.getPos(), block);
+        BlockCache cache = cacheFor(block.getClass());
+        if (cache != null) {
+            cache.put(block);
+        }
+    }
+
+    /**
+     * A least recently used cache of blocks, bounded by the total size of the cached blocks.
+     */
+    private static class BlockCache {
+        private final LinkedHashMap<BlockPointer, CachedBlock> blocks = new LinkedHashMap<BlockPointer, CachedBlock>(16, 0.75f, true);
+        private final BlockCacheStatistics statistics;
+        private final long maxBytes;
+        private long bytes;
+
+        private BlockCache(long maxBytes, BlockCacheStatistics statistics) {
+            this.maxBytes = maxBytes;
+            this.statistics = statistics;
+        }
+
+        public BlockPayload get(BlockPointer pos) {
+            CachedBlock cached = blocks.get(pos);
+            if (cached == null) {
+                statistics.miss();
+                return null;
+            }
+            statistics.hit();
+            return cached.block;
+        }
+
+        public void put(BlockPayload block) {
+            int size = block.getSize();
+            remove(block.getPos());
+            if (size > maxBytes) {
+                return;
+            }
+            blocks.put(block.getPos(), new CachedBlock(block, size));
+            bytes += size;
+            Iterator<CachedBlock> iterator = blocks.values().iterator();
+            while (bytes > maxBytes) {
+                CachedBlock eldest = iterator.next();
+                iterator.remove();
+                bytes -= eldest.size;
+                statistics.evicted();
+            }
+        }
+
+        public void remove(BlockPointer pos) {
+            CachedBlock cached = blocks.remove(pos);
+            if (cached != null) {
+                bytes -= cached.size;
+            }
+        }
+
+        public void clear() {
+            blocks.clear();
+            bytes = 0;
+        }
+    }
+
+    private static class CachedBlock {
+        private final BlockPayload block;
+        private final int size;
+
+        private CachedBlock(BlockPayload block, int size) {
+            this.block = block;
+            this.size = size;
         }
     }
 }
@@ -20,14 +20,29 @@ import org.gradle.api.UncheckedIOException;
 import java.io.*;
 import java.util.zip.CRC32;
 
+/**
+ * A {@link BlockStore} backed by a file. The blocks written between two calls to {@link #flush()} are written to a journal file before
+ * they are written to the cache file, so that the cache file can be recovered to its state at the most recent flush if the process
+ * dies while writing.
+ */
 public class FileBackedBlockStore implements BlockStore {
     private RandomAccessFile file;
     private final File cacheFile;
+    private final BlockJournal journal;
     private long nextBlock;
     private Factory factory;
 
     public FileBackedBlockStore(File cacheFile) {
         this.cacheFile = cacheFile;
+        this.journal = new BlockJournal(getJournalFile(cacheFile));
+    }
+
+    /**
+     * Returns the journal file used for the given cache file. The journal file exists only while the cache file is open, or when the
+     * process died while writing to the cache file.
+     */
+    public static File getJournalFile(File cacheFile) {
+        return new File(cacheFile.getParentFile(), cacheFile.getName() + ".journal");
     }
 
     @Override
@@ -39,6 +54,7 @@ public class FileBackedBlockStore implements BlockStore {
         this.factory = factory;
         try {
             file = new RandomAccessFile(cacheFile, "rw");
+            journal.open(file);
             nextBlock = file.length();
             if (file.length() == 0) {
                 runnable.run();
@@ -50,7 +66,12 @@ public class FileBackedBlockStore implements BlockStore {
 
     public void close() {
         try {
-            file.close();
+            try {
+                journal.commit(file);
+                journal.close();
+            } finally {
+                file.close();
+            }
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -58,6 +79,7 @@ public class FileBackedBlockStore implements BlockStore {
 
     public void clear() {
         try {
+            journal.discard();
             file.setLength(0);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
@@ -77,6 +99,11 @@ public class FileBackedBlockStore implements BlockStore {
     }
 
     public void flush() {
+        try {
+            journal.commit(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
@@ -168,10 +195,9 @@ public class FileBackedBlockStore implements BlockStore {
 
         public void write() throws Exception {
             long pos = getPos().getPos();
-            file.seek(pos);
 
-            Crc32OutputStream checkSumOutputStream = new Crc32OutputStream(new BufferedOutputStream(
-                    new RandomAccessFileOutputStream(file)));
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            Crc32OutputStream checkSumOutputStream = new Crc32OutputStream(content);
             DataOutputStream outputStream = new DataOutputStream(checkSumOutputStream);
 
             BlockPayload payload = getPayload();
@@ -189,22 +215,30 @@ public class FileBackedBlockStore implements BlockStore {
             outputStream.writeLong(checkSumOutputStream.checksum.getValue());
             outputStream.close();
 
-            // Pad
-            if (file.length() < finalSize) {
-                file.setLength(finalSize);
-            }
+            // Written to the file, and padded, on flush
+            journal.add(pos, finalSize, content.toByteArray());
         }
 
         public void read() throws Exception {
             long pos = getPos().getPos();
             assert pos >= 0;
-            if (pos + HEADER_SIZE >= file.length()) {
+
+            InputStream source;
+            long length;
+            BlockJournal.PendingWrite pendingWrite = journal.get(pos);
+            if (pendingWrite != null) {
+                source = new ByteArrayInputStream(pendingWrite.content);
+                length = pendingWrite.end;
+            } else {
+                source = new BufferedInputStream(new RandomAccessFileInputStream(file));
+                length = file.length();
+                file.seek(pos);
+            }
+            if (pos + HEADER_SIZE >= length) {
                 throw blockCorruptedException();
             }
-            file.seek(pos);
 
-            Crc32InputStream checkSumInputStream = new Crc32InputStream(new BufferedInputStream(
-                    new RandomAccessFileInputStream(file)));
+            Crc32InputStream checkSumInputStream = new Crc32InputStream(source);
             DataInputStream inputStream = new DataInputStream(checkSumInputStream);
 
             BlockPayload payload = getPayload();
@@ -221,7 +255,7 @@ public class FileBackedBlockStore implements BlockStore {
 
             // Read body
             payloadSize = inputStream.readInt();
-            if (pos + HEADER_SIZE + TAIL_SIZE + payloadSize > file.length()) {
+            if (pos + HEADER_SIZE + TAIL_SIZE + payloadSize > length) {
                 throw blockCorruptedException();
             }
             payload.read(inputStream);
@@ -264,29 +298,6 @@ public class FileBackedBlockStore implements BlockStore {
         }
     }
 
-    private static class RandomAccessFileOutputStream extends OutputStream {
-        private final RandomAccessFile file;
-
-        private RandomAccessFileOutputStream(RandomAccessFile file) {
-            this.file = file;
-        }
-
-        @Override
-        public void write(int i) throws IOException {
-            file.write(i);
-        }
-
-        @Override
-        public void write(byte[] bytes) throws IOException {
-            file.write(bytes);
-        }
-
-        @Override
-        public void write(byte[] bytes, int offset, int length) throws IOException {
-            file.write(bytes, offset, length);
-        }
-    }
-
     private static class Crc32InputStream extends FilterInputStream {
         private final CRC32 checksum;
 
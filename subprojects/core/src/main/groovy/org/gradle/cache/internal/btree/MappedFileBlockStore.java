@@ -0,0 +1,378 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.btree;
+
+import org.gradle.api.UncheckedIOException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link BlockStore} which accesses the cache file through a memory mapping, rather than seeking and reading or writing the file
+ * for each block. Uses the same file format as {@link FileBackedBlockStore}, including the CRC check for each block.
+ *
+ * <p>The mapping is grown in chunks of {@link #DEFAULT_CHUNK_SIZE} bytes, which also grows the file. The file is truncated to the
+ * blocks which have been allocated when the store is closed. The previous mapping is released whenever the mapping grows. Where the
+ * JVM does not allow a mapping to be released early, it is released only when it is garbage collected, and the file may then not be
+ * truncated on close.</p>
+ *
+ * <p>The files of this store are not journaled. Use {@link org.gradle.cache.DirectoryCacheBuilder#withMappedFiles()} to select this
+ * store for the indexed caches of a cache directory.</p>
+ */
+public class MappedFileBlockStore implements BlockStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedFileBlockStore.class);
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    private final File cacheFile;
+    private final int chunkSize;
+    private RandomAccessFile file;
+    private MappedByteBuffer buffer;
+    private long nextBlock;
+    private Factory factory;
+
+    public MappedFileBlockStore(File cacheFile) {
+        this(cacheFile, DEFAULT_CHUNK_SIZE);
+    }
+
+    public MappedFileBlockStore(File cacheFile, int chunkSize) {
+        this.cacheFile = cacheFile;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cache '%s'", cacheFile);
+    }
+
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            file = new RandomAccessFile(cacheFile, "rw");
+            nextBlock = file.length();
+            map(nextBlock);
+            if (nextBlock == 0) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void close() {
+        try {
+            try {
+                unmap();
+                if (file.length() != nextBlock) {
+                    // Discard the unused part of the last chunk. This fails on some platforms if the mapping could not be released,
+                    // in which case the unused part is left in place and new blocks are allocated after it
+                    try {
+                        file.setLength(nextBlock);
+                    } catch (IOException e) {
+                        // Ignore
+                    }
+                }
+            } finally {
+                file.close();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void clear() {
+        try {
+            unmap();
+            file.setLength(0);
+            nextBlock = 0;
+            map(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    public void flush() {
+    }
+
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(new BlockPointer(0), payloadType);
+    }
+
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long alloc(long length) {
+        long pos = nextBlock;
+        nextBlock += length;
+        return pos;
+    }
+
+    private void map(long minSize) throws IOException {
+        long size = Math.max(chunkSize, (minSize + chunkSize - 1) / chunkSize * chunkSize);
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException(String.format("Cannot map %s, as it is larger than %s bytes.", this, Integer.MAX_VALUE));
+        }
+        // Release the old mapping rather than leaving it for the garbage collector, as each mapping holds on to address space and a
+        // file handle. No views of the old mapping remain in use, as each block operation takes a fresh view of the current mapping
+        unmap();
+        buffer = file.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    private ByteBuffer mappedRegion(long end) throws IOException {
+        if (end > buffer.capacity()) {
+            map(end);
+        }
+        return buffer.duplicate();
+    }
+
+    private void unmap() {
+        if (buffer == null) {
+            return;
+        }
+        // The mapping is otherwise only released when the buffer is garbage collected, which prevents the file from being truncated
+        // on some platforms. Release it early where the JVM allows this
+        try {
+            Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(buffer);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            LOGGER.debug("Could not release the mapping of {}. It will be released when it is garbage collected.", this, e);
+        }
+        buffer = null;
+    }
+
+    private final class BlockImpl extends Block {
+        private static final int HEADER_SIZE = 2 + INT_SIZE;
+        private static final int TAIL_SIZE = LONG_SIZE;
+        static final int BLOCK_MARKER = 0xCC;
+
+        private BlockPointer pos;
+        private int payloadSize;
+
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload);
+            pos = null;
+            payloadSize = -1;
+        }
+
+        @Override
+        public boolean hasPos() {
+            return pos != null;
+        }
+
+        @Override
+        public BlockPointer getPos() {
+            if (pos == null) {
+                pos = new BlockPointer(alloc(getSize()));
+            }
+            return pos;
+        }
+
+        @Override
+        public void setPos(BlockPointer pos) {
+            assert this.pos == null && !pos.isNull();
+            this.pos = pos;
+        }
+
+        public int getSize() {
+            if (payloadSize < 0) {
+                payloadSize = getPayload().getSize();
+            }
+            return payloadSize + HEADER_SIZE + TAIL_SIZE;
+        }
+
+        @Override
+        public void setSize(int size) {
+            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+            assert newPayloadSize >= payloadSize;
+            payloadSize = newPayloadSize;
+        }
+
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + payloadSize);
+            DataOutputStream outputStream = new DataOutputStream(bytes);
+
+            BlockPayload payload = getPayload();
+
+            // Write header
+            outputStream.writeByte(BLOCK_MARKER);
+            outputStream.writeByte(payload.getType());
+            outputStream.writeInt(payloadSize);
+
+            // Write body
+            payload.write(outputStream);
+            outputStream.flush();
+
+            // Copy to the mapped region, followed by the checksum. The content must fit in the space allocated to the block, as the
+            // next block follows straight after it
+            byte[] content = bytes.toByteArray();
+            if (content.length > HEADER_SIZE + payloadSize) {
+                throw new IllegalStateException(String.format("Cannot write %s to %s, as its content of %s bytes is larger than the %s bytes allocated to it.",
+                        this, MappedFileBlockStore.this, content.length - HEADER_SIZE, payloadSize));
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(content, 0, content.length);
+            ByteBuffer region = mappedRegion(pos + HEADER_SIZE + TAIL_SIZE + payloadSize);
+            region.position((int) pos);
+            region.put(content);
+            region.putLong(checksum.getValue());
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            if (pos + HEADER_SIZE >= nextBlock) {
+                throw blockCorruptedException();
+            }
+            ByteBuffer region = mappedRegion(nextBlock);
+            region.position((int) pos);
+
+            Crc32InputStream checkSumInputStream = new Crc32InputStream(new ByteBufferInputStream(region));
+            DataInputStream inputStream = new DataInputStream(checkSumInputStream);
+
+            BlockPayload payload = getPayload();
+
+            // Read header
+            byte type = inputStream.readByte();
+            if (type != (byte) BLOCK_MARKER) {
+                throw blockCorruptedException();
+            }
+            type = inputStream.readByte();
+            if (type != (byte) payload.getType()) {
+                throw blockCorruptedException();
+            }
+
+            // Read body
+            payloadSize = inputStream.readInt();
+            if (pos + HEADER_SIZE + TAIL_SIZE + payloadSize > nextBlock) {
+                throw blockCorruptedException();
+            }
+            payload.read(inputStream);
+
+            // Read and verify checksum
+            long actualChecksum = checkSumInputStream.checksum.getValue();
+            long checksum = inputStream.readLong();
+            if (actualChecksum != checksum) {
+                throw blockCorruptedException();
+            }
+        }
+
+        public RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
+                    MappedFileBlockStore.this));
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+
+    private static class Crc32InputStream extends FilterInputStream {
+        private final CRC32 checksum;
+
+        private Crc32InputStream(InputStream inputStream) {
+            super(inputStream);
+            checksum = new CRC32();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b >= 0) {
+                checksum.update(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int max) throws IOException {
+            int count = in.read(bytes, offset, max);
+            if (count > 0) {
+                checksum.update(bytes, offset, count);
+            }
+            return count;
+        }
+    }
+}
@@ -17,6 +17,7 @@
 package org.gradle.execution;
 
 import groovy.lang.Closure;
+import org.gradle.api.Action;
 import org.gradle.api.CircularReferenceException;
 import org.gradle.api.Task;
 import org.gradle.api.execution.TaskExecutionGraphListener;
@@ -41,8 +42,13 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
 
     private final ListenerBroadcast<TaskExecutionGraphListener> graphListeners;
     private final ListenerBroadcast<TaskExecutionListener> taskListeners;
+    private final TaskPlanExecuter taskPlanExecuter;
     private final Map<Task, TaskInfo> executionPlan = new LinkedHashMap<Task, TaskInfo>();
+    private final Set<String> taskPaths = new HashSet<String>();
+    private List<Task> allTasks;
+    private final Object lock = new Object();
     private boolean populated;
+    private int batch;
     private Spec<? super Task> filter = Specs.satisfyAll();
     private TaskFailureHandler failureHandler = new TaskFailureHandler() {
         public void onTaskFailure(Task task) {
@@ -51,6 +57,11 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
     };
 
     public DefaultTaskGraphExecuter(ListenerManager listenerManager) {
+        this(listenerManager, new DefaultTaskPlanExecuter());
+    }
+
+    public DefaultTaskGraphExecuter(ListenerManager listenerManager, TaskPlanExecuter taskPlanExecuter) {
+        this.taskPlanExecuter = taskPlanExecuter;
         graphListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionGraphListener.class);
         taskListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionListener.class);
     }
@@ -69,6 +80,8 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
             sortedTasks.add(task);
         }
         fillDag(sortedTasks);
+        allTasks = null;
+        batch++;
         populated = true;
 
         logger.debug("Timing: Creating the DAG took " + clock.getTime());
@@ -84,6 +97,9 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
             logger.debug("Timing: Executing the DAG took " + clock.getTime());
         } finally {
             executionPlan.clear();
+            taskPaths.clear();
+            allTasks = null;
+            batch = 0;
         }
     }
 
@@ -93,49 +109,56 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
     }
 
     private void fillDag(Collection<? extends Task> tasks) {
-        Set<Task> visiting = new HashSet<Task>();
-        List<Task> queue = new ArrayList<Task>();
-        queue.addAll(tasks);
+        // Maps each task whose dependencies are being added to the plan to its dependencies, sorted
+        Map<Task, Task[]> visiting = new HashMap<Task, Task[]>();
+        LinkedList<Task> queue = new LinkedList<Task>(tasks);
         CachingTaskDependencyResolveContext context = new CachingTaskDependencyResolveContext();
 
         while (!queue.isEmpty()) {
-            Task task = queue.get(0);
+            Task task = queue.getFirst();
             if (!filter.isSatisfiedBy(task)) {
                 // Filtered - skip
-                queue.remove(0);
+                queue.removeFirst();
                 continue;
             }
             if (executionPlan.containsKey(task)) {
                 // Already in plan - skip
-                queue.remove(0);
+                queue.removeFirst();
                 continue;
             }
 
-            if (visiting.add(task)) {
+            Task[] dependsOnTasks = visiting.get(task);
+            if (dependsOnTasks == null) {
                 // Have not seen this task before - add its dependencies to the head of the queue and leave this
                 // task in the queue
-                Set<Task> dependsOnTasks = new TreeSet<Task>(Collections.reverseOrder());
-                dependsOnTasks.addAll(context.getDependencies(task));
-                for (Task dependsOnTask : dependsOnTasks) {
-                    if (visiting.contains(dependsOnTask)) {
+                Set<? extends Task> dependencies = context.getDependencies(task);
+                dependsOnTasks = dependencies.toArray(new Task[dependencies.size()]);
+                Arrays.sort(dependsOnTasks);
+                visiting.put(task, dependsOnTasks);
+                for (int i = dependsOnTasks.length - 1; i >= 0; i--) {
+                    Task dependsOnTask = dependsOnTasks[i];
+                    if (visiting.containsKey(dependsOnTask)) {
                         throw new CircularReferenceException(String.format(
                                 "Circular dependency between tasks. Cycle includes [%s, %s].", task, dependsOnTask));
                     }
-                    queue.add(0, dependsOnTask);
+                    queue.addFirst(dependsOnTask);
                 }
             } else {
                 // Have visited this task's dependencies - add it to the end of the plan
-                queue.remove(0);
+                queue.removeFirst();
                 visiting.remove(task);
-                Set<TaskInfo> dependencies = new HashSet<TaskInfo>();
-                for (Task dependency : context.getDependencies(task)) {
+                Set<TaskInfo> dependencies = dependsOnTasks.length == 0
+                        ? Collections.<TaskInfo>emptySet()
+                        : new HashSet<TaskInfo>();
+                for (Task dependency : dependsOnTasks) {
                     TaskInfo dependencyInfo = executionPlan.get(dependency);
                     if (dependencyInfo != null) {
                         dependencies.add(dependencyInfo);
                     }
                     // else - the dependency has been filtered, so ignore it
                 }
-                executionPlan.put(task, new TaskInfo((TaskInternal) task, dependencies));
+                executionPlan.put(task, new TaskInfo((TaskInternal) task, dependencies, batch));
+                taskPaths.add(task.getPath());
             }
         }
     }
@@ -172,31 +195,32 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
         this.failureHandler = handler;
     }
 
-    private void doExecute(Iterable<? extends TaskInfo> tasks) {
-        for (TaskInfo task : tasks) {
-            executeTask(task);
-        }
+    private void doExecute(Collection<TaskInfo> tasks) {
+        taskPlanExecuter.process(tasks, new Action<TaskInfo>() {
+            public void execute(TaskInfo taskInfo) {
+                executeTask(taskInfo);
+            }
+        });
     }
 
     private void executeTask(TaskInfo taskInfo) {
-        TaskInternal task = taskInfo.task;
-        for (TaskInfo dependency : taskInfo.dependencies) {
-            if (!dependency.executed) {
-                // Cannot execute this task, as some dependencies have not been executed
-                return;
-            }
+        TaskInternal task = taskInfo.getTask();
+        synchronized (lock) {
+            taskListeners.getSource().beforeExecute(task);
         }
-        
-        taskListeners.getSource().beforeExecute(task);
         try {
             task.executeWithoutThrowingTaskFailure();
             if (task.getState().getFailure() != null) {
-                failureHandler.onTaskFailure(task);
+                synchronized (lock) {
+                    failureHandler.onTaskFailure(task);
+                }
             } else {
-                taskInfo.executed = true;
+                taskInfo.executed();
             }
         } finally {
-            taskListeners.getSource().afterExecute(task, task.getState());
+            synchronized (lock) {
+                taskListeners.getSource().afterExecute(task, task.getState());
+            }
         }
     }
 
@@ -208,17 +232,15 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
     public boolean hasTask(String path) {
         assertPopulated();
         assert path != null && path.length() > 0;
-        for (Task task : getAllTasks()) {
-            if (task.getPath().equals(path)) {
-                return true;
-            }
-        }
-        return false;
+        return taskPaths.contains(path);
     }
 
     public List<Task> getAllTasks() {
         assertPopulated();
-        return new ArrayList<Task>(executionPlan.keySet());
+        if (allTasks == null) {
+            allTasks = Collections.unmodifiableList(new ArrayList<Task>(executionPlan.keySet()));
+        }
+        return allTasks;
     }
 
     private void assertPopulated() {
@@ -227,15 +249,4 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
                     "Task information is not available, as this task execution graph has not been populated.");
         }
     }
-    
-    private static class TaskInfo {
-        private final TaskInternal task;
-        private final Set<TaskInfo> dependencies;
-        private boolean executed;
-
-        private TaskInfo(TaskInternal task, Set<TaskInfo> dependencies) {
-            this.task = task;
-            this.dependencies = dependencies;
-        }
-    }
 }
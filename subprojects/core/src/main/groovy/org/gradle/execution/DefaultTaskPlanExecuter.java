@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution;
+
+import org.gradle.api.Action;
+
+import java.util.Collection;
+
+/**
+ * Executes the tasks of a plan one at a time, in plan order, on the calling thread.
+ */
+public class DefaultTaskPlanExecuter implements TaskPlanExecuter {
+    public void process(Collection<TaskInfo> plan, Action<? super TaskInfo> taskWorker) {
+        for (TaskInfo taskInfo : plan) {
+            if (!taskInfo.allDependenciesExecuted()) {
+                // Cannot execute this task, as some dependencies have not been executed
+                continue;
+            }
+            taskWorker.execute(taskInfo);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution;
+
+import org.gradle.api.Action;
+import org.gradle.api.internal.TaskInternal;
+import org.gradle.internal.UncheckedException;
+import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.messaging.concurrent.StoppableExecutor;
+
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Executes the tasks of a plan using a fixed number of worker threads. A task is started as soon as all of its
+ * dependencies have completed, and all tasks of earlier batches have completed.
+ *
+ * <p>When several tasks are ready, the task with the longest remaining path through the plan is started first, so that
+ * long chains of tasks are not left until last. The length of a path is estimated from the durations recorded in a
+ * {@link TaskDurationHistory}. Tasks with no recorded duration are counted as taking {@value #UNKNOWN_DURATION}ms. Ties
+ * are broken using plan order.</p>
+ */
+public class ParallelTaskPlanExecuter implements TaskPlanExecuter {
+    static final long UNKNOWN_DURATION = 1;
+    private final ExecutorFactory executorFactory;
+    private final TaskDurationHistory durationHistory;
+    private final int maxWorkers;
+
+    public ParallelTaskPlanExecuter(ExecutorFactory executorFactory, TaskDurationHistory durationHistory, int maxWorkers) {
+        if (maxWorkers < 1) {
+            throw new IllegalArgumentException("Not a valid number of worker threads: " + maxWorkers);
+        }
+        this.executorFactory = executorFactory;
+        this.durationHistory = durationHistory;
+        this.maxWorkers = maxWorkers;
+    }
+
+    public void process(Collection<TaskInfo> plan, Action<? super TaskInfo> taskWorker) {
+        ExecutionState state = new ExecutionState(plan, getDurations(plan));
+        StoppableExecutor executor = executorFactory.create("Task worker");
+        try {
+            int workers = Math.min(maxWorkers, plan.size());
+            for (int i = 0; i < workers; i++) {
+                executor.execute(new TaskWorker(state, taskWorker));
+            }
+        } finally {
+            executor.stop();
+        }
+        state.rethrowFailure();
+    }
+
+    private Map<TaskInternal, Long> getDurations(Collection<TaskInfo> plan) {
+        List<TaskInternal> tasks = new ArrayList<TaskInternal>(plan.size());
+        for (TaskInfo taskInfo : plan) {
+            tasks.add(taskInfo.getTask());
+        }
+        return durationHistory.getDurations(tasks);
+    }
+
+    private class TaskWorker implements Runnable {
+        private final ExecutionState state;
+        private final Action<? super TaskInfo> taskWorker;
+
+        private TaskWorker(ExecutionState state, Action<? super TaskInfo> taskWorker) {
+            this.state = state;
+            this.taskWorker = taskWorker;
+        }
+
+        public void run() {
+            TaskInfo taskInfo;
+            while ((taskInfo = state.takeNextTask()) != null) {
+                try {
+                    taskWorker.execute(taskInfo);
+                } catch (Throwable t) {
+                    state.abort(t);
+                } finally {
+                    state.taskCompleted(taskInfo);
+                }
+            }
+        }
+    }
+
+    private static class ExecutionState {
+        private final Lock lock = new ReentrantLock();
+        private final Condition stateChanged = lock.newCondition();
+        private final Map<TaskInfo, ScheduledTask> scheduled = new HashMap<TaskInfo, ScheduledTask>();
+        private final SortedSet<ScheduledTask> ready = new TreeSet<ScheduledTask>();
+        private final int[] incompleteTasksPerBatch;
+        private int currentBatch;
+        private int incompleteTasks;
+        private Throwable failure;
+
+        private ExecutionState(Collection<TaskInfo> plan, Map<TaskInternal, Long> durations) {
+            int batches = 0;
+            for (TaskInfo taskInfo : plan) {
+                batches = Math.max(batches, taskInfo.getBatch() + 1);
+            }
+            incompleteTasksPerBatch = new int[batches];
+
+            List<ScheduledTask> tasks = new ArrayList<ScheduledTask>(plan.size());
+            for (TaskInfo taskInfo : plan) {
+                ScheduledTask task = new ScheduledTask(taskInfo, tasks.size());
+                tasks.add(task);
+                scheduled.put(taskInfo, task);
+                incompleteTasksPerBatch[taskInfo.getBatch()]++;
+            }
+            incompleteTasks = plan.size();
+            for (ScheduledTask task : tasks) {
+                for (TaskInfo dependency : task.taskInfo.getDependencies()) {
+                    scheduled.get(dependency).dependents.add(task);
+                    task.incompleteDependencies++;
+                }
+            }
+
+            // The plan is ordered so that each task follows its dependencies, so visit it in reverse to calculate the
+            // remaining path of each task from the remaining paths of its dependents
+            for (int i = tasks.size() - 1; i >= 0; i--) {
+                ScheduledTask task = tasks.get(i);
+                Long duration = durations.get(task.taskInfo.getTask());
+                long longestDependentPath = 0;
+                for (ScheduledTask dependent : task.dependents) {
+                    longestDependentPath = Math.max(longestDependentPath, dependent.remainingPath);
+                }
+                task.remainingPath = (duration != null ? duration : UNKNOWN_DURATION) + longestDependentPath;
+            }
+
+            for (ScheduledTask task : tasks) {
+                if (task.incompleteDependencies == 0) {
+                    ready.add(task);
+                }
+            }
+            advanceBatch();
+        }
+
+        /**
+         * Blocks until a task can be started. Returns null when there are no more tasks to start.
+         */
+        public TaskInfo takeNextTask() {
+            lock.lock();
+            try {
+                while (true) {
+                    if (failure != null || incompleteTasks == 0) {
+                        return null;
+                    }
+                    if (!ready.isEmpty() && ready.first().taskInfo.getBatch() <= currentBatch) {
+                        ScheduledTask next = ready.first();
+                        ready.remove(next);
+                        return next.taskInfo;
+                    }
+                    try {
+                        stateChanged.await();
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.asUncheckedException(e);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void taskCompleted(TaskInfo taskInfo) {
+            lock.lock();
+            try {
+                LinkedList<ScheduledTask> completed = new LinkedList<ScheduledTask>();
+                completed.add(scheduled.get(taskInfo));
+                while (!completed.isEmpty()) {
+                    ScheduledTask task = completed.removeFirst();
+                    incompleteTasks--;
+                    incompleteTasksPerBatch[task.taskInfo.getBatch()]--;
+                    for (ScheduledTask dependent : task.dependents) {
+                        dependent.incompleteDependencies--;
+                        if (dependent.incompleteDependencies > 0) {
+                            continue;
+                        }
+                        if (dependent.taskInfo.allDependenciesExecuted()) {
+                            ready.add(dependent);
+                        } else {
+                            // Cannot execute this task, as some dependencies have not been executed
+                            completed.add(dependent);
+                        }
+                    }
+                }
+                advanceBatch();
+                stateChanged.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void abort(Throwable throwable) {
+            lock.lock();
+            try {
+                if (failure == null) {
+                    failure = throwable;
+                }
+                stateChanged.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public void rethrowFailure() {
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            if (failure != null) {
+                throw UncheckedException.asUncheckedException(failure);
+            }
+        }
+
+        private void advanceBatch() {
+            while (currentBatch < incompleteTasksPerBatch.length && incompleteTasksPerBatch[currentBatch] == 0) {
+                currentBatch++;
+            }
+        }
+    }
+
+    private static class ScheduledTask implements Comparable<ScheduledTask> {
+        private final TaskInfo taskInfo;
+        private final int ordinal;
+        private final List<ScheduledTask> dependents = new ArrayList<ScheduledTask>();
+        private int incompleteDependencies;
+        private long remainingPath;
+
+        private ScheduledTask(TaskInfo taskInfo, int ordinal) {
+            this.taskInfo = taskInfo;
+            this.ordinal = ordinal;
+        }
+
+        /**
+         * Orders tasks by batch, then longest remaining path first, then plan order.
+         */
+        public int compareTo(ScheduledTask other) {
+            if (taskInfo.getBatch() != other.taskInfo.getBatch()) {
+                return taskInfo.getBatch() - other.taskInfo.getBatch();
+            }
+            if (remainingPath != other.remainingPath) {
+                return remainingPath > other.remainingPath ? -1 : 1;
+            }
+            return ordinal - other.ordinal;
+        }
+    }
+}
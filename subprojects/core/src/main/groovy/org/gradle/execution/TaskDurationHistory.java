@@ -0,0 +1,38 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution;
+
+import org.gradle.api.internal.TaskInternal;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Records how long tasks take to execute, so that the duration of a task can be estimated before it is executed.
+ */
+public interface TaskDurationHistory {
+    /**
+     * Returns the durations, in milliseconds, recorded for the given tasks. Tasks with no recorded duration are not included in the
+     * result.
+     */
+    Map<TaskInternal, Long> getDurations(Collection<? extends TaskInternal> tasks);
+
+    /**
+     * Records the duration, in milliseconds, of an execution of the given task.
+     */
+    void recordDuration(TaskInternal task, long duration);
+}
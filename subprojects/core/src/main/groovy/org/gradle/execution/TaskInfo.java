@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution;
+
+import org.gradle.api.internal.TaskInternal;
+
+import java.util.Set;
+
+/**
+ * A task in the execution plan, along with the tasks it depends on.
+ */
+public class TaskInfo {
+    private final TaskInternal task;
+    private final Set<TaskInfo> dependencies;
+    private final int batch;
+    private volatile boolean executed;
+
+    public TaskInfo(TaskInternal task, Set<TaskInfo> dependencies, int batch) {
+        this.task = task;
+        this.dependencies = dependencies;
+        this.batch = batch;
+    }
+
+    public TaskInternal getTask() {
+        return task;
+    }
+
+    /**
+     * Returns the tasks in the plan which must execute before this task.
+     */
+    public Set<TaskInfo> getDependencies() {
+        return dependencies;
+    }
+
+    /**
+     * Returns the index of the batch of tasks this task was added to the plan with. All tasks of earlier batches are
+     * executed before any task of a later batch.
+     */
+    public int getBatch() {
+        return batch;
+    }
+
+    /**
+     * Returns true if this task has executed successfully.
+     */
+    public boolean isExecuted() {
+        return executed;
+    }
+
+    public void executed() {
+        executed = true;
+    }
+
+    /**
+     * Returns true when all dependencies of this task have executed successfully.
+     */
+    public boolean allDependenciesExecuted() {
+        for (TaskInfo dependency : dependencies) {
+            if (!dependency.executed) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return task.getPath();
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution;
+
+import org.gradle.api.Action;
+
+import java.util.Collection;
+
+/**
+ * Decides when and on which thread each task of an execution plan is executed.
+ */
+public interface TaskPlanExecuter {
+    /**
+     * Executes the given plan, using the given action to execute each task. A task is executed only once all of its
+     * dependencies have executed successfully. Tasks whose dependencies failed are skipped. Stops executing new tasks
+     * as soon as the action throws an exception, and rethrows that exception once running tasks have completed.
+     *
+     * @param plan The tasks to execute, in dependency order.
+     * @param taskWorker The action which executes a single task.
+     */
+    void process(Collection<TaskInfo> plan, Action<? super TaskInfo> taskWorker);
+}
@@ -55,6 +55,9 @@ public class DefaultCommandLineConverter extends AbstractCommandLineConverter<St
     private static final String OFFLINE = "offline";
     private static final String REFRESH = "refresh";
     private static final String PROJECT_CACHE_DIR = "project-cache-dir";
+    private static final String PARALLEL_THREADS = "parallel-threads";
+    private static final String BUILD_CACHE = "build-cache";
+    private static final String CONTINUOUS = "continuous";
 
     private final CommandLineConverter<LoggingConfiguration> loggingConfigurationCommandLineConverter = new LoggingCommandLineConverter();
     private final SystemPropertiesCommandLineConverter systemPropertiesCommandLineConverter = new SystemPropertiesCommandLineConverter();
@@ -84,6 +87,9 @@ public class DefaultCommandLineConverter extends AbstractCommandLineConverter<St
         parser.option(PROFILE).hasDescription("Profiles build execution time and generates a report in the <build_dir>/reports/profile directory.");
         parser.option(CONTINUE).hasDescription("Continues task execution after a task failure.").experimental();
         parser.option(OFFLINE).hasDescription("The build should operate without accessing network resources.");
+        parser.option(PARALLEL_THREADS).hasArgument().hasDescription("Specifies the number of threads to use to execute independent tasks concurrently.").experimental();
+        parser.option(BUILD_CACHE).hasDescription("Reuses task outputs from the task output cache.").experimental();
+        parser.option(CONTINUOUS).hasDescription("Executes the build again whenever an input file of the executed tasks changes.").experimental();
         parser.option(REFRESH).hasArguments().hasDescription("Refresh the state of resources of the type(s) specified. Currently only 'dependencies' is supported.");
     }
 
@@ -187,6 +193,23 @@ public class DefaultCommandLineConverter extends AbstractCommandLineConverter<St
             startParameter.setOffline(true);
         }
         
+        if (options.hasOption(PARALLEL_THREADS)) {
+            String threads = options.option(PARALLEL_THREADS).getValue();
+            try {
+                startParameter.setParallelThreadCount(Integer.parseInt(threads));
+            } catch (IllegalArgumentException e) {
+                throw new CommandLineArgumentException(String.format("Not a valid number of parallel threads: '%s'.", threads));
+            }
+        }
+
+        if (options.hasOption(BUILD_CACHE)) {
+            startParameter.setBuildCacheEnabled(true);
+        }
+
+        if (options.hasOption(CONTINUOUS)) {
+            startParameter.setContinuous(true);
+        }
+
         if (options.hasOption(REFRESH)) {
             RefreshOptions refreshOptions = RefreshOptions.fromCommandLineOptions(options.option(REFRESH).getValues());
             startParameter.setRefreshOptions(refreshOptions);
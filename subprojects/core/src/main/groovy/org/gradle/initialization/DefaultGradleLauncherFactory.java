@@ -26,6 +26,7 @@ import org.gradle.api.internal.project.TopLevelBuildServiceRegistry;
 import org.gradle.api.logging.Logging;
 import org.gradle.api.logging.StandardOutputListener;
 import org.gradle.cache.CacheRepository;
+import org.gradle.cache.internal.CacheFactory;
 import org.gradle.cli.CommandLineConverter;
 import org.gradle.configuration.BuildConfigurer;
 import org.gradle.execution.BuildExecuter;
@@ -35,6 +36,7 @@ import org.gradle.listener.ListenerManager;
 import org.gradle.logging.LoggingManagerInternal;
 import org.gradle.logging.ProgressLoggerFactory;
 import org.gradle.logging.StyledTextOutputFactory;
+import org.gradle.process.internal.WorkerProcessPool;
 import org.gradle.profile.ProfileListener;
 
 import java.util.Arrays;
@@ -45,18 +47,28 @@ import java.util.Arrays;
 public class DefaultGradleLauncherFactory implements GradleLauncherFactory {
     private final ServiceRegistry sharedServices;
     private final NestedBuildTracker tracker;
+    private final WorkerProcessPool workerProcessPool;
     private CommandLineConverter<StartParameter> commandLineConverter;
 
     public DefaultGradleLauncherFactory(ServiceRegistry loggingServices) {
-        this(new GlobalServicesRegistry(loggingServices));
+        this(new GlobalServicesRegistry(loggingServices), null);
+    }
+
+    /**
+     * Creates a factory whose builds keep reusable worker processes in the given pool, so that a later build can reuse
+     * them. The caller is responsible for stopping the pool.
+     */
+    public DefaultGradleLauncherFactory(ServiceRegistry loggingServices, WorkerProcessPool workerProcessPool) {
+        this(new GlobalServicesRegistry(loggingServices), workerProcessPool);
     }
     
     public DefaultGradleLauncherFactory() {
-        this(new GlobalServicesRegistry());
+        this(new GlobalServicesRegistry(), null);
     }
 
-    private DefaultGradleLauncherFactory(GlobalServicesRegistry globalServices) {
+    private DefaultGradleLauncherFactory(GlobalServicesRegistry globalServices, WorkerProcessPool workerProcessPool) {
         sharedServices = globalServices;
+        this.workerProcessPool = workerProcessPool;
         tracker = new NestedBuildTracker();
 
         // Register default loggers 
@@ -99,7 +111,7 @@ public class DefaultGradleLauncherFactory implements GradleLauncherFactory {
     }
 
     private DefaultGradleLauncher doNewInstance(StartParameter startParameter, BuildRequestMetaData requestMetaData) {
-        TopLevelBuildServiceRegistry serviceRegistry = new TopLevelBuildServiceRegistry(sharedServices, startParameter);
+        TopLevelBuildServiceRegistry serviceRegistry = new TopLevelBuildServiceRegistry(sharedServices, startParameter, workerProcessPool);
         serviceRegistry.add(BuildRequestMetaData.class, requestMetaData);
         serviceRegistry.add(BuildClientMetaData.class, requestMetaData.getClient());
         ListenerManager listenerManager = serviceRegistry.get(ListenerManager.class);
@@ -119,7 +131,7 @@ public class DefaultGradleLauncherFactory implements GradleLauncherFactory {
         listenerManager.addListener(new BuildCleanupListener(serviceRegistry));
 
         if (startParameter.isProfile()) {
-            listenerManager.addListener(new ProfileListener(requestMetaData.getBuildTimeClock().getStartTime()));
+            listenerManager.addListener(new ProfileListener(requestMetaData.getBuildTimeClock().getStartTime(), serviceRegistry.get(CacheFactory.class)));
         }
 
         GradleInternal gradle = serviceRegistry.get(Instantiator.class).newInstance(DefaultGradle.class, tracker.getCurrentBuild(), startParameter, serviceRegistry);
@@ -49,6 +49,15 @@ public interface ObjectConnection extends Addressable, AsyncStoppable {
      */
     void addIncoming(Class<?> type, Dispatch<? super MethodInvocation> dispatch);
 
+    /**
+     * Registers an action to run when the peer disconnects, either because it stopped the connection or because it
+     * went away. The action is not run once this connection has been asked to stop. When the peer has already
+     * disconnected, the action is run immediately.
+     *
+     * @param disconnectAction The action to run.
+     */
+    void onDisconnect(Runnable disconnectAction);
+
     /**
      * Commences a graceful stop of this connection. Stops accepting outgoing messages. Requests that the peer stop
      * sending incoming messages.
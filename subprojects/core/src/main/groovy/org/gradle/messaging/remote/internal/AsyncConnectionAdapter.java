@@ -17,41 +17,60 @@ package org.gradle.messaging.remote.internal;
 
 import org.gradle.internal.CompositeStoppable;
 import org.gradle.internal.Stoppable;
+import org.gradle.internal.UncheckedException;
 import org.gradle.messaging.concurrent.ExecutorFactory;
 import org.gradle.messaging.concurrent.StoppableExecutor;
 import org.gradle.messaging.dispatch.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.CountDownLatch;
 
 /**
  * Adapts a {@link Connection} into an {@link AsyncConnection}.
+ *
+ * <p>Each adapter uses its own threads to run its protocol stack. For a {@link PushConnection}, the adapter sends messages
+ * from the thread of the protocol stack and the connection pushes incoming messages to the adapter, so the adapter needs no
+ * further threads. For other connections, the adapter uses its own threads to send and receive messages.</p>
  */
 public class AsyncConnectionAdapter<T> implements AsyncConnection<T>, Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncConnectionAdapter.class);
     private final Connection<T> connection;
     private final AsyncReceive<T> incoming;
     private final ProtocolStack<T> stack;
     private final AsyncDispatch<T> outgoing;
     private final Set<Stoppable> executors = new HashSet<Stoppable>();
+    private final CountDownLatch pushFinished = new CountDownLatch(1);
 
     public AsyncConnectionAdapter(Connection<T> connection, DispatchFailureHandler<? super T> dispatchFailureHandler, ExecutorFactory executor, Protocol<T>... protocols) {
         this.connection = connection;
 
-        StoppableExecutor outgoingExecutor = executor.create(String.format("%s send", connection));
-        executors.add(outgoingExecutor);
-        outgoing = new AsyncDispatch<T>(outgoingExecutor);
-        outgoing.dispatchTo(new FailureHandlingDispatch<T>(connection, dispatchFailureHandler));
-
         StoppableExecutor dispatchExecutor = executor.create(String.format("%s dispatch", connection));
         executors.add(dispatchExecutor);
         stack = new ProtocolStack<T>(dispatchExecutor, dispatchFailureHandler, dispatchFailureHandler, protocols);
-        stack.getBottom().dispatchTo(outgoing);
 
-        StoppableExecutor incomingExecutor = executor.create(String.format("%s receive", connection));
-        executors.add(incomingExecutor);
-        incoming = new AsyncReceive<T>(incomingExecutor);
-        incoming.dispatchTo(stack.getBottom());
-        incoming.receiveFrom(new ConnectionReceive<T>(connection));
+        if (connection instanceof PushConnection) {
+            outgoing = null;
+            incoming = null;
+            stack.getBottom().dispatchTo(new FailureHandlingDispatch<T>(connection, dispatchFailureHandler));
+            ((PushConnection<T>) connection).receiveTo(new StackReceiver());
+        } else {
+            pushFinished.countDown();
+
+            StoppableExecutor outgoingExecutor = executor.create(String.format("%s send", connection));
+            executors.add(outgoingExecutor);
+            outgoing = new AsyncDispatch<T>(outgoingExecutor);
+            outgoing.dispatchTo(new FailureHandlingDispatch<T>(connection, dispatchFailureHandler));
+            stack.getBottom().dispatchTo(outgoing);
+
+            StoppableExecutor incomingExecutor = executor.create(String.format("%s receive", connection));
+            executors.add(incomingExecutor);
+            incoming = new AsyncReceive<T>(incomingExecutor);
+            incoming.dispatchTo(stack.getBottom());
+            incoming.receiveFrom(new ConnectionReceive<T>(connection));
+        }
     }
 
     public void dispatch(T message) {
@@ -63,7 +82,36 @@ public class AsyncConnectionAdapter<T> implements AsyncConnection<T>, Stoppable
     }
 
     public void stop() {
-        new CompositeStoppable(stack, outgoing, connection, incoming).add(executors).stop();
+        new CompositeStoppable(stack, outgoing, connection, incoming, new Stoppable() {
+            public void stop() {
+                awaitPushFinished();
+            }
+        }).add(executors).stop();
+    }
+
+    private void awaitPushFinished() {
+        try {
+            pushFinished.await();
+        } catch (InterruptedException e) {
+            throw UncheckedException.asUncheckedException(e);
+        }
+    }
+
+    private class StackReceiver implements PushConnection.Receiver<T> {
+        public void dispatch(T message) {
+            stack.getBottom().dispatch(message);
+        }
+
+        public void endOfStream(Throwable failure) {
+            try {
+                if (failure != null) {
+                    LOGGER.error(String.format("Could not receive message from %s.", connection), failure);
+                }
+                stack.requestStop();
+            } finally {
+                pushFinished.countDown();
+            }
+        }
     }
 
     private class ConnectionReceive<T> implements Receive<T> {
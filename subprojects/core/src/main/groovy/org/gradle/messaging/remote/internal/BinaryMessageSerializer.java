@@ -0,0 +1,279 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.remote.internal;
+
+import org.gradle.messaging.remote.Address;
+import org.gradle.messaging.remote.internal.protocol.MessageCredits;
+import org.gradle.messaging.remote.internal.protocol.RemoteMethodInvocation;
+import org.gradle.messaging.remote.internal.protocol.Request;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A {@link MessageSerializer} which uses a compact binary encoding for the messages most commonly sent over a connection,
+ * and falls back to Java serialization for everything else.
+ *
+ * <p>Each instance keeps a dictionary of the classes and strings it has read and written, so that each is sent in full
+ * only once. This means an instance must be used for a single connection only. The dictionary is also used for the class
+ * descriptors of objects sent using Java serialization.</p>
+ *
+ * <p>Each message is encoded in full before any of it is written to the connection. A message which cannot be encoded writes
+ * nothing, and the dictionary entries it added are discarded, so the dictionary stays in step with the receiver's.</p>
+ */
+public class BinaryMessageSerializer<T> implements StatefulMessageSerializer<T> {
+    static final byte NULL = 0;
+    static final byte STRING = 1;
+    static final byte NEW_STRING = 2;
+    static final byte INLINE_STRING = 3;
+    static final byte INTEGER = 4;
+    static final byte LONG = 5;
+    static final byte BOOLEAN = 6;
+    static final byte UUID_VALUE = 7;
+    static final byte REQUEST = 8;
+    static final byte REMOTE_METHOD_INVOCATION = 9;
+    static final byte MESSAGE_CREDITS = 10;
+    static final byte SERIALIZED = 11;
+
+    private static final int NEW_ENTRY = -1;
+    private static final int FULL_DESCRIPTOR = -2;
+    private static final int MAX_DICTIONARY_STRING_LENGTH = 256;
+    private static final int MAX_DICTIONARY_STRINGS = 8192;
+
+    private final ClassLoader classLoader;
+    private final Map<String, Integer> writtenStrings = new HashMap<String, Integer>();
+    private final Map<Class<?>, Integer> writtenClasses = new HashMap<Class<?>, Integer>();
+    private final List<String> readStrings = new ArrayList<String>();
+    private final List<Class<?>> readClasses = new ArrayList<Class<?>>();
+    private final List<String> newStrings = new ArrayList<String>();
+    private final List<Class<?>> newClasses = new ArrayList<Class<?>>();
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final DataOutputStream bufferStream = new DataOutputStream(buffer);
+
+    public BinaryMessageSerializer(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
+    public StatefulMessageSerializer<T> newInstance() {
+        return new BinaryMessageSerializer<T>(classLoader);
+    }
+
+    public T read(DataInputStream inputStream, Address localAddress, Address remoteAddress) throws Exception {
+        return (T) readValue(inputStream);
+    }
+
+    public void write(T message, DataOutputStream outputStream) throws Exception {
+        boolean written = false;
+        try {
+            writeValue(message, bufferStream);
+            bufferStream.flush();
+            buffer.writeTo(outputStream);
+            written = true;
+        } finally {
+            buffer.reset();
+            if (!written) {
+                for (String string : newStrings) {
+                    writtenStrings.remove(string);
+                }
+                for (Class<?> type : newClasses) {
+                    writtenClasses.remove(type);
+                }
+            }
+            newStrings.clear();
+            newClasses.clear();
+        }
+    }
+
+    private Object readValue(DataInputStream inputStream) throws IOException, ClassNotFoundException {
+        byte tag = inputStream.readByte();
+        switch (tag) {
+            case NULL:
+                return null;
+            case STRING:
+                return readStrings.get(inputStream.readInt());
+            case NEW_STRING:
+                String string = inputStream.readUTF();
+                readStrings.add(string);
+                return string;
+            case INLINE_STRING:
+                byte[] bytes = new byte[inputStream.readInt()];
+                inputStream.readFully(bytes);
+                return new String(bytes, "UTF-8");
+            case INTEGER:
+                return inputStream.readInt();
+            case LONG:
+                return inputStream.readLong();
+            case BOOLEAN:
+                return inputStream.readBoolean();
+            case UUID_VALUE:
+                long mostSigBits = inputStream.readLong();
+                long leastSigBits = inputStream.readLong();
+                return new UUID(mostSigBits, leastSigBits);
+            case REQUEST:
+                Object consumerId = readValue(inputStream);
+                Object payload = readValue(inputStream);
+                return new Request(consumerId, payload);
+            case REMOTE_METHOD_INVOCATION:
+                Object key = readValue(inputStream);
+                int argCount = inputStream.readInt();
+                Object[] arguments = null;
+                if (argCount >= 0) {
+                    arguments = new Object[argCount];
+                    for (int i = 0; i < argCount; i++) {
+                        arguments[i] = readValue(inputStream);
+                    }
+                }
+                return new RemoteMethodInvocation(key, arguments);
+            case MESSAGE_CREDITS:
+                return new MessageCredits(inputStream.readInt());
+            case SERIALIZED:
+                return new ClassDictionaryObjectInputStream(inputStream).readObject();
+        }
+        throw new IOException(String.format("Unexpected value tag %s received.", tag));
+    }
+
+    private void writeValue(Object value, DataOutputStream outputStream) throws IOException {
+        if (value == null) {
+            outputStream.writeByte(NULL);
+        } else if (value instanceof String) {
+            writeString((String) value, outputStream);
+        } else if (value instanceof Integer) {
+            outputStream.writeByte(INTEGER);
+            outputStream.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            outputStream.writeByte(LONG);
+            outputStream.writeLong((Long) value);
+        } else if (value instanceof Boolean) {
+            outputStream.writeByte(BOOLEAN);
+            outputStream.writeBoolean((Boolean) value);
+        } else if (value instanceof UUID) {
+            UUID uuid = (UUID) value;
+            outputStream.writeByte(UUID_VALUE);
+            outputStream.writeLong(uuid.getMostSignificantBits());
+            outputStream.writeLong(uuid.getLeastSignificantBits());
+        } else if (value.getClass() == Request.class) {
+            Request request = (Request) value;
+            outputStream.writeByte(REQUEST);
+            writeValue(request.getDestination(), outputStream);
+            writeValue(request.getPayload(), outputStream);
+        } else if (value.getClass() == RemoteMethodInvocation.class) {
+            RemoteMethodInvocation invocation = (RemoteMethodInvocation) value;
+            outputStream.writeByte(REMOTE_METHOD_INVOCATION);
+            writeValue(invocation.getKey(), outputStream);
+            Object[] arguments = invocation.getArguments();
+            if (arguments == null) {
+                outputStream.writeInt(-1);
+            } else {
+                outputStream.writeInt(arguments.length);
+                for (Object argument : arguments) {
+                    writeValue(argument, outputStream);
+                }
+            }
+        } else if (value.getClass() == MessageCredits.class) {
+            outputStream.writeByte(MESSAGE_CREDITS);
+            outputStream.writeInt(((MessageCredits) value).getCredits());
+        } else {
+            outputStream.writeByte(SERIALIZED);
+            ObjectOutputStream objectOutputStream = new ClassDictionaryObjectOutputStream(outputStream);
+            objectOutputStream.writeObject(value);
+            objectOutputStream.flush();
+        }
+    }
+
+    private void writeString(String value, DataOutputStream outputStream) throws IOException {
+        Integer index = writtenStrings.get(value);
+        if (index != null) {
+            outputStream.writeByte(STRING);
+            outputStream.writeInt(index);
+        } else if (value.length() <= MAX_DICTIONARY_STRING_LENGTH && writtenStrings.size() < MAX_DICTIONARY_STRINGS) {
+            outputStream.writeByte(NEW_STRING);
+            outputStream.writeUTF(value);
+            writtenStrings.put(value, writtenStrings.size());
+            newStrings.add(value);
+        } else {
+            byte[] bytes = value.getBytes("UTF-8");
+            outputStream.writeByte(INLINE_STRING);
+            outputStream.writeInt(bytes.length);
+            outputStream.write(bytes);
+        }
+    }
+
+    private void writeClass(Class<?> type, DataOutput outputStream) throws IOException {
+        Integer index = writtenClasses.get(type);
+        if (index != null) {
+            outputStream.writeInt(index);
+        } else {
+            outputStream.writeInt(NEW_ENTRY);
+            outputStream.writeUTF(type.getName());
+            writtenClasses.put(type, writtenClasses.size());
+            newClasses.add(type);
+        }
+    }
+
+    private Class<?> readClass(int index, DataInput inputStream) throws IOException, ClassNotFoundException {
+        if (index != NEW_ENTRY) {
+            return readClasses.get(index);
+        }
+        Class<?> type = Class.forName(inputStream.readUTF(), false, classLoader);
+        readClasses.add(type);
+        return type;
+    }
+
+    /**
+     * Writes class descriptors as entries in the class dictionary of this serializer, rather than in full.
+     */
+    private class ClassDictionaryObjectOutputStream extends Message.ExceptionReplacingObjectOutputStream {
+        public ClassDictionaryObjectOutputStream(OutputStream outputSteam) throws IOException {
+            super(outputSteam);
+        }
+
+        @Override
+        protected void writeStreamHeader() throws IOException {
+        }
+
+        @Override
+        protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+            Class<?> type = desc.forClass();
+            if (ObjectStreamClass.lookup(type) == null) {
+                // A Class value whose type is not serializable, such as a primitive type. The receiver cannot look up its
+                // descriptor, so write it in full
+                writeInt(FULL_DESCRIPTOR);
+                super.writeClassDescriptor(desc);
+            } else {
+                writeClass(type, this);
+            }
+        }
+    }
+
+    private class ClassDictionaryObjectInputStream extends Message.ExceptionReplacingObjectInputStream {
+        public ClassDictionaryObjectInputStream(InputStream inputSteam) throws IOException {
+            super(inputSteam, classLoader);
+        }
+
+        @Override
+        protected void readStreamHeader() throws IOException {
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            int index = readInt();
+            if (index == FULL_DESCRIPTOR) {
+                return super.readClassDescriptor();
+            }
+            return ObjectStreamClass.lookup(readClass(index, this));
+        }
+    }
+}
@@ -50,6 +50,10 @@ class DefaultMultiChannelConnection implements MultiChannelConnection<Object> {
         hub.addIncoming(channelKey, dispatch);
     }
 
+    public void onDisconnect(Runnable disconnectAction) {
+        hub.onDisconnect(disconnectAction);
+    }
+
     public Dispatch<Object> addOutgoingChannel(String channelKey) {
         return hub.addUnicastOutgoing(channelKey);
     }
@@ -30,6 +30,7 @@ import org.slf4j.LoggerFactory;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -42,6 +43,9 @@ public class MessageHub implements AsyncStoppable {
     private final Collection<ProtocolStack<Message>> workers = new ArrayList<ProtocolStack<Message>>();
     private final Map<String, ProtocolStack<Message>> outgoingUnicasts = new HashMap<String, ProtocolStack<Message>>();
     private final Map<String, ProtocolStack<Message>> outgoingBroadcasts = new HashMap<String, ProtocolStack<Message>>();
+    private final List<Runnable> disconnectActions = new ArrayList<Runnable>();
+    private boolean disconnected;
+    private boolean stopping;
     private final DispatchFailureHandler<Object> failureHandler;
     private final Router router;
     private final String displayName;
@@ -72,18 +76,38 @@ public class MessageHub implements AsyncStoppable {
     public void addConnection(Connection<Message> connection) {
         lock.lock();
         try {
-            Connection<Message> wrapper = new EndOfStreamConnection(connection);
+            Connection<Message> wrapper = connection instanceof PushConnection
+                    ? new EndOfStreamPushConnection((PushConnection<Message>) connection)
+                    : new EndOfStreamConnection(connection);
             AsyncConnectionAdapter<Message> asyncConnection = new AsyncConnectionAdapter<Message>(wrapper, failureHandler, executorFactory, new RemoteDisconnectProtocol());
             connections.add(asyncConnection);
 
             AsyncConnection<Message> incomingEndpoint = router.createRemoteConnection();
             incomingEndpoint.dispatchTo(new MethodInvocationMarshallingDispatch(asyncConnection));
-            asyncConnection.dispatchTo(new MethodInvocationUnmarshallingDispatch(incomingEndpoint, messagingClassLoader));
+            asyncConnection.dispatchTo(new DisconnectDetectingDispatch(new MethodInvocationUnmarshallingDispatch(incomingEndpoint, messagingClassLoader)));
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * Adds an action to run when an incoming connection ends, either because the peer stopped it or because the peer
+     * went away. The action is not run once this hub has been asked to stop. When a connection has already ended, the
+     * action is run immediately.
+     */
+    public void onDisconnect(Runnable disconnectAction) {
+        synchronized (disconnectActions) {
+            if (stopping) {
+                return;
+            }
+            if (!disconnected) {
+                disconnectActions.add(disconnectAction);
+                return;
+            }
+        }
+        disconnectAction.run();
+    }
+
     public Dispatch<Object> addUnicastOutgoing(String channel) {
         lock.lock();
         try {
@@ -152,6 +176,10 @@ public class MessageHub implements AsyncStoppable {
     }
 
     public void requestStop() {
+        synchronized (disconnectActions) {
+            stopping = true;
+            disconnectActions.clear();
+        }
         lock.lock();
         try {
             for (ProtocolStack<Message> stack : outgoingUnicasts.values()) {
@@ -192,6 +220,33 @@ public class MessageHub implements AsyncStoppable {
         stoppable.stop();
     }
 
+    private void connectionFinished() {
+        List<Runnable> actions;
+        synchronized (disconnectActions) {
+            disconnected = true;
+            actions = new ArrayList<Runnable>(disconnectActions);
+            disconnectActions.clear();
+        }
+        for (Runnable action : actions) {
+            action.run();
+        }
+    }
+
+    private class DisconnectDetectingDispatch implements Dispatch<Message> {
+        private final Dispatch<Message> dispatch;
+
+        private DisconnectDetectingDispatch(Dispatch<Message> dispatch) {
+            this.dispatch = dispatch;
+        }
+
+        public void dispatch(Message message) {
+            dispatch.dispatch(message);
+            if (message instanceof EndOfStreamEvent) {
+                connectionFinished();
+            }
+        }
+    }
+
     private static class EndOfStreamConnection extends DelegatingConnection<Message> {
         private static final Logger LOGGER = LoggerFactory.getLogger(EndOfStreamConnection.class);
         boolean incomingFinished;
@@ -221,4 +276,39 @@ public class MessageHub implements AsyncStoppable {
             return result;
         }
     }
+
+    private static class EndOfStreamPushConnection extends EndOfStreamConnection implements PushConnection<Message> {
+        private final PushConnection<Message> connection;
+
+        private EndOfStreamPushConnection(PushConnection<Message> connection) {
+            super(connection);
+            this.connection = connection;
+        }
+
+        public void receiveTo(final Receiver<? super Message> receiver) {
+            connection.receiveTo(new Receiver<Message>() {
+                public void dispatch(Message message) {
+                    if (incomingFinished) {
+                        return;
+                    }
+                    receiver.dispatch(message);
+                    if (message instanceof EndOfStreamEvent) {
+                        incomingFinished = true;
+                        receiver.endOfStream(null);
+                    }
+                }
+
+                public void endOfStream(Throwable failure) {
+                    if (failure != null) {
+                        EndOfStreamConnection.LOGGER.error("Could not receive message from connection. Discarding connection.", failure);
+                    }
+                    if (!incomingFinished) {
+                        incomingFinished = true;
+                        receiver.dispatch(new EndOfStreamEvent());
+                        receiver.endOfStream(null);
+                    }
+                }
+            });
+        }
+    }
 }
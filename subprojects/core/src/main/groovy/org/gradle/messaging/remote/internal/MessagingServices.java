@@ -57,7 +57,8 @@ public class MessagingServices extends DefaultServiceRegistry implements Stoppab
     private final SocketInetAddress broadcastAddress;
     private DefaultMessagingClient messagingClient;
     private DefaultMultiChannelConnector multiChannelConnector;
-    private TcpIncomingConnector<Message> incomingConnector;
+    private NioIncomingConnector<Message> incomingConnector;
+    private SelectorPool selectorPool;
     private DefaultExecutorFactory executorFactory;
     private DefaultMessagingServer messagingServer;
     private DefaultIncomingBroadcast incomingBroadcast;
@@ -110,6 +111,7 @@ public class MessagingServices extends DefaultServiceRegistry implements Stoppab
         stoppable.add(outgoingBroadcast);
         stoppable.add(incomingBroadcast);
         stoppable.add(multicastConnection);
+        stoppable.add(selectorPool);
         stoppable.add(executorFactory);
         stoppable.stop();
     }
@@ -123,16 +125,23 @@ public class MessagingServices extends DefaultServiceRegistry implements Stoppab
         return executorFactory;
     }
 
+    protected SelectorPool createSelectorPool() {
+        selectorPool = new SelectorPool(get(ExecutorFactory.class));
+        return selectorPool;
+    }
+
     protected OutgoingConnector<Message> createOutgoingConnector() {
-        return new TcpOutgoingConnector<Message>(
-                new DefaultMessageSerializer<Message>(
-                        messageClassLoader));
+        return new NioOutgoingConnector<Message>(
+                new BinaryMessageSerializer<Message>(
+                        messageClassLoader),
+                get(SelectorPool.class));
     }
 
     protected IncomingConnector<Message> createIncomingConnector() {
-        incomingConnector = new TcpIncomingConnector<Message>(
+        incomingConnector = new NioIncomingConnector<Message>(
                 get(ExecutorFactory.class),
-                new DefaultMessageSerializer<Message>(
+                get(SelectorPool.class),
+                new BinaryMessageSerializer<Message>(
                         messageClassLoader),
                 new InetAddressFactory(),
                 idGenerator);
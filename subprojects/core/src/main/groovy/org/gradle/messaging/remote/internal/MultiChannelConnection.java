@@ -32,6 +32,12 @@ public interface MultiChannelConnection<T> extends Addressable, AsyncStoppable {
      */
     void addIncomingChannel(String channelKey, Dispatch<T> dispatch);
 
+    /**
+     * Adds an action to run when the peer disconnects. The action is not run once this connection has been asked to
+     * stop.
+     */
+    void onDisconnect(Runnable disconnectAction);
+
     /**
      * Commences graceful stop of this connection. Stops accepting any more outgoing messages, and requests that the
      * peer stop sending incoming messages.
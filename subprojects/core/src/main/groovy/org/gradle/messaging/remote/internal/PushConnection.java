@@ -0,0 +1,45 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.messaging.remote.internal;
+
+import org.gradle.messaging.dispatch.Dispatch;
+
+/**
+ * <p>A {@link Connection} which can push the messages it receives to a {@link Receiver}, so that no thread has to block in
+ * {@link #receive()} waiting for them.
+ *
+ * <p>The {@link #dispatch(Object)} method of a push connection queues the message to be written by a thread owned by the
+ * connection, rather than writing it on the calling thread.
+ */
+public interface PushConnection<T> extends Connection<T> {
+    /**
+     * Starts delivering the messages received by this connection to the given receiver. Once called, {@link #receive()} must
+     * not be used. Messages are delivered one at a time, in the order they were received, using a thread which is shared with
+     * other connections, so the receiver should not block.
+     */
+    void receiveTo(Receiver<? super T> receiver);
+
+    interface Receiver<T> extends Dispatch<T> {
+        /**
+         * Called once no more messages will be delivered, because the end of the stream has been reached, a stop has been
+         * requested or the connection has failed.
+         *
+         * @param failure The failure of the connection, or null if it did not fail.
+         */
+        void endOfStream(Throwable failure);
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.remote.internal;
+
+/**
+ * A {@link MessageSerializer} which keeps state about the messages it has read and written. An instance must not be shared
+ * between connections, so each connection should use its own instance created by {@link #newInstance()}.
+ */
+public interface StatefulMessageSerializer<T> extends MessageSerializer<T> {
+    /**
+     * Creates a serializer with the same configuration as this serializer, but with fresh state.
+     */
+    StatefulMessageSerializer<T> newInstance();
+}
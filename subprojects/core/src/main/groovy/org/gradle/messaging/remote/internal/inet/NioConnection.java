@@ -0,0 +1,458 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.remote.internal.inet;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.CompositeStoppable;
+import org.gradle.internal.UncheckedException;
+import org.gradle.messaging.remote.Address;
+import org.gradle.messaging.remote.internal.Connection;
+import org.gradle.messaging.remote.internal.MessageIOException;
+import org.gradle.messaging.remote.internal.MessageSerializer;
+import org.gradle.messaging.remote.internal.PushConnection;
+import org.gradle.messaging.remote.internal.StatefulMessageSerializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link Connection} whose socket I/O is performed by a {@link SelectorLoop}, rather than by the threads which send
+ * and receive messages.
+ *
+ * <p>Each message is sent as a frame made up of its length followed by its serialized form. Dispatched messages are
+ * queued and written by the loop, which packs as many frames as will fit into each write. Received frames are queued by
+ * the loop and decoded by the thread which receives them, so that a slow message does not hold up the other connections of
+ * the loop. Reads are suspended while too many messages are queued.</p>
+ *
+ * <p>Once {@link #receiveTo} has been called, the received frames are instead decoded and delivered by a task which the loop
+ * schedules on a delivery executor shared by all connections, whenever frames are queued and no delivery is in progress.</p>
+ *
+ * <p>A frame may be at most {@link #MAX_FRAME_SIZE} bytes long. A message which does not fit in a frame cannot be
+ * dispatched. When a longer frame is received, the connection fails.</p>
+ */
+public class NioConnection<T> implements PushConnection<T>, SelectorLoop.Handler {
+    private static final Object END_OF_STREAM = new Object();
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_QUEUED_WRITE_BYTES = 1024 * 1024;
+    private static final int MAX_QUEUED_MESSAGES = 1000;
+    static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+    private final SocketChannel socket;
+    private final SelectorLoop loop;
+    private final Executor deliveryExecutor;
+    private final MessageSerializer<T> serializer;
+    private final Address localAddress;
+    private final Address remoteAddress;
+    private final BlockingQueue<Object> incoming = new LinkedBlockingQueue<Object>();
+    private final AtomicBoolean readsSuspended = new AtomicBoolean();
+    private final AtomicBoolean delivering = new AtomicBoolean();
+    private volatile Receiver<? super T> receiver;
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+    private ByteBuffer frame;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final Lock lock = new ReentrantLock();
+    private final Condition writesCompleted = lock.newCondition();
+    private final Queue<ByteBuffer> outgoing = new LinkedList<ByteBuffer>();
+    private int queuedWriteBytes;
+    private boolean writing;
+    private boolean broken;
+    private volatile boolean receiveStopped;
+
+    public NioConnection(SocketChannel socket, MessageSerializer<T> serializer, SelectorLoop loop, Executor deliveryExecutor) {
+        this.socket = socket;
+        this.loop = loop;
+        this.deliveryExecutor = deliveryExecutor;
+        if (serializer instanceof StatefulMessageSerializer) {
+            this.serializer = ((StatefulMessageSerializer<T>) serializer).newInstance();
+        } else {
+            this.serializer = serializer;
+        }
+        try {
+            socket.configureBlocking(false);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        InetSocketAddress localSocketAddress = (InetSocketAddress) socket.socket().getLocalSocketAddress();
+        localAddress = new SocketInetAddress(localSocketAddress.getAddress(), localSocketAddress.getPort());
+        InetSocketAddress remoteSocketAddress = (InetSocketAddress) socket.socket().getRemoteSocketAddress();
+        remoteAddress = new SocketInetAddress(remoteSocketAddress.getAddress(), remoteSocketAddress.getPort());
+        loop.register(socket, SelectionKey.OP_READ, this);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("socket connection at %s with %s", localAddress, remoteAddress);
+    }
+
+    public Address getLocalAddress() {
+        return localAddress;
+    }
+
+    public Address getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public void dispatch(T message) {
+        boolean startWriting;
+        lock.lock();
+        try {
+            FrameOutputStream frameOutputStream = new FrameOutputStream();
+            DataOutputStream outputStream = new DataOutputStream(frameOutputStream);
+            outputStream.writeInt(0);
+            serializer.write(message, outputStream);
+            outputStream.flush();
+            ByteBuffer frame = frameOutputStream.toFrame();
+
+            while (queuedWriteBytes > MAX_QUEUED_WRITE_BYTES && !broken) {
+                writesCompleted.await();
+            }
+            if (broken) {
+                throw new IOException("Connection is closed.");
+            }
+            outgoing.add(frame);
+            queuedWriteBytes += frame.remaining();
+            startWriting = !writing;
+            writing = true;
+        } catch (Exception e) {
+            throw new MessageIOException(String.format("Could not write message %s to '%s'.", message, remoteAddress), e);
+        } finally {
+            lock.unlock();
+        }
+        if (startWriting) {
+            loop.execute(new Runnable() {
+                public void run() {
+                    addInterest(SelectionKey.OP_WRITE);
+                }
+            });
+        }
+    }
+
+    public T receive() {
+        if (receiveStopped) {
+            return null;
+        }
+        Object next;
+        try {
+            next = incoming.take();
+        } catch (InterruptedException e) {
+            throw UncheckedException.asUncheckedException(e);
+        }
+        if (next == END_OF_STREAM || receiveStopped) {
+            incoming.add(END_OF_STREAM);
+            return null;
+        }
+        resumeReadsIfDrained();
+        try {
+            return decode(next);
+        } catch (MessageIOException e) {
+            incoming.add(END_OF_STREAM);
+            throw e;
+        }
+    }
+
+    public void receiveTo(Receiver<? super T> receiver) {
+        this.receiver = receiver;
+        scheduleDelivery();
+    }
+
+    private void scheduleDelivery() {
+        if (receiver != null && !incoming.isEmpty() && delivering.compareAndSet(false, true)) {
+            deliveryExecutor.execute(new Runnable() {
+                public void run() {
+                    deliver();
+                }
+            });
+        }
+    }
+
+    private void deliver() {
+        Object next;
+        while ((next = incoming.poll()) != null) {
+            if (next == END_OF_STREAM || receiveStopped) {
+                // Leave delivering set, so that nothing more is delivered
+                receiver.endOfStream(null);
+                return;
+            }
+            resumeReadsIfDrained();
+            T message;
+            try {
+                message = decode(next);
+            } catch (MessageIOException e) {
+                receiver.endOfStream(e);
+                return;
+            }
+            try {
+                receiver.dispatch(message);
+            } catch (Throwable throwable) {
+                receiver.endOfStream(throwable);
+                return;
+            }
+        }
+        delivering.set(false);
+        // Pick up anything queued after the queue was found to be empty
+        scheduleDelivery();
+    }
+
+    private T decode(Object frame) throws MessageIOException {
+        try {
+            if (frame instanceof ReadFailure) {
+                throw ((ReadFailure) frame).failure;
+            }
+            return serializer.read(new DataInputStream(new ByteArrayInputStream((byte[]) frame)), localAddress, remoteAddress);
+        } catch (Exception e) {
+            throw new MessageIOException(String.format("Could not read message from '%s'.", remoteAddress), e);
+        }
+    }
+
+    private void resumeReadsIfDrained() {
+        if (incoming.size() < MAX_QUEUED_MESSAGES / 2 && readsSuspended.compareAndSet(true, false)) {
+            loop.execute(new Runnable() {
+                public void run() {
+                    if (!readsSuspended.get()) {
+                        addInterest(SelectionKey.OP_READ);
+                    }
+                }
+            });
+        }
+    }
+
+    public void selected(SelectionKey key) throws IOException {
+        if (key.isReadable()) {
+            read(key);
+        }
+        if (key.isValid() && key.isWritable()) {
+            write(key);
+        }
+    }
+
+    private void read(SelectionKey key) {
+        int nread;
+        try {
+            nread = socket.read(readBuffer);
+        } catch (IOException e) {
+            endOfStream(key);
+            return;
+        }
+        if (nread < 0) {
+            endOfStream(key);
+            return;
+        }
+
+        readBuffer.flip();
+        while (readBuffer.hasRemaining()) {
+            if (frame == null) {
+                transfer(readBuffer, lengthBuffer);
+                if (lengthBuffer.hasRemaining()) {
+                    break;
+                }
+                lengthBuffer.flip();
+                int length = lengthBuffer.getInt();
+                lengthBuffer.clear();
+                if (length < 0 || length > MAX_FRAME_SIZE) {
+                    readBuffer.clear();
+                    fail(key, new IOException(String.format("Received a frame of %s bytes, which is not between 0 and the maximum of %s bytes.", length, MAX_FRAME_SIZE)));
+                    return;
+                }
+                frame = ByteBuffer.allocate(length);
+            }
+            transfer(readBuffer, frame);
+            if (!frame.hasRemaining()) {
+                incoming.add(frame.array());
+                frame = null;
+            }
+        }
+        readBuffer.clear();
+
+        if (incoming.size() >= MAX_QUEUED_MESSAGES && readsSuspended.compareAndSet(false, true)) {
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+            // The receiver may have drained the queue before reads were marked as suspended, in which case it will not
+            // resume them, so check again
+            if (incoming.size() < MAX_QUEUED_MESSAGES / 2 && readsSuspended.compareAndSet(true, false)) {
+                key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+        }
+        scheduleDelivery();
+    }
+
+    private void write(SelectionKey key) {
+        lock.lock();
+        try {
+            while (writeBuffer.hasRemaining() && !outgoing.isEmpty()) {
+                ByteBuffer frame = outgoing.peek();
+                queuedWriteBytes -= transfer(frame, writeBuffer);
+                if (!frame.hasRemaining()) {
+                    outgoing.remove();
+                }
+            }
+            writesCompleted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+
+        writeBuffer.flip();
+        try {
+            socket.write(writeBuffer);
+        } catch (IOException e) {
+            writeBuffer.clear();
+            endOfStream(key);
+            return;
+        }
+        writeBuffer.compact();
+
+        lock.lock();
+        try {
+            if (writeBuffer.position() == 0 && outgoing.isEmpty()) {
+                writing = false;
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+                writesCompleted.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void cancelled(SelectionKey key, Exception failure) {
+        if (failure == null) {
+            endOfStream(key);
+        } else {
+            fail(key, failure);
+        }
+    }
+
+    /**
+     * Fails the connection: the failure is delivered to the receiver, and the socket is closed so that the peer sees the end of
+     * the stream.
+     */
+    private void fail(SelectionKey key, Exception failure) {
+        incoming.add(new ReadFailure(failure));
+        endOfStream(key);
+        new CompositeStoppable(socket).stop();
+    }
+
+    private void endOfStream(SelectionKey key) {
+        key.cancel();
+        incoming.add(END_OF_STREAM);
+        scheduleDelivery();
+        lock.lock();
+        try {
+            broken = true;
+            outgoing.clear();
+            writesCompleted.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void addInterest(int ops) {
+        SelectionKey key = loop.keyFor(socket);
+        if (key != null && key.isValid()) {
+            key.interestOps(key.interestOps() | ops);
+        }
+    }
+
+    private static int transfer(ByteBuffer source, ByteBuffer dest) {
+        int count = Math.min(source.remaining(), dest.remaining());
+        ByteBuffer slice = source.duplicate();
+        slice.limit(slice.position() + count);
+        dest.put(slice);
+        source.position(source.position() + count);
+        return count;
+    }
+
+    public void requestStop() {
+        receiveStopped = true;
+        incoming.add(END_OF_STREAM);
+        scheduleDelivery();
+    }
+
+    public void stop() {
+        requestStop();
+        lock.lock();
+        try {
+            while (writing && !broken) {
+                writesCompleted.await();
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.asUncheckedException(e);
+        } finally {
+            lock.unlock();
+        }
+        new CompositeStoppable(socket).stop();
+    }
+
+    private static class FrameOutputStream extends OutputStream {
+        private final FrameBuffer buffer = new FrameBuffer();
+
+        @Override
+        public void write(int b) throws IOException {
+            checkSize(1);
+            buffer.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            checkSize(len);
+            buffer.write(b, off, len);
+        }
+
+        private void checkSize(int len) throws IOException {
+            // Allow for the 4 bytes reserved for the length
+            if (buffer.size() + len > MAX_FRAME_SIZE + 4) {
+                throw new IOException(String.format("Message is larger than the maximum frame size of %s bytes.", MAX_FRAME_SIZE));
+            }
+        }
+
+        /**
+         * Returns the content of this stream as a frame, with the length written to the 4 bytes reserved at the start.
+         */
+        ByteBuffer toFrame() {
+            return buffer.toFrame();
+        }
+    }
+
+    private static class FrameBuffer extends ByteArrayOutputStream {
+        ByteBuffer toFrame() {
+            ByteBuffer frame = ByteBuffer.wrap(buf, 0, count);
+            frame.putInt(0, count - 4);
+            return frame;
+        }
+    }
+
+    private static class ReadFailure {
+        private final Exception failure;
+
+        private ReadFailure(Exception failure) {
+            this.failure = failure;
+        }
+    }
+}
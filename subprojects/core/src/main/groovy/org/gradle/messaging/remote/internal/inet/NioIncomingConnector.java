@@ -0,0 +1,153 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.remote.internal.inet;
+
+import org.gradle.api.Action;
+import org.gradle.internal.CompositeStoppable;
+import org.gradle.internal.UncheckedException;
+import org.gradle.messaging.concurrent.AsyncStoppable;
+import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.messaging.concurrent.StoppableExecutor;
+import org.gradle.messaging.remote.Address;
+import org.gradle.messaging.remote.ConnectEvent;
+import org.gradle.messaging.remote.internal.Connection;
+import org.gradle.messaging.remote.internal.IncomingConnector;
+import org.gradle.messaging.remote.internal.MessageSerializer;
+import org.gradle.util.IdGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An incoming connector which accepts connections using a {@link SelectorPool}, rather than a thread per endpoint, and
+ * creates connections whose I/O is also performed by the pool.
+ */
+public class NioIncomingConnector<T> implements IncomingConnector<T>, AsyncStoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(NioIncomingConnector.class);
+    private final StoppableExecutor executor;
+    private final SelectorPool selectorPool;
+    private final MessageSerializer<T> serializer;
+    private final IdGenerator<?> idGenerator;
+    private final List<InetAddress> localAddresses;
+    private final List<InetAddress> remoteAddresses;
+    private final List<ServerSocketChannel> serverSockets = new CopyOnWriteArrayList<ServerSocketChannel>();
+
+    public NioIncomingConnector(ExecutorFactory executorFactory, SelectorPool selectorPool, MessageSerializer<T> serializer, InetAddressFactory addressFactory, IdGenerator<?> idGenerator) {
+        this.selectorPool = selectorPool;
+        this.serializer = serializer;
+        this.idGenerator = idGenerator;
+        this.executor = executorFactory.create("Incoming NIO Connector");
+
+        localAddresses = addressFactory.findLocalAddresses();
+        remoteAddresses = addressFactory.findRemoteAddresses();
+    }
+
+    public Address accept(Action<ConnectEvent<Connection<T>>> action, boolean allowRemote) {
+        ServerSocketChannel serverSocket;
+        int localPort;
+        try {
+            serverSocket = ServerSocketChannel.open();
+            serverSockets.add(serverSocket);
+            serverSocket.socket().bind(new InetSocketAddress(0));
+            serverSocket.configureBlocking(false);
+            localPort = serverSocket.socket().getLocalPort();
+        } catch (Exception e) {
+            throw UncheckedException.asUncheckedException(e);
+        }
+
+        Object id = idGenerator.generateId();
+        List<InetAddress> addresses = allowRemote ? remoteAddresses : localAddresses;
+        Address address = new MultiChoiceAddress(id, localPort, addresses);
+        LOGGER.debug("Listening on {}.", address);
+
+        selectorPool.next().register(serverSocket, SelectionKey.OP_ACCEPT, new Acceptor(serverSocket, action, allowRemote));
+        return address;
+    }
+
+    public void requestStop() {
+        new CompositeStoppable().addCloseables(serverSockets).stop();
+    }
+
+    public void stop() {
+        requestStop();
+        executor.stop();
+    }
+
+    private class Acceptor implements SelectorLoop.Handler {
+        private final ServerSocketChannel serverSocket;
+        private final Action<ConnectEvent<Connection<T>>> action;
+        private final boolean allowRemote;
+
+        public Acceptor(ServerSocketChannel serverSocket, Action<ConnectEvent<Connection<T>>> action, boolean allowRemote) {
+            this.serverSocket = serverSocket;
+            this.action = action;
+            this.allowRemote = allowRemote;
+        }
+
+        public void cancelled(SelectionKey key, Exception failure) {
+            serverSockets.remove(serverSocket);
+            new CompositeStoppable(serverSocket).stop();
+        }
+
+        public void selected(SelectionKey key) throws IOException {
+            while (true) {
+                SocketChannel socket;
+                try {
+                    socket = serverSocket.accept();
+                } catch (IOException e) {
+                    key.cancel();
+                    cancelled(key, e);
+                    return;
+                }
+                if (socket == null) {
+                    return;
+                }
+
+                InetSocketAddress remoteSocketAddress = (InetSocketAddress) socket.socket().getRemoteSocketAddress();
+                if (!allowRemote && !localAddresses.contains(remoteSocketAddress.getAddress())) {
+                    LOGGER.error("Cannot accept connection from remote address {}.", remoteSocketAddress.getAddress());
+                    socket.close();
+                    continue;
+                }
+
+                NioConnection<T> connection = new NioConnection<T>(socket, serializer, selectorPool.next(), selectorPool.getDeliveryExecutor());
+                final ConnectEvent<Connection<T>> event = new ConnectEvent<Connection<T>>(connection, connection.getLocalAddress(), connection.getRemoteAddress());
+                LOGGER.debug("Accepted connection from {} to {}.", event.getRemoteAddress(), event.getLocalAddress());
+
+                // The action is not required to be thread-safe, and may block, so run it on another thread one event at a time
+                executor.execute(new Runnable() {
+                    public void run() {
+                        synchronized (Acceptor.this) {
+                            try {
+                                action.execute(event);
+                            } catch (Exception e) {
+                                LOGGER.error("Could not accept remote connection.", e);
+                            }
+                        }
+                    }
+                });
+            }
+        }
+    }
+}
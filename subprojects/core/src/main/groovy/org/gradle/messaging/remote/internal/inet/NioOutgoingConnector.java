@@ -0,0 +1,38 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.remote.internal.inet;
+
+import org.gradle.messaging.remote.internal.Connection;
+import org.gradle.messaging.remote.internal.MessageSerializer;
+
+import java.nio.channels.SocketChannel;
+
+/**
+ * An outgoing connector which creates connections whose I/O is performed by a {@link SelectorPool}.
+ */
+public class NioOutgoingConnector<T> extends TcpOutgoingConnector<T> {
+    private final SelectorPool selectorPool;
+
+    public NioOutgoingConnector(MessageSerializer<T> serializer, SelectorPool selectorPool) {
+        super(serializer);
+        this.selectorPool = selectorPool;
+    }
+
+    @Override
+    protected Connection<T> createConnection(SocketChannel socketChannel, MessageSerializer<T> serializer) {
+        return new NioConnection<T>(socketChannel, serializer, selectorPool.next(), selectorPool.getDeliveryExecutor());
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.remote.internal.inet;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Dispatches the I/O events for a set of channels, using a single {@link Selector}. All events and tasks for the channels
+ * are run on the thread which runs this loop.
+ */
+class SelectorLoop implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SelectorLoop.class);
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+    private volatile boolean stopped;
+
+    interface Handler {
+        /**
+         * Called when the channel of the given key is ready for one or more of its interest operations.
+         */
+        void selected(SelectionKey key) throws IOException;
+
+        /**
+         * Called when the given key has been cancelled by this loop, either because the handler failed or because the loop
+         * has stopped. The failure is null when the loop has stopped normally.
+         */
+        void cancelled(SelectionKey key, Exception failure);
+    }
+
+    SelectorLoop() throws IOException {
+        selector = Selector.open();
+    }
+
+    /**
+     * Runs the given task on the thread of this loop.
+     */
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /**
+     * Registers the given channel with this loop. The handler is notified on the thread of this loop.
+     */
+    public void register(final SelectableChannel channel, final int ops, final Handler handler) {
+        execute(new Runnable() {
+            public void run() {
+                try {
+                    channel.register(selector, ops, handler);
+                } catch (ClosedChannelException e) {
+                    // Ignore
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the key for the given channel, or null if the channel is not registered with this loop. Should be called
+     * from the thread of this loop.
+     */
+    public SelectionKey keyFor(SelectableChannel channel) {
+        return channel.keyFor(selector);
+    }
+
+    public void run() {
+        IOException failure = null;
+        try {
+            while (!stopped) {
+                selector.select();
+                runTasks();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    try {
+                        ((Handler) key.attachment()).selected(key);
+                    } catch (Exception e) {
+                        LOGGER.error(String.format("Could not handle I/O event for %s.", key.channel()), e);
+                        key.cancel();
+                        cancelled(key, e);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.error("Could not select I/O events.", e);
+            failure = e;
+        } finally {
+            // Notify the handlers of the channels which are still registered, so that they do not wait for events which will never come
+            for (SelectionKey key : selector.keys()) {
+                if (key.isValid()) {
+                    key.cancel();
+                    cancelled(key, failure);
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+    private void cancelled(SelectionKey key, Exception failure) {
+        try {
+            ((Handler) key.attachment()).cancelled(key, failure);
+        } catch (Exception e) {
+            LOGGER.error(String.format("Could not handle cancellation of %s.", key.channel()), e);
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Exception e) {
+                LOGGER.error("Could not run I/O task.", e);
+            }
+        }
+    }
+
+    public void requestStop() {
+        stopped = true;
+        selector.wakeup();
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.remote.internal.inet;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.internal.CompositeStoppable;
+import org.gradle.internal.Stoppable;
+import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.messaging.concurrent.StoppableExecutor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed set of selector threads, which the NIO connectors share to multiplex the I/O for all of their connections, plus an
+ * executor which the connections share to deliver the messages they receive.
+ */
+public class SelectorPool implements Stoppable {
+    public static final int DEFAULT_THREADS = 2;
+    private final StoppableExecutor executor;
+    private final StoppableExecutor deliveryExecutor;
+    private final List<SelectorLoop> loops = new ArrayList<SelectorLoop>();
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    public SelectorPool(ExecutorFactory executorFactory) {
+        this(executorFactory, DEFAULT_THREADS);
+    }
+
+    public SelectorPool(ExecutorFactory executorFactory, int threads) {
+        executor = executorFactory.create("NIO selector");
+        deliveryExecutor = executorFactory.create("NIO message delivery");
+        try {
+            for (int i = 0; i < threads; i++) {
+                SelectorLoop loop = new SelectorLoop();
+                loops.add(loop);
+                executor.execute(loop);
+            }
+        } catch (IOException e) {
+            stop();
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Selects the loop to use for a new channel.
+     */
+    SelectorLoop next() {
+        return loops.get((nextLoop.getAndIncrement() & Integer.MAX_VALUE) % loops.size());
+    }
+
+    /**
+     * Returns the executor which connections use to deliver the messages they receive.
+     */
+    Executor getDeliveryExecutor() {
+        return deliveryExecutor;
+    }
+
+    public void stop() {
+        for (SelectorLoop loop : loops) {
+            loop.requestStop();
+        }
+        new CompositeStoppable(executor, deliveryExecutor).stop();
+    }
+}
@@ -23,6 +23,7 @@ import org.gradle.messaging.remote.Address;
 import org.gradle.messaging.remote.internal.Connection;
 import org.gradle.messaging.remote.internal.MessageIOException;
 import org.gradle.messaging.remote.internal.MessageSerializer;
+import org.gradle.messaging.remote.internal.StatefulMessageSerializer;
 
 import java.io.*;
 import java.net.InetSocketAddress;
@@ -42,7 +43,11 @@ public class SocketConnection<T> implements Connection<T> {
 
     public SocketConnection(SocketChannel socket, MessageSerializer<T> serializer) {
         this.socket = socket;
-        this.serializer = serializer;
+        if (serializer instanceof StatefulMessageSerializer) {
+            this.serializer = ((StatefulMessageSerializer<T>) serializer).newInstance();
+        } else {
+            this.serializer = serializer;
+        }
         try {
             // NOTE: we use non-blocking IO as there is no reliable way when using blocking IO to shutdown reads while
             // keeping writes active. For example, Socket.shutdownInput() does not work on Windows.
@@ -64,7 +64,7 @@ public class TcpOutgoingConnector<T> implements OutgoingConnector<T> {
                     continue;
                 }
                 LOGGER.debug("Connected to address {}.", candidate);
-                return new SocketConnection<T>(socketChannel, serializer);
+                return createConnection(socketChannel, serializer);
             }
             throw lastFailure;
         } catch (java.net.ConnectException e) {
@@ -75,4 +75,8 @@ public class TcpOutgoingConnector<T> implements OutgoingConnector<T> {
                     destinationAddress, candidateAddresses), e);
         }
     }
+
+    protected Connection<T> createConnection(SocketChannel socketChannel, MessageSerializer<T> serializer) {
+        return new SocketConnection<T>(socketChannel, serializer);
+    }
 }
@@ -53,6 +53,10 @@ public class DefaultWorkerProcess implements WorkerProcess {
         });
     }
 
+    public ExecHandle getExecHandle() {
+        return execHandle;
+    }
+
     public Action<ConnectEvent<ObjectConnection>> getConnectAction() {
         return new Action<ConnectEvent<ObjectConnection>>() {
             public void execute(ConnectEvent<ObjectConnection> event) {
@@ -16,24 +16,32 @@
 
 package org.gradle.process.internal;
 
+import org.gradle.api.Action;
 import org.gradle.api.internal.ClassPathRegistry;
 import org.gradle.internal.Factory;
 import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.logging.LogLevel;
 import org.gradle.messaging.remote.Address;
 import org.gradle.messaging.remote.MessagingServer;
+import org.gradle.process.ExecResult;
 import org.gradle.process.internal.child.ApplicationClassesInIsolatedClassLoaderWorkerFactory;
 import org.gradle.process.internal.child.ApplicationClassesInSystemClassLoaderWorkerFactory;
+import org.gradle.process.internal.child.ReusableWorker;
 import org.gradle.process.internal.child.WorkerFactory;
 import org.gradle.process.internal.launcher.GradleWorkerMain;
 import org.gradle.util.ClasspathUtil;
+import org.gradle.util.GFileUtils;
 import org.gradle.util.GUtil;
 import org.gradle.util.IdGenerator;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.TimeUnit;
@@ -45,15 +53,23 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
     private final ClassPathRegistry classPathRegistry;
     private final FileResolver resolver;
     private final IdGenerator<?> idGenerator;
+    private final WorkerProcessPool pool;
 
     public DefaultWorkerProcessFactory(LogLevel workerLogLevel, MessagingServer server,
                                        ClassPathRegistry classPathRegistry, FileResolver resolver,
                                        IdGenerator<?> idGenerator) {
+        this(workerLogLevel, server, classPathRegistry, resolver, idGenerator, null);
+    }
+
+    public DefaultWorkerProcessFactory(LogLevel workerLogLevel, MessagingServer server,
+                                       ClassPathRegistry classPathRegistry, FileResolver resolver,
+                                       IdGenerator<?> idGenerator, WorkerProcessPool pool) {
         this.workerLogLevel = workerLogLevel;
         this.server = server;
         this.classPathRegistry = classPathRegistry;
         this.resolver = resolver;
         this.idGenerator = idGenerator;
+        this.pool = pool;
     }
 
     public WorkerProcessBuilder create() {
@@ -73,20 +89,48 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
                 throw new IllegalStateException("No worker action specified for this worker process.");
             }
 
+            final List<URL> implementationClassPath = ClasspathUtil.getClasspath(getWorker().getClass().getClassLoader());
+            Object id = idGenerator.generateId();
+            String displayName = String.format("Gradle Worker %s", id);
+
+            final Object key = isReusable() && pool != null ? createKey(implementationClassPath) : null;
+            if (key == null) {
+                return createWorkerProcess(getWorker(), id, displayName, implementationClassPath);
+            }
+
+            Factory<PooledWorker> workerFactory = new Factory<PooledWorker>() {
+                public PooledWorker create() {
+                    Object id = idGenerator.generateId();
+                    DefaultWorkerProcess process = createWorkerProcess(new ReusableWorker(2 * pool.getIdleTimeoutMillis()), id,
+                            String.format("Gradle Worker %s", id), implementationClassPath);
+                    final PooledWorker worker = new PooledWorker(key, process);
+                    process.getExecHandle().addListener(new ExecHandleListener() {
+                        public void executionStarted(ExecHandle execHandle) {
+                        }
+
+                        public void executionFinished(ExecHandle execHandle, ExecResult execResult) {
+                            worker.processStopped();
+                        }
+                    });
+                    return worker;
+                }
+            };
+            return new PooledWorkerProcess(key, pool, workerFactory, server, getWorker(), id, displayName, 120, TimeUnit.SECONDS,
+                    new ArrayList<ExecHandleListener>(getJavaCommand().getListeners()));
+        }
+
+        private DefaultWorkerProcess createWorkerProcess(Action<WorkerProcessContext> workerAction, Object id, String displayName,
+                                                         List<URL> implementationClassPath) {
             final DefaultWorkerProcess workerProcess = new DefaultWorkerProcess(120, TimeUnit.SECONDS);
             Address localAddress = server.accept(workerProcess.getConnectAction());
 
             // Build configuration for GradleWorkerMain
-            List<URL> implementationClassPath = ClasspathUtil.getClasspath(getWorker().getClass().getClassLoader());
-            Object id = idGenerator.generateId();
-            String displayName = String.format("Gradle Worker %s", id);
-
             WorkerFactory workerFactory;
             if (isLoadApplicationInSystemClassLoader()) {
-                workerFactory = new ApplicationClassesInSystemClassLoaderWorkerFactory(id, displayName, this,
+                workerFactory = new ApplicationClassesInSystemClassLoaderWorkerFactory(id, displayName, this, workerAction,
                         implementationClassPath, localAddress, classPathRegistry);
             } else {
-                workerFactory = new ApplicationClassesInIsolatedClassLoaderWorkerFactory(id, displayName, this,
+                workerFactory = new ApplicationClassesInIsolatedClassLoaderWorkerFactory(id, displayName, this, workerAction,
                         implementationClassPath, localAddress, classPathRegistry);
             }
             Callable<?> workerMain = workerFactory.create();
@@ -106,5 +150,53 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
 
             return workerProcess;
         }
+
+        /**
+         * Creates a key which is equal for builders whose worker processes can share a JVM: same command-line,
+         * environment, class loader setup, and same classpath contents. Each classpath entry is checked using only its
+         * own length and last modified time, so that creating the key does not visit every file under a directory.
+         *
+         * @return The key, or null when the worker process cannot share a JVM.
+         */
+        private Object createKey(List<URL> implementationClassPath) {
+            JavaExecHandleBuilder javaCommand = getJavaCommand();
+            List<Object> key = new ArrayList<Object>();
+            key.add(javaCommand.getExecutable());
+            key.add(javaCommand.getWorkingDir());
+            key.add(new HashMap<String, String>(javaCommand.getActualEnvironment()));
+            key.add(new ArrayList<String>(javaCommand.getAllJvmArgs()));
+            key.add(new ArrayList<String>(javaCommand.getArgs()));
+            key.add(javaCommand.getClasspath().getFiles());
+            key.add(getLogLevel());
+            key.add(isLoadApplicationInSystemClassLoader());
+            key.add(new HashSet<String>(getSharedPackages()));
+            for (File file : getApplicationClasspath()) {
+                // The application classes may have been rebuilt since the JVM loaded them
+                if (file.isDirectory()) {
+                    return null;
+                }
+                addFileDetails(file, key);
+            }
+            for (URL url : implementationClassPath) {
+                if (!url.getProtocol().equals("file")) {
+                    key.add(url.toString());
+                    continue;
+                }
+                File file = GFileUtils.toFile(url);
+                if (file.isDirectory()) {
+                    // The build process has loaded the worker action classes from this same directory
+                    key.add(file.getAbsolutePath());
+                } else {
+                    addFileDetails(file, key);
+                }
+            }
+            return key;
+        }
+
+        private void addFileDetails(File file, List<Object> key) {
+            key.add(file.getAbsolutePath());
+            key.add(file.length());
+            key.add(file.lastModified());
+        }
     }
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal;
+
+import org.gradle.api.Action;
+import org.gradle.internal.UncheckedException;
+import org.gradle.messaging.remote.ConnectEvent;
+import org.gradle.messaging.remote.ObjectConnection;
+import org.gradle.process.internal.child.ActionExecutionWorker;
+import org.gradle.process.internal.child.WorkerControl;
+import org.gradle.process.internal.child.WorkerControlListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Date;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A worker process JVM which runs the actions of several {@link WorkerProcess} instances, one after the other. The JVM
+ * runs a {@link org.gradle.process.internal.child.ReusableWorker}, which is controlled over the connection of the
+ * underlying worker process. Each action gets its own connection back to the build process.
+ */
+public class PooledWorker implements WorkerControlListener {
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledWorker.class);
+    private static final long STOP_TIMEOUT_MILLIS = 10000;
+    private final Lock lock = new ReentrantLock();
+    private final Condition condition = lock.newCondition();
+    private final Object key;
+    private final DefaultWorkerProcess process;
+    private WorkerControl control;
+    private ObjectConnection connection;
+    private boolean alive;
+    private boolean busy;
+    private Throwable failure;
+
+    public PooledWorker(Object key, DefaultWorkerProcess process) {
+        this.key = key;
+        this.process = process;
+    }
+
+    /**
+     * Returns the key which identifies the worker process configurations that this JVM can be used for.
+     */
+    public Object getKey() {
+        return key;
+    }
+
+    public ExecHandle getExecHandle() {
+        return process.getExecHandle();
+    }
+
+    public boolean isAlive() {
+        lock.lock();
+        try {
+            return alive;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return process.toString();
+    }
+
+    /**
+     * Starts the JVM and blocks until it has connected.
+     */
+    public void start() {
+        lock.lock();
+        try {
+            alive = true;
+        } finally {
+            lock.unlock();
+        }
+        process.start();
+        ObjectConnection controlConnection = process.getConnection();
+        controlConnection.addIncoming(WorkerControlListener.class, this);
+        control = controlConnection.addOutgoing(WorkerControl.class);
+    }
+
+    /**
+     * Called when the JVM has exited.
+     */
+    public void processStopped() {
+        lock.lock();
+        try {
+            alive = false;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the action to notify when the worker passed to {@link #run(ActionExecutionWorker)} connects back to the
+     * build process.
+     */
+    public Action<ConnectEvent<ObjectConnection>> getConnectAction() {
+        return new Action<ConnectEvent<ObjectConnection>>() {
+            public void execute(ConnectEvent<ObjectConnection> event) {
+                lock.lock();
+                try {
+                    connection = event.getConnection();
+                    condition.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        };
+    }
+
+    /**
+     * Hands the given worker to the JVM. Does not block.
+     */
+    public void run(ActionExecutionWorker worker) {
+        lock.lock();
+        try {
+            connection = null;
+            failure = null;
+            busy = true;
+        } finally {
+            lock.unlock();
+        }
+        control.run(worker);
+    }
+
+    public void completed(Throwable failure) {
+        lock.lock();
+        try {
+            this.failure = failure;
+            busy = false;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the current worker has connected back to the build process.
+     */
+    public ObjectConnection waitForConnection(long timeoutMillis) {
+        Date connectExpiry = new Date(System.currentTimeMillis() + timeoutMillis);
+        lock.lock();
+        try {
+            while (connection == null && busy && alive) {
+                try {
+                    if (!condition.awaitUntil(connectExpiry)) {
+                        throw new ExecException(String.format("Timeout waiting for worker in %s to connect.", process));
+                    }
+                } catch (InterruptedException e) {
+                    throw UncheckedException.asUncheckedException(e);
+                }
+            }
+            if (connection == null && failure != null) {
+                throw UncheckedException.asUncheckedException(failure);
+            }
+            if (connection == null) {
+                throw new ExecException(String.format("Never received a connection from worker in %s.", process));
+            }
+            return connection;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until the current worker has completed.
+     *
+     * @return The failure of the worker, or null if the worker completed successfully.
+     */
+    public Throwable waitForCompletion() {
+        lock.lock();
+        try {
+            while (busy && alive) {
+                try {
+                    condition.await();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.asUncheckedException(e);
+                }
+            }
+            if (busy) {
+                return new ExecException(String.format("%s stopped before the worker completed.", process));
+            }
+            return failure;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Asks the JVM to stop, and blocks until it has exited. Aborts the JVM if it does not exit in a timely manner.
+     */
+    public void stop() {
+        if (isAlive() && control != null) {
+            try {
+                control.stop();
+            } catch (Throwable e) {
+                LOGGER.debug(String.format("Could not ask %s to stop.", process), e);
+            }
+        }
+        if (!waitForProcessStop()) {
+            LOGGER.debug("Timeout waiting for {} to stop. Aborting.", process);
+            process.getExecHandle().abort();
+        }
+        try {
+            process.waitForStop();
+        } catch (Throwable e) {
+            LOGGER.debug(String.format("%s did not stop cleanly.", process), e);
+        }
+    }
+
+    private boolean waitForProcessStop() {
+        Date stopExpiry = new Date(System.currentTimeMillis() + STOP_TIMEOUT_MILLIS);
+        lock.lock();
+        try {
+            while (alive) {
+                try {
+                    if (!condition.awaitUntil(stopExpiry)) {
+                        return false;
+                    }
+                } catch (InterruptedException e) {
+                    throw UncheckedException.asUncheckedException(e);
+                }
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
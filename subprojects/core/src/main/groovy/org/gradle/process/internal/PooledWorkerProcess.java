@@ -0,0 +1,145 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal;
+
+import org.gradle.api.Action;
+import org.gradle.internal.Factory;
+import org.gradle.messaging.remote.Address;
+import org.gradle.messaging.remote.MessagingServer;
+import org.gradle.messaging.remote.ObjectConnection;
+import org.gradle.process.ExecResult;
+import org.gradle.process.internal.child.ActionExecutionWorker;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link WorkerProcess} which runs its action in a {@link PooledWorker}. Reuses an idle JVM from the pool when one with
+ * the same key is available, otherwise starts a new JVM. Returns the JVM to the pool when the action completes
+ * successfully.
+ *
+ * <p>The given exec handle listeners are notified when the JVM running the action stops, regardless of which worker
+ * process started the JVM.</p>
+ */
+public class PooledWorkerProcess implements WorkerProcess {
+    private final Object key;
+    private final WorkerProcessPool pool;
+    private final Factory<PooledWorker> workerFactory;
+    private final MessagingServer server;
+    private final Action<WorkerProcessContext> action;
+    private final Object workerId;
+    private final String displayName;
+    private final long connectTimeout;
+    private final List<ExecHandleListener> listeners;
+    private PooledWorker worker;
+    private ObjectConnection connection;
+
+    public PooledWorkerProcess(Object key, WorkerProcessPool pool, Factory<PooledWorker> workerFactory, MessagingServer server,
+                               Action<WorkerProcessContext> action, Object workerId, String displayName,
+                               int connectTimeoutValue, TimeUnit connectTimeoutUnits, List<ExecHandleListener> listeners) {
+        this.key = key;
+        this.pool = pool;
+        this.workerFactory = workerFactory;
+        this.server = server;
+        this.action = action;
+        this.workerId = workerId;
+        this.displayName = displayName;
+        this.connectTimeout = connectTimeoutUnits.toMillis(connectTimeoutValue);
+        this.listeners = listeners;
+    }
+
+    @Override
+    public String toString() {
+        return displayName;
+    }
+
+    public ObjectConnection getConnection() {
+        return connection;
+    }
+
+    public void start() {
+        PooledWorker worker = pool.lease(key);
+        try {
+            if (worker == null) {
+                worker = workerFactory.create();
+                worker.start();
+            } else {
+                // A new JVM is created with the listeners already attached
+                for (ExecHandleListener listener : listeners) {
+                    worker.getExecHandle().addListener(listener);
+                }
+            }
+            Address address = server.accept(worker.getConnectAction());
+            worker.run(new ActionExecutionWorker(action, workerId, displayName, address));
+            connection = worker.waitForConnection(connectTimeout);
+        } catch (RuntimeException e) {
+            if (worker != null) {
+                worker.stop();
+            }
+            throw e;
+        }
+        this.worker = worker;
+    }
+
+    public ExecResult waitForStop() {
+        PooledWorker worker = this.worker;
+        ObjectConnection connection = this.connection;
+        this.worker = null;
+        this.connection = null;
+
+        Throwable failure = worker.waitForCompletion();
+        if (connection != null) {
+            connection.stop();
+        }
+        if (failure == null && worker.isAlive()) {
+            for (ExecHandleListener listener : listeners) {
+                worker.getExecHandle().removeListener(listener);
+            }
+            pool.release(worker);
+            return new PooledExecResult();
+        }
+
+        ExecHandle execHandle = worker.getExecHandle();
+        worker.stop();
+        if (failure != null) {
+            throw new ExecException(String.format("%s failed.", displayName), failure);
+        }
+        return execHandle.waitForFinish().assertNormalExitValue();
+    }
+
+    /**
+     * The result of a worker action whose JVM has been returned to the pool, and so is still running.
+     */
+    private class PooledExecResult implements ExecResult {
+        public int getExitValue() {
+            return 0;
+        }
+
+        public ExecResult assertNormalExitValue() throws ExecException {
+            return this;
+        }
+
+        public ExecResult rethrowFailure() throws ExecException {
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("{exitValue=0, %s still running in pool}", displayName);
+        }
+    }
+}
@@ -28,5 +28,15 @@ public interface WorkerProcess {
 
     void start();
 
+    /**
+     * Waits for the worker action to complete, and for the process to stop.
+     *
+     * <p>A reusable worker process may keep its JVM running after the worker action has completed. In that case, the
+     * result does not describe an exit of the JVM: its exit value is always 0, and indicates only that the worker action
+     * completed successfully.</p>
+     *
+     * @return The result. Never returns a result with a non-zero exit value.
+     * @throws ExecException When the worker action fails or the process exits abnormally.
+     */
     ExecResult waitForStop();
 }
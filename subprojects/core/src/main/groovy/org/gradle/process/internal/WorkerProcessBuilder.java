@@ -36,6 +36,11 @@ import java.util.Set;
  * <p>A worker process can optionally specify an application classpath. The classes of this classpath are loaded into an
  * isolated ClassLoader, which is made visible to the worker action ClassLoader. Only the packages specified in the set
  * of shared packages are visible to the worker action ClassLoader.</p>
+ *
+ * <p>A worker process can optionally be marked as reusable. When a {@link WorkerProcessPool} is available, which is only
+ * the case for builds run by the daemon, the JVM of a reusable worker process is kept alive after the worker action
+ * completes, and is used to run the action of a later reusable worker process with the same configuration. A worker process whose application classpath contains a
+ * directory is never reused, as the contents of the directory may have changed.</p>
  */
 public abstract class WorkerProcessBuilder {
     private final JavaExecHandleBuilder javaCommand;
@@ -44,6 +49,7 @@ public abstract class WorkerProcessBuilder {
     private Action<WorkerProcessContext> action;
     private LogLevel logLevel = LogLevel.LIFECYCLE;
     private boolean loadApplicationInSystemClassLoader;
+    private boolean reusable;
 
     public WorkerProcessBuilder(FileResolver fileResolver) {
         javaCommand = new JavaExecHandleBuilder(fileResolver);
@@ -101,5 +107,13 @@ public abstract class WorkerProcessBuilder {
         this.loadApplicationInSystemClassLoader = loadApplicationInSystemClassLoader;
     }
 
+    public boolean isReusable() {
+        return reusable;
+    }
+
+    public void setReusable(boolean reusable) {
+        this.reusable = reusable;
+    }
+
     public abstract WorkerProcess build();
 }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal;
+
+import org.gradle.internal.Stoppable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds idle {@link PooledWorker} JVMs, so that they can be reused by later reusable worker processes with the same
+ * configuration. Idle JVMs are stopped once they have been idle for longer than the idle timeout, or when more than the
+ * maximum number of idle JVMs are held, oldest first.
+ */
+public class WorkerProcessPool implements Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerProcessPool.class);
+    public static final int DEFAULT_MAX_IDLE_WORKERS = 4;
+    public static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 180;
+    private final Object lock = new Object();
+    private final LinkedList<IdleWorker> idleWorkers = new LinkedList<IdleWorker>();
+    private final int maxIdleWorkers;
+    private final long idleTimeoutMillis;
+    private Timer timer;
+    private boolean stopped;
+
+    public WorkerProcessPool() {
+        this(DEFAULT_MAX_IDLE_WORKERS, DEFAULT_IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public WorkerProcessPool(int maxIdleWorkers, long idleTimeout, TimeUnit idleTimeoutUnits) {
+        this.maxIdleWorkers = maxIdleWorkers;
+        this.idleTimeoutMillis = idleTimeoutUnits.toMillis(idleTimeout);
+    }
+
+    public long getIdleTimeoutMillis() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * Removes an idle worker with the given key from this pool.
+     *
+     * @return The worker, or null if there is no idle worker with the given key.
+     */
+    public PooledWorker lease(Object key) {
+        synchronized (lock) {
+            ListIterator<IdleWorker> iterator = idleWorkers.listIterator(idleWorkers.size());
+            while (iterator.hasPrevious()) {
+                PooledWorker worker = iterator.previous().worker;
+                if (!worker.isAlive()) {
+                    iterator.remove();
+                } else if (worker.getKey().equals(key)) {
+                    iterator.remove();
+                    LOGGER.debug("Reusing idle {}.", worker);
+                    return worker;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Returns the given worker to this pool. The worker must not be running a worker action.
+     */
+    public void release(PooledWorker worker) {
+        List<PooledWorker> evicted = new ArrayList<PooledWorker>();
+        synchronized (lock) {
+            if (stopped || maxIdleWorkers <= 0) {
+                evicted.add(worker);
+            } else {
+                idleWorkers.addLast(new IdleWorker(worker, System.currentTimeMillis()));
+                while (idleWorkers.size() > maxIdleWorkers) {
+                    evicted.add(idleWorkers.removeFirst().worker);
+                }
+                if (timer == null) {
+                    timer = new Timer("Worker process pool", true);
+                    long period = Math.max(1, idleTimeoutMillis / 4);
+                    timer.schedule(new TimerTask() {
+                        @Override
+                        public void run() {
+                            stopExpiredWorkers();
+                        }
+                    }, period, period);
+                }
+            }
+        }
+        stopAll(evicted);
+    }
+
+    private void stopExpiredWorkers() {
+        List<PooledWorker> expired = new ArrayList<PooledWorker>();
+        synchronized (lock) {
+            long expiry = System.currentTimeMillis() - idleTimeoutMillis;
+            Iterator<IdleWorker> iterator = idleWorkers.iterator();
+            while (iterator.hasNext()) {
+                IdleWorker idleWorker = iterator.next();
+                if (idleWorker.idleSince <= expiry || !idleWorker.worker.isAlive()) {
+                    iterator.remove();
+                    expired.add(idleWorker.worker);
+                }
+            }
+        }
+        stopAll(expired);
+    }
+
+    /**
+     * Stops all idle workers. Any workers released after this method has been called are stopped immediately.
+     */
+    public void stop() {
+        List<PooledWorker> workers = new ArrayList<PooledWorker>();
+        synchronized (lock) {
+            stopped = true;
+            if (timer != null) {
+                timer.cancel();
+                timer = null;
+            }
+            for (IdleWorker idleWorker : idleWorkers) {
+                workers.add(idleWorker.worker);
+            }
+            idleWorkers.clear();
+        }
+        stopAll(workers);
+    }
+
+    private void stopAll(List<PooledWorker> workers) {
+        for (PooledWorker worker : workers) {
+            LOGGER.debug("Stopping idle {}.", worker);
+            try {
+                worker.stop();
+            } catch (Throwable e) {
+                LOGGER.warn(String.format("Could not stop %s.", worker), e);
+            }
+        }
+    }
+
+    private static class IdleWorker {
+        private final PooledWorker worker;
+        private final long idleSince;
+
+        private IdleWorker(PooledWorker worker, long idleSince) {
+            this.worker = worker;
+            this.idleSince = idleSince;
+        }
+    }
+}
@@ -16,9 +16,11 @@
 
 package org.gradle.process.internal.child;
 
+import org.gradle.api.Action;
 import org.gradle.api.internal.ClassPathRegistry;
 import org.gradle.messaging.remote.Address;
 import org.gradle.process.internal.WorkerProcessBuilder;
+import org.gradle.process.internal.WorkerProcessContext;
 import org.gradle.util.GFileUtils;
 
 import java.io.File;
@@ -53,16 +55,19 @@ public class ApplicationClassesInIsolatedClassLoaderWorkerFactory implements Wor
     private final Object workerId;
     private final String displayName;
     private final WorkerProcessBuilder processBuilder;
+    private final Action<WorkerProcessContext> workerAction;
     private final Collection<URL> implementationClassPath;
     private final Address serverAddress;
     private final ClassPathRegistry classPathRegistry;
 
     public ApplicationClassesInIsolatedClassLoaderWorkerFactory(Object workerId, String displayName, WorkerProcessBuilder processBuilder,
+                                            Action<WorkerProcessContext> workerAction,
                                             Collection<URL> implementationClassPath, Address serverAddress,
                                             ClassPathRegistry classPathRegistry) {
         this.workerId = workerId;
         this.displayName = displayName;
         this.processBuilder = processBuilder;
+        this.workerAction = workerAction;
         this.implementationClassPath = implementationClassPath;
         this.serverAddress = serverAddress;
         this.classPathRegistry = classPathRegistry;
@@ -74,7 +79,7 @@ public class ApplicationClassesInIsolatedClassLoaderWorkerFactory implements Wor
 
     public Callable<?> create() {
         List<URL> applicationClassPath = GFileUtils.toURLs(processBuilder.getApplicationClasspath());
-        ActionExecutionWorker injectedWorker = new ActionExecutionWorker(processBuilder.getWorker(), workerId,
+        ActionExecutionWorker injectedWorker = new ActionExecutionWorker(workerAction, workerId,
                 displayName, serverAddress);
         ImplementationClassLoaderWorker worker = new ImplementationClassLoaderWorker(processBuilder.getLogLevel(),
                 processBuilder.getSharedPackages(), implementationClassPath, injectedWorker);
@@ -16,9 +16,11 @@
 
 package org.gradle.process.internal.child;
 
+import org.gradle.api.Action;
 import org.gradle.api.internal.ClassPathRegistry;
 import org.gradle.messaging.remote.Address;
 import org.gradle.process.internal.WorkerProcessBuilder;
+import org.gradle.process.internal.WorkerProcessContext;
 import org.gradle.process.internal.launcher.BootstrapClassLoaderWorker;
 import org.gradle.util.GUtil;
 
@@ -55,16 +57,19 @@ public class ApplicationClassesInSystemClassLoaderWorkerFactory implements Worke
     private final Object workerId;
     private final String displayName;
     private final WorkerProcessBuilder processBuilder;
+    private final Action<WorkerProcessContext> workerAction;
     private final List<URL> implementationClassPath;
     private final Address serverAddress;
     private final ClassPathRegistry classPathRegistry;
 
     public ApplicationClassesInSystemClassLoaderWorkerFactory(Object workerId, String displayName, WorkerProcessBuilder processBuilder,
+                                          Action<WorkerProcessContext> workerAction,
                                           List<URL> implementationClassPath, Address serverAddress,
                                           ClassPathRegistry classPathRegistry) {
         this.workerId = workerId;
         this.displayName = displayName;
         this.processBuilder = processBuilder;
+        this.workerAction = workerAction;
         this.implementationClassPath = implementationClassPath;
         this.serverAddress = serverAddress;
         this.classPathRegistry = classPathRegistry;
@@ -76,7 +81,7 @@ public class ApplicationClassesInSystemClassLoaderWorkerFactory implements Worke
 
     public Callable<?> create() {
         // Serialize the bootstrap worker, so it can be transported through the system ClassLoader
-        ActionExecutionWorker injectedWorker = new ActionExecutionWorker(processBuilder.getWorker(), workerId, displayName, serverAddress);
+        ActionExecutionWorker injectedWorker = new ActionExecutionWorker(workerAction, workerId, displayName, serverAddress);
         ImplementationClassLoaderWorker worker = new ImplementationClassLoaderWorker(processBuilder.getLogLevel(), processBuilder.getSharedPackages(),
                 implementationClassPath, injectedWorker);
         byte[] serializedWorker = GUtil.serialize(worker);
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal.child;
+
+import org.gradle.api.Action;
+import org.gradle.internal.UncheckedException;
+import org.gradle.messaging.remote.ObjectConnection;
+import org.gradle.process.internal.WorkerProcessContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Serializable;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The action of a reusable worker process. Receives {@link ActionExecutionWorker} instances from the build process over
+ * the server connection and runs them one at a time, until it is asked to stop, the build process disconnects, or it has
+ * been idle for the given timeout.
+ */
+public class ReusableWorker implements Action<WorkerProcessContext>, Serializable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReusableWorker.class);
+    private static final Object STOP = new Object();
+    private static final Object DISCONNECTED = new Object();
+    private final long idleTimeoutMillis;
+
+    public ReusableWorker(long idleTimeoutMillis) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    public void execute(WorkerProcessContext context) {
+        final BlockingQueue<Object> queue = new LinkedBlockingQueue<Object>();
+        ObjectConnection connection = context.getServerConnection();
+        connection.addIncoming(WorkerControl.class, new WorkerControl() {
+            public void run(ActionExecutionWorker worker) {
+                queue.add(worker);
+            }
+
+            public void stop() {
+                queue.add(STOP);
+            }
+        });
+        connection.onDisconnect(new Runnable() {
+            public void run() {
+                queue.add(DISCONNECTED);
+            }
+        });
+        WorkerControlListener listener = connection.addOutgoing(WorkerControlListener.class);
+
+        final ClassLoader applicationClassLoader = context.getApplicationClassLoader();
+        WorkerContext workerContext = new WorkerContext() {
+            public ClassLoader getApplicationClassLoader() {
+                return applicationClassLoader;
+            }
+        };
+
+        while (true) {
+            Object next;
+            try {
+                next = queue.poll(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                throw UncheckedException.asUncheckedException(e);
+            }
+            if (next == null) {
+                LOGGER.debug("Stopping {} after being idle for {}ms.", context.getDisplayName(), idleTimeoutMillis);
+                return;
+            }
+            if (next == STOP) {
+                LOGGER.debug("Stopping {}.", context.getDisplayName());
+                return;
+            }
+            if (next == DISCONNECTED) {
+                LOGGER.debug("Stopping {} as the build process has disconnected.", context.getDisplayName());
+                return;
+            }
+
+            Throwable failure = null;
+            try {
+                ((ActionExecutionWorker) next).execute(workerContext);
+            } catch (Throwable throwable) {
+                failure = throwable;
+            }
+            listener.completed(failure);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal.child;
+
+/**
+ * Used by the build process to hand work to a reusable worker process.
+ */
+public interface WorkerControl {
+    /**
+     * Runs the given worker in the worker process. The worker process notifies {@link WorkerControlListener#completed(Throwable)}
+     * when the worker has finished.
+     */
+    void run(ActionExecutionWorker worker);
+
+    /**
+     * Requests that the worker process stop once any current worker has finished.
+     */
+    void stop();
+}
@@ -18,8 +18,10 @@ package org.gradle.profile;
 import org.gradle.api.Project;
 import org.gradle.api.artifacts.ResolvableDependencies;
 import org.gradle.api.invocation.Gradle;
+import org.gradle.cache.internal.IndexedCacheStatistics;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -49,6 +51,7 @@ public class BuildProfile {
     private long projectsLoaded;
     private long projectsEvaluated;
     private long buildFinished;
+    private List<IndexedCacheStatistics> cacheStatistics = Collections.emptyList();
 
     public BuildProfile(Gradle gradle) {
         this.gradle = gradle;
@@ -176,6 +179,22 @@ public class BuildProfile {
         this.buildFinished = buildFinished;
     }
 
+    /**
+     * Should be set with the statistics of the caches used by the build, once the build has finished.
+     * @param cacheStatistics
+     */
+    public void setCacheStatistics(List<IndexedCacheStatistics> cacheStatistics) {
+        this.cacheStatistics = cacheStatistics;
+    }
+
+    /**
+     * Get the block cache statistics of the indexed caches used by the build.
+     * @return list
+     */
+    public List<IndexedCacheStatistics> getCacheStatistics() {
+        return cacheStatistics;
+    }
+
     /**
      * Get the elapsed time (in mSec) between the start of profiling and the buildStarted event.
      * @return
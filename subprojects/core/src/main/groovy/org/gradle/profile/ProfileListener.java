@@ -27,6 +27,7 @@ import org.gradle.api.execution.TaskExecutionListener;
 import org.gradle.api.initialization.Settings;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.api.tasks.TaskState;
+import org.gradle.cache.internal.CacheFactory;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
@@ -36,9 +37,11 @@ public class ProfileListener implements BuildListener, ProjectEvaluationListener
     private BuildProfile buildProfile;
     private static final SimpleDateFormat FILE_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss");
     private long profileStarted;
+    private final CacheFactory cacheFactory;
 
-    public ProfileListener(long profileStarted) {
+    public ProfileListener(long profileStarted, CacheFactory cacheFactory) {
         this.profileStarted = profileStarted;
+        this.cacheFactory = cacheFactory;
     }
 
     // BuildListener
@@ -62,6 +65,7 @@ public class ProfileListener implements BuildListener, ProjectEvaluationListener
 
     public void buildFinished(BuildResult result) {
         buildProfile.setBuildFinished(System.currentTimeMillis());
+        buildProfile.setCacheStatistics(cacheFactory.getIndexedCacheStatistics());
 
         ProfileReportRenderer renderer = new ProfileReportRenderer();
         File file = new File(result.getGradle().getRootProject().getBuildDir(), "reports/profile/profile-" + FILE_DATE_FORMAT.format(new Date(profileStarted)) + ".html");
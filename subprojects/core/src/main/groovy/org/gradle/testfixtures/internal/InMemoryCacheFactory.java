@@ -24,14 +24,15 @@ import org.gradle.cache.internal.*;
 
 import java.io.File;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 public class InMemoryCacheFactory implements CacheFactory {
     public PersistentCache openStore(File storeDir, String displayName, FileLockManager.LockMode lockMode, Action<? super PersistentCache> initializer) throws CacheOpenException {
-        return open(storeDir, displayName, CacheUsage.ON, Collections.<String, Object>emptyMap(), lockMode, initializer);
+        return open(storeDir, displayName, CacheUsage.ON, Collections.<String, Object>emptyMap(), lockMode, null, false, initializer);
     }
 
-    public PersistentCache open(File cacheDir, String displayName, CacheUsage usage, Map<String, ?> properties, FileLockManager.LockMode lockMode, Action<? super PersistentCache> initializer) {
+    public PersistentCache open(File cacheDir, String displayName, CacheUsage usage, Map<String, ?> properties, FileLockManager.LockMode lockMode, Action<? super PersistentCache> recoveryAction, boolean mappedFiles, Action<? super PersistentCache> initializer) {
         cacheDir.mkdirs();
         InMemoryCache cache = new InMemoryCache(cacheDir);
         if (initializer != null) {
@@ -49,6 +50,10 @@ public class InMemoryCacheFactory implements CacheFactory {
         return new SimpleStateCache<E>(new File(cacheDir, "state.bin"), new NoOpFileLock(), new DefaultSerializer<E>());
     }
 
+    public List<IndexedCacheStatistics> getIndexedCacheStatistics() {
+        return Collections.emptyList();
+    }
+
     private static class NoOpFileLock extends AbstractFileAccess {
         public <T> T readFromFile(Factory<? extends T> action) throws LockTimeoutException {
             return action.create();
@@ -92,6 +97,10 @@ public class InMemoryCacheFactory implements CacheFactory {
             action.run();
         }
 
+        public void batchUpdate(String operationDisplayName, Runnable action) {
+            useCache(operationDisplayName, action);
+        }
+
         public <T> T longRunningOperation(String operationDisplayName, Factory<? extends T> action) {
             return action.create();
         }
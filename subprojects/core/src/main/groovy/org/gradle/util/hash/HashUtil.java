@@ -26,16 +26,22 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
 public class HashUtil {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
     public static HashValue createHash(String scriptText, String algorithm) {
+        return createHash(scriptText.getBytes(), algorithm);
+    }
+
+    public static HashValue createHash(byte[] bytes, String algorithm) {
         MessageDigest messageDigest = createMessageDigest(algorithm);
-        messageDigest.update(scriptText.getBytes());
+        messageDigest.update(bytes);
         return new HashValue(messageDigest.digest());
     }
 
     public static HashValue createHash(File file, String algorithm) {
         MessageDigest messageDigest = createMessageDigest(algorithm);
         try {
-            byte[] buffer = new byte[4096];
+            byte[] buffer = new byte[(int) Math.max(1, Math.min(BUFFER_SIZE, file.length()))];
             InputStream instr = new FileInputStream(file);
             try {
                 while (true) {
@@ -55,6 +61,9 @@ public class HashUtil {
     }
 
     private static MessageDigest createMessageDigest(String algorithm) {
+        if (algorithm.equalsIgnoreCase(Murmur3MessageDigest.ALGORITHM)) {
+            return new Murmur3MessageDigest();
+        }
         try {
             return MessageDigest.getInstance(algorithm);
         } catch (NoSuchAlgorithmException e) {
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.util.hash;
+
+import java.security.MessageDigest;
+
+/**
+ * A {@link MessageDigest} which calculates the 128 bit x64 variant of the MurmurHash3 hash function, with a seed of
+ * 0. This is not a cryptographic hash function, but it is considerably faster than MD5 and SHA1, and is suitable for
+ * detecting changes to the content of files.
+ *
+ * <p>The digest is the two 64 bit halves of the hash, each encoded in little-endian byte order.</p>
+ */
+public class Murmur3MessageDigest extends MessageDigest {
+    public static final String ALGORITHM = "MURMUR3-128";
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private final byte[] block = new byte[16];
+    private int blockLength;
+    private long totalLength;
+    private long h1;
+    private long h2;
+
+    public Murmur3MessageDigest() {
+        super(ALGORITHM);
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return 16;
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        block[blockLength++] = input;
+        totalLength++;
+        if (blockLength == 16) {
+            processBlock(block, 0);
+            blockLength = 0;
+        }
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int length) {
+        totalLength += length;
+        if (blockLength > 0) {
+            int count = Math.min(16 - blockLength, length);
+            System.arraycopy(input, offset, block, blockLength, count);
+            blockLength += count;
+            offset += count;
+            length -= count;
+            if (blockLength < 16) {
+                return;
+            }
+            processBlock(block, 0);
+            blockLength = 0;
+        }
+        while (length >= 16) {
+            processBlock(input, offset);
+            offset += 16;
+            length -= 16;
+        }
+        System.arraycopy(input, offset, block, 0, length);
+        blockLength = length;
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        long k1 = 0;
+        long k2 = 0;
+        for (int i = blockLength - 1; i >= 8; i--) {
+            k2 ^= (long) (block[i] & 0xff) << ((i - 8) * 8);
+        }
+        for (int i = Math.min(blockLength, 8) - 1; i >= 0; i--) {
+            k1 ^= (long) (block[i] & 0xff) << (i * 8);
+        }
+        if (blockLength > 8) {
+            h2 ^= mixK2(k2);
+        }
+        if (blockLength > 0) {
+            h1 ^= mixK1(k1);
+        }
+
+        h1 ^= totalLength;
+        h2 ^= totalLength;
+        h1 += h2;
+        h2 += h1;
+        h1 = finalMix(h1);
+        h2 = finalMix(h2);
+        h1 += h2;
+        h2 += h1;
+
+        byte[] digest = new byte[16];
+        putLong(h1, digest, 0);
+        putLong(h2, digest, 8);
+        engineReset();
+        return digest;
+    }
+
+    @Override
+    protected void engineReset() {
+        blockLength = 0;
+        totalLength = 0;
+        h1 = 0;
+        h2 = 0;
+    }
+
+    private void processBlock(byte[] buffer, int offset) {
+        long k1 = getLong(buffer, offset);
+        long k2 = getLong(buffer, offset + 8);
+
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    private static long mixK1(long k1) {
+        k1 *= C1;
+        k1 = Long.rotateLeft(k1, 31);
+        return k1 * C2;
+    }
+
+    private static long mixK2(long k2) {
+        k2 *= C2;
+        k2 = Long.rotateLeft(k2, 33);
+        return k2 * C1;
+    }
+
+    private static long finalMix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long getLong(byte[] buffer, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = (value << 8) | (buffer[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static void putLong(long value, byte[] buffer, int offset) {
+        for (int i = 0; i < 8; i++) {
+            buffer[offset + i] = (byte) (value >>> (i * 8));
+        }
+    }
+}
@@ -58,6 +58,9 @@ class StartParameterTest {
         testObj.logLevel = LogLevel.WARN
         testObj.colorOutput = false
         testObj.continueOnFailure = true
+        testObj.parallelThreadCount = 4
+        testObj.buildCacheEnabled = true
+        testObj.continuous = true
         testObj.refreshOptions = RefreshOptions.fromCommandLineOptions(['dependencies'])
 
         StartParameter startParameter = testObj.newInstance()
@@ -81,6 +84,9 @@ class StartParameterTest {
         assertThat(parameter.defaultProjectSelector, reflectionEquals(new DefaultProjectSpec(parameter.currentDir)))
         assertFalse(parameter.dryRun)
         assertFalse(parameter.continueOnFailure)
+        assertThat(parameter.parallelThreadCount, equalTo(0))
+        assertFalse(parameter.buildCacheEnabled)
+        assertFalse(parameter.continuous)
         assertThat(parameter.refreshOptions, equalTo(RefreshOptions.NONE))
         assertThat(parameter, isSerializable())
     }
@@ -15,51 +15,96 @@
  */
 package org.gradle.api.internal.changedetection
 
-import org.gradle.cache.PersistentIndexedCache
 import spock.lang.Specification
 
 class CacheBackedFileSnapshotRepositoryTest extends Specification {
     final TaskArtifactStateCacheAccess cacheAccess = Mock()
-    final PersistentIndexedCache<Object, Object> indexedCache = Mock()
+    final InMemoryIndexedCache<Object, Object> indexedCache = new InMemoryIndexedCache<Object, Object>()
+    final InMemoryIndexedCache<Object, Object> referenceCache = new InMemoryIndexedCache<Object, Object>()
     FileSnapshotRepository repository
 
     def setup() {
         1 * cacheAccess.createCache("fileSnapshots", Object, Object) >> indexedCache
+        1 * cacheAccess.createCache("fileSnapshotReferences", Object, Object) >> referenceCache
         repository = new CacheBackedFileSnapshotRepository(cacheAccess)
     }
 
     def "assigns an id when a snapshot is added"() {
-        FileCollectionSnapshot snapshot = Mock()
+        given:
+        indexedCache.put("nextId", 4L)
 
         when:
-        def id = repository.add(snapshot)
+        def id = repository.add(snapshot("a"))
 
         then:
         id == 4
-        1 * indexedCache.get("nextId") >> (4 as Long)
-        1 * indexedCache.put("nextId", 5)
-        1 * indexedCache.put(4, snapshot)
-        0 * _._
+        indexedCache.get("nextId") == 5
     }
 
     def "can fetch a snapshot by id"() {
-        FileCollectionSnapshot snapshot = Mock()
+        when:
+        def id = repository.add(snapshot("a"))
+        def result = repository.get(id)
+
+        then:
+        result.files.files == [new File("a").absoluteFile] as Set
+    }
+
+    def "returns null for unknown id"() {
+        expect:
+        repository.get(12) == null
+    }
 
+    def "reuses snapshot with same content"() {
         when:
-        def result = repository.get(4)
+        def id1 = repository.add(snapshot("a"))
+        def id2 = repository.add(snapshot("a"))
+        def id3 = repository.add(snapshot("b"))
 
         then:
-        result == snapshot
-        1 * indexedCache.get(4) >> snapshot
-        0 * _._
+        id1 == id2
+        id3 != id1
+        indexedCache.get("nextId") == 3
+    }
+
+    def "keeps shared snapshot until it has been removed by each reference"() {
+        def id = repository.add(snapshot("a"))
+        repository.add(snapshot("a"))
+
+        when:
+        repository.remove(id)
+
+        then:
+        repository.get(id) != null
+
+        when:
+        repository.remove(id)
+
+        then:
+        repository.get(id) == null
+        referenceCache.entries.isEmpty()
+
+        when:
+        def newId = repository.add(snapshot("a"))
+
+        then:
+        newId != id
+        repository.get(newId) != null
     }
 
     def "can delete a snapshot by id"() {
+        def id = repository.add(snapshot("a"))
+
         when:
-        repository.remove(4)
+        repository.remove(id)
 
         then:
-        1 * indexedCache.remove(4)
-        0 * _._
+        repository.get(id) == null
+    }
+
+    def snapshot(String path) {
+        def builder = new CompactFileCollectionSnapshot.Builder()
+        builder.addFile(new File(path).absolutePath, new byte[16])
+        return builder.build()
     }
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2011 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection
+
+import org.gradle.api.internal.TaskInternal
+import org.gradle.cache.PersistentIndexedCache
+import spock.lang.Specification
+
+class CacheBackedTaskDurationHistoryTest extends Specification {
+    final TaskArtifactStateCacheAccess cacheAccess = Mock()
+    final PersistentIndexedCache<String, Long> indexedCache = Mock()
+    final TaskInternal task1 = Mock()
+    final TaskInternal task2 = Mock()
+    CacheBackedTaskDurationHistory history
+
+    def setup() {
+        1 * cacheAccess.createCache("taskDurations", String, Long) >> indexedCache
+        history = new CacheBackedTaskDurationHistory(cacheAccess)
+    }
+
+    def "fetches recorded durations by task path"() {
+        when:
+        def result = history.getDurations([task1, task2])
+
+        then:
+        result == [(task1): 12L]
+        1 * cacheAccess.useCache(!null, !null) >> { args -> args[1].create() }
+        _ * task1.path >> ":task1"
+        _ * task2.path >> ":task2"
+        1 * indexedCache.get(":task1") >> 12L
+        1 * indexedCache.get(":task2") >> null
+        0 * _._
+    }
+
+    def "records duration by task path"() {
+        when:
+        history.recordDuration(task1, 15)
+
+        then:
+        1 * cacheAccess.useCache(!null, !null) >> { args -> args[1].run() }
+        _ * task1.path >> ":task1"
+        1 * indexedCache.put(":task1", 15L)
+        0 * _._
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection
+
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.file.collections.SimpleFileCollection
+import org.gradle.internal.Factory
+import spock.lang.Specification
+
+import java.util.concurrent.Executor
+
+class CacheBackedTaskHistoryRepositoryTest extends Specification {
+    final TaskArtifactStateCacheAccess cacheAccess = Mock()
+    final FileSnapshotRepository snapshotRepository = Mock()
+    final InMemoryIndexedCache historyCache = new InMemoryIndexedCache()
+    final FileCollectionSnapshot inputFilesSnapshot = Mock()
+    final List<Runnable> writes = []
+    final Executor writer = { writes << it } as Executor
+    TaskInternal task1
+    TaskInternal task2
+    CacheBackedTaskHistoryRepository repository
+
+    def setup() {
+        task1 = task(":a")
+        task2 = task(":b")
+        _ * cacheAccess.createCache("taskArtifacts", String, _, _) >> historyCache
+        _ * cacheAccess.useCache(_, _ as Factory) >> { it[1].create() }
+        repository = new CacheBackedTaskHistoryRepository(cacheAccess, snapshotRepository, writer, 2)
+    }
+
+    def "queues history update until flushed"() {
+        when:
+        execute(task1)
+
+        then:
+        historyCache.entries.isEmpty()
+        0 * cacheAccess.batchUpdate(_, _)
+        0 * snapshotRepository._
+
+        when:
+        repository.flush()
+
+        then:
+        1 * cacheAccess.batchUpdate(_, _) >> { it[1].run() }
+        1 * snapshotRepository.add(inputFilesSnapshot) >> 12L
+        0 * _._
+
+        and:
+        historyCache.entries.keySet() == [":a"] as Set
+    }
+
+    def "queued history update is visible to later executions of the task"() {
+        given:
+        def history = execute(task1)
+
+        when:
+        def next = repository.getHistory(task1)
+
+        then:
+        next.previousExecution.is(history.currentExecution)
+        next.previousExecution.inputFilesSnapshot.is(inputFilesSnapshot)
+        historyCache.entries.isEmpty()
+    }
+
+    def "hands queued updates to writer as a single batch when batch is full"() {
+        when:
+        execute(task1)
+
+        then:
+        writes.isEmpty()
+
+        when:
+        execute(task2)
+
+        then:
+        writes.size() == 1
+        0 * cacheAccess.batchUpdate(_, _)
+        historyCache.entries.isEmpty()
+
+        when:
+        writes[0].run()
+
+        then:
+        1 * cacheAccess.batchUpdate(_, _) >> { it[1].run() }
+        2 * snapshotRepository.add(inputFilesSnapshot) >>> [1L, 2L]
+        historyCache.entries.keySet() == [":a", ":b"] as Set
+    }
+
+    def "updates being written are visible to later executions of the task"() {
+        given:
+        def history
+        _ * cacheAccess.batchUpdate(_, _) >> {
+            def next = repository.getHistory(task1)
+            assert next.previousExecution.is(history.currentExecution)
+        }
+        history = execute(task1)
+        execute(task2)
+
+        expect:
+        writes[0].run()
+    }
+
+    def "flush rethrows failure of writer"() {
+        given:
+        def failure = new RuntimeException()
+        _ * cacheAccess.batchUpdate(_, _) >> { throw failure }
+        execute(task1)
+        execute(task2)
+        writes[0].run()
+
+        when:
+        repository.flush()
+
+        then:
+        RuntimeException e = thrown()
+        e == failure
+    }
+
+    def "flush does nothing when there are no queued updates"() {
+        when:
+        repository.flush()
+
+        then:
+        0 * _._
+    }
+
+    def "removes snapshots of discarded executions when writing batch"() {
+        given:
+        _ * cacheAccess.batchUpdate(_, _) >> { it[1].run() }
+        _ * snapshotRepository.add(inputFilesSnapshot) >>> [1L, 2L, 3L, 4L]
+
+        when:
+        3.times {
+            execute(task1)
+            repository.flush()
+        }
+
+        then:
+        0 * snapshotRepository.remove(_)
+
+        when:
+        execute(task1)
+        repository.flush()
+
+        then:
+        1 * snapshotRepository.remove(1L)
+    }
+
+    def "queued updates are written when flushed"() {
+        given:
+        _ * cacheAccess.batchUpdate(_, _) >> { it[1].run() }
+        _ * snapshotRepository.add(inputFilesSnapshot) >> 1L
+        execute(task1)
+        repository.flush()
+
+        when:
+        def reloaded = new CacheBackedTaskHistoryRepository(cacheAccess, snapshotRepository, writer, 2).getHistory(task1)
+        def snapshot = reloaded.previousExecution.inputFilesSnapshot
+
+        then:
+        1 * snapshotRepository.get(1L) >> inputFilesSnapshot
+        snapshot.is(inputFilesSnapshot)
+    }
+
+    private TaskHistoryRepository.History execute(TaskInternal task) {
+        def history = repository.getHistory(task)
+        history.currentExecution.inputFilesSnapshot = inputFilesSnapshot
+        history.update()
+        return history
+    }
+
+    private TaskInternal task(String path) {
+        TaskInternal task = Mock()
+        TaskOutputsInternal outputs = Mock()
+        _ * task.path >> path
+        _ * task.outputs >> outputs
+        _ * outputs.files >> new SimpleFileCollection()
+        return task
+    }
+}
@@ -17,16 +17,21 @@ package org.gradle.api.internal.changedetection;
 
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.Serializer;
+import org.gradle.internal.Factory;
 import org.gradle.util.TemporaryFolder;
 import org.jmock.Expectations;
+import org.jmock.api.Invocation;
 import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.List;
 
 import static org.gradle.util.Matchers.reflectionEquals;
 import static org.hamcrest.Matchers.*;
@@ -41,9 +46,11 @@ public class CachingHasherTest {
     private final PersistentIndexedCache<File, CachingHasher.FileInfo> cache = context.mock(
             PersistentIndexedCache.class);
     private final TaskArtifactStateCacheAccess cacheAccess = context.mock(TaskArtifactStateCacheAccess.class);
+    private final InMemoryFileHashCache inMemoryCache = new InMemoryFileHashCache(10);
     private final byte[] hash = "hash".getBytes();
     private final File file = tmpDir.createFile("testfile").write("content");
     private CachingHasher hasher;
+    private boolean locked;
 
     @Before
     public void setup() {
@@ -51,7 +58,34 @@ public class CachingHasherTest {
             one(cacheAccess).createCache(with(equalTo("fileHashes")), with(equalTo(File.class)), with(notNullValue(Class.class)), with(notNullValue(Serializer.class)));
             will(returnValue(cache));
         }});
-        hasher = new CachingHasher(delegate, cacheAccess);
+        hasher = new CachingHasher(delegate, cacheAccess, inMemoryCache);
+        context.checking(new Expectations(){{
+            allowing(delegate).getAlgorithm();
+            will(returnValue("MD5"));
+            allowing(cacheAccess).useCache(with(notNullValue(String.class)), with(notNullValue(Factory.class)));
+            will(new CustomAction("use cache") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    locked = true;
+                    try {
+                        return ((Factory<?>) invocation.getParameter(1)).create();
+                    } finally {
+                        locked = false;
+                    }
+                }
+            });
+            allowing(cacheAccess).useCache(with(notNullValue(String.class)), with(notNullValue(Runnable.class)));
+            will(new CustomAction("use cache") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    locked = true;
+                    try {
+                        ((Runnable) invocation.getParameter(1)).run();
+                        return null;
+                    } finally {
+                        locked = false;
+                    }
+                }
+            });
+        }});
     }
 
     @Test
@@ -61,7 +95,7 @@ public class CachingHasherTest {
             will(returnValue(null));
             one(delegate).hash(file);
             will(returnValue(hash));
-            one(cache).put(with(equalTo(file)), with(reflectionEquals(new CachingHasher.FileInfo(hash, file.length(),
+            one(cache).put(with(equalTo(file)), with(reflectionEquals(new CachingHasher.FileInfo("MD5", hash, file.length(),
                     file.lastModified()))));
         }});
 
@@ -72,10 +106,10 @@ public class CachingHasherTest {
     public void hashesFileWhenLengthHasChanged() {
         context.checking(new Expectations() {{
             one(cache).get(file);
-            will(returnValue(new CachingHasher.FileInfo(hash, 1078, file.lastModified())));
+            will(returnValue(new CachingHasher.FileInfo("MD5", hash, 1078, file.lastModified())));
             one(delegate).hash(file);
             will(returnValue(hash));
-            one(cache).put(with(equalTo(file)), with(reflectionEquals(new CachingHasher.FileInfo(hash, file.length(),
+            one(cache).put(with(equalTo(file)), with(reflectionEquals(new CachingHasher.FileInfo("MD5", hash, file.length(),
                     file.lastModified()))));
         }});
 
@@ -86,23 +120,113 @@ public class CachingHasherTest {
     public void hashesFileWhenTimestampHasChanged() {
         context.checking(new Expectations() {{
             one(cache).get(file);
-            will(returnValue(new CachingHasher.FileInfo(hash, file.length(), 12)));
+            will(returnValue(new CachingHasher.FileInfo("MD5", hash, file.length(), 12)));
+            one(delegate).hash(file);
+            will(returnValue(hash));
+            one(cache).put(with(equalTo(file)), with(reflectionEquals(new CachingHasher.FileInfo("MD5", hash, file.length(),
+                    file.lastModified()))));
+        }});
+
+        assertThat(hasher.hash(file), sameInstance(hash));
+    }
+
+    @Test
+    public void hashesFileWhenAlgorithmHasChanged() {
+        context.checking(new Expectations() {{
+            one(cache).get(file);
+            will(returnValue(new CachingHasher.FileInfo("SHA1", hash, file.length(), file.lastModified())));
             one(delegate).hash(file);
             will(returnValue(hash));
-            one(cache).put(with(equalTo(file)), with(reflectionEquals(new CachingHasher.FileInfo(hash, file.length(),
+            one(cache).put(with(equalTo(file)), with(reflectionEquals(new CachingHasher.FileInfo("MD5", hash, file.length(),
                     file.lastModified()))));
         }});
 
         assertThat(hasher.hash(file), sameInstance(hash));
     }
 
+    @Test
+    public void hashesOnlyChangedFilesOfBatch() {
+        final File other = tmpDir.createFile("other").write("other");
+        final byte[] otherHash = "other".getBytes();
+        final List<File> files = Arrays.asList(file, other);
+        context.checking(new Expectations() {{
+            one(cache).get(file);
+            will(returnValue(new CachingHasher.FileInfo("MD5", hash, file.length(), file.lastModified())));
+            one(cache).get(other);
+            will(returnValue(null));
+            one(delegate).hash(Arrays.asList(other));
+            will(returnValue(Arrays.asList(otherHash)));
+            one(cache).put(with(equalTo(other)), with(reflectionEquals(new CachingHasher.FileInfo("MD5", otherHash, other.length(),
+                    other.lastModified()))));
+        }});
+
+        List<byte[]> hashes = hasher.hash(files);
+        assertThat(hashes.size(), equalTo(2));
+        assertThat(hashes.get(0), sameInstance(hash));
+        assertThat(hashes.get(1), sameInstance(otherHash));
+    }
+
+    @Test
+    public void hashesChangedFilesWithoutHoldingCacheLock() {
+        final List<File> files = Arrays.asList(file);
+        context.checking(new Expectations() {{
+            one(cache).get(file);
+            will(returnValue(null));
+            one(delegate).hash(files);
+            will(new CustomAction("hash files") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    assertThat(locked, equalTo(false));
+                    return Arrays.asList(hash);
+                }
+            });
+            one(cache).put(with(equalTo(file)), with(notNullValue(CachingHasher.FileInfo.class)));
+        }});
+
+        assertThat(hasher.hash(files).get(0), sameInstance(hash));
+    }
+
     @Test
     public void doesNotHashFileWhenTimestampAndLengthHaveNotChanged() {
         context.checking(new Expectations() {{
             one(cache).get(file);
-            will(returnValue(new CachingHasher.FileInfo(hash, file.length(), file.lastModified())));
+            will(returnValue(new CachingHasher.FileInfo("MD5", hash, file.length(), file.lastModified())));
+        }});
+
+        assertThat(hasher.hash(file), sameInstance(hash));
+    }
+
+    @Test
+    public void usesHashFromInMemoryCacheWithoutLookingUpPersistentCache() {
+        inMemoryCache.put(file, "MD5", hash, file.length(), file.lastModified());
+
+        assertThat(hasher.hash(file), sameInstance(hash));
+        assertThat(inMemoryCache.getHitCount(), equalTo(1L));
+    }
+
+    @Test
+    public void addsHashFromPersistentCacheToInMemoryCache() {
+        context.checking(new Expectations() {{
+            one(cache).get(file);
+            will(returnValue(new CachingHasher.FileInfo("MD5", hash, file.length(), file.lastModified())));
+        }});
+
+        assertThat(hasher.hash(file), sameInstance(hash));
+        assertThat(hasher.hash(file), sameInstance(hash));
+        assertThat(inMemoryCache.getMissCount(), equalTo(1L));
+        assertThat(inMemoryCache.getHitCount(), equalTo(1L));
+    }
+
+    @Test
+    public void addsCalculatedHashToInMemoryCache() {
+        context.checking(new Expectations() {{
+            one(cache).get(file);
+            will(returnValue(null));
+            one(delegate).hash(file);
+            will(returnValue(hash));
+            one(cache).put(with(equalTo(file)), with(notNullValue(CachingHasher.FileInfo.class)));
         }});
 
         assertThat(hasher.hash(file), sameInstance(hash));
+        assertThat(inMemoryCache.get(file, "MD5", file.length(), file.lastModified()), sameInstance(hash));
     }
 }
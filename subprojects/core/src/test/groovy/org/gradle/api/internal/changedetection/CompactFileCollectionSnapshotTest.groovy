@@ -0,0 +1,161 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection
+
+import org.gradle.cache.DefaultSerializer
+import org.gradle.util.ChangeListener
+import spock.lang.Specification
+
+class CompactFileCollectionSnapshotTest extends Specification {
+    final ChangeListener<File> listener = Mock()
+
+    def "can serialize and deserialize snapshot"() {
+        def original = snapshot(
+                file("/root/some/dir/a.txt", 1),
+                dir("/root/some/dir"),
+                missing("/root/some/dir/missing.txt"),
+                file("/root/other/été.txt", 2))
+
+        when:
+        def copy = serialize(original)
+
+        then:
+        copy instanceof CompactFileCollectionSnapshot
+        copy.size == 4
+        copy.files.files == original.files.files
+
+        when:
+        copy.changesSince(original, listener)
+
+        then:
+        0 * listener._
+    }
+
+    def "encodes shared path prefixes once"() {
+        def builder = new CompactFileCollectionSnapshot.Builder()
+        def prefix = "/some/very/long/path/to/a/project/src/main/java/org/gradle/"
+        1000.times { builder.addFile("${prefix}File${it}.java", new byte[16]) }
+
+        when:
+        def encoded = builder.build().encode()
+
+        then:
+        encoded.length < 1000 * (16 + 20)
+        CompactFileCollectionSnapshot.decode(encoded).size == 1000
+    }
+
+    def "reports changes in both snapshots"() {
+        def original = snapshot(file("/a", 1), file("/b", 1), file("/c", 1), dir("/d"))
+        def current = snapshot(file("/b", 1), file("/c", 2), missing("/d"), file("/e", 1))
+
+        when:
+        current.changesSince(original, listener)
+
+        then:
+        1 * listener.removed(new File("/a"))
+        1 * listener.changed(new File("/c"))
+        1 * listener.changed(new File("/d"))
+        1 * listener.added(new File("/e"))
+        0 * listener._
+    }
+
+    def "file is changed when its hash was calculated using a different algorithm"() {
+        def original = snapshot(file("/a", 1))
+        def builder = new CompactFileCollectionSnapshot.Builder()
+        builder.addFile("/a", [1, 2, 3, 4, 5] as byte[])
+        def current = builder.build()
+
+        when:
+        current.changesSince(original, listener)
+
+        then:
+        1 * listener.changed(new File("/a"))
+        0 * listener._
+    }
+
+    def "discards hashes which have a different length when building snapshot"() {
+        def builder = new CompactFileCollectionSnapshot.Builder()
+        builder.addFile("/a", hash(1))
+        builder.addFile("/b", [1, 2, 3, 4, 5] as byte[])
+        def original = builder.build()
+
+        when:
+        serialize(original).changesSince(original, listener)
+
+        then:
+        1 * listener.changed(new File("/b"))
+        0 * listener._
+
+        and:
+        original.files.files == [new File("/a"), new File("/b")] as Set
+    }
+
+    def "merges changes into target snapshot in path order"() {
+        def original = snapshot(file("/b", 1), file("/d", 1))
+        def current = snapshot(file("/a", 1), file("/b", 2), file("/e", 1))
+        def target = snapshot(file("/b", 1), file("/c", 1), file("/d", 1))
+
+        when:
+        def merged = current.changesSince(original).applyTo(target)
+
+        then:
+        merged.files.files == [new File("/a"), new File("/b"), new File("/c"), new File("/e")] as Set
+
+        when:
+        current.changesSince(merged, listener)
+
+        then:
+        1 * listener.removed(new File("/c"))
+        0 * listener._
+    }
+
+    def snapshot(Map... entries) {
+        def builder = new CompactFileCollectionSnapshot.Builder()
+        entries.each { entry ->
+            switch (entry.type) {
+                case "file": builder.addFile(entry.path, entry.hash); break
+                case "dir": builder.addDirectory(entry.path); break
+                default: builder.addMissingFile(entry.path)
+            }
+        }
+        return builder.build()
+    }
+
+    def file(String path, int content) {
+        return [type: "file", path: path, hash: hash(content)]
+    }
+
+    def dir(String path) {
+        return [type: "dir", path: path]
+    }
+
+    def missing(String path) {
+        return [type: "missing", path: path]
+    }
+
+    def hash(int content) {
+        def hash = new byte[16]
+        hash[0] = content
+        return hash
+    }
+
+    def serialize(FileCollectionSnapshot snapshot) {
+        def serializer = new DefaultSerializer<FileCollectionSnapshot>(getClass().classLoader)
+        def outstr = new ByteArrayOutputStream()
+        serializer.write(outstr, snapshot)
+        return serializer.read(new ByteArrayInputStream(outstr.toByteArray()))
+    }
+}
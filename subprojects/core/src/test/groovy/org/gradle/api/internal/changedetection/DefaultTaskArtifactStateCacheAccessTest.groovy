@@ -15,14 +15,18 @@
  */
 package org.gradle.api.internal.changedetection
 
+import org.gradle.api.Action
 import org.gradle.cache.CacheRepository
 import spock.lang.Specification
 import org.gradle.api.internal.GradleInternal
 import org.gradle.cache.DirectoryCacheBuilder
 import org.gradle.cache.PersistentCache
 import org.gradle.cache.PersistentIndexedCache
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
 
 class DefaultTaskArtifactStateCacheAccessTest extends Specification {
+    @Rule final TemporaryFolder tmpDir = new TemporaryFolder()
     final GradleInternal gradle = Mock()
     final CacheRepository cacheRepository = Mock()
     final DefaultTaskArtifactStateCacheAccess cacheAccess = new DefaultTaskArtifactStateCacheAccess(gradle, cacheRepository)
@@ -43,6 +47,7 @@ class DefaultTaskArtifactStateCacheAccessTest extends Specification {
 
         then:
         1 * cacheRepository.cache("taskArtifacts") >> cacheBuilder
+        1 * cacheBuilder.withProperties([format: DefaultTaskArtifactStateCacheAccess.CACHE_FORMAT]) >> cacheBuilder
         1 * cacheBuilder.open() >> backingCache
         _ * cacheBuilder._ >> cacheBuilder
         _ * backingCache.baseDir >> new File("baseDir")
@@ -50,4 +55,30 @@ class DefaultTaskArtifactStateCacheAccessTest extends Specification {
         1 * backingIndexedCache.get("key")
         0 * _._
     }
+
+    def "discards caches which refer to each other when recovering from a crash"() {
+        DirectoryCacheBuilder cacheBuilder = Mock()
+        PersistentCache backingCache = Mock()
+        Action<PersistentCache> recoveryAction
+        def cacheDir = tmpDir.createDir("cache")
+        ["taskArtifacts.bin", "taskArtifacts.bin.journal", "fileSnapshots.bin", "fileSnapshotReferences.bin.old", "fileHashes.bin", "outputFileStates.bin"].each {
+            cacheDir.file(it).createFile()
+        }
+
+        when:
+        cacheAccess.useCache("use cache", {} as Runnable)
+
+        then:
+        1 * cacheRepository.cache("taskArtifacts") >> cacheBuilder
+        1 * cacheBuilder.withCrashRecovery(!null) >> { recoveryAction = it[0]; cacheBuilder }
+        1 * cacheBuilder.open() >> backingCache
+        _ * cacheBuilder._ >> cacheBuilder
+
+        when:
+        recoveryAction.execute(backingCache)
+
+        then:
+        _ * backingCache.baseDir >> cacheDir
+        cacheDir.list() as Set == ["fileHashes.bin", "outputFileStates.bin"] as Set
+    }
 }
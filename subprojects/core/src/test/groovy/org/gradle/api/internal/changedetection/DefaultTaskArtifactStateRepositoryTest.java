@@ -17,10 +17,13 @@
 package org.gradle.api.internal.changedetection;
 
 import org.gradle.CacheUsage;
+import org.gradle.api.Action;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.invocation.Gradle;
+import org.gradle.api.tasks.incremental.IncrementalTaskInputs;
+import org.gradle.api.tasks.incremental.InputFileDetails;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.internal.DefaultCacheRepository;
 import org.gradle.testfixtures.internal.InMemoryCacheFactory;
@@ -35,6 +38,7 @@ import org.junit.Test;
 
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 import static org.gradle.util.Matchers.isEmpty;
 import static org.gradle.util.WrapUtil.*;
@@ -67,7 +71,11 @@ public class DefaultTaskArtifactStateRepositoryTest {
         TaskArtifactStateCacheAccess cacheAccess = new DefaultTaskArtifactStateCacheAccess(gradle, cacheRepository);
         FileSnapshotter inputFilesSnapshotter = new DefaultFileSnapshotter(new DefaultHasher());
         FileSnapshotter outputFilesSnapshotter = new OutputFilesSnapshotter(inputFilesSnapshotter, new RandomLongIdGenerator(), cacheAccess);
-        TaskHistoryRepository taskHistoryRepository = new CacheBackedTaskHistoryRepository(cacheAccess, new CacheBackedFileSnapshotRepository(cacheAccess));
+        TaskHistoryRepository taskHistoryRepository = new CacheBackedTaskHistoryRepository(cacheAccess, new CacheBackedFileSnapshotRepository(cacheAccess), new Executor() {
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
         repository = new DefaultTaskArtifactStateRepository(taskHistoryRepository, inputFilesSnapshotter, outputFilesSnapshotter);
     }
 
@@ -512,6 +520,82 @@ public class DefaultTaskArtifactStateRepositoryTest {
         assertThat(state.getExecutionHistory().getOutputFiles().getFiles(), equalTo(toLinkedSet((File) outputDirFile2)));
     }
 
+    @Test
+    public void allInputFilesAreOutOfDateWhenTaskHasNeverBeenExecuted() {
+        TaskArtifactState state = repository.getStateFor(task());
+        IncrementalTaskInputs inputChanges = state.getExecutionHistory().getInputChanges();
+
+        assertFalse(inputChanges.isIncremental());
+        assertThat(outOfDate(inputChanges), equalTo(toSet((File) inputFile, inputDirFile)));
+        assertThat(removed(inputChanges), isEmpty());
+    }
+
+    @Test
+    public void reportsOnlyInputFilesWhichHaveChangedSincePreviousExecution() {
+        TestFile otherFile = inputDir.file("other-file").createFile();
+        execute();
+
+        inputFile.write("some new content");
+        otherFile.delete();
+        TestFile addedFile = inputDir.file("added-file").createFile();
+
+        TaskArtifactState state = repository.getStateFor(task());
+        assertFalse(state.isUpToDate());
+        IncrementalTaskInputs inputChanges = state.getExecutionHistory().getInputChanges();
+
+        assertTrue(inputChanges.isIncremental());
+        assertThat(outOfDate(inputChanges), equalTo(toSet((File) inputFile, addedFile)));
+        assertThat(removed(inputChanges), equalTo(toSet((File) otherFile)));
+    }
+
+    @Test
+    public void allInputFilesAreOutOfDateWhenInputPropertyHasChanged() {
+        execute();
+
+        inputFile.write("some new content");
+
+        TaskArtifactState state = repository.getStateFor(builder().withProperty("prop", "new value").task());
+        IncrementalTaskInputs inputChanges = state.getExecutionHistory().getInputChanges();
+
+        assertFalse(inputChanges.isIncremental());
+        assertThat(outOfDate(inputChanges), equalTo(toSet((File) inputFile, inputDirFile)));
+    }
+
+    @Test
+    public void allInputFilesAreOutOfDateWhenOutputFileHasChanged() {
+        execute();
+
+        outputFile.write("new content");
+
+        TaskArtifactState state = repository.getStateFor(task());
+        IncrementalTaskInputs inputChanges = state.getExecutionHistory().getInputChanges();
+
+        assertFalse(inputChanges.isIncremental());
+        assertThat(outOfDate(inputChanges), equalTo(toSet((File) inputFile, inputDirFile)));
+    }
+
+    private Set<File> outOfDate(IncrementalTaskInputs inputChanges) {
+        final Set<File> files = new HashSet<File>();
+        inputChanges.outOfDate(new Action<InputFileDetails>() {
+            public void execute(InputFileDetails details) {
+                assertFalse(details.isRemoved());
+                files.add(details.getFile());
+            }
+        });
+        return files;
+    }
+
+    private Set<File> removed(IncrementalTaskInputs inputChanges) {
+        final Set<File> files = new HashSet<File>();
+        inputChanges.removed(new Action<InputFileDetails>() {
+            public void execute(InputFileDetails details) {
+                assertTrue(details.isRemoved());
+                files.add(details.getFile());
+            }
+        });
+        return files;
+    }
+
     private void execute() {
         execute(task());
     }
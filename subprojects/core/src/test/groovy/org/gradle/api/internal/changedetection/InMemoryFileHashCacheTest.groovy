@@ -0,0 +1,74 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection
+
+import spock.lang.Specification
+
+class InMemoryFileHashCacheTest extends Specification {
+    final InMemoryFileHashCache cache = new InMemoryFileHashCache(2)
+    final File file = new File("file.txt")
+    final byte[] hash = [1, 2, 3] as byte[]
+
+    def "returns hash when length, timestamp and algorithm are unchanged"() {
+        given:
+        cache.put(file, "MD5", hash, 12, 100)
+
+        expect:
+        cache.get(file, "MD5", 12, 100).is(hash)
+        cache.get(file.absoluteFile, "MD5", 12, 100).is(hash)
+        cache.hitCount == 2
+        cache.missCount == 0
+    }
+
+    def "returns null when file details have changed"() {
+        given:
+        cache.put(file, "MD5", hash, 12, 100)
+
+        expect:
+        cache.get(file, algorithm, length, timestamp) == null
+        cache.missCount == 1
+        cache.hitCount == 0
+
+        where:
+        algorithm | length | timestamp
+        "SHA1"    | 12     | 100
+        "MD5"     | 13     | 100
+        "MD5"     | 12     | 101
+    }
+
+    def "returns null for unknown file"() {
+        expect:
+        cache.get(file, "MD5", 12, 100) == null
+        cache.missCount == 1
+    }
+
+    def "discards least recently used entry when full"() {
+        def file2 = new File("file2.txt")
+        def file3 = new File("file3.txt")
+
+        when:
+        cache.put(file, "MD5", hash, 12, 100)
+        cache.put(file2, "MD5", hash, 12, 100)
+        cache.get(file, "MD5", 12, 100)
+        cache.put(file3, "MD5", hash, 12, 100)
+
+        then:
+        cache.size == 2
+        cache.get(file, "MD5", 12, 100).is(hash)
+        cache.get(file2, "MD5", 12, 100) == null
+        cache.get(file3, "MD5", 12, 100).is(hash)
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection
+
+import org.gradle.messaging.concurrent.DefaultExecutorFactory
+import org.gradle.messaging.concurrent.ExecutorFactory
+import org.gradle.messaging.concurrent.StoppableExecutor
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class ParallelHasherTest extends Specification {
+    @Rule TemporaryFolder tmpDir = new TemporaryFolder()
+    final DefaultHasher delegate = new DefaultHasher()
+    final DefaultExecutorFactory executorFactory = new DefaultExecutorFactory()
+    final ParallelHasher hasher = new ParallelHasher(delegate, executorFactory, 4)
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "produces the same hashes in the same order as the delegate"() {
+        def files = files(100)
+
+        expect:
+        hasher.hash(files) == delegate.hash(files)
+    }
+
+    def "hashes small batches on calling thread"() {
+        ExecutorFactory executorFactory = Mock()
+        StoppableExecutor executor = Mock()
+        _ * executorFactory.create(_) >> executor
+        def hasher = new ParallelHasher(delegate, executorFactory, 4)
+        def files = files(ParallelHasher.MIN_FILES_PER_WORKER)
+
+        when:
+        def hashes = hasher.hash(files)
+
+        then:
+        hashes == delegate.hash(files)
+        0 * executor._
+    }
+
+    def "uses one executor for all batches and stops it when stopped"() {
+        ExecutorFactory executorFactory = Mock()
+        StoppableExecutor executor = Mock()
+        def files = files(100)
+
+        when:
+        def hasher = new ParallelHasher(delegate, executorFactory, 4)
+        hasher.hash(files)
+        hasher.hash(files)
+        hasher.stop()
+
+        then:
+        1 * executorFactory.create("File hasher") >> executor
+        8 * executor.execute(_) >> { Runnable runnable -> runnable.run() }
+        1 * executor.stop()
+        0 * executorFactory._
+        0 * executor._
+    }
+
+    def "propagates failure to hash a file"() {
+        Hasher delegate = Mock()
+        def hasher = new ParallelHasher(delegate, executorFactory, 4)
+        def files = (1..100).collect { tmpDir.file("file${it}.txt") }
+        def failure = new RuntimeException("broken")
+
+        when:
+        hasher.hash(files)
+
+        then:
+        _ * delegate.hash({ it instanceof File }) >> { throw failure }
+        RuntimeException e = thrown()
+        e == failure
+    }
+
+    private List<File> files(int count) {
+        return (1..count).collect {
+            def file = tmpDir.createFile("file${it}.txt")
+            file.text = "content ${it}"
+            file
+        }
+    }
+}
@@ -54,7 +54,7 @@ public class ShortCircuitTaskArtifactStateRepositoryTest {
     
     @Test
     public void delegatesToBackingRepositoryToCreateStateObjectForTaskThatHasDeclaredSomeOutputs() {
-        TaskInternal task = taskWithOutputs();
+        final TaskInternal task = taskWithOutputs();
         expectTaskStateCreated(task);
 
         TaskArtifactState state = repository.getStateFor(task);
@@ -65,6 +65,8 @@ public class ShortCircuitTaskArtifactStateRepositoryTest {
         context.checking(new Expectations() {{
             one(taskArtifactState).getExecutionHistory();
             will(returnValue(executionHistory));
+            one(upToDateSpec).isSatisfiedBy(task);
+            will(returnValue(true));
             one(taskArtifactState).beforeTask();
             one(taskArtifactState).afterTask();
             one(taskArtifactState).finished();
@@ -76,6 +78,49 @@ public class ShortCircuitTaskArtifactStateRepositoryTest {
         state.finished();
     }
 
+    @Test
+    public void taskWithNoOutputsHasToProcessAllInputFiles() {
+        TaskInternal task = taskWithNoOutputs();
+        TaskArtifactState state = repository.getStateFor(task);
+
+        assertFalse(state.getExecutionHistory().getInputChanges().isIncremental());
+    }
+
+    @Test
+    public void taskHasToProcessAllInputFilesWhenStartParameterOverrideIsSet() {
+        TaskInternal task = taskWithOutputs();
+        expectTaskStateCreated(task);
+
+        TaskArtifactState state = repository.getStateFor(task);
+
+        final TaskExecutionHistory executionHistory = context.mock(TaskExecutionHistory.class);
+        context.checking(new Expectations() {{
+            one(taskArtifactState).getExecutionHistory();
+            will(returnValue(executionHistory));
+        }});
+
+        startParameter.setNoOpt(true);
+        assertFalse(state.getExecutionHistory().getInputChanges().isIncremental());
+    }
+
+    @Test
+    public void taskHasToProcessAllInputFilesWhenUpToDateSpecIsFalse() {
+        final TaskInternal task = taskWithOutputs();
+        expectTaskStateCreated(task);
+
+        TaskArtifactState state = repository.getStateFor(task);
+
+        final TaskExecutionHistory executionHistory = context.mock(TaskExecutionHistory.class);
+        context.checking(new Expectations() {{
+            one(taskArtifactState).getExecutionHistory();
+            will(returnValue(executionHistory));
+            one(upToDateSpec).isSatisfiedBy(task);
+            will(returnValue(false));
+        }});
+
+        assertFalse(state.getExecutionHistory().getInputChanges().isIncremental());
+    }
+
     @Test
     public void taskArtifactsAreOutOfDateWhenStartParameterOverrideIsSet() {
         TaskInternal task = taskWithOutputs();
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.changedetection
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.gradle.CacheUsage
+import org.gradle.api.Action
+import org.gradle.api.Project
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.file.collections.SimpleFileCollection
+import org.gradle.api.internal.tasks.TaskExecuter
+import org.gradle.api.internal.tasks.TaskStateInternal
+import org.gradle.api.invocation.Gradle
+import org.gradle.cache.internal.DefaultCacheFactory
+import org.gradle.cache.internal.DefaultCacheRepository
+import org.gradle.cache.internal.DefaultFileLockManager
+import org.gradle.cache.internal.ProcessMetaDataProvider
+import org.gradle.execution.BuildExecutionContext
+import org.gradle.execution.ParallelTaskPlanExecuter
+import org.gradle.execution.TaskDurationHistory
+import org.gradle.execution.TaskInfo
+import org.gradle.messaging.concurrent.DefaultExecutorFactory
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class TaskCacheLockHandlingBuildExecuterTest extends Specification {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder()
+    final TaskHistoryRepository taskHistoryRepository = Mock()
+    final BuildExecutionContext context = Mock()
+    final TaskCacheLockHandlingBuildExecuter executer = new TaskCacheLockHandlingBuildExecuter(taskHistoryRepository)
+
+    def "flushes task history after tasks execute"() {
+        when:
+        executer.execute(context)
+
+        then:
+        1 * context.proceed()
+
+        then:
+        1 * taskHistoryRepository.flush()
+        0 * _._
+    }
+
+    def "flushes task history when tasks fail"() {
+        def failure = new RuntimeException()
+
+        when:
+        executer.execute(context)
+
+        then:
+        1 * context.proceed() >> { throw failure }
+
+        then:
+        1 * taskHistoryRepository.flush()
+        RuntimeException e = thrown()
+        e == failure
+    }
+
+    def "does not replace failure of tasks with failure to flush task history"() {
+        def failure = new RuntimeException()
+
+        when:
+        executer.execute(context)
+
+        then:
+        1 * context.proceed() >> { throw failure }
+
+        then:
+        1 * taskHistoryRepository.flush() >> { throw new RuntimeException("broken") }
+        RuntimeException e = thrown()
+        e == failure
+    }
+
+    def "fails when task history cannot be flushed after tasks execute"() {
+        def failure = new RuntimeException()
+
+        when:
+        executer.execute(context)
+
+        then:
+        1 * context.proceed()
+
+        then:
+        1 * taskHistoryRepository.flush() >> { throw failure }
+        RuntimeException e = thrown()
+        e == failure
+    }
+
+    def "tasks execute concurrently while they use the task artifact cache"() {
+        ProcessMetaDataProvider metaDataProvider = Mock()
+        _ * metaDataProvider.processIdentifier >> '123'
+        _ * metaDataProvider.processDisplayName >> 'process'
+        def cacheFactory = new DefaultCacheFactory(new DefaultFileLockManager(metaDataProvider))
+        def cacheRepository = new DefaultCacheRepository(tmpDir.createDir("user-home"), tmpDir.createDir("project-cache"), CacheUsage.ON, cacheFactory.create())
+        Gradle gradle = Mock()
+        _ * gradle.rootProject >> Mock(Project)
+        def realCacheAccess = new DefaultTaskArtifactStateCacheAccess(gradle, cacheRepository)
+        def executorFactory = new DefaultExecutorFactory()
+        def historyRepository = new CacheBackedTaskHistoryRepository(realCacheAccess, new CacheBackedFileSnapshotRepository(realCacheAccess), executorFactory.create("writer"))
+        def durationHistory = [getDurations: { tasks -> [:] }, recordDuration: { task, duration -> }] as TaskDurationHistory
+        def parallelExecuter = new ParallelTaskPlanExecuter(executorFactory, durationHistory, 2)
+        def latch = new CountDownLatch(2)
+        def allRunning = [].asSynchronized()
+        def actionsExecuter = new CacheLockHandlingTaskExecuter({ TaskInternal task, TaskStateInternal state ->
+            latch.countDown()
+            allRunning << latch.await(20, TimeUnit.SECONDS)
+        } as TaskExecuter, realCacheAccess)
+        def a = new TaskInfo(task(":a"), [] as Set, 0)
+        def b = new TaskInfo(task(":b"), [] as Set, 0)
+
+        def taskState = Mock(TaskStateInternal)
+        def buildContext = [proceed: {
+            parallelExecuter.process([a, b], { TaskInfo taskInfo ->
+                def history = historyRepository.getHistory(taskInfo.task)
+                actionsExecuter.execute(taskInfo.task, taskState)
+                history.update()
+                taskInfo.executed()
+            } as Action)
+        }] as BuildExecutionContext
+
+        when:
+        new TaskCacheLockHandlingBuildExecuter(historyRepository).execute(buildContext)
+
+        then:
+        allRunning == [true, true]
+        historyRepository.getHistory(a.task).previousExecution != null
+        historyRepository.getHistory(b.task).previousExecution != null
+
+        cleanup:
+        executorFactory.stop()
+        cacheFactory.close()
+    }
+
+    private TaskInternal task(String path) {
+        TaskInternal task = Mock()
+        TaskOutputsInternal outputs = Mock()
+        _ * task.path >> path
+        _ * task.outputs >> outputs
+        _ * outputs.files >> new SimpleFileCollection()
+        return task
+    }
+}
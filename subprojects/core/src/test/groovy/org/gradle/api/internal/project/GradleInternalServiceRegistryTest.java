@@ -25,10 +25,15 @@ import org.gradle.cache.CacheRepository;
 import org.gradle.execution.BuildExecuter;
 import org.gradle.execution.DefaultBuildExecuter;
 import org.gradle.execution.DefaultTaskGraphExecuter;
+import org.gradle.execution.DefaultTaskPlanExecuter;
+import org.gradle.execution.ParallelTaskPlanExecuter;
 import org.gradle.execution.TaskGraphExecuter;
+import org.gradle.execution.TaskPlanExecuter;
 import org.gradle.internal.service.ServiceRegistry;
 import org.gradle.listener.ListenerBroadcast;
 import org.gradle.listener.ListenerManager;
+import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.messaging.concurrent.StoppableExecutor;
 import org.gradle.util.JUnit4GroovyMockery;
 import org.gradle.util.MultiParentClassLoader;
 import org.jmock.Expectations;
@@ -84,9 +89,14 @@ public class GradleInternalServiceRegistryTest {
 
     @Test
     public void providesABuildExecuter() {
+        final ExecutorFactory executorFactory = context.mock(ExecutorFactory.class);
         context.checking(new Expectations(){{
             allowing(parent).get(CacheRepository.class);
             will(returnValue(context.mock(CacheRepository.class)));
+            allowing(parent).get(ExecutorFactory.class);
+            will(returnValue(executorFactory));
+            allowing(executorFactory).create("Task history writer");
+            will(returnValue(context.mock(StoppableExecutor.class)));
         }});
 
         assertThat(registry.get(BuildExecuter.class), instanceOf(DefaultBuildExecuter.class));
@@ -105,4 +115,23 @@ public class GradleInternalServiceRegistryTest {
         assertThat(registry.get(TaskGraphExecuter.class), instanceOf(DefaultTaskGraphExecuter.class));
         assertThat(registry.get(TaskGraphExecuter.class), sameInstance(registry.get(TaskGraphExecuter.class)));
     }
+
+    @Test
+    public void providesASerialTaskPlanExecuterByDefault() {
+        assertThat(registry.get(TaskPlanExecuter.class), instanceOf(DefaultTaskPlanExecuter.class));
+        assertThat(registry.get(TaskPlanExecuter.class), sameInstance(registry.get(TaskPlanExecuter.class)));
+    }
+
+    @Test
+    public void providesAParallelTaskPlanExecuterWhenParallelThreadsSpecified() {
+        startParameter.setParallelThreadCount(4);
+        context.checking(new Expectations() {{
+            allowing(parent).get(ExecutorFactory.class);
+            will(returnValue(context.mock(ExecutorFactory.class)));
+            allowing(parent).get(CacheRepository.class);
+            will(returnValue(context.mock(CacheRepository.class)));
+        }});
+
+        assertThat(registry.get(TaskPlanExecuter.class), instanceOf(ParallelTaskPlanExecuter.class));
+    }
 }
@@ -25,8 +25,16 @@ import org.gradle.api.invocation.Gradle
 import org.gradle.cache.DirectoryCacheBuilder
 import org.gradle.cache.PersistentCache
 import org.gradle.internal.service.ServiceRegistry
+import org.gradle.messaging.concurrent.ExecutorFactory
+import org.gradle.messaging.concurrent.StoppableExecutor
+import org.gradle.api.internal.changedetection.InMemoryFileHashCache
+import org.gradle.api.internal.tasks.cache.TaskOutputCache
+import org.gradle.api.Action
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
 
 class TaskExecutionServicesTest extends Specification {
+    @Rule final TemporaryFolder tmpDir = new TemporaryFolder()
     final ServiceRegistry parent = Mock()
     final Gradle gradle = Mock()
     final TaskExecutionServices services = new TaskExecutionServices(parent, gradle)
@@ -38,9 +46,13 @@ class TaskExecutionServicesTest extends Specification {
         CacheRepository cacheRepository = Mock()
         DirectoryCacheBuilder cacheBuilder = Mock()
         PersistentCache cache = Mock()
+        ExecutorFactory executorFactory = Mock()
         _ * parent.get(ListenerManager) >> listenerManager
+        _ * parent.get(ExecutorFactory) >> executorFactory
+        _ * executorFactory.create(!null) >> Mock(StoppableExecutor)
         _ * parent.get(StartParameter) >> startParameter
         _ * parent.get(CacheRepository) >> cacheRepository
+        _ * parent.get(InMemoryFileHashCache) >> new InMemoryFileHashCache(10)
         _ * cacheRepository.cache(!null) >> cacheBuilder
         _ * cacheBuilder.forObject(gradle) >> cacheBuilder
         _ * cacheBuilder.withDisplayName(!null) >> cacheBuilder
@@ -51,4 +63,23 @@ class TaskExecutionServicesTest extends Specification {
         services.get(TaskExecuter) instanceof ExecuteAtMostOnceTaskExecuter
         services.get(TaskExecuter).is(services.get(TaskExecuter))
     }
+
+    def "keeps task output cache entries apart from the files of the cache"() {
+        given:
+        CacheRepository cacheRepository = Mock()
+        DirectoryCacheBuilder cacheBuilder = Mock()
+        PersistentCache cache = Mock()
+        _ * parent.get(CacheRepository) >> cacheRepository
+        _ * cacheRepository.cache("taskOutputs") >> cacheBuilder
+        _ * cacheBuilder.withDisplayName(!null) >> cacheBuilder
+        _ * cacheBuilder.open() >> cache
+        _ * cache.baseDir >> tmpDir.dir
+
+        when:
+        services.get(TaskOutputCache).store("key", { it.write(1) } as Action)
+
+        then:
+        tmpDir.file("entries/key").file
+        tmpDir.dir.list() as List == ["entries"]
+    }
 }
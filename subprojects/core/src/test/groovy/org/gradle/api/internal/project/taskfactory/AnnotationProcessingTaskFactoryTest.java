@@ -16,15 +16,18 @@
 
 package org.gradle.api.internal.project.taskfactory;
 
+import org.gradle.api.Action;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.GradleException;
 import org.gradle.api.Task;
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.internal.AbstractTask;
+import org.gradle.api.internal.TaskExecutionHistory;
 import org.gradle.api.internal.TaskInternal;
 import org.gradle.api.internal.project.DefaultProject;
 import org.gradle.api.internal.project.ProjectInternal;
 import org.gradle.api.tasks.*;
+import org.gradle.api.tasks.incremental.IncrementalTaskInputs;
 import org.gradle.util.*;
 import org.jmock.Expectations;
 import org.jmock.integration.junit4.JMock;
@@ -151,9 +154,32 @@ public class AnnotationProcessingTaskFactoryTest {
     }
 
     @Test
-    public void failsWhenMethodWithParametersHasTaskActionAnnotation() {
+    public void failsWhenMethodWithInvalidParameterHasTaskActionAnnotation() {
         assertTaskCreationFails(TaskWithParamMethod.class,
-                "Cannot use @TaskAction annotation on method TaskWithParamMethod.doStuff() as this method takes parameters.");
+                "Cannot use @TaskAction annotation on method TaskWithParamMethod.doStuff() because int is not a valid parameter to an action method.");
+    }
+
+    @Test
+    public void failsWhenMethodWithMultipleParametersHasTaskActionAnnotation() {
+        assertTaskCreationFails(TaskWithMultiParamMethod.class,
+                "Cannot use @TaskAction annotation on method TaskWithMultiParamMethod.doStuff() as this method takes multiple parameters.");
+    }
+
+    @Test
+    public void passesInputChangesToIncrementalTaskActionMethod() {
+        final Action<IncrementalTaskInputs> action = context.mock(Action.class);
+        final TaskExecutionHistory history = context.mock(TaskExecutionHistory.class);
+        final IncrementalTaskInputs inputChanges = context.mock(IncrementalTaskInputs.class);
+        TaskWithIncrementalAction task = expectTaskCreated(TaskWithIncrementalAction.class, action);
+        task.getOutputs().setHistory(history);
+
+        context.checking(new Expectations() {{
+            one(history).getInputChanges();
+            will(returnValue(inputChanges));
+            one(action).execute(inputChanges);
+        }});
+
+        task.getActions().get(0).execute(task);
     }
 
     private void assertTaskCreationFails(Class<? extends Task> type, String message) {
@@ -736,6 +762,25 @@ public class AnnotationProcessingTaskFactoryTest {
         }
     }
 
+    public static class TaskWithMultiParamMethod extends DefaultTask {
+        @TaskAction
+        public void doStuff(IncrementalTaskInputs inputs, int value) {
+        }
+    }
+
+    public static class TaskWithIncrementalAction extends DefaultTask {
+        private final Action<IncrementalTaskInputs> action;
+
+        public TaskWithIncrementalAction(Action<IncrementalTaskInputs> action) {
+            this.action = action;
+        }
+
+        @TaskAction
+        public void doStuff(IncrementalTaskInputs inputs) {
+            action.execute(inputs);
+        }
+    }
+
     public static class TaskWithInputFile extends DefaultTask {
         File inputFile;
 
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.cache
+
+import org.gradle.api.Action
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class LocalDirectoryTaskOutputCacheTest extends Specification {
+    @Rule final TemporaryFolder tmpDir = new TemporaryFolder()
+
+    def "loads entry which has been stored"() {
+        def cache = new LocalDirectoryTaskOutputCache(tmpDir.file("cache"), 100)
+
+        when:
+        cache.store("key", writer("content"))
+
+        then:
+        load(cache, "key") == "content"
+        tmpDir.file("cache").list() as List == ["key"]
+    }
+
+    def "does not load entry which has not been stored"() {
+        def cache = new LocalDirectoryTaskOutputCache(tmpDir.file("cache"), 100)
+        Action<InputStream> reader = Mock()
+
+        when:
+        def found = cache.load("unknown", reader)
+
+        then:
+        !found
+        0 * reader._
+    }
+
+    def "replaces existing entry"() {
+        def cache = new LocalDirectoryTaskOutputCache(tmpDir.file("cache"), 100)
+
+        when:
+        cache.store("key", writer("old"))
+        cache.store("key", writer("new"))
+
+        then:
+        load(cache, "key") == "new"
+    }
+
+    def "removes least recently used entries when cache exceeds maximum size"() {
+        def cache = new LocalDirectoryTaskOutputCache(tmpDir.file("cache"), 20)
+        cache.store("a", writer("0123456789"))
+        cache.store("b", writer("0123456789"))
+        tmpDir.file("cache/a").lastModified = 1000
+        tmpDir.file("cache/b").lastModified = 2000
+        load(cache, "a")
+
+        when:
+        cache.store("c", writer("0123456789"))
+
+        then:
+        tmpDir.file("cache").list() as Set == ["a", "c"] as Set
+    }
+
+    def "does not keep partially written entry"() {
+        def cache = new LocalDirectoryTaskOutputCache(tmpDir.file("cache"), 100)
+        def failure = new RuntimeException()
+
+        when:
+        cache.store("key", { OutputStream outputStream ->
+            outputStream.write(1)
+            throw failure
+        } as Action)
+
+        then:
+        RuntimeException e = thrown()
+        e == failure
+        tmpDir.file("cache").list() as List == []
+    }
+
+    private Action<OutputStream> writer(String content) {
+        return { OutputStream outputStream -> outputStream.write(content.bytes) } as Action
+    }
+
+    private String load(TaskOutputCache cache, String key) {
+        String result = null
+        assert cache.load(key, { InputStream inputStream -> result = inputStream.text } as Action)
+        return result
+    }
+}
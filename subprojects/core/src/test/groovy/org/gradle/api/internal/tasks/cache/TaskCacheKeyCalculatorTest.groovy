@@ -0,0 +1,124 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.cache
+
+import org.gradle.api.Project
+import org.gradle.api.file.FileCollection
+import org.gradle.api.file.FileTree
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.changedetection.Hasher
+import org.gradle.api.tasks.TaskInputs
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class TaskCacheKeyCalculatorTest extends Specification {
+    @Rule final TemporaryFolder tmpDir = new TemporaryFolder()
+    final Hasher hasher = Mock()
+    final TaskCacheKeyCalculator calculator = new TaskCacheKeyCalculator(hasher)
+    final File rootDir = new File("root").absoluteFile
+    byte[] inputHash = [1, 2, 3]
+    Map<String, Object> inputProperties = [prop: "value"]
+    Map<String, byte[]> hashes = [:]
+
+    def setup() {
+        _ * hasher.hash(_ as List) >> { args -> args[0].collect { hashes[it.name] ?: inputHash } }
+    }
+
+    def "calculates same key for tasks with same type, inputs and outputs"() {
+        expect:
+        calculator.calculateKey(task()) == calculator.calculateKey(task())
+    }
+
+    def "calculates different key when input property changes"() {
+        def original = calculator.calculateKey(task())
+        inputProperties = [prop: "other"]
+
+        expect:
+        calculator.calculateKey(task()) != original
+    }
+
+    def "calculates different key when input file content changes"() {
+        def original = calculator.calculateKey(task())
+        inputHash = [3, 2, 1]
+
+        expect:
+        calculator.calculateKey(task()) != original
+    }
+
+    def "calculates same key when project is moved"() {
+        def original = calculator.calculateKey(task())
+
+        expect:
+        calculator.calculateKey(task(new File("moved").absoluteFile)) == original
+    }
+
+    def "calculates different key when Gradle version changes"() {
+        def original = new TaskCacheKeyCalculator(hasher, "1.0").calculateKey(task())
+
+        expect:
+        new TaskCacheKeyCalculator(hasher, "1.1").calculateKey(task()) != original
+    }
+
+    def "calculates different key when classpath of task implementation changes"() {
+        def classesDir = tmpDir.createDir("classes")
+        classesDir.createFile("org/CustomTask.class")
+        def classLoader = new GroovyClassLoader(getClass().classLoader)
+        classLoader.addURL(classesDir.toURI().toURL())
+        def type = classLoader.parseClass("abstract class CustomTask implements org.gradle.api.internal.TaskInternal {}")
+        hashes["CustomTask.class"] = [1] as byte[]
+
+        def original = calculator.calculateKey(task(rootDir, type))
+        hashes["CustomTask.class"] = [2] as byte[]
+
+        expect:
+        calculator.calculateKey(task(rootDir, type)) != original
+    }
+
+    def "does not calculate key when an input property is not serializable"() {
+        inputProperties = [prop: new Object()]
+
+        expect:
+        calculator.calculateKey(task()) == null
+    }
+
+    private TaskInternal task(File rootDir = this.rootDir, Class<? extends TaskInternal> type = TaskInternal) {
+        TaskInternal task = Mock(type)
+        Project project = Mock()
+        TaskInputs inputs = Mock()
+        FileCollection inputFiles = Mock()
+        FileTree inputFileTree = Mock()
+        TaskOutputsInternal outputs = Mock()
+        FileCollection outputFiles = Mock()
+        File input = new File(rootDir, "in.txt")
+        File output = new File(rootDir, "build/out.txt")
+
+        _ * task.project >> project
+        _ * project.rootProject >> project
+        _ * project.projectDir >> rootDir
+        _ * task.inputs >> inputs
+        _ * inputs.properties >> inputProperties
+        _ * inputs.files >> inputFiles
+        _ * inputFiles.asFileTree >> inputFileTree
+        _ * inputFileTree.iterator() >> { [input].iterator() }
+        _ * task.outputs >> outputs
+        _ * outputs.files >> outputFiles
+        _ * outputFiles.files >> ([output] as Set)
+        _ * outputFiles.iterator() >> { [output].iterator() }
+        return task
+    }
+}
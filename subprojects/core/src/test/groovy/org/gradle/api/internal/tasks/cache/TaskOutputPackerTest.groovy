@@ -0,0 +1,110 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.cache
+
+import org.gradle.api.UncheckedIOException
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class TaskOutputPackerTest extends Specification {
+    @Rule final TemporaryFolder tmpDir = new TemporaryFolder()
+    final TaskOutputPacker packer = new TaskOutputPacker()
+
+    def "restores file and directory outputs"() {
+        def file = tmpDir.createFile("out/file.txt")
+        file.text = "file"
+        def dir = tmpDir.createDir("out/dir")
+        dir.createFile("a.txt").text = "a"
+        dir.createFile("sub/b.txt").text = "b"
+        dir.createDir("empty")
+        def outputs = [file, dir]
+
+        when:
+        def archive = pack(outputs)
+        file.delete()
+        dir.deleteDir()
+        packer.unpack(outputs, new ByteArrayInputStream(archive))
+
+        then:
+        file.text == "file"
+        dir.file("a.txt").text == "a"
+        dir.file("sub/b.txt").text == "b"
+        dir.file("empty").directory
+    }
+
+    def "removes stale files from outputs when unpacking"() {
+        def dir = tmpDir.createDir("out/dir")
+        dir.createFile("a.txt").text = "a"
+        def missing = tmpDir.file("out/missing.txt")
+        def outputs = [dir, missing]
+        def archive = pack(outputs)
+
+        dir.createFile("stale.txt").text = "stale"
+        missing.text = "stale"
+
+        when:
+        packer.unpack(outputs, new ByteArrayInputStream(archive))
+
+        then:
+        dir.list() as List == ["a.txt"]
+        !missing.exists()
+    }
+
+    def "removes outputs when archive cannot be unpacked"() {
+        def file = tmpDir.createFile("out/file.txt")
+        def dir = tmpDir.createDir("out/dir")
+        def outputs = [file, dir]
+        def archive = pack([file, dir, tmpDir.createFile("other.txt")])
+
+        when:
+        packer.unpack(outputs, new ByteArrayInputStream(archive))
+
+        then:
+        thrown(IndexOutOfBoundsException)
+        !file.exists()
+        !dir.exists()
+    }
+
+    def "does not unpack entry which is outside of its output"() {
+        def dir = tmpDir.createDir("out/dir")
+        def outside = tmpDir.file("out/outside.txt")
+        def outputStream = new ByteArrayOutputStream()
+        def zipOutput = new ZipOutputStream(outputStream)
+        zipOutput.putNextEntry(new ZipEntry("0/../outside.txt"))
+        zipOutput.write("outside".bytes)
+        zipOutput.closeEntry()
+        zipOutput.finish()
+
+        when:
+        packer.unpack([dir], new ByteArrayInputStream(outputStream.toByteArray()))
+
+        then:
+        UncheckedIOException e = thrown()
+        e.cause.message.startsWith("Cannot unpack entry '0/../outside.txt'")
+        !outside.exists()
+        !dir.exists()
+    }
+
+    private byte[] pack(List<File> outputs) {
+        def outputStream = new ByteArrayOutputStream()
+        packer.pack(outputs, outputStream)
+        return outputStream.toByteArray()
+    }
+}
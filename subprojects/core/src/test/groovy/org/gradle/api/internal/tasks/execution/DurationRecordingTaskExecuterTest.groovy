@@ -0,0 +1,50 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.execution
+
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.tasks.TaskExecuter
+import org.gradle.api.internal.tasks.TaskStateInternal
+import org.gradle.execution.TaskDurationHistory
+import spock.lang.Specification
+
+class DurationRecordingTaskExecuterTest extends Specification {
+    final TaskExecuter target = Mock()
+    final TaskDurationHistory durationHistory = Mock()
+    final TaskInternal task = Mock()
+    final TaskStateInternal state = Mock()
+    final DurationRecordingTaskExecuter executer = new DurationRecordingTaskExecuter(target, durationHistory)
+
+    def "records duration of task actions"() {
+        when:
+        executer.execute(task, state)
+
+        then:
+        1 * target.execute(task, state) >> { Thread.sleep(20) }
+        _ * state.failure >> null
+        1 * durationHistory.recordDuration(task, { it >= 10 })
+    }
+
+    def "does not record duration when task actions fail"() {
+        when:
+        executer.execute(task, state)
+
+        then:
+        1 * target.execute(task, state)
+        _ * state.failure >> new RuntimeException()
+        0 * durationHistory._
+    }
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.execution
+
+import org.gradle.StartParameter
+import org.gradle.api.file.FileCollection
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.internal.TaskOutputsInternal
+import org.gradle.api.internal.tasks.TaskExecuter
+import org.gradle.api.internal.tasks.TaskStateInternal
+import org.gradle.api.internal.tasks.cache.TaskCacheKeyCalculator
+import org.gradle.api.internal.tasks.cache.TaskOutputCache
+import org.gradle.api.internal.tasks.cache.TaskOutputPacker
+import org.gradle.api.specs.Spec
+import org.gradle.api.specs.Specs
+import spock.lang.Specification
+
+class SkipCachedTaskExecuterTest extends Specification {
+    final TaskExecuter delegate = Mock()
+    final TaskOutputCache cache = Mock()
+    final TaskCacheKeyCalculator keyCalculator = Mock()
+    final TaskOutputPacker packer = Mock()
+    final TaskInternal task = Mock()
+    final TaskStateInternal state = Mock()
+    final TaskOutputsInternal outputs = Mock()
+    final FileCollection outputFiles = Mock()
+    final File outputFile = new File("out")
+    final StartParameter startParameter = new StartParameter()
+    final SkipCachedTaskExecuter executer = new SkipCachedTaskExecuter(delegate, cache, keyCalculator, packer, startParameter)
+    Spec<TaskInternal> upToDateSpec = Specs.satisfyAll()
+
+    def setup() {
+        _ * task.outputs >> outputs
+        _ * outputs.upToDateSpec >> { upToDateSpec }
+        _ * outputs.files >> outputFiles
+        _ * outputFiles.files >> ([outputFile] as Set)
+    }
+
+    def "restores outputs from cache and skips task when cache contains outputs"() {
+        when:
+        executer.execute(task, state)
+
+        then:
+        1 * outputs.hasOutput >> true
+        1 * keyCalculator.calculateKey(task) >> "key"
+        1 * cache.load("key", _) >> { key, reader ->
+            reader.execute(new ByteArrayInputStream(new byte[0]))
+            return true
+        }
+        1 * packer.unpack([outputFile], _)
+        1 * state.skipped("FROM-CACHE")
+        0 * delegate._
+        0 * cache._
+    }
+
+    def "executes task and stores outputs in cache when cache does not contain outputs"() {
+        when:
+        executer.execute(task, state)
+
+        then:
+        1 * outputs.hasOutput >> true
+        1 * keyCalculator.calculateKey(task) >> "key"
+        1 * cache.load("key", _) >> false
+
+        then:
+        1 * delegate.execute(task, state)
+
+        then:
+        _ * state.failure >> null
+        _ * state.skipped >> false
+        1 * cache.store("key", _) >> { key, writer ->
+            writer.execute(new ByteArrayOutputStream())
+        }
+        1 * packer.pack([outputFile], _)
+        0 * cache._
+        0 * packer._
+    }
+
+    def "does not store outputs when task fails"() {
+        when:
+        executer.execute(task, state)
+
+        then:
+        1 * outputs.hasOutput >> true
+        1 * keyCalculator.calculateKey(task) >> "key"
+        1 * cache.load("key", _) >> false
+        1 * delegate.execute(task, state)
+        _ * state.failure >> new RuntimeException()
+        0 * cache._
+    }
+
+    def "executes task when outputs cannot be loaded from cache"() {
+        when:
+        executer.execute(task, state)
+
+        then:
+        1 * outputs.hasOutput >> true
+        1 * keyCalculator.calculateKey(task) >> "key"
+        1 * cache.load("key", _) >> { throw new RuntimeException("broken") }
+        1 * delegate.execute(task, state)
+        0 * state.skipped(_)
+    }
+
+    def "executes task without using cache when task declares no outputs"() {
+        when:
+        executer.execute(task, state)
+
+        then:
+        1 * outputs.hasOutput >> false
+        1 * delegate.execute(task, state)
+        0 * keyCalculator._
+        0 * cache._
+    }
+
+    def "executes task without using cache when key cannot be calculated"() {
+        when:
+        executer.execute(task, state)
+
+        then:
+        1 * outputs.hasOutput >> true
+        1 * keyCalculator.calculateKey(task) >> null
+        1 * delegate.execute(task, state)
+        0 * cache._
+    }
+
+    def "executes task and stores outputs in cache without restoring them when tasks are rerun"() {
+        startParameter.noOpt = true
+
+        when:
+        executer.execute(task, state)
+
+        then:
+        1 * outputs.hasOutput >> true
+        1 * keyCalculator.calculateKey(task) >> "key"
+        0 * cache.load(_, _)
+
+        then:
+        1 * delegate.execute(task, state)
+
+        then:
+        _ * state.failure >> null
+        _ * state.skipped >> false
+        1 * cache.store("key", _)
+        0 * cache._
+    }
+
+    def "executes task without using cache when task outputs are never up-to-date"() {
+        upToDateSpec = Specs.satisfyNone()
+
+        when:
+        executer.execute(task, state)
+
+        then:
+        _ * outputs.hasOutput >> true
+        1 * delegate.execute(task, state)
+        0 * keyCalculator._
+        0 * cache._
+    }
+}
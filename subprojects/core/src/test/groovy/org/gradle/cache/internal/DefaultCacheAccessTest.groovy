@@ -124,7 +124,7 @@ class DefaultCacheAccessTest extends Specification {
         0 * _._
     }
 
-    def "acquires lock when a cache is used and releases lock at the end of the cache action when initial lock mode is none"() {
+    def "acquires lock when a cache is used and holds lock after the cache action when initial lock mode is none"() {
         Factory<String> action = Mock()
 
         given:
@@ -138,11 +138,18 @@ class DefaultCacheAccessTest extends Specification {
         1 * action.create() >> {
             cache.get("key")
         }
-        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation") >> lock
+        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation", !null) >> lock
         _ * lock.readFromFile(_)
+        _ * lock.writeToFile(_)
 
         and:
-        _ * lock.writeToFile(_)
+        1 * lock.isContended() >> false
+        0 * _._
+
+        when:
+        manager.close()
+
+        then:
         1 * lock.close()
         0 * _._
     }
@@ -169,7 +176,7 @@ class DefaultCacheAccessTest extends Specification {
         0 * _._
     }
 
-    def "releases lock before long running operation and reacquires after"() {
+    def "holds lock while long running operation runs"() {
         Factory<String> action = Mock()
         Factory<String> longRunningAction = Mock()
 
@@ -187,23 +194,26 @@ class DefaultCacheAccessTest extends Specification {
             cache.get("key")
         }
         1 * longRunningAction.create()
-        2 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation") >> lock
+        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation", !null) >> lock
         _ * lock.readFromFile(_)
         _ * lock.writeToFile(_)
-        2 * lock.close()
+        _ * lock.isContended()
         0 * _._
     }
 
-    def "cannot run long running operation from outside cache action"() {
+    def "runs long running operation without locking from outside cache action"() {
+        Factory<String> action = Mock()
+
         given:
         manager.open(None)
 
         when:
-        manager.longRunningOperation("operation", Mock(Factory))
+        def result = manager.longRunningOperation("operation", action)
 
         then:
-        IllegalStateException e = thrown()
-        e.message == 'Cannot start long running operation, as the <display-name> has not been locked.'
+        result == "result"
+        1 * action.create() >> "result"
+        0 * _._
     }
 
     def "cannot use cache from within long running operation"() {
@@ -254,11 +264,36 @@ class DefaultCacheAccessTest extends Specification {
         1 * nestedAction.create() >> {
             cache.get("key")
         }
-        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation") >> lock
-        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "nested 2") >> lock
+        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation", !null) >> lock
+        _ * lock.readFromFile(_)
+        _ * lock.writeToFile(_)
+        _ * lock.isContended()
+        0 * _._
+    }
+
+    def "can execute cache action from another thread while long running operation is running"() {
+        given:
+        manager.open(None)
+        def cache = manager.newCache(targetFile, String, Integer)
+        def otherThread = new Thread({
+            manager.useCache("other thread", { cache.get("key") } as Factory)
+        } as Runnable)
+
+        when:
+        manager.useCache("some operation", {
+            cache.get("key")
+            manager.longRunningOperation("nested", {
+                otherThread.start()
+                otherThread.join()
+            } as Factory)
+            cache.get("key")
+        } as Factory)
+
+        then:
+        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation", !null) >> lock
         _ * lock.readFromFile(_)
         _ * lock.writeToFile(_)
-        2 * lock.close()
+        _ * lock.isContended()
         0 * _._
     }
 
@@ -283,10 +318,10 @@ class DefaultCacheAccessTest extends Specification {
             manager.longRunningOperation("nested 2", nestedAction)
         }
         1 * nestedAction.create()
-        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation") >> lock
+        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation", !null) >> lock
         _ * lock.readFromFile(_)
         _ * lock.writeToFile(_)
-        1 * lock.close()
+        _ * lock.isContended()
         0 * _._
     }
 
@@ -309,15 +344,17 @@ class DefaultCacheAccessTest extends Specification {
         1 * nestedAction.create() >> {
             cache.get("key")
         }
-        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation") >> lock
+        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation", !null) >> lock
         _ * lock.readFromFile(_)
         _ * lock.writeToFile(_)
-        1 * lock.close()
+        _ * lock.isContended()
         0 * _._
     }
 
-    def "closes caches at the end of the cache action when initial lock mode is none"() {
+    def "releases lock at end of nested cache action when lock is contended and reacquires on next use"() {
         Factory<String> action = Mock()
+        Factory<String> nestedAction = Mock()
+        FileLock contendedLock = Mock()
 
         given:
         manager.open(None)
@@ -328,18 +365,242 @@ class DefaultCacheAccessTest extends Specification {
 
         then:
         1 * action.create() >> {
+            manager.useCache("nested", nestedAction)
+            cache.get("key")
+        }
+        1 * nestedAction.create() >> {
             cache.get("key")
         }
-        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation") >> lock
+        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "nested", !null) >> contendedLock
+        _ * contendedLock.readFromFile(_)
+        _ * contendedLock.writeToFile(_) >> {Runnable runnable -> runnable.run()}
+        1 * contendedLock.isContended() >> true
+        1 * contendedLock.close()
+
+        and:
+        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation", !null) >> lock
         _ * lock.readFromFile(_)
+        _ * lock.writeToFile(_) >> {Runnable runnable -> runnable.run()}
+        1 * lock.isContended() >> false
+        _ * backingCache.close()
+        0 * _._
+    }
+
+    def "does not compact cache which has been written to when releasing contended lock"() {
+        Factory<String> action = Mock()
+        Factory<String> nestedAction = Mock()
+        FileLock contendedLock = Mock()
+
+        given:
+        manager.open(None)
+        def cache = manager.newCache(targetFile, String, Integer)
+
+        when:
+        manager.useCache("some operation", action)
+
+        then:
+        1 * action.create() >> {
+            manager.useCache("nested", nestedAction)
+            cache.get("key")
+        }
+        1 * nestedAction.create() >> {
+            cache.put("key", 12)
+        }
+        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "nested", !null) >> contendedLock
+        _ * contendedLock.writeToFile(_) >> {Runnable runnable -> runnable.run()}
+        1 * contendedLock.isContended() >> true
+        1 * contendedLock.close()
+        1 * backingCache.put("key", 12)
+
+        and:
+        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation", !null) >> lock
+        _ * lock.readFromFile(_) >> {Factory factory -> factory.create()}
+        _ * lock.writeToFile(_) >> {Runnable runnable -> runnable.run()}
+        1 * backingCache.get("key")
+        1 * lock.isContended() >> false
+        1 * backingCache.close()
+        0 * _._
+    }
+
+    def "keeps caches open after the cache action and closes them on close when initial lock mode is none"() {
+        Factory<String> action = Mock()
+
+        given:
+        manager.open(None)
+        def cache = manager.newCache(targetFile, String, Integer)
+
+        when:
+        manager.useCache("some operation", action)
+
+        then:
+        1 * action.create() >> {
+            cache.get("key")
+        }
+        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation", !null) >> lock
+        _ * lock.readFromFile(_) >> {Factory factory -> factory.create()}
+        _ * lock.writeToFile(_) >> {Runnable runnable -> runnable.run()}
+        1 * backingCache.get("key")
+        1 * lock.isContended() >> false
+        0 * _._
+
+        when:
+        manager.close()
+
+        then:
+        _ * lock.readFromFile(_) >> {Factory factory -> factory.create()}
+        _ * lock.writeToFile(_) >> {Runnable runnable -> runnable.run()}
+        1 * backingCache.close()
+        1 * lock.close()
+        0 * _._
+    }
+
+    def "releases caches and lock at the end of the cache action when lock is contended"() {
+        Factory<String> action = Mock()
+
+        given:
+        manager.open(None)
+        def cache = manager.newCache(targetFile, String, Integer)
+
+        when:
+        manager.useCache("some operation", action)
+
+        then:
+        1 * action.create() >> {
+            cache.put("key", 12)
+        }
+        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation", !null) >> lock
+        _ * lock.readFromFile(_) >> {Factory factory -> factory.create()}
+        _ * lock.writeToFile(_) >> {Runnable runnable -> runnable.run()}
+        1 * backingCache.put("key", 12)
 
         and:
+        1 * lock.isContended() >> true
+        1 * backingCache.close()
+        1 * lock.close()
+        0 * _._
+    }
+
+    def "releases caches and lock when lock is contended while no cache action is running"() {
+        Runnable whenContended
+
+        given:
+        targetFile.text = "content"
+        manager.open(None)
+        def cache = manager.newCache(targetFile, String, Integer)
+        1 * lockManager.lock(lockFile, Shared, "<display-name>", "some operation", !null) >> { args -> whenContended = args[4]; lock }
+        _ * lock.readFromFile(_) >> {Factory factory -> factory.create()}
+        manager.useCache("some operation", { cache.get("key") } as Factory)
+
+        when:
+        whenContended.run()
+
+        then:
+        1 * lock.isContended() >> true
+        _ * lock.readFromFile(_) >> {Factory factory -> factory.create()}
+        1 * backingCache.close()
+        1 * lock.close()
+        0 * _._
+
+        when:
+        manager.useCache("other operation", { cache.get("key") } as Factory)
+
+        then:
+        1 * lockManager.lock(lockFile, Shared, "<display-name>", "other operation", !null) >> lock
+        _ * lock.readFromFile(_) >> {Factory factory -> factory.create()}
+        1 * backingCache.get("key")
+        1 * lock.isContended() >> false
+        0 * _._
+    }
+
+    def "does not release lock when lock is contended while a cache action is running"() {
+        Runnable whenContended
+
+        given:
+        manager.open(None)
+        def cache = manager.newCache(targetFile, String, Integer)
+
+        when:
+        manager.useCache("some operation", {
+            cache.get("key")
+            whenContended.run()
+            cache.get("key")
+        } as Factory)
+
+        then:
+        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation", !null) >> { args -> whenContended = args[4]; lock }
+        _ * lock.readFromFile(_) >> {Factory factory -> factory.create()}
         _ * lock.writeToFile(_) >> {Runnable runnable -> runnable.run()}
+        2 * backingCache.get("key")
+
+        and:
+        1 * lock.isContended() >> true
         1 * backingCache.close()
         1 * lock.close()
         0 * _._
     }
 
+    def "acquires shared lock to read from existing cache file and escalates it to write"() {
+        Factory<String> action = Mock()
+        FileLock sharedLock = Mock()
+
+        given:
+        targetFile.text = "content"
+        manager.open(None)
+        def cache = manager.newCache(targetFile, String, Integer)
+
+        when:
+        manager.useCache("some operation", action)
+
+        then:
+        1 * action.create() >> {
+            cache.get("key")
+            cache.put("key", 12)
+        }
+        1 * lockManager.lock(lockFile, Shared, "<display-name>", "some operation", !null) >> sharedLock
+        _ * sharedLock.readFromFile(_) >> {Factory factory -> factory.create()}
+        1 * backingCache.get("key")
+
+        and:
+        1 * backingCache.close()
+        1 * sharedLock.close()
+
+        and:
+        1 * lockManager.lock(lockFile, Exclusive, "<display-name>", "some operation", !null) >> lock
+        _ * lock.readFromFile(_) >> {Factory factory -> factory.create()}
+        _ * lock.writeToFile(_) >> {Runnable runnable -> runnable.run()}
+        1 * backingCache.put("key", 12)
+        1 * lock.isContended() >> false
+        0 * _._
+
+        when:
+        manager.close()
+
+        then:
+        _ * lock.writeToFile(_) >> {Runnable runnable -> runnable.run()}
+        1 * backingCache.compactIfFragmented()
+        1 * backingCache.close()
+        1 * lock.close()
+        0 * _._
+    }
+
+    def "holds shared lock across cache actions which only read from existing cache file"() {
+        given:
+        targetFile.text = "content"
+        manager.open(None)
+        def cache = manager.newCache(targetFile, String, Integer)
+
+        when:
+        manager.useCache("some operation", { cache.get("key") } as Factory)
+        manager.useCache("other operation", { cache.get("key") } as Factory)
+
+        then:
+        1 * lockManager.lock(lockFile, Shared, "<display-name>", "some operation", !null) >> lock
+        _ * lock.readFromFile(_) >> {Factory factory -> factory.create()}
+        2 * backingCache.get("key")
+        2 * lock.isContended() >> false
+        0 * _._
+    }
+
     def "closes caches on close when initial lock mode is not none"() {
         given:
         1 * lockManager.lock(lockFile, Exclusive, "<display-name>") >> lock
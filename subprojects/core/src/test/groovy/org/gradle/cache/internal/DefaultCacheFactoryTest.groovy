@@ -20,6 +20,8 @@ import org.gradle.api.Action
 import org.gradle.cache.DefaultSerializer
 import org.gradle.util.TemporaryFolder
 import org.junit.Rule
+import org.gradle.cache.internal.btree.BTreePersistentIndexedCache
+import org.gradle.cache.internal.btree.FileBackedBlockStore
 import spock.lang.Specification
 
 class DefaultCacheFactoryTest extends Specification {
@@ -69,7 +71,7 @@ class DefaultCacheFactoryTest extends Specification {
     public void "creates directory backed cache instance"() {
         when:
         def factory = factoryFactory.create()
-        def cache = factory.open(tmpDir.dir, "<display>", CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Shared, null)
+        def cache = factory.open(tmpDir.dir, "<display>", CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Shared, null, false, null)
 
         then:
         cache instanceof DefaultPersistentDirectoryCache
@@ -83,6 +85,46 @@ class DefaultCacheFactoryTest extends Specification {
         1 * closed.execute(cache)
     }
 
+    public void "creates directory backed cache instance whose indexed caches use mapped files"() {
+        def cacheFile = tmpDir.file("entries.bin")
+
+        when:
+        def factory = factoryFactory.create()
+        def cache = factory.open(tmpDir.dir, "<display>", CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, true, null)
+        cache.createCache(cacheFile, String, Integer).put("key", 12)
+
+        then:
+        !FileBackedBlockStore.getJournalFile(cacheFile).exists()
+
+        when:
+        factory.close()
+        def indexedCache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, new DefaultSerializer<String>(), new DefaultSerializer<Integer>())
+
+        then:
+        indexedCache.get("key") == 12
+
+        cleanup:
+        indexedCache?.close()
+    }
+
+    public void "reports block cache statistics of indexed caches after they have been closed"() {
+        def cacheFile = tmpDir.file("entries.bin")
+
+        when:
+        def factory = factoryFactory.create()
+        def cache = factory.open(tmpDir.dir, "<display>", CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
+        def indexedCache = cache.createCache(cacheFile, String, Integer)
+        indexedCache.put("key", 12)
+        indexedCache.get("key")
+        factory.close()
+        def statistics = factory.indexedCacheStatistics
+
+        then:
+        statistics.size() == 1
+        statistics[0].cacheFile == cacheFile
+        statistics[0].dataCacheStatistics.hits > 0
+    }
+
     public void "creates indexed cache instance"() {
         when:
         def factory = factoryFactory.create()
@@ -104,8 +146,8 @@ class DefaultCacheFactoryTest extends Specification {
     public void "reuses directory backed cache instances"() {
         when:
         def factory = factoryFactory.create()
-        def ref1 = factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
-        def ref2 = factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        def ref1 = factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
+        def ref2 = factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         then:
         ref1.is(ref2)
@@ -116,8 +158,8 @@ class DefaultCacheFactoryTest extends Specification {
         when:
         def factory1 = factoryFactory.create()
         def factory2 = factoryFactory.create()
-        def ref1 = factory1.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
-        def ref2 = factory2.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        def ref1 = factory1.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
+        def ref2 = factory2.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         then:
         ref1.is(ref2)
@@ -197,8 +239,8 @@ class DefaultCacheFactoryTest extends Specification {
         given:
         def factory1 = factoryFactory.create()
         def factory2 = factoryFactory.create()
-        factory1.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
-        def oldCache = factory2.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        factory1.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
+        def oldCache = factory2.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         when:
         factory1.close()
@@ -209,7 +251,7 @@ class DefaultCacheFactoryTest extends Specification {
 
         when:
         def factory = factoryFactory.create()
-        def cache = factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        def cache = factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         then:
         !cache.is(oldCache)
@@ -269,10 +311,10 @@ class DefaultCacheFactoryTest extends Specification {
         given:
         def factory1 = factoryFactory.create()
         def factory2 = factoryFactory.create()
-        def oldCache = factory1.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        def oldCache = factory1.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
         factory2.openIndexedCache(tmpDir.dir, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
         factory2.openStateCache(tmpDir.dir, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
-        factory2.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        factory2.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         when:
         factory1.close()
@@ -283,7 +325,7 @@ class DefaultCacheFactoryTest extends Specification {
 
         when:
         def factory = factoryFactory.create()
-        def cache = factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        def cache = factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         then:
         !oldCache.is(cache)
@@ -294,10 +336,10 @@ class DefaultCacheFactoryTest extends Specification {
     public void "fails when directory cache is already open with different properties"() {
         given:
         def factory = factoryFactory.create()
-        factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         when:
-        factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'other'], FileLockManager.LockMode.Exclusive, null)
+        factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'other'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         then:
         IllegalStateException e = thrown()
@@ -307,11 +349,11 @@ class DefaultCacheFactoryTest extends Specification {
     public void "fails when directory cache is already open with different properties in different session"() {
         given:
         def factory1 = factoryFactory.create()
-        factory1.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        factory1.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         when:
         def factory2 = factoryFactory.create()
-        factory2.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'other'], FileLockManager.LockMode.Exclusive, null)
+        factory2.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'other'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         then:
         IllegalStateException e = thrown()
@@ -321,10 +363,10 @@ class DefaultCacheFactoryTest extends Specification {
     public void "fails when directory cache is already open when rebuild is requested"() {
         given:
         def factory = factoryFactory.create()
-        factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         when:
-        factory.open(tmpDir.dir, null, CacheUsage.REBUILD, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        factory.open(tmpDir.dir, null, CacheUsage.REBUILD, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         then:
         IllegalStateException e = thrown()
@@ -334,11 +376,11 @@ class DefaultCacheFactoryTest extends Specification {
     public void "fails when directory cache is already open in different session when rebuild is requested"() {
         given:
         def factory1 = factoryFactory.create()
-        factory1.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        factory1.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         when:
         def factory2 = factoryFactory.create()
-        factory2.open(tmpDir.dir, null, CacheUsage.REBUILD, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        factory2.open(tmpDir.dir, null, CacheUsage.REBUILD, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         then:
         IllegalStateException e = thrown()
@@ -348,10 +390,10 @@ class DefaultCacheFactoryTest extends Specification {
     public void "can open directory cache when rebuild is requested and cache was rebuilt in same session"() {
         given:
         def factory = factoryFactory.create()
-        factory.open(tmpDir.dir, null, CacheUsage.REBUILD, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        factory.open(tmpDir.dir, null, CacheUsage.REBUILD, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         when:
-        factory.open(tmpDir.dir, null, CacheUsage.REBUILD, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        factory.open(tmpDir.dir, null, CacheUsage.REBUILD, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         then:
         notThrown(RuntimeException)
@@ -360,12 +402,12 @@ class DefaultCacheFactoryTest extends Specification {
     public void "can open directory cache when rebuild is requested and has been closed"() {
         given:
         def factory1 = factoryFactory.create()
-        factory1.open(tmpDir.dir, null, CacheUsage.REBUILD, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        factory1.open(tmpDir.dir, null, CacheUsage.REBUILD, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
         factory1.close()
 
         when:
         def factory2 = factoryFactory.create()
-        factory2.open(tmpDir.dir, null, CacheUsage.REBUILD, [prop: 'value'], FileLockManager.LockMode.Exclusive, null)
+        factory2.open(tmpDir.dir, null, CacheUsage.REBUILD, [prop: 'value'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         then:
         notThrown(RuntimeException)
@@ -374,10 +416,10 @@ class DefaultCacheFactoryTest extends Specification {
     public void "fails when directory cache when cache is already open with different lock mode"() {
         given:
         def factory = factoryFactory.create()
-        factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Shared, null)
+        factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'value'], FileLockManager.LockMode.Shared, null, false, null)
 
         when:
-        factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'other'], FileLockManager.LockMode.Exclusive, null)
+        factory.open(tmpDir.dir, null, CacheUsage.ON, [prop: 'other'], FileLockManager.LockMode.Exclusive, null, false, null)
 
         then:
         IllegalStateException e = thrown()
@@ -66,7 +66,7 @@ class DefaultCacheRepositoryTest extends Specification {
 
         then:
         result == cache
-        1 * cacheFactory.open(sharedCacheDir.file(version, "a/b/c"), null, CacheUsage.ON, [:], FileLockManager.LockMode.Shared, null) >> cache
+        1 * cacheFactory.open(sharedCacheDir.file(version, "a/b/c"), null, CacheUsage.ON, [:], FileLockManager.LockMode.Shared, null, false, null) >> cache
         0 * cacheFactory._
     }
 
@@ -101,7 +101,7 @@ class DefaultCacheRepositoryTest extends Specification {
         repository.cache("a/b/c").withProperties(properties).open()
 
         then:
-        1 * cacheFactory.open(sharedCacheDir.file(version, "a/b/c"), null, CacheUsage.ON, properties, FileLockManager.LockMode.Shared, null) >> cache
+        1 * cacheFactory.open(sharedCacheDir.file(version, "a/b/c"), null, CacheUsage.ON, properties, FileLockManager.LockMode.Shared, null, false, null) >> cache
     }
 
     public void createsCacheForAGradleInstance() {
@@ -109,7 +109,7 @@ class DefaultCacheRepositoryTest extends Specification {
         repository.cache("a/b/c").forObject(gradle).open()
 
         then:
-        1 * cacheFactory.open(buildRootDir.file(".gradle", version, "a/b/c"), null, CacheUsage.ON, [:], FileLockManager.LockMode.Shared, null) >> cache
+        1 * cacheFactory.open(buildRootDir.file(".gradle", version, "a/b/c"), null, CacheUsage.ON, [:], FileLockManager.LockMode.Shared, null, false, null) >> cache
     }
 
     public void createsCacheForAFile() {
@@ -119,7 +119,7 @@ class DefaultCacheRepositoryTest extends Specification {
         repository.cache("a/b/c").forObject(dir).open()
 
         then:
-        1 * cacheFactory.open(dir.file(".gradle", version, "a/b/c"), null, CacheUsage.ON, [:], FileLockManager.LockMode.Shared, null) >> cache
+        1 * cacheFactory.open(dir.file(".gradle", version, "a/b/c"), null, CacheUsage.ON, [:], FileLockManager.LockMode.Shared, null, false, null) >> cache
     }
 
     public void createsCrossVersionCacheThatIsInvalidatedOnVersionChange() {
@@ -127,7 +127,7 @@ class DefaultCacheRepositoryTest extends Specification {
         repository.cache("a/b/c").withVersionStrategy(VersionStrategy.SharedCacheInvalidateOnVersionChange).open()
 
         then:
-        1 * cacheFactory.open(sharedCacheDir.file("noVersion", "a/b/c"), null, CacheUsage.ON, ["gradle.version": version], FileLockManager.LockMode.Shared, null) >> cache
+        1 * cacheFactory.open(sharedCacheDir.file("noVersion", "a/b/c"), null, CacheUsage.ON, ["gradle.version": version], FileLockManager.LockMode.Shared, null, false, null) >> cache
     }
 
     public void createsCrossVersionCacheForAGradleInstanceThatIsInvalidatedOnVersionChange() {
@@ -135,7 +135,7 @@ class DefaultCacheRepositoryTest extends Specification {
         repository.cache("a/b/c").withVersionStrategy(VersionStrategy.SharedCacheInvalidateOnVersionChange).forObject(gradle).open()
 
         then:
-        1 * cacheFactory.open(buildRootDir.file(".gradle", "noVersion", "a/b/c"), null, CacheUsage.ON, ["gradle.version": version], FileLockManager.LockMode.Shared, null) >> cache
+        1 * cacheFactory.open(buildRootDir.file(".gradle", "noVersion", "a/b/c"), null, CacheUsage.ON, ["gradle.version": version], FileLockManager.LockMode.Shared, null, false, null) >> cache
     }
 
     public void canSpecifyInitializerActionForDirectoryCache() {
@@ -145,7 +145,7 @@ class DefaultCacheRepositoryTest extends Specification {
         repository.cache("a").withInitializer(action).open()
 
         then:
-        1 * cacheFactory.open(sharedCacheDir.file(version, "a"), null, CacheUsage.ON, [:], FileLockManager.LockMode.Shared, action) >> cache
+        1 * cacheFactory.open(sharedCacheDir.file(version, "a"), null, CacheUsage.ON, [:], FileLockManager.LockMode.Shared, null, false, action) >> cache
     }
 
     public void canSpecifyLockModeForDirectoryCache() {
@@ -153,7 +153,36 @@ class DefaultCacheRepositoryTest extends Specification {
         repository.cache("a").withLockMode(FileLockManager.LockMode.None).open()
 
         then:
-        1 * cacheFactory.open(sharedCacheDir.file(version, "a"), null, CacheUsage.ON, [:], FileLockManager.LockMode.None, null) >> cache
+        1 * cacheFactory.open(sharedCacheDir.file(version, "a"), null, CacheUsage.ON, [:], FileLockManager.LockMode.None, null, false, null) >> cache
+    }
+
+    public void canEnableCrashRecoveryForDirectoryCache() {
+        Action<?> action = Mock()
+
+        when:
+        repository.cache("a").withCrashRecovery(action).open()
+
+        then:
+        1 * cacheFactory.open(sharedCacheDir.file(version, "a"), null, CacheUsage.ON, [:], FileLockManager.LockMode.Shared, action, false, null) >> cache
+    }
+
+    public void canEnableMappedFilesForDirectoryCache() {
+        when:
+        repository.cache("a").withMappedFiles().open()
+
+        then:
+        1 * cacheFactory.open(sharedCacheDir.file(version, "a"), null, CacheUsage.ON, [:], FileLockManager.LockMode.Shared, null, true, null) >> cache
+    }
+
+    public void cannotEnableMappedFilesAndCrashRecoveryForDirectoryCache() {
+        Action<?> action = Mock()
+
+        when:
+        repository.cache("a").withCrashRecovery(action).withMappedFiles().open()
+
+        then:
+        thrown(UnsupportedOperationException)
+        0 * cacheFactory._
     }
 
     public void canSpecifyDisplayNameForDirectoryCache() {
@@ -161,6 +190,6 @@ class DefaultCacheRepositoryTest extends Specification {
         repository.cache("a").withDisplayName("<cache>").open()
 
         then:
-        1 * cacheFactory.open(sharedCacheDir.file(version, "a"), "<cache>", CacheUsage.ON, [:], FileLockManager.LockMode.Shared, null) >> cache
+        1 * cacheFactory.open(sharedCacheDir.file(version, "a"), "<cache>", CacheUsage.ON, [:], FileLockManager.LockMode.Shared, null, false, null) >> cache
     }
 }
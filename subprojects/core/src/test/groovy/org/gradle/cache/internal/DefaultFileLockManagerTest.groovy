@@ -106,6 +106,26 @@ class DefaultFileLockManagerTest extends Specification {
         lock?.close()
     }
 
+    def "nested writeToFile() is part of the outer update"() {
+        def lock = manager.lock(tmpDir.createFile("file.txt"), LockMode.Exclusive, "lock")
+        def cleanInNestedUpdate = null
+        def cleanAfterNestedUpdate = null
+
+        when:
+        lock.writeToFile({
+            lock.writeToFile({ cleanInNestedUpdate = lock.unlockedCleanly } as Runnable)
+            cleanAfterNestedUpdate = lock.unlockedCleanly
+        } as Runnable)
+
+        then:
+        cleanInNestedUpdate == false
+        cleanAfterNestedUpdate == false
+        lock.unlockedCleanly
+
+        cleanup:
+        lock?.close()
+    }
+
     def "existing lock is unlocked cleanly after writeToFile() throws exception"() {
         def failure = new RuntimeException()
 
@@ -265,6 +285,53 @@ class DefaultFileLockManagerTest extends Specification {
         lock?.close()
     }
 
+    @Requires(TestPrecondition.NO_FILE_LOCK_ON_OPEN)
+    def "writes version 2 lock file while shared lock on existing file is open"() {
+        def file = tmpDir.file("state.bin")
+        def lockFile = tmpDir.file("state.bin.lock")
+        lockFile.withDataOutputStream {
+            it.writeByte(1)
+            it.writeBoolean(false)
+        }
+
+        when:
+        def lock = manager.lock(file, LockMode.Shared, "foo", "operation")
+
+        then:
+        isVersion2LockFile(lockFile)
+        !lock.contended
+
+        cleanup:
+        lock?.close()
+    }
+
+    @Requires(TestPrecondition.NO_FILE_LOCK_ON_OPEN)
+    def "shared lock is contended once another owner has discarded the information region"() {
+        def file = tmpDir.file("state.bin")
+        def lockFile = tmpDir.file("state.bin.lock")
+        lockFile.withDataOutputStream {
+            it.writeByte(1)
+            it.writeBoolean(false)
+        }
+
+        given:
+        def lock = manager.lock(file, LockMode.Shared, "foo", "operation")
+
+        when:
+        def access = new RandomAccessFile(lockFile, "rw")
+        try {
+            access.setLength(2)
+        } finally {
+            access.close()
+        }
+
+        then:
+        lock.contended
+
+        cleanup:
+        lock?.close()
+    }
+
     def "can acquire lock on partially written lock file"() {
         def file = tmpDir.file("state.bin")
         def lockFile = tmpDir.file("state.bin.lock")
@@ -336,6 +403,7 @@ class DefaultFileLockManagerTest extends Specification {
             assert str.readByte() == 2
             assert str.readUTF() == '123'
             assert str.readUTF() == 'operation'
+            str.readInt()
             assert str.read() < 0
         }
     }
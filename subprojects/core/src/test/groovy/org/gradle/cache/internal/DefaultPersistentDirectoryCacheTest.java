@@ -48,6 +48,7 @@ public class DefaultPersistentDirectoryCacheTest {
     private final ProcessMetaDataProvider metaDataProvider = context.mock(ProcessMetaDataProvider.class);
     private final FileLockManager lockManager = new DefaultFileLockManager(metaDataProvider);
     private final Action<PersistentCache> action = context.mock(Action.class);
+    private final Action<PersistentCache> recoveryAction = context.mock(Action.class, "recoveryAction");
     private final Map<String, String> properties = GUtil.map("prop", "value", "prop2", "other-value");
 
     @Before
@@ -86,6 +87,37 @@ public class DefaultPersistentDirectoryCacheTest {
         assertThat(loadProperties(dir.file("cache.properties")), equalTo(properties));
     }
 
+    @Test
+    public void initialisesCacheWhenCacheDirDoesNotExistAndCrashRecoveryIsEnabled() {
+        TestFile emptyDir = tmpDir.getDir().file("dir");
+
+        context.checking(new Expectations() {{
+            one(action).execute(with(notNullValue(PersistentCache.class)));
+        }});
+
+        DefaultPersistentDirectoryCache cache = new DefaultPersistentDirectoryCache(emptyDir, "<display-name>", CacheUsage.ON, properties, LockMode.None, recoveryAction, action, lockManager);
+        cache.open();
+        assertThat(loadProperties(emptyDir.file("cache.properties")), equalTo(properties));
+        cache.close();
+    }
+
+    @Test
+    public void initialisesCacheWhenLockModeIsNone() {
+        TestFile emptyDir = tmpDir.getDir().file("dir");
+
+        context.checking(new Expectations() {{
+            one(action).execute(with(notNullValue(PersistentCache.class)));
+        }});
+
+        DefaultPersistentDirectoryCache cache = new DefaultPersistentDirectoryCache(emptyDir, "<display-name>", CacheUsage.ON, properties, LockMode.None, action, lockManager);
+        cache.open();
+        assertThat(loadProperties(emptyDir.file("cache.properties")), equalTo(properties));
+
+        // Lock is not held once the cache has been opened
+        lockManager.lock(emptyDir.file("cache.properties"), LockMode.Exclusive, "<display-name>").close();
+        cache.close();
+    }
+
     @Test
     public void rebuildsCacheWhenPropertiesHaveChanged() {
         TestFile dir = createCacheDir("prop", "other-value");
@@ -157,6 +189,62 @@ public class DefaultPersistentDirectoryCacheTest {
         return result;
     }
 
+    @Test
+    public void rebuildsCacheWhenCacheWasNotClosedCleanly() {
+        TestFile dir = createCacheDir();
+        markDirty(dir);
+
+        context.checking(new Expectations() {{
+            one(action).execute(with(notNullValue(PersistentCache.class)));
+        }});
+
+        DefaultPersistentDirectoryCache cache = new DefaultPersistentDirectoryCache(dir, "<display-name>", CacheUsage.ON, properties, LockMode.Shared, action, lockManager);
+        cache.open();
+        dir.file("some-file").assertDoesNotExist();
+        cache.close();
+    }
+
+    @Test
+    public void keepsAndRecoversCacheWhichWasNotClosedCleanlyWhenCrashRecoveryIsEnabled() {
+        TestFile dir = createCacheDir();
+        markDirty(dir);
+
+        context.checking(new Expectations() {{
+            one(recoveryAction).execute(with(notNullValue(PersistentCache.class)));
+        }});
+
+        DefaultPersistentDirectoryCache cache = new DefaultPersistentDirectoryCache(dir, "<display-name>", CacheUsage.ON, properties, LockMode.Shared, recoveryAction, action, lockManager);
+        cache.open();
+        dir.file("some-file").assertIsFile();
+        cache.close();
+    }
+
+    @Test
+    public void doesNotRecoverCacheWhichWasClosedCleanly() {
+        TestFile dir = createCacheDir();
+
+        DefaultPersistentDirectoryCache cache = new DefaultPersistentDirectoryCache(dir, "<display-name>", CacheUsage.ON, properties, LockMode.Shared, recoveryAction, action, lockManager);
+        cache.open();
+        dir.file("some-file").assertIsFile();
+        cache.close();
+    }
+
+    private void markDirty(TestFile dir) {
+        FileLock lock = lockManager.lock(dir.file("cache.properties"), LockMode.Exclusive, "<display-name>");
+        try {
+            lock.writeToFile(new Runnable() {
+                public void run() {
+                    throw new RuntimeException("broken");
+                }
+            });
+            fail();
+        } catch (RuntimeException e) {
+            assertThat(e.getMessage(), equalTo("broken"));
+        } finally {
+            lock.close();
+        }
+    }
+
     private TestFile createCacheDir(String... extraProps) {
         TestFile dir = tmpDir.getDir();
 
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal
+
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class FileLockCommunicatorTest extends Specification {
+    final File lockFile = new File("some-file.lock").absoluteFile
+    final List<Integer> requests = [].asSynchronized()
+    final CountDownLatch requested = new CountDownLatch(1)
+    final FileLockCommunicator owner = new FileLockCommunicator({ File file, int port ->
+        if (file == lockFile) {
+            requests << port
+            requested.countDown()
+        }
+    } as FileLockCommunicator.ReleaseRequestHandler)
+    final FileLockCommunicator waiter = new FileLockCommunicator({ File file, int port -> } as FileLockCommunicator.ReleaseRequestHandler)
+
+    def cleanup() {
+        owner.stop()
+        waiter.stop()
+    }
+
+    def "owner receives release request from waiter"() {
+        when:
+        waiter.requestRelease(lockFile, owner.port)
+
+        then:
+        requested.await(5, TimeUnit.SECONDS)
+        requests == [waiter.port]
+    }
+
+    def "waiter is notified when owner releases lock"() {
+        def releaseCount = waiter.getReleaseCount(lockFile)
+
+        when:
+        owner.notifyReleased(lockFile, [waiter.port])
+        waiter.awaitRelease(lockFile, releaseCount, 5000)
+
+        then:
+        waiter.getReleaseCount(lockFile) == releaseCount + 1
+    }
+
+    def "waiting for release times out when owner does not respond"() {
+        when:
+        waiter.awaitRelease(lockFile, waiter.getReleaseCount(lockFile), 50)
+
+        then:
+        waiter.getReleaseCount(lockFile) == 0
+    }
+
+    def "does not receive messages once stopped"() {
+        when:
+        owner.stop()
+
+        then:
+        owner.port == -1
+    }
+}
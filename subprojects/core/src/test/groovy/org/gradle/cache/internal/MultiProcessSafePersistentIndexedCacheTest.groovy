@@ -17,12 +17,16 @@ package org.gradle.cache.internal
 
 import org.gradle.internal.Factory
 import org.gradle.cache.internal.btree.BTreePersistentIndexedCache
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
 import spock.lang.Specification
 
 class MultiProcessSafePersistentIndexedCacheTest extends Specification {
+    @Rule final TemporaryFolder tmpDir = new TemporaryFolder()
+    final File cacheFile = tmpDir.file("cache.bin")
     final FileAccess fileAccess = Mock()
     final Factory<BTreePersistentIndexedCache<String, String>> factory = Mock()
-    final MultiProcessSafePersistentIndexedCache<String, String> cache = new MultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess)
+    final MultiProcessSafePersistentIndexedCache<String, String> cache = new MultiProcessSafePersistentIndexedCache<String, String>(factory, fileAccess, cacheFile)
     final BTreePersistentIndexedCache<String, String> backingCache = Mock()
     
     def "opens cache on first access"() {
@@ -34,6 +38,20 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         1 * factory.create() >> backingCache
     }
 
+    def "holds read lock while opening existing cache file"() {
+        given:
+        cacheFile.text = "content"
+
+        when:
+        cache.get("value")
+
+        then:
+        2 * fileAccess.readFromFile(!null) >> { Factory action -> action.create() }
+        1 * factory.create() >> backingCache
+        1 * backingCache.get("value")
+        0 * _._
+    }
+
     def "holds read lock while getting entry from cache"() {
         given:
         cacheOpened()
@@ -76,13 +94,87 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         0 * _._
     }
 
-    def "holds write lock while closing cache"() {
+    def "holds read lock while getting entries from cache"() {
+        given:
+        cacheOpened()
+
+        when:
+        def result = cache.getAll(["a", "b"])
+
+        then:
+        result == [a: "1"]
+
+        and:
+        1 * fileAccess.readFromFile(!null) >> { Factory action -> action.create() }
+        1 * backingCache.getAll(["a", "b"]) >> [a: "1"]
+        0 * _._
+    }
+
+    def "holds write lock while putting entries into cache"() {
+        given:
+        cacheOpened()
+
+        when:
+        cache.putAll([a: "1", b: "2"])
+
+        then:
+        1 * fileAccess.writeToFile(!null) >> { Runnable action -> action.run() }
+        1 * backingCache.putAll([a: "1", b: "2"])
+        0 * _._
+    }
+
+    def "holds read lock while visiting entries of cache"() {
+        given:
+        def action = Mock(org.gradle.api.Action)
+        cacheOpened()
+
+        when:
+        cache.visitEntries(action)
+
+        then:
+        1 * fileAccess.readFromFile(!null) >> { Factory factory -> factory.create() }
+        1 * backingCache.visitEntries(action)
+        0 * _._
+    }
+
+    def "holds read lock while closing cache which has not been written to"() {
         given:
         cacheOpened()
 
         when:
         cache.close()
 
+        then:
+        1 * fileAccess.readFromFile(!null) >> { Factory action -> action.create() }
+        1 * backingCache.close()
+        0 * _._
+    }
+
+    def "holds write lock while compacting and closing cache which has been written to"() {
+        given:
+        2 * fileAccess.writeToFile(!null) >> { Runnable action -> action.run() }
+        1 * factory.create() >> backingCache
+        cache.put("key", "value")
+
+        when:
+        cache.close()
+
+        then:
+        1 * fileAccess.writeToFile(!null) >> { Runnable action -> action.run() }
+        1 * backingCache.compactIfFragmented()
+        1 * backingCache.close()
+        0 * _._
+    }
+
+    def "closes cache which has been written to without compacting when released"() {
+        given:
+        2 * fileAccess.writeToFile(!null) >> { Runnable action -> action.run() }
+        1 * factory.create() >> backingCache
+        cache.put("key", "value")
+
+        when:
+        cache.release()
+
         then:
         1 * fileAccess.writeToFile(!null) >> { Runnable action -> action.run() }
         1 * backingCache.close()
@@ -97,7 +189,7 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         cache.onEndWork()
 
         then:
-        1 * fileAccess.writeToFile(!null) >> { Runnable action -> action.run() }
+        1 * fileAccess.readFromFile(!null) >> { Factory action -> action.create() }
         1 * backingCache.close()
         0 * _._
     }
@@ -125,7 +217,7 @@ class MultiProcessSafePersistentIndexedCacheTest extends Specification {
         cache.close()
 
         then:
-        1 * fileAccess.writeToFile(!null) >> { Runnable action -> action.run() }
+        1 * fileAccess.readFromFile(!null) >> { Factory action -> action.create() }
         1 * backingCache.close()
         0 * _._
 
@@ -15,6 +15,7 @@
  */
 package org.gradle.cache.internal.btree;
 
+import org.gradle.api.Action;
 import org.gradle.cache.DefaultSerializer;
 import org.gradle.cache.Serializer;
 import org.gradle.util.TemporaryFolder;
@@ -126,10 +127,10 @@ public class BTreePersistentIndexedCacheTest {
         assertThat(cacheFile.length(), equalTo(len));
 
         cache.remove("key_1");
-        cache.put("key_new", "a1b2");
+        cache.put("key_6", "a1b2");
         assertThat(cacheFile.length(), equalTo(len));
 
-        cache.put("key_new", "longer value");
+        cache.put("key_6", "longer value");
         assertThat(cacheFile.length(), greaterThan(len));
         len = cacheFile.length();
 
@@ -258,6 +259,234 @@ public class BTreePersistentIndexedCacheTest {
         assertThat(cache.get(key2), equalTo(2));
     }
 
+    @Test
+    public void doesNotReturnEntryOfAnotherKeyWithTheSameHash() {
+        BTreePersistentIndexedCache<String, Integer> cache = new BTreePersistentIndexedCache<String, Integer>(tmpDir.file("collisions.bin"),
+                stringSerializer, integerSerializer, (short) 4, 100) {
+            @Override
+            long hash(byte[] serialisedKey) {
+                return 1;
+            }
+        };
+        cache.put("key_1", 1);
+        cache.put("key_2", 2);
+
+        assertNull(cache.get("key_1"));
+        assertThat(cache.get("key_2"), equalTo(2));
+        assertThat(cache.getAll(Arrays.asList("key_1", "key_2")), equalTo(Collections.singletonMap("key_2", 2)));
+
+        cache.remove("key_1");
+
+        assertThat(cache.get("key_2"), equalTo(2));
+        cache.verify();
+        cache.close();
+    }
+
+    @Test
+    public void servesRepeatedReadsFromBlockCache() {
+        checkAdds(1, 2, 3, 4, 5);
+
+        long indexHits = cache.getIndexCacheStatistics().getHits();
+        long dataHits = cache.getDataCacheStatistics().getHits();
+        long dataMisses = cache.getDataCacheStatistics().getMisses();
+
+        assertThat(cache.get("key_3"), equalTo(3));
+        assertThat(cache.get("key_3"), equalTo(3));
+
+        assertThat(cache.getIndexCacheStatistics().getHits(), greaterThan(indexHits));
+        assertThat(cache.getDataCacheStatistics().getHits(), equalTo(dataHits + 2));
+        assertThat(cache.getDataCacheStatistics().getMisses(), equalTo(dataMisses));
+    }
+
+    @Test
+    public void evictsBlocksWhenCacheSizeIsExceeded() {
+        BTreePersistentIndexedCache<String, Integer> cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, new FileBackedBlockStore(cacheFile),
+                stringSerializer, integerSerializer, (short) 4, 100, 1024, 200);
+        for (int i = 0; i < 50; i++) {
+            cache.put(String.format("key_%d", i), i);
+        }
+        for (int i = 0; i < 50; i++) {
+            assertThat(cache.get(String.format("key_%d", i)), equalTo(i));
+        }
+        cache.verify();
+
+        assertThat(cache.getIndexCacheStatistics().getEvictions(), greaterThan(0L));
+        assertThat(cache.getDataCacheStatistics().getEvictions(), greaterThan(0L));
+        assertThat(cache.getDataCacheStatistics().getMisses(), greaterThan(0L));
+        cache.close();
+    }
+
+    @Test
+    public void accumulatesBlockCacheStatisticsAcrossReopen() {
+        cache.close();
+        BlockCacheStatistics indexStatistics = new BlockCacheStatistics();
+        BlockCacheStatistics dataStatistics = new BlockCacheStatistics();
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, new FileBackedBlockStore(cacheFile), stringSerializer,
+                integerSerializer, (short) 4, 100, 1024, 1024, indexStatistics, dataStatistics);
+        cache.put("key_1", 1);
+        cache.get("key_1");
+        cache.close();
+        long dataHits = dataStatistics.getHits();
+        assertThat(dataHits, greaterThan(0L));
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, new FileBackedBlockStore(cacheFile), stringSerializer,
+                integerSerializer, (short) 4, 100, 1024, 1024, indexStatistics, dataStatistics);
+        assertThat(cache.get("key_1"), equalTo(1));
+        assertThat(cache.get("key_1"), equalTo(1));
+
+        assertThat(cache.getDataCacheStatistics(), sameInstance(dataStatistics));
+        assertThat(dataStatistics.getHits(), equalTo(dataHits + 1));
+        assertThat(dataStatistics.getMisses(), greaterThan(0L));
+    }
+
+    @Test
+    public void returnsLatestValueWhenEntryIsReplacedInPlace() {
+        cache.put("key_1", 1);
+        assertThat(cache.get("key_1"), equalTo(1));
+
+        cache.put("key_1", 2);
+
+        assertThat(cache.get("key_1"), equalTo(2));
+    }
+
+    @Test
+    public void returnsCopyOfCachedValue() {
+        BTreePersistentIndexedCache<String, ArrayList<Integer>> cache = new BTreePersistentIndexedCache<String, ArrayList<Integer>>(tmpDir.file("lists.bin"),
+                stringSerializer, new DefaultSerializer<ArrayList<Integer>>(), (short) 4, 100);
+        cache.put("key_1", new ArrayList<Integer>(Arrays.asList(1)));
+
+        cache.get("key_1").add(0, 2);
+
+        assertThat(cache.get("key_1"), equalTo(Arrays.asList(1)));
+        assertThat(cache.getDataCacheStatistics().getHits(), greaterThan(0L));
+        cache.close();
+    }
+
+    @Test
+    public void getsMultipleEntries() {
+        checkAdds(3, 2, 11, 5, 7, 1, 10, 8, 9, 4, 6, 0);
+
+        Map<String, Integer> entries = cache.getAll(Arrays.asList("key_7", "key_1", "unknown", "key_11", "key_1", "key_0"));
+
+        Map<String, Integer> expected = new HashMap<String, Integer>();
+        expected.put("key_7", 7);
+        expected.put("key_1", 1);
+        expected.put("key_11", 11);
+        expected.put("key_0", 0);
+        assertThat(entries, equalTo(expected));
+    }
+
+    @Test
+    public void putsMultipleEntries() {
+        Map<String, Integer> entries = new HashMap<String, Integer>();
+        for (int i = 0; i < 100; i++) {
+            entries.put(String.format("key_%d", i), i);
+        }
+
+        cache.putAll(entries);
+        cache.verify();
+        cache.reset();
+
+        assertThat(cache.getAll(entries.keySet()), equalTo(entries));
+        for (int i = 0; i < 100; i++) {
+            assertThat(cache.get(String.format("key_%d", i)), equalTo(i));
+        }
+        cache.verify();
+    }
+
+    @Test
+    public void visitsAllEntries() {
+        checkAdds(3, 2, 11, 5, 7, 1, 10, 8, 9, 4, 6, 0);
+        cache.remove("key_5");
+
+        final Map<String, Integer> visited = new HashMap<String, Integer>();
+        cache.visitEntries(new Action<Map.Entry<String, Integer>>() {
+            public void execute(Map.Entry<String, Integer> entry) {
+                assertThat(visited.put(entry.getKey(), entry.getValue()), nullValue());
+            }
+        });
+
+        assertThat(visited.size(), equalTo(11));
+        for (int i = 0; i < 12; i++) {
+            assertThat(visited.get(String.format("key_%d", i)), equalTo(i == 5 ? null : i));
+        }
+    }
+
+    @Test
+    public void compactionRewritesLiveEntriesIntoSmallerFile() {
+        checkAddsAndRemoves(null, range(0, 200));
+        checkAdds(range(0, 20));
+        long len = cacheFile.length();
+
+        cache.compact();
+
+        assertThat(cacheFile.length(), lessThan(len));
+        assertThat(tmpDir.file("cache.bin.compact").exists(), equalTo(false));
+        cache.verify();
+        for (int i = 0; i < 20; i++) {
+            assertThat(cache.get(String.format("key_%d", i)), equalTo(i));
+        }
+        assertNull(cache.get("key_20"));
+
+        checkAdds(range(20, 40));
+        cache.verify();
+    }
+
+    @Test
+    public void restoresCacheFileWhenCompactedFileWasNotMovedIntoPlace() {
+        checkAdds(1, 2, 3);
+        cache.close();
+        File backupFile = BTreePersistentIndexedCache.getCompactionBackupFile(cacheFile);
+        assertThat(cacheFile.renameTo(backupFile), equalTo(true));
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, stringSerializer, integerSerializer, (short) 4, 100);
+
+        assertThat(backupFile.exists(), equalTo(false));
+        assertThat(cache.get("key_2"), equalTo(2));
+        cache.verify();
+    }
+
+    @Test
+    public void discardsPreviousCacheFileWhenCompactedFileWasMovedIntoPlace() {
+        checkAdds(1, 2, 3);
+        cache.close();
+        File backupFile = BTreePersistentIndexedCache.getCompactionBackupFile(cacheFile);
+        new TestFile(backupFile).write("previous cache file");
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, stringSerializer, integerSerializer, (short) 4, 100);
+
+        assertThat(backupFile.exists(), equalTo(false));
+        assertThat(cache.get("key_2"), equalTo(2));
+        cache.verify();
+    }
+
+    @Test
+    public void compactsOnlyWhenFreeSpaceExceedsThreshold() {
+        checkAdds(range(0, 200));
+        assertThat(cache.compactIfFragmented(0.5, 0), equalTo(false));
+
+        for (int i = 0; i < 190; i++) {
+            cache.remove(String.format("key_%d", i));
+        }
+        assertThat(cache.compactIfFragmented(0.5, cacheFile.length() + 1), equalTo(false));
+        assertThat(cache.compactIfFragmented(0.5, 0), equalTo(true));
+
+        for (int i = 190; i < 200; i++) {
+            assertThat(cache.get(String.format("key_%d", i)), equalTo(i));
+        }
+        assertThat(cache.compactIfFragmented(0.5, 0), equalTo(false));
+        cache.verify();
+    }
+
+    private List<Integer> range(int from, int to) {
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = from; i < to; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+
     private void checkAdds(Integer... values) {
         checkAdds(Arrays.asList(values));
     }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.btree;
+
+import org.gradle.util.GFileUtils;
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.TestFile;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class BlockJournalTest {
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+    private final TestFile targetFile = tmpDir.file("target.bin");
+    private final TestFile journalFile = tmpDir.file("target.bin.journal");
+
+    @Test
+    public void appliesPendingWritesOnCommitAndTruncatesJournal() throws IOException {
+        BlockJournal journal = new BlockJournal(journalFile);
+        RandomAccessFile target = new RandomAccessFile(targetFile, "rw");
+        try {
+            journal.open(target);
+            journal.add(0, 4, bytes("abcd"));
+            journal.add(6, 10, bytes("ef"));
+            assertThat(new String(journal.get(6).content), equalTo("ef"));
+            assertThat(targetFile.length(), equalTo(0L));
+
+            journal.commit(target);
+
+            assertNull(journal.get(6));
+            assertThat(journalFile.length(), equalTo(0L));
+            assertThat(targetFile.length(), equalTo(10L));
+            assertThat(contents(target, 0, 4), equalTo("abcd"));
+            assertThat(contents(target, 6, 2), equalTo("ef"));
+        } finally {
+            target.close();
+            journal.close();
+        }
+        assertFalse(journalFile.exists());
+    }
+
+    @Test
+    public void replaysCompleteJournalOnOpen() throws IOException {
+        writeJournalAndCrash();
+
+        BlockJournal journal = new BlockJournal(journalFile);
+        RandomAccessFile target = new RandomAccessFile(targetFile, "rw");
+        try {
+            assertTrue(journal.open(target));
+            assertThat(journalFile.length(), equalTo(0L));
+            assertThat(contents(target, 0, 6), equalTo("abcdef"));
+        } finally {
+            target.close();
+            journal.close();
+        }
+    }
+
+    @Test
+    public void discardsIncompleteJournalOnOpen() throws IOException {
+        writeJournalAndCrash();
+        RandomAccessFile file = new RandomAccessFile(journalFile, "rw");
+        try {
+            file.setLength(file.length() - 1);
+        } finally {
+            file.close();
+        }
+
+        BlockJournal journal = new BlockJournal(journalFile);
+        RandomAccessFile target = new RandomAccessFile(targetFile, "rw");
+        try {
+            assertFalse(journal.open(target));
+            assertThat(journalFile.length(), equalTo(0L));
+            assertThat(contents(target, 0, 6), equalTo("uvwxyz"));
+        } finally {
+            target.close();
+            journal.close();
+        }
+    }
+
+    /**
+     * Writes a journal, then fails to apply it, as happens when a process dies part way through a commit.
+     */
+    private void writeJournalAndCrash() throws IOException {
+        targetFile.write("uvwxyz");
+        BlockJournal journal = new BlockJournal(journalFile);
+        RandomAccessFile target = new RandomAccessFile(targetFile, "rw");
+        journal.open(target);
+        target.close();
+        journal.add(0, 6, bytes("abcdef"));
+        RandomAccessFile readOnlyTarget = new RandomAccessFile(targetFile, "r");
+        try {
+            journal.commit(readOnlyTarget);
+            fail();
+        } catch (IOException e) {
+            // Expected
+        } finally {
+            readOnlyTarget.close();
+        }
+        assertThat(targetFile.getText(), equalTo("uvwxyz"));
+
+        // Closing the journal discards it, so keep a copy
+        byte[] contents = GFileUtils.readFileToByteArray(journalFile);
+        assertThat(contents.length, greaterThan(0));
+        journal.close();
+        GFileUtils.writeByteArrayToFile(journalFile, contents);
+    }
+
+    private byte[] bytes(String text) {
+        return text.getBytes();
+    }
+
+    private String contents(RandomAccessFile file, long pos, int length) throws IOException {
+        byte[] bytes = new byte[length];
+        file.seek(pos);
+        file.readFully(bytes);
+        return new String(bytes);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.internal.btree;
+
+import org.gradle.cache.DefaultSerializer;
+import org.gradle.cache.Serializer;
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.TestFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class MappedFileBlockStoreTest {
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+    private final Serializer<String> stringSerializer = new DefaultSerializer<String>();
+    private final Serializer<Integer> integerSerializer = new DefaultSerializer<Integer>();
+    private TestFile cacheFile;
+
+    @Before
+    public void setup() {
+        cacheFile = tmpDir.file("cache.bin");
+    }
+
+    @Test
+    public void persistsEntriesBeyondTheInitialMapping() {
+        BTreePersistentIndexedCache<String, Integer> cache = mappedCache();
+        for (int i = 0; i < 200; i++) {
+            cache.put("key_" + i, i);
+        }
+        for (int i = 0; i < 200; i++) {
+            assertThat(cache.get("key_" + i), equalTo(i));
+        }
+        cache.verify();
+
+        cache.reset();
+
+        for (int i = 0; i < 200; i++) {
+            assertThat(cache.get("key_" + i), equalTo(i));
+        }
+        cache.verify();
+        cache.close();
+    }
+
+    @Test
+    public void truncatesFileToAllocatedBlocksOnClose() {
+        BTreePersistentIndexedCache<String, Integer> cache = mappedCache();
+        cache.put("key_1", 1);
+        cache.close();
+        long length = cacheFile.length();
+
+        BTreePersistentIndexedCache<String, Integer> fileCache = fileBackedCache();
+        fileCache.put("key_1", 1);
+        fileCache.close();
+
+        assertThat(cacheFile.length(), equalTo(length));
+    }
+
+    @Test
+    public void usesTheSameFileFormatAsFileBackedStore() {
+        BTreePersistentIndexedCache<String, Integer> cache = mappedCache();
+        cache.put("key_1", 1);
+        cache.put("key_2", 2);
+        cache.close();
+
+        cache = fileBackedCache();
+        assertThat(cache.get("key_1"), equalTo(1));
+        assertThat(cache.get("key_2"), equalTo(2));
+        cache.put("key_3", 3);
+        cache.close();
+
+        cache = mappedCache();
+        assertThat(cache.get("key_1"), equalTo(1));
+        assertThat(cache.get("key_2"), equalTo(2));
+        assertThat(cache.get("key_3"), equalTo(3));
+        cache.verify();
+        cache.close();
+    }
+
+    @Test
+    public void handlesCorruptedCacheFile() throws IOException {
+        BTreePersistentIndexedCache<String, Integer> cache = mappedCache();
+        cache.put("key_1", 1);
+        cache.close();
+
+        RandomAccessFile file = new RandomAccessFile(cacheFile, "rw");
+        try {
+            file.seek(file.length() - 2);
+            file.writeShort(0);
+        } finally {
+            file.close();
+        }
+
+        cache = mappedCache();
+        assertNull(cache.get("key_1"));
+        cache.put("key_1", 2);
+        assertThat(cache.get("key_1"), equalTo(2));
+        cache.verify();
+        cache.close();
+    }
+
+    @Test
+    public void doesNotWriteBlockWhichHasGrownBeyondItsAllocatedSpace() {
+        MappedFileBlockStore store = new MappedFileBlockStore(cacheFile, 256);
+        store.open(new Runnable() {
+            public void run() {
+            }
+        }, null);
+        try {
+            StringBlock block = new StringBlock("value");
+            store.attach(block);
+            store.write(block);
+
+            block.value = "a longer value";
+            try {
+                store.write(block);
+                fail();
+            } catch (IllegalStateException e) {
+                assertThat(e.getMessage(), containsString("is larger than the 7 bytes allocated to it"));
+            }
+        } finally {
+            store.close();
+        }
+    }
+
+    private BTreePersistentIndexedCache<String, Integer> mappedCache() {
+        return new BTreePersistentIndexedCache<String, Integer>(cacheFile, new MappedFileBlockStore(cacheFile, 256), stringSerializer, integerSerializer, (short) 4, 100);
+    }
+
+    private BTreePersistentIndexedCache<String, Integer> fileBackedCache() {
+        return new BTreePersistentIndexedCache<String, Integer>(cacheFile, stringSerializer, integerSerializer, (short) 4, 100);
+    }
+
+    private static class StringBlock extends BlockPayload {
+        private String value;
+
+        private StringBlock(String value) {
+            this.value = value;
+        }
+
+        @Override
+        protected int getSize() {
+            return 2 + value.length();
+        }
+
+        @Override
+        protected int getType() {
+            return 0x11;
+        }
+
+        @Override
+        protected void read(DataInputStream inputStream) throws Exception {
+            value = inputStream.readUTF();
+        }
+
+        @Override
+        protected void write(DataOutputStream outputStream) throws Exception {
+            outputStream.writeUTF(value);
+        }
+    }
+}
@@ -167,6 +167,28 @@ public class DefaultTaskGraphExecuterTest {
         assertThat(taskExecuter.getAllTasks(), equalTo(toList(c, d, b, a)));
     }
 
+    @Test
+    public void testGetAllTasksReturnsReadOnlyViewWhichIsUpdatedWhenTasksAreAdded() {
+        Task a = task("a");
+        Task b = task("b");
+        taskExecuter.addTasks(toList(a));
+
+        List<Task> tasks = taskExecuter.getAllTasks();
+        assertThat(taskExecuter.getAllTasks(), sameInstance(tasks));
+        try {
+            tasks.add(b);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // Expected
+        }
+
+        taskExecuter.addTasks(toList(b));
+
+        assertThat(taskExecuter.getAllTasks(), equalTo(toList(a, b)));
+        assertTrue(taskExecuter.hasTask(":b"));
+        assertFalse(taskExecuter.hasTask(":c"));
+    }
+
     @Test
     public void testCannotUseGetterMethodsWhenGraphHasNotBeenCalculated() {
         try {
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.execution
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.gradle.api.Action
+import org.gradle.api.internal.TaskInternal
+import org.gradle.messaging.concurrent.DefaultExecutorFactory
+import spock.lang.Specification
+
+class ParallelTaskPlanExecuterTest extends Specification {
+    final DefaultExecutorFactory executorFactory = new DefaultExecutorFactory()
+    final Map<TaskInternal, Long> durations = [:].asSynchronized()
+    final TaskDurationHistory durationHistory = [
+            getDurations: { tasks -> new HashMap(durations) },
+            recordDuration: { task, duration -> durations[task] = duration }
+    ] as TaskDurationHistory
+    final ParallelTaskPlanExecuter executer = new ParallelTaskPlanExecuter(executorFactory, durationHistory, 4)
+    final List<TaskInfo> started = [].asSynchronized()
+    final List<TaskInfo> completed = [].asSynchronized()
+
+    def cleanup() {
+        executorFactory.stop()
+    }
+
+    def "executes each task after its dependencies have executed"() {
+        def a = task()
+        def b = task()
+        def c = task(a, b)
+        def d = task(c)
+        def e = task(a)
+
+        when:
+        executer.process([a, b, c, e, d], recordingWorker())
+
+        then:
+        completed as Set == [a, b, c, d, e] as Set
+        completed.indexOf(c) > completed.indexOf(a)
+        completed.indexOf(c) > completed.indexOf(b)
+        completed.indexOf(d) > completed.indexOf(c)
+        completed.indexOf(e) > completed.indexOf(a)
+    }
+
+    def "executes independent tasks concurrently"() {
+        def a = task()
+        def b = task()
+        def c = task()
+        def latch = new CountDownLatch(3)
+        def allRunning = [].asSynchronized()
+
+        when:
+        executer.process([a, b, c], { TaskInfo taskInfo ->
+            latch.countDown()
+            allRunning << latch.await(20, TimeUnit.SECONDS)
+            taskInfo.executed()
+        } as Action)
+
+        then:
+        allRunning == [true, true, true]
+    }
+
+    def "does not start tasks of a batch until all tasks of earlier batches have completed"() {
+        def a = task(0)
+        def b = task(0)
+        def c = task(1)
+
+        when:
+        executer.process([a, b, c], recordingWorker())
+
+        then:
+        completed.indexOf(a) < started.indexOf(c)
+        completed.indexOf(b) < started.indexOf(c)
+    }
+
+    def "skips tasks whose dependencies did not execute successfully"() {
+        def a = task()
+        def b = task(a)
+        def c = task(b)
+        def d = task()
+
+        when:
+        executer.process([a, b, c, d], { TaskInfo taskInfo ->
+            started << taskInfo
+            if (taskInfo != a) {
+                taskInfo.executed()
+            }
+        } as Action)
+
+        then:
+        started as Set == [a, d] as Set
+    }
+
+    def "stops starting tasks and rethrows failure when task worker fails"() {
+        def failure = new RuntimeException()
+        def a = task()
+        def b = task(a)
+        def c = task(b)
+
+        when:
+        executer.process([a, b, c], { TaskInfo taskInfo ->
+            started << taskInfo
+            if (taskInfo == b) {
+                throw failure
+            }
+            taskInfo.executed()
+        } as Action)
+
+        then:
+        RuntimeException e = thrown()
+        e == failure
+        started.indexOf(a) == 0
+    }
+
+    def "starts ready task with the longest remaining path first"() {
+        def a = task()
+        def b = task()
+        def c = task(b)
+        def d = task(c)
+        def single = new ParallelTaskPlanExecuter(executorFactory, durationHistory, 1)
+
+        when:
+        single.process([a, b, c, d], recordingWorker())
+
+        then:
+        started.indexOf(b) == 0
+        started.indexOf(c) == 1
+    }
+
+    def "uses recorded durations to estimate remaining path"() {
+        def a = task()
+        def b = task()
+        def c = task(b)
+        def single = new ParallelTaskPlanExecuter(executorFactory, durationHistory, 1)
+        durations[a.task] = 100L
+        durations[b.task] = 10L
+        durations[c.task] = 10L
+
+        when:
+        single.process([a, b, c], recordingWorker())
+
+        then:
+        started.indexOf(a) == 0
+    }
+
+    def "starts tasks of earlier batches before tasks with longer remaining paths"() {
+        def a = task(0)
+        def b = task(1)
+        def single = new ParallelTaskPlanExecuter(executorFactory, durationHistory, 1)
+        durations[b.task] = 100L
+
+        when:
+        single.process([a, b], recordingWorker())
+
+        then:
+        started.indexOf(a) == 0
+    }
+
+    def "can execute an empty plan"() {
+        when:
+        executer.process([], recordingWorker())
+
+        then:
+        started.empty
+    }
+
+    private Action<TaskInfo> recordingWorker() {
+        return { TaskInfo taskInfo ->
+            started << taskInfo
+            Thread.sleep(20)
+            completed << taskInfo
+            taskInfo.executed()
+        } as Action
+    }
+
+    private TaskInfo task(TaskInfo... dependencies) {
+        return new TaskInfo(Mock(TaskInternal), dependencies as Set, 0)
+    }
+
+    private TaskInfo task(int batch) {
+        return new TaskInfo(Mock(TaskInternal), [] as Set, batch)
+    }
+}
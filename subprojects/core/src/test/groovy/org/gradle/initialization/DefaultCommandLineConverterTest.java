@@ -75,6 +75,9 @@ public class DefaultCommandLineConverterTest {
     private final DefaultCommandLineConverter commandLineConverter = new DefaultCommandLineConverter();
     private boolean expectedContinue;
     private boolean expectedOffline;
+    private int expectedParallelThreadCount;
+    private boolean expectedBuildCacheEnabled;
+    private boolean expectedContinuous;
     private RefreshOptions expectedRefreshOptions = RefreshOptions.NONE;
     
     @Test
@@ -105,6 +108,9 @@ public class DefaultCommandLineConverterTest {
         assertEquals(expectedProfile, startParameter.isProfile());
         assertEquals(expectedContinue, startParameter.isContinueOnFailure());
         assertEquals(expectedOffline, startParameter.isOffline());
+        assertEquals(expectedParallelThreadCount, startParameter.getParallelThreadCount());
+        assertEquals(expectedBuildCacheEnabled, startParameter.isBuildCacheEnabled());
+        assertEquals(expectedContinuous, startParameter.isContinuous());
         assertEquals(expectedRefreshOptions, startParameter.getRefreshOptions());
         assertEquals(expectedProjectCacheDir, startParameter.getProjectCacheDir());
     }
@@ -393,6 +399,29 @@ public class DefaultCommandLineConverterTest {
         checkConversion("--offline");
     }
 
+    @Test
+    public void withBuildCache() {
+        expectedBuildCacheEnabled = true;
+        checkConversion("--build-cache");
+    }
+
+    @Test
+    public void withContinuous() {
+        expectedContinuous = true;
+        checkConversion("--continuous");
+    }
+
+    @Test
+    public void withParallelThreads() {
+        expectedParallelThreadCount = 6;
+        checkConversion("--parallel-threads", "6");
+    }
+
+    @Test(expected = CommandLineArgumentException.class)
+    public void withInvalidParallelThreads() {
+        checkConversion("--parallel-threads", "many");
+    }
+
     @Test
     public void withRefreshDependenciesSet() {
         expectedRefreshOptions = new RefreshOptions(asList(RefreshOptions.Option.DEPENDENCIES));
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.remote.internal
+
+import org.gradle.messaging.remote.internal.protocol.MessageCredits
+import org.gradle.messaging.remote.internal.protocol.RemoteMethodInvocation
+import org.gradle.messaging.remote.internal.protocol.Request
+import org.gradle.messaging.remote.internal.protocol.WorkerStopping
+import spock.lang.Specification
+
+class BinaryMessageSerializerTest extends Specification {
+    final BinaryMessageSerializer<Object> writer = new BinaryMessageSerializer<Object>(getClass().classLoader)
+    final BinaryMessageSerializer<Object> reader = new BinaryMessageSerializer<Object>(getClass().classLoader)
+
+    def "transports messages using binary encoding"() {
+        expect:
+        transport(message) == message
+
+        where:
+        message << [
+                null,
+                "string",
+                12,
+                12L,
+                true,
+                UUID.randomUUID(),
+                new MessageCredits(4),
+                new Request(UUID.randomUUID(), new RemoteMethodInvocation(1, ["arg", 2, null] as Object[])),
+                new Request("channel", "payload")
+        ]
+    }
+
+    def "transports method invocation with no arguments"() {
+        when:
+        def transported = transport(new RemoteMethodInvocation(3, null))
+
+        then:
+        transported.key == 3
+        transported.arguments == null
+    }
+
+    def "transports long strings"() {
+        def string = "a" * 70000
+
+        expect:
+        transport(string) == string
+        transport(string) == string
+    }
+
+    def "uses java serialization for other messages"() {
+        def message = new Request("channel", new RemoteMethodInvocation(1, [new SerializableValue(name: "value"), TestEnum.B] as Object[]))
+
+        when:
+        def transported = transport(message)
+
+        then:
+        transported == message
+        transport(new WorkerStopping()) instanceof WorkerStopping
+    }
+
+    def "transports class values whose types are not serializable"() {
+        def message = new Request("channel", new RemoteMethodInvocation(1, [[int.class, Runnable.class, String.class, int[].class] as Class[]] as Object[]))
+
+        expect:
+        transport(message).payload.arguments[0] == [int.class, Runnable.class, String.class, int[].class] as Class[]
+    }
+
+    def "replaces unserializable exception with placeholder"() {
+        def original = new MessageTest.UnserializableException("message", new RuntimeException("nested"))
+
+        when:
+        def transported = transport(original)
+
+        then:
+        transported instanceof PlaceholderException
+        transported.message == "message"
+        transported.stackTrace == original.stackTrace
+        transported.cause.class == RuntimeException
+        transported.cause.message == "nested"
+    }
+
+    def "sends each string and class only once"() {
+        def message = new Request("channel", new RemoteMethodInvocation(1, ["some output", new SerializableValue(name: "value")] as Object[]))
+
+        when:
+        def first = serialize(message)
+        def second = serialize(message)
+
+        then:
+        second.length < first.length
+        second.length < javaSerialize(message).length / 4
+        deserialize(first) == message
+        deserialize(second) == message
+    }
+
+    def "writes nothing and discards new dictionary entries when message cannot be encoded"() {
+        def broken = new Request("channel", new RemoteMethodInvocation(1, ["some output", new SerializableValue(name: "value"), new BrokenValue()] as Object[]))
+        def message = new Request("channel", new RemoteMethodInvocation(1, ["some output", new SerializableValue(name: "value")] as Object[]))
+        def outstr = new ByteArrayOutputStream()
+
+        when:
+        writer.write(broken, new DataOutputStream(outstr))
+
+        then:
+        IOException e = thrown()
+        e.message == "broken"
+        outstr.size() == 0
+
+        expect:
+        transport(message) == message
+        transport(message) == message
+    }
+
+    def "new instance does not share state"() {
+        when:
+        serialize("string")
+        def bytes = writer.newInstance().with { serializer ->
+            def outstr = new ByteArrayOutputStream()
+            serializer.write("string", new DataOutputStream(outstr))
+            outstr.toByteArray()
+        }
+
+        then:
+        reader.newInstance().read(new DataInputStream(new ByteArrayInputStream(bytes)), null, null) == "string"
+    }
+
+    def transport(Object message) {
+        return deserialize(serialize(message))
+    }
+
+    def serialize(Object message) {
+        def outstr = new ByteArrayOutputStream()
+        writer.write(message, new DataOutputStream(outstr))
+        return outstr.toByteArray()
+    }
+
+    def deserialize(byte[] bytes) {
+        def instr = new DataInputStream(new ByteArrayInputStream(bytes))
+        def result = reader.read(instr, null, null)
+        assert instr.read() < 0
+        return result
+    }
+
+    def javaSerialize(Object message) {
+        def outstr = new ByteArrayOutputStream()
+        new DefaultMessageSerializer<Object>(getClass().classLoader).write(message, new DataOutputStream(outstr))
+        return outstr.toByteArray()
+    }
+
+    static class SerializableValue implements Serializable {
+        String name
+
+        boolean equals(Object o) {
+            return o instanceof SerializableValue && o.name == name
+        }
+
+        int hashCode() {
+            return name.hashCode()
+        }
+    }
+
+    static class BrokenValue implements Serializable {
+        private void writeObject(ObjectOutputStream outstr) throws IOException {
+            throw new IOException("broken")
+        }
+    }
+
+    enum TestEnum {
+        A, B
+    }
+}
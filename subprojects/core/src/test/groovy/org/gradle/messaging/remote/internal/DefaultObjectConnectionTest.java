@@ -20,7 +20,6 @@ import org.gradle.messaging.concurrent.AsyncStoppable;
 import org.gradle.messaging.dispatch.Dispatch;
 import org.gradle.messaging.dispatch.MethodInvocation;
 import org.gradle.messaging.remote.Address;
-import org.gradle.messaging.remote.Addressable;
 import org.jmock.Expectations;
 import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
@@ -41,7 +40,7 @@ public class DefaultObjectConnectionTest {
     private final JUnit4Mockery context = new JUnit4Mockery();
     private DefaultObjectConnection sender;
     private DefaultObjectConnection receiver;
-    private final Addressable messageConnection = context.mock(Addressable.class);
+    private final MultiChannelConnection<?> messageConnection = context.mock(MultiChannelConnection.class);
     private final AsyncStoppable stopControl = context.mock(AsyncStoppable.class);
     private final TestConnection connection = new TestConnection();
 
@@ -164,6 +163,16 @@ public class DefaultObjectConnectionTest {
         receiver.stop();
     }
 
+    @Test
+    public void registersDisconnectActionWithConnection() {
+        final Runnable action = context.mock(Runnable.class);
+        context.checking(new Expectations() {{
+            one(messageConnection).onDisconnect(action);
+        }});
+
+        receiver.onDisconnect(action);
+    }
+
     private class TestConnection {
         Map<Object, Dispatch<Object>> channels = new HashMap<Object, Dispatch<Object>>();
 
@@ -177,6 +186,10 @@ public class DefaultObjectConnectionTest {
                     throw new UnsupportedOperationException();
                 }
 
+                public void onDisconnect(Runnable disconnectAction) {
+                    throw new UnsupportedOperationException();
+                }
+
                 public void requestStop() {
                     throw new UnsupportedOperationException();
                 }
@@ -205,6 +218,10 @@ public class DefaultObjectConnectionTest {
                     channels.put(channelKey, dispatch);
                 }
 
+                public void onDisconnect(Runnable disconnectAction) {
+                    throw new UnsupportedOperationException();
+                }
+
                 public void requestStop() {
                     throw new UnsupportedOperationException();
                 }
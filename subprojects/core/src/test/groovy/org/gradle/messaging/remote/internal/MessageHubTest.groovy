@@ -0,0 +1,72 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.remote.internal
+
+import org.gradle.messaging.concurrent.DefaultExecutorFactory
+import org.gradle.util.LongIdGenerator
+import spock.lang.Specification
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class MessageHubTest extends Specification {
+    final DefaultExecutorFactory executorFactory = new DefaultExecutorFactory()
+    final MessageHub hub = new MessageHub("hub", "node", executorFactory, new LongIdGenerator(), getClass().classLoader)
+
+    def cleanup() {
+        hub.stop()
+        executorFactory.stop()
+    }
+
+    def "runs disconnect actions when a connection ends"() {
+        Connection<Message> connection = Mock()
+        def disconnected = new CountDownLatch(1)
+        def later = new CountDownLatch(1)
+
+        given:
+        connection.receive() >> null
+
+        when:
+        hub.onDisconnect({ disconnected.countDown() } as Runnable)
+        hub.addConnection(connection)
+
+        then:
+        disconnected.await(20, TimeUnit.SECONDS)
+
+        when:
+        hub.onDisconnect({ later.countDown() } as Runnable)
+
+        then:
+        later.count == 0
+    }
+
+    def "does not run disconnect actions once stop has been requested"() {
+        Connection<Message> connection = Mock()
+        def disconnected = new CountDownLatch(1)
+
+        given:
+        connection.receive() >> null
+
+        when:
+        hub.onDisconnect({ disconnected.countDown() } as Runnable)
+        hub.requestStop()
+        hub.addConnection(connection)
+        hub.stop()
+
+        then:
+        disconnected.count == 1
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.remote.internal.inet
+
+import org.gradle.api.Action
+import org.gradle.messaging.remote.ConnectEvent
+import org.gradle.messaging.remote.internal.Connection
+import org.gradle.messaging.remote.internal.DefaultMessageSerializer
+import org.gradle.messaging.remote.internal.MessageIOException
+import org.gradle.messaging.remote.internal.PushConnection
+import org.gradle.util.ConcurrentSpecification
+import org.gradle.util.UUIDGenerator
+
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.CopyOnWriteArrayList
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class NioConnectorTest extends ConcurrentSpecification {
+    final def serializer = new DefaultMessageSerializer<String>(getClass().classLoader)
+    final def idGenerator = new UUIDGenerator()
+    final def addressFactory = new InetAddressFactory()
+    final def selectorPool = new SelectorPool(executorFactory)
+    final def outgoingConnector = new NioOutgoingConnector<String>(serializer, selectorPool)
+    final def incomingConnector = new NioIncomingConnector<String>(executorFactory, selectorPool, serializer, addressFactory, idGenerator)
+    final def connections = new ArrayBlockingQueue<Connection<String>>(10)
+    final Action<ConnectEvent<Connection<String>>> action = { ConnectEvent<Connection<String>> event -> connections.add(event.connection) } as Action
+
+    def cleanup() {
+        incomingConnector.stop()
+        selectorPool.stop()
+    }
+
+    def "client can connect to server"() {
+        when:
+        def address = incomingConnector.accept(action, false)
+        def connection = outgoingConnector.connect(address)
+
+        then:
+        connection instanceof NioConnection
+        accepted() instanceof NioConnection
+    }
+
+    def "client can connect to server using remote addresses"() {
+        when:
+        def address = incomingConnector.accept(action, true)
+        def connection = outgoingConnector.connect(address)
+
+        then:
+        connection != null
+        accepted() != null
+    }
+
+    def "client and server can exchange messages"() {
+        def largeMessage = "x" * 200000
+        def client = outgoingConnector.connect(incomingConnector.accept(action, false))
+        def server = accepted()
+
+        when:
+        100.times { client.dispatch("message $it".toString()) }
+        client.dispatch(largeMessage)
+        server.dispatch("reply")
+
+        then:
+        (0..<100).collect { server.receive() } == (0..<100).collect { "message $it".toString() }
+        server.receive() == largeMessage
+        client.receive() == "reply"
+
+        cleanup:
+        client?.stop()
+        server?.stop()
+    }
+
+    def "stop flushes dispatched messages"() {
+        def client = outgoingConnector.connect(incomingConnector.accept(action, false))
+        def server = accepted()
+
+        when:
+        50.times { client.dispatch("x" * 10000) }
+        client.stop()
+
+        then:
+        50.times { assert server.receive() == "x" * 10000 }
+        server.receive() == null
+
+        cleanup:
+        server?.stop()
+    }
+
+    def "receive returns null after stop requested"() {
+        def client = outgoingConnector.connect(incomingConnector.accept(action, false))
+        def server = accepted()
+
+        when:
+        server.requestStop()
+
+        then:
+        server.receive() == null
+        server.receive() == null
+
+        cleanup:
+        client?.stop()
+        server?.stop()
+    }
+
+    def "receive fails when peer sends a frame which is too large"() {
+        def address = incomingConnector.accept(action, false)
+        def socket = new Socket(address.candidates[0], address.port)
+        def server = accepted()
+
+        when:
+        def output = new DataOutputStream(socket.outputStream)
+        output.writeInt(NioConnection.MAX_FRAME_SIZE + 1)
+        output.flush()
+        server.receive()
+
+        then:
+        thrown(MessageIOException)
+
+        and:
+        server.receive() == null
+        socket.inputStream.read() == -1
+
+        cleanup:
+        socket?.close()
+        server?.stop()
+    }
+
+    def "pushes received messages to receiver"() {
+        def client = outgoingConnector.connect(incomingConnector.accept(action, false))
+        def server = accepted()
+        def receiver = new TestReceiver()
+
+        when:
+        client.dispatch("message 0")
+        server.receiveTo(receiver)
+        (1..<2000).each { client.dispatch("message $it".toString()) }
+        client.stop()
+
+        then:
+        receiver.awaitEndOfStream()
+        receiver.messages == (0..<2000).collect { "message $it".toString() }
+        receiver.failure == null
+
+        cleanup:
+        server?.stop()
+    }
+
+    def "notifies receiver of end of stream when stop requested"() {
+        def client = outgoingConnector.connect(incomingConnector.accept(action, false))
+        def server = accepted()
+        def receiver = new TestReceiver()
+
+        when:
+        server.receiveTo(receiver)
+        server.requestStop()
+
+        then:
+        receiver.awaitEndOfStream()
+        receiver.messages.empty
+        receiver.failure == null
+
+        cleanup:
+        client?.stop()
+        server?.stop()
+    }
+
+    def "notifies receiver of failure when peer sends a frame which is too large"() {
+        def address = incomingConnector.accept(action, false)
+        def socket = new Socket(address.candidates[0], address.port)
+        def server = accepted()
+        def receiver = new TestReceiver()
+
+        when:
+        server.receiveTo(receiver)
+        def output = new DataOutputStream(socket.outputStream)
+        output.writeInt(NioConnection.MAX_FRAME_SIZE + 1)
+        output.flush()
+
+        then:
+        receiver.awaitEndOfStream()
+        receiver.failure instanceof MessageIOException
+
+        cleanup:
+        socket?.close()
+        server?.stop()
+    }
+
+    static class TestReceiver implements PushConnection.Receiver<String> {
+        final List<String> messages = new CopyOnWriteArrayList<String>()
+        final CountDownLatch finished = new CountDownLatch(1)
+        Throwable failure
+
+        void dispatch(String message) {
+            messages << message
+        }
+
+        void endOfStream(Throwable failure) {
+            this.failure = failure
+            finished.countDown()
+        }
+
+        void awaitEndOfStream() {
+            assert finished.await(10, TimeUnit.SECONDS)
+        }
+    }
+
+    def accepted() {
+        def connection = connections.poll(10, TimeUnit.SECONDS)
+        assert connection != null
+        return connection
+    }
+}
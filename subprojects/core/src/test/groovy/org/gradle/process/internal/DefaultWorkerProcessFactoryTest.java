@@ -27,10 +27,12 @@ import org.gradle.messaging.remote.internal.inet.SocketInetAddress;
 import org.gradle.process.internal.child.IsolatedApplicationClassLoaderWorker;
 import org.gradle.process.internal.launcher.GradleWorkerMain;
 import org.gradle.util.IdGenerator;
+import org.gradle.util.TemporaryFolder;
 import org.hamcrest.Matchers;
 import org.jmock.Expectations;
 import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
+import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -47,6 +49,8 @@ import static org.junit.Assert.assertThat;
 
 @RunWith(JMock.class)
 public class DefaultWorkerProcessFactoryTest {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
     private final JUnit4Mockery context = new JUnit4Mockery();
     private final MessagingServer messagingServer = context.mock(MessagingServer.class);
     private final ClassPathRegistry classPathRegistry = context.mock(ClassPathRegistry.class);
@@ -93,6 +97,63 @@ public class DefaultWorkerProcessFactoryTest {
         assertThat(instr.readObject(), instanceOf(IsolatedApplicationClassLoaderWorker.class));
     }
 
+    @Test
+    public void createsAPooledWorkerProcessWhenReusable() throws Exception {
+        DefaultWorkerProcessFactory factory = new DefaultWorkerProcessFactory(LogLevel.LIFECYCLE, messagingServer, classPathRegistry,
+                fileResolver, idGenerator, new WorkerProcessPool());
+
+        context.checking(new Expectations() {{
+            allowing(fileResolver).resolveLater(".");
+            allowing(fileResolver).resolveFiles(with(Matchers.<Object>notNullValue()));
+            will(returnValue(new SimpleFileCollection()));
+        }});
+
+        WorkerProcessBuilder builder = factory.create();
+        builder.worker(new TestAction());
+        builder.setReusable(true);
+
+        context.checking(new Expectations(){{
+            one(idGenerator).generateId();
+            will(returnValue("<id>"));
+        }});
+
+        WorkerProcess process = builder.build();
+
+        assertThat(process, instanceOf(PooledWorkerProcess.class));
+    }
+
+    @Test
+    public void createsANonPooledWorkerProcessWhenApplicationClasspathContainsADirectory() throws Exception {
+        DefaultWorkerProcessFactory factory = new DefaultWorkerProcessFactory(LogLevel.LIFECYCLE, messagingServer, classPathRegistry,
+                fileResolver, idGenerator, new WorkerProcessPool());
+
+        context.checking(new Expectations() {{
+            allowing(classPathRegistry).getClassPathFiles("WORKER_PROCESS");
+            will(returnValue(Collections.singleton(new File("something.jar"))));
+            allowing(fileResolver).resolveLater(".");
+            allowing(fileResolver).resolveFiles(with(Matchers.<Object>notNullValue()));
+            will(returnValue(new SimpleFileCollection()));
+        }});
+
+        WorkerProcessBuilder builder = factory.create();
+        builder.worker(new TestAction());
+        builder.applicationClasspath(Arrays.<File>asList(tmpDir.getDir()));
+        builder.setReusable(true);
+
+        final Address serverAddress = new SocketInetAddress(InetAddress.getByName("127.0.0.1"), 40);
+
+        context.checking(new Expectations(){{
+            one(messagingServer).accept(with(notNullValue(Action.class)));
+            will(returnValue(serverAddress));
+            one(idGenerator).generateId();
+            will(returnValue("<id>"));
+        }});
+
+        WorkerProcess process = builder.build();
+
+        assertThat(process, instanceOf(DefaultWorkerProcess.class));
+    }
+
     private static class TestAction implements Action<WorkerProcessContext>, Serializable {
         public void execute(WorkerProcessContext workerProcessContext) {
             throw new UnsupportedOperationException();
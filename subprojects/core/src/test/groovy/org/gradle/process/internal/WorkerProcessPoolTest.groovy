@@ -0,0 +1,142 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.process.internal
+
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import org.gradle.util.JUnit4GroovyMockery
+import org.jmock.integration.junit4.JMock
+import org.junit.After
+import org.junit.Test
+import org.junit.runner.RunWith
+import static org.hamcrest.Matchers.*
+import static org.junit.Assert.*
+
+@RunWith(JMock.class)
+class WorkerProcessPoolTest {
+    private final JUnit4GroovyMockery context = new JUnit4GroovyMockery()
+    private WorkerProcessPool pool = new WorkerProcessPool(2, 1, TimeUnit.MINUTES)
+    private int counter
+
+    @After
+    public void tearDown() {
+        pool.stop()
+    }
+
+    @Test
+    public void leaseReturnsNullWhenNoIdleWorkers() {
+        assertThat(pool.lease("key"), nullValue())
+    }
+
+    @Test
+    public void leaseReturnsIdleWorkerWithMatchingKey() {
+        PooledWorker worker1 = worker("key1")
+        PooledWorker worker2 = worker("key2")
+
+        pool.release(worker1)
+        pool.release(worker2)
+
+        assertThat(pool.lease("key1"), sameInstance(worker1))
+        assertThat(pool.lease("key1"), nullValue())
+        assertThat(pool.lease("key2"), sameInstance(worker2))
+    }
+
+    @Test
+    public void leaseDiscardsWorkersWhichHaveStopped() {
+        PooledWorker worker = context.mock(PooledWorker.class)
+        context.checking {
+            allowing(worker).getKey()
+            will(returnValue("key"))
+            allowing(worker).isAlive()
+            will(returnValue(false))
+        }
+
+        pool.release(worker)
+
+        assertThat(pool.lease("key"), nullValue())
+    }
+
+    @Test
+    public void releaseStopsOldestIdleWorkerWhenPoolIsFull() {
+        PooledWorker worker1 = worker("key")
+        PooledWorker worker2 = worker("key")
+        PooledWorker worker3 = worker("key")
+
+        pool.release(worker1)
+        pool.release(worker2)
+
+        context.checking {
+            one(worker1).stop()
+        }
+
+        pool.release(worker3)
+
+        assertThat(pool.lease("key"), sameInstance(worker3))
+        assertThat(pool.lease("key"), sameInstance(worker2))
+        assertThat(pool.lease("key"), nullValue())
+    }
+
+    @Test
+    public void stopsWorkersWhichHaveBeenIdleForLongerThanIdleTimeout() {
+        pool = new WorkerProcessPool(2, 50, TimeUnit.MILLISECONDS)
+        PooledWorker worker = worker("key")
+        CountDownLatch stopped = new CountDownLatch(1)
+
+        context.checking {
+            one(worker).stop()
+            will { stopped.countDown() }
+        }
+
+        pool.release(worker)
+
+        assertTrue(stopped.await(10, TimeUnit.SECONDS))
+        assertThat(pool.lease("key"), nullValue())
+    }
+
+    @Test
+    public void stopStopsIdleWorkersAndWorkersReleasedLater() {
+        PooledWorker worker1 = worker("key")
+        PooledWorker worker2 = worker("key")
+
+        pool.release(worker1)
+
+        context.checking {
+            one(worker1).stop()
+        }
+
+        pool.stop()
+
+        context.checking {
+            one(worker2).stop()
+        }
+
+        pool.release(worker2)
+
+        assertThat(pool.lease("key"), nullValue())
+    }
+
+    private PooledWorker worker(String key) {
+        PooledWorker worker = context.mock(PooledWorker.class, "worker${++counter}")
+        context.checking {
+            allowing(worker).getKey()
+            will(returnValue(key))
+            allowing(worker).isAlive()
+            will(returnValue(true))
+        }
+        return worker
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.util.hash
+
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class HashUtilTest extends Specification {
+    @Rule TemporaryFolder tmpDir = new TemporaryFolder()
+
+    def "calculates murmur3 hash of string"() {
+        expect:
+        HashUtil.createHash(text, Murmur3MessageDigest.ALGORITHM).asHexString() == hash
+
+        where:
+        text                                          | hash
+        ""                                            | "0"
+        "hell"                                        | "67f8103e694299624753ebba820bdb92"
+        "The quick brown fox jumps over the lazy dog" | "6c1b07bc7bbc4be347939ac4a93c437a"
+    }
+
+    def "calculates same hash of file as of its content"() {
+        def content = (0..20000).collect { it as String }.join(",")
+        def file = tmpDir.createFile("file.txt")
+        file.text = content
+
+        expect:
+        HashUtil.createHash(file, algorithm) == HashUtil.createHash(content, algorithm)
+
+        where:
+        algorithm << ["MD5", "SHA1", Murmur3MessageDigest.ALGORITHM]
+    }
+
+    def "calculates hash of empty file"() {
+        def file = tmpDir.createFile("empty.txt")
+        file.text = ""
+
+        expect:
+        HashUtil.createHash(file, "MD5") == HashUtil.createHash("", "MD5")
+    }
+
+    def "murmur3 digest can be calculated incrementally"() {
+        def bytes = (0..100).collect { it as byte } as byte[]
+        def digest = new Murmur3MessageDigest()
+
+        when:
+        digest.update(bytes, 0, 3)
+        digest.update(bytes[3])
+        digest.update(bytes, 4, 20)
+        digest.update(bytes, 24, bytes.length - 24)
+
+        then:
+        new HashValue(digest.digest()) == new HashValue(new Murmur3MessageDigest().digest(bytes))
+    }
+}
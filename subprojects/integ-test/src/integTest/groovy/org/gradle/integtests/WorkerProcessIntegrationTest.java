@@ -69,7 +69,8 @@ public class WorkerProcessIntegrationTest {
     private final CacheRepository cacheRepository = new DefaultCacheRepository(tmpDir.getDir(), null, CacheUsage.ON, factory);
     private final ModuleRegistry moduleRegistry = new DefaultModuleRegistry();
     private final ClassPathRegistry classPathRegistry = new DefaultClassPathRegistry(new DefaultClassPathProvider(moduleRegistry), new WorkerProcessClassPathProvider(cacheRepository, moduleRegistry));
-    private final DefaultWorkerProcessFactory workerFactory = new DefaultWorkerProcessFactory(LogLevel.INFO, server, classPathRegistry, new BaseDirFileResolver(FileSystems.getDefault(), tmpDir.getTestDir()), new LongIdGenerator());
+    private final WorkerProcessPool pool = new WorkerProcessPool();
+    private final DefaultWorkerProcessFactory workerFactory = new DefaultWorkerProcessFactory(LogLevel.INFO, server, classPathRegistry, new BaseDirFileResolver(FileSystems.getDefault(), tmpDir.getTestDir()), new LongIdGenerator(), pool);
     private final ListenerBroadcast<TestListenerInterface> broadcast = new ListenerBroadcast<TestListenerInterface>(
             TestListenerInterface.class);
     private final RemoteExceptionListener exceptionListener = new RemoteExceptionListener(broadcast);
@@ -81,6 +82,7 @@ public class WorkerProcessIntegrationTest {
 
     @After
     public void tearDown() {
+        pool.stop();
         messagingServices.stop();
     }
 
@@ -163,6 +165,42 @@ public class WorkerProcessIntegrationTest {
         execute(mainClass("no-such-class").expectStartFailure());
     }
 
+    @Test
+    public void reusableWorkerProcessesRunInTheSameJvm() throws Throwable {
+        context.checking(new Expectations() {{
+            Sequence sequence = context.sequence("sequence");
+            one(listenerMock).send("run", 1);
+            inSequence(sequence);
+            one(listenerMock).send("run", 2);
+            inSequence(sequence);
+        }});
+
+        executeInSequence(worker(new CountingRemoteProcess()).reusable(), worker(new CountingRemoteProcess()).reusable());
+    }
+
+    @Test
+    public void reusableWorkerProcessesWithDifferentConfigurationRunInDifferentJvms() throws Throwable {
+        context.checking(new Expectations() {{
+            exactly(2).of(listenerMock).send("run", 1);
+        }});
+
+        executeInSequence(worker(new CountingRemoteProcess()).reusable(), worker(new CountingRemoteProcess()).reusable().jvmArg("-Dother.property=value"));
+    }
+
+    @Test
+    public void handlesReusableWorkerActionWhichThrowsException() throws Throwable {
+        context.checking(new Expectations() {{
+            one(listenerMock).send("run", 1);
+        }});
+
+        executeInSequence(worker(new BrokenRemoteProcess()).reusable().expectStopFailure(), worker(new CountingRemoteProcess()).reusable());
+    }
+
+    @Test
+    public void handlesReusableWorkerProcessWhichNeverConnects() throws Throwable {
+        execute(worker(new NoConnectRemoteProcess()).reusable().expectStartFailure());
+    }
+
     private ChildProcess worker(Action<WorkerProcessContext> action) {
         return new ChildProcess(action);
     }
@@ -182,6 +220,16 @@ public class WorkerProcessIntegrationTest {
         exceptionListener.rethrow();
     }
 
+    void executeInSequence(ChildProcess... processes) throws Throwable {
+        for (ChildProcess process : processes) {
+            process.start();
+            process.waitForStop();
+        }
+        pool.stop();
+        messagingServices.stop();
+        exceptionListener.rethrow();
+    }
+
     private class ChildProcess {
         private boolean stopFails;
         private boolean startFails;
@@ -189,6 +237,8 @@ public class WorkerProcessIntegrationTest {
         private Action<WorkerProcessContext> action;
         private String mainClass;
         private Action<ObjectConnection> serverAction;
+        private boolean reusable;
+        private String jvmArg;
 
         public ChildProcess(Action<WorkerProcessContext> action) {
             this.action = action;
@@ -204,6 +254,16 @@ public class WorkerProcessIntegrationTest {
             return this;
         }
 
+        ChildProcess reusable() {
+            reusable = true;
+            return this;
+        }
+
+        ChildProcess jvmArg(String jvmArg) {
+            this.jvmArg = jvmArg;
+            return this;
+        }
+
         public void start() {
             WorkerProcessBuilder builder = workerFactory.create();
             builder.applicationClasspath(classPathRegistry.getClassPathFiles("ANT"));
@@ -211,6 +271,10 @@ public class WorkerProcessIntegrationTest {
             builder.getJavaCommand().systemProperty("test.system.property", "value");
             builder.getJavaCommand().environment("TEST_ENV_VAR", "value");
             builder.worker(action);
+            builder.setReusable(reusable);
+            if (jvmArg != null) {
+                builder.getJavaCommand().jvmArgs(jvmArg);
+            }
 
             if (mainClass != null) {
                 builder.getJavaCommand().setMain(mainClass);
@@ -304,6 +368,16 @@ public class WorkerProcessIntegrationTest {
         }
     }
 
+    public static class CountingRemoteProcess implements Action<WorkerProcessContext>, Serializable {
+        public void execute(WorkerProcessContext workerProcessContext) {
+            int count = Integer.getInteger("test.run.count", 0) + 1;
+            System.setProperty("test.run.count", String.valueOf(count));
+
+            TestListenerInterface sender = workerProcessContext.getServerConnection().addOutgoing(TestListenerInterface.class);
+            sender.send("run", count);
+        }
+    }
+
     public static class OtherRemoteProcess implements Action<WorkerProcessContext>, Serializable {
         public void execute(WorkerProcessContext workerProcessContext) {
             TestListenerInterface sender = workerProcessContext.getServerConnection().addOutgoing(TestListenerInterface.class);
@@ -22,8 +22,11 @@ import org.gradle.initialization.BuildRequestMetaData;
 import org.gradle.initialization.GradleLauncherFactory;
 import org.gradle.StartParameter;
 import org.gradle.api.Action;
+import org.gradle.api.Transformer;
 import org.gradle.initialization.DefaultGradleLauncherFactory;
+import org.gradle.launcher.exec.ContinuousBuildExecuter;
 import org.gradle.launcher.exec.ExecutionListener;
+import org.gradle.launcher.exec.PollingFileWatcher;
 
 public class RunBuildAction implements Action<ExecutionListener> {
     private final StartParameter startParameter;
@@ -38,8 +41,17 @@ public class RunBuildAction implements Action<ExecutionListener> {
 
     public void execute(ExecutionListener executionListener) {
         GradleLauncherFactory gradleLauncherFactory = createGradleLauncherFactory(loggingServices);
-        GradleLauncher gradleLauncher = gradleLauncherFactory.newInstance(startParameter, requestMetaData);
-        BuildResult buildResult = gradleLauncher.run();
+        BuildResult buildResult;
+        if (startParameter.isContinuous()) {
+            buildResult = createContinuousBuildExecuter().execute(gradleLauncherFactory, startParameter, requestMetaData, new Transformer<BuildResult, GradleLauncher>() {
+                public BuildResult transform(GradleLauncher launcher) {
+                    return launcher.run();
+                }
+            });
+        } else {
+            GradleLauncher gradleLauncher = gradleLauncherFactory.newInstance(startParameter, requestMetaData);
+            buildResult = gradleLauncher.run();
+        }
         Throwable failure = buildResult.getFailure();
         if (failure != null) {
             executionListener.onFailure(failure);
@@ -49,4 +61,8 @@ public class RunBuildAction implements Action<ExecutionListener> {
     GradleLauncherFactory createGradleLauncherFactory(ServiceRegistry loggingServices) {
         return new DefaultGradleLauncherFactory(loggingServices);
     }
+
+    ContinuousBuildExecuter createContinuousBuildExecuter() {
+        return new ContinuousBuildExecuter(new PollingFileWatcher());
+    }
 }
@@ -32,6 +32,7 @@ import org.gradle.launcher.exec.ExecutionListener;
 import org.gradle.logging.LoggingManagerInternal;
 import org.gradle.logging.LoggingServiceRegistry;
 import org.gradle.logging.internal.OutputEventRenderer;
+import org.gradle.process.internal.WorkerProcessPool;
 
 import java.io.*;
 import java.util.LinkedList;
@@ -112,6 +113,8 @@ public class DaemonMain extends EntryPoint {
         } catch (DaemonStoppedException e) {
             LOGGER.debug("Daemon stopping due to the stop request");
             listener.onFailure(e);
+        } finally {
+            daemonServices.get(WorkerProcessPool.class).stop();
         }
     }
 
@@ -32,6 +32,7 @@ import org.gradle.launcher.daemon.server.exec.DefaultDaemonCommandExecuter;
 import org.gradle.logging.LoggingManagerInternal;
 import org.gradle.messaging.concurrent.DefaultExecutorFactory;
 import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.process.internal.WorkerProcessPool;
 
 import java.io.File;
 import java.util.UUID;
@@ -79,6 +80,10 @@ public class DaemonServices extends DefaultServiceRegistry {
         return new File(get(DaemonDir.class).getVersionedDir(), fileName);
     }
 
+    protected WorkerProcessPool createWorkerProcessPool() {
+        return new WorkerProcessPool();
+    }
+
     protected Daemon createDaemon() {
         return new Daemon(
                 new DaemonTcpServerConnector(),
@@ -86,7 +91,7 @@ public class DaemonServices extends DefaultServiceRegistry {
                 get(DaemonContext.class),
                 "password",
                 new DefaultDaemonCommandExecuter(
-                        new DefaultGradleLauncherFactory(loggingServices),
+                        new DefaultGradleLauncherFactory(loggingServices, get(WorkerProcessPool.class)),
                         get(ExecutorFactory.class),
                         get(ProcessEnvironment.class),
                         loggingManager,
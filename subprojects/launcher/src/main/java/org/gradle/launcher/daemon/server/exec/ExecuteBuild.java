@@ -15,12 +15,17 @@
  */
 package org.gradle.launcher.daemon.server.exec;
 
+import org.gradle.BuildResult;
+import org.gradle.GradleLauncher;
 import org.gradle.api.GradleException;
+import org.gradle.api.Transformer;
 import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.initialization.GradleLauncherFactory;
 import org.gradle.launcher.daemon.logging.DaemonMessages;
 import org.gradle.launcher.daemon.protocol.Build;
+import org.gradle.launcher.exec.ContinuousBuildExecuter;
+import org.gradle.launcher.exec.PollingFileWatcher;
 import org.gradle.launcher.exec.ReportedException;
 
 /**
@@ -42,7 +47,11 @@ public class ExecuteBuild extends BuildCommandOnly {
         LOGGER.info("Executing build with daemon context: {}", execution.getDaemonContext());
         
         try {
-            execution.setResult(build.run(launcherFactory));
+            if (build.getStartParameter().isContinuous()) {
+                execution.setResult(runContinuously(build));
+            } else {
+                execution.setResult(build.run(launcherFactory));
+            }
         } catch (GradleException e) {
             /*
                 We have to wrap in a ReportedException so the other side doesn't re-log this exception, because it's already
@@ -59,4 +68,15 @@ public class ExecuteBuild extends BuildCommandOnly {
         execution.proceed(); // ExecuteBuild should be the last action, but in case we want to decorate the result in the future
     }
 
+    private Object runContinuously(final Build build) {
+        ContinuousBuildExecuter executer = new ContinuousBuildExecuter(new PollingFileWatcher());
+        BuildResult buildResult = executer.execute(launcherFactory, build.getStartParameter(), build.getParameters().getBuildRequestMetaData(), new Transformer<BuildResult, GradleLauncher>() {
+            public BuildResult transform(GradleLauncher launcher) {
+                return build.getAction().run(launcher);
+            }
+        });
+        buildResult.rethrowFailure();
+        return build.getAction().getResult();
+    }
+
 }
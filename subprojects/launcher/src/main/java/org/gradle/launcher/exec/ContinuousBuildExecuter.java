@@ -0,0 +1,92 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.launcher.exec;
+
+import org.gradle.BuildResult;
+import org.gradle.GradleLauncher;
+import org.gradle.StartParameter;
+import org.gradle.api.Task;
+import org.gradle.api.Transformer;
+import org.gradle.api.execution.TaskExecutionListener;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.tasks.TaskState;
+import org.gradle.initialization.BuildRequestMetaData;
+import org.gradle.initialization.DefaultBuildRequestMetaData;
+import org.gradle.initialization.GradleLauncherFactory;
+
+import java.io.File;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Executes a build continuously. After each build, waits for a change to one of the input files of the tasks which
+ * were executed, and then executes the build again. Each build is executed using the same {@link
+ * GradleLauncherFactory}, so that the services it caches are reused from one build to the next.
+ */
+public class ContinuousBuildExecuter {
+    private static final Logger LOGGER = Logging.getLogger(ContinuousBuildExecuter.class);
+    private final FileWatcher fileWatcher;
+
+    public ContinuousBuildExecuter(FileWatcher fileWatcher) {
+        this.fileWatcher = fileWatcher;
+    }
+
+    /**
+     * Executes the build until none of the executed tasks has any input files, or until the current thread is
+     * interrupted while waiting for a change.
+     *
+     * @param launcherFactory The factory to use to create the launcher for each build.
+     * @param startParameter The parameters for each build.
+     * @param requestMetaData The meta-data for the first build.
+     * @param buildAction The action which runs the build using the given launcher.
+     * @return The result of the last build.
+     */
+    public BuildResult execute(GradleLauncherFactory launcherFactory, StartParameter startParameter, BuildRequestMetaData requestMetaData,
+                               Transformer<BuildResult, GradleLauncher> buildAction) {
+        BuildRequestMetaData buildMetaData = requestMetaData;
+        while (true) {
+            GradleLauncher launcher = launcherFactory.newInstance(startParameter.newInstance(), buildMetaData);
+            InputFilesCollector inputFiles = new InputFilesCollector();
+            launcher.addListener(inputFiles);
+            BuildResult result = buildAction.transform(launcher);
+
+            if (inputFiles.files.isEmpty()) {
+                LOGGER.lifecycle("Exiting continuous build as none of the executed tasks has any input files.");
+                return result;
+            }
+            LOGGER.lifecycle("Waiting for changes to the input files of the executed tasks.");
+            if (!fileWatcher.waitForChange(inputFiles.files)) {
+                return result;
+            }
+            LOGGER.lifecycle("Change detected, executing the build again.");
+            buildMetaData = new DefaultBuildRequestMetaData(requestMetaData.getClient(), System.currentTimeMillis());
+        }
+    }
+
+    private static class InputFilesCollector implements TaskExecutionListener {
+        private final Set<File> files = new LinkedHashSet<File>();
+
+        public void beforeExecute(Task task) {
+        }
+
+        public void afterExecute(Task task, TaskState state) {
+            synchronized (files) {
+                files.addAll(task.getInputs().getFiles().getFiles());
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.launcher.exec;
+
+import java.io.File;
+import java.util.Collection;
+
+/**
+ * Watches a set of files for changes.
+ */
+public interface FileWatcher {
+    /**
+     * Blocks until one of the given files is created, modified or deleted, or the current thread is interrupted. The
+     * contents of directories are watched recursively.
+     *
+     * @return true if a change was detected, false if the current thread was interrupted.
+     */
+    boolean waitForChange(Collection<File> files);
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.launcher.exec;
+
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A {@link FileWatcher} which polls the file system for changes.
+ *
+ * <p>Files are compared using their type, size and modification time. Only the watched files and the contents of
+ * watched directories are compared, so that changes to other files alongside a watched file, such as temporary files,
+ * are ignored.</p>
+ */
+public class PollingFileWatcher implements FileWatcher {
+    public static final long DEFAULT_POLL_INTERVAL = 500;
+    private final long pollInterval;
+
+    public PollingFileWatcher() {
+        this(DEFAULT_POLL_INTERVAL);
+    }
+
+    public PollingFileWatcher(long pollInterval) {
+        this.pollInterval = pollInterval;
+    }
+
+    public boolean waitForChange(Collection<File> files) {
+        Map<File, FileState> original = snapshot(files);
+        while (true) {
+            try {
+                Thread.sleep(pollInterval);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            if (!snapshot(files).equals(original)) {
+                return true;
+            }
+        }
+    }
+
+    private Map<File, FileState> snapshot(Collection<File> files) {
+        Map<File, FileState> snapshot = new HashMap<File, FileState>();
+        for (File file : files) {
+            if (file.isDirectory()) {
+                snapshotDirectory(file, snapshot);
+            } else {
+                snapshot.put(file, new FileState(file));
+            }
+        }
+        return snapshot;
+    }
+
+    private void snapshotDirectory(File dir, Map<File, FileState> snapshot) {
+        snapshot.put(dir, new FileState(dir));
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            if (child.isDirectory()) {
+                snapshotDirectory(child, snapshot);
+            } else {
+                snapshot.put(child, new FileState(child));
+            }
+        }
+    }
+
+    private static class FileState {
+        private final boolean exists;
+        private final boolean directory;
+        private final long length;
+        private final long lastModified;
+
+        private FileState(File file) {
+            exists = file.exists();
+            directory = file.isDirectory();
+            length = directory ? 0 : file.length();
+            lastModified = file.lastModified();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj == null || obj.getClass() != getClass()) {
+                return false;
+            }
+            FileState other = (FileState) obj;
+            return exists == other.exists && directory == other.directory && length == other.length && lastModified == other.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (lastModified ^ length);
+        }
+    }
+}
@@ -22,6 +22,7 @@ import org.gradle.initialization.GradleLauncherFactory
 import org.gradle.GradleLauncher
 import org.gradle.BuildResult
 import org.gradle.initialization.BuildRequestMetaData
+import org.gradle.launcher.exec.ContinuousBuildExecuter
 import org.gradle.launcher.exec.ExecutionListener
 
 class RunBuildActionTest extends Specification {
@@ -32,11 +33,17 @@ class RunBuildActionTest extends Specification {
     final GradleLauncher launcher = Mock()
     final BuildResult result = Mock()
     final BuildRequestMetaData requestMetaData = Mock()
+    final ContinuousBuildExecuter continuousBuildExecuter = Mock()
     final RunBuildAction action = new RunBuildAction(startParameter, loggingServices, requestMetaData) {
         @Override
         GradleLauncherFactory createGradleLauncherFactory(ServiceRegistry loggingServices) {
             return gradleLauncherFactory
         }
+
+        @Override
+        ContinuousBuildExecuter createContinuousBuildExecuter() {
+            return continuousBuildExecuter
+        }
     }
 
     def executesBuild() {
@@ -64,4 +71,19 @@ class RunBuildActionTest extends Specification {
         0 * _._
     }
 
+    def executesBuildContinuously() {
+        startParameter.continuous = true
+
+        when:
+        action.execute(completer)
+
+        then:
+        1 * continuousBuildExecuter.execute(gradleLauncherFactory, startParameter, requestMetaData, _) >> { factory, parameter, metaData, build ->
+            build.transform(launcher)
+        }
+        1 * launcher.run() >> result
+        _ * result.failure >> null
+        0 * _._
+    }
+
 }
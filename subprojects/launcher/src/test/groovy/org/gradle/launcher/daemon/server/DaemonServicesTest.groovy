@@ -20,6 +20,7 @@ import org.gradle.launcher.daemon.configuration.DefaultDaemonServerConfiguration
 import org.gradle.launcher.daemon.registry.DaemonDir
 import org.gradle.logging.LoggingManagerInternal
 import org.gradle.logging.LoggingServiceRegistry
+import org.gradle.process.internal.WorkerProcessPool
 import org.gradle.util.TemporaryFolder
 import org.junit.Rule
 import spock.lang.Specification
@@ -45,4 +46,9 @@ class DaemonServicesTest extends Specification {
         expect:
         services.get(Daemon.class) != null
     }
+
+    def "makes a WorkerProcessPool available"() {
+        expect:
+        services.get(WorkerProcessPool.class) != null
+    }
 }
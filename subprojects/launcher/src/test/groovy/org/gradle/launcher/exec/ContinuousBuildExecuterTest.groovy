@@ -0,0 +1,84 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.launcher.exec
+
+import org.gradle.BuildResult
+import org.gradle.GradleLauncher
+import org.gradle.StartParameter
+import org.gradle.api.Task
+import org.gradle.api.Transformer
+import org.gradle.api.execution.TaskExecutionListener
+import org.gradle.api.file.FileCollection
+import org.gradle.api.tasks.TaskInputs
+import org.gradle.api.tasks.TaskState
+import org.gradle.initialization.BuildClientMetaData
+import org.gradle.initialization.BuildRequestMetaData
+import org.gradle.initialization.GradleLauncherFactory
+import spock.lang.Specification
+
+class ContinuousBuildExecuterTest extends Specification {
+    final FileWatcher fileWatcher = Mock()
+    final GradleLauncherFactory launcherFactory = Mock()
+    final StartParameter startParameter = new StartParameter()
+    final BuildRequestMetaData requestMetaData = Mock()
+    final BuildClientMetaData clientMetaData = Mock()
+    final Transformer<BuildResult, GradleLauncher> buildAction = Mock()
+    final GradleLauncher launcher = Mock()
+    final GradleLauncher launcher2 = Mock()
+    final BuildResult result1 = Mock()
+    final BuildResult result2 = Mock()
+    final Task task = Mock()
+    final TaskInputs taskInputs = Mock()
+    final FileCollection inputFiles = Mock()
+    final File inputFile = new File("input.txt")
+    final ContinuousBuildExecuter executer = new ContinuousBuildExecuter(fileWatcher)
+
+    def "executes build again when an input file of an executed task changes"() {
+        TaskExecutionListener listener
+
+        when:
+        def result = executer.execute(launcherFactory, startParameter, requestMetaData, buildAction)
+
+        then:
+        1 * launcherFactory.newInstance({ it == startParameter && !it.is(startParameter) }, requestMetaData) >> launcher
+        1 * launcher.addListener(_) >> { listener = it[0] }
+        1 * buildAction.transform(launcher) >> { listener.afterExecute(task, Mock(TaskState)); result1 }
+        _ * task.inputs >> taskInputs
+        _ * taskInputs.files >> inputFiles
+        _ * inputFiles.files >> ([inputFile] as Set)
+        _ * requestMetaData.client >> clientMetaData
+        1 * launcherFactory.newInstance(startParameter, { !it.is(requestMetaData) && it.client == clientMetaData }) >> launcher2
+        1 * launcher2.addListener(_) >> { listener = it[0] }
+        1 * buildAction.transform(launcher2) >> { listener.afterExecute(task, Mock(TaskState)); result2 }
+        2 * fileWatcher.waitForChange({ it == [inputFile] as Set }) >>> [true, false]
+
+        and:
+        result == result2
+    }
+
+    def "stops when no executed task has any input files"() {
+        when:
+        def result = executer.execute(launcherFactory, startParameter, requestMetaData, buildAction)
+
+        then:
+        1 * launcherFactory.newInstance(startParameter, requestMetaData) >> launcher
+        1 * buildAction.transform(launcher) >> result1
+        0 * fileWatcher._
+
+        and:
+        result == result1
+    }
+}
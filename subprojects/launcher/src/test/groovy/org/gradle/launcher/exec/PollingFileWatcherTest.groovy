@@ -0,0 +1,102 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.launcher.exec
+
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Timeout
+
+class PollingFileWatcherTest extends Specification {
+    @Rule final TemporaryFolder tmpDir = new TemporaryFolder()
+    final PollingFileWatcher watcher = new PollingFileWatcher(10)
+
+    @Timeout(10)
+    def "detects modified file"() {
+        def file = tmpDir.createFile("file.txt")
+        file.text = "content"
+
+        when:
+        changeLater { file.text = "new content" }
+
+        then:
+        watcher.waitForChange([file])
+    }
+
+    @Timeout(10)
+    def "ignores changes to other files in the same directory as a watched file"() {
+        def file = tmpDir.createFile("dir/file.txt")
+        def other = tmpDir.createFile("dir/other.txt")
+
+        when:
+        def watching = Thread.start { watcher.waitForChange([file]) }
+        Thread.sleep(100)
+        other.text = "new content"
+        tmpDir.createFile("dir/file.txt.tmp")
+        Thread.sleep(200)
+
+        then:
+        watching.alive
+
+        cleanup:
+        watching?.interrupt()
+        watching?.join()
+    }
+
+    @Timeout(10)
+    def "detects file created in a watched directory"() {
+        def dir = tmpDir.createDir("dir")
+        dir.createDir("sub")
+
+        when:
+        changeLater { dir.createFile("sub/file.txt") }
+
+        then:
+        watcher.waitForChange([dir])
+    }
+
+    @Timeout(10)
+    def "detects deleted file"() {
+        def file = tmpDir.createFile("file.txt")
+
+        when:
+        changeLater { file.delete() }
+
+        then:
+        watcher.waitForChange([file])
+    }
+
+    @Timeout(10)
+    def "stops waiting when thread is interrupted"() {
+        def file = tmpDir.createFile("file.txt")
+        def thread = Thread.currentThread()
+
+        when:
+        changeLater { thread.interrupt() }
+        def changed = watcher.waitForChange([file])
+
+        then:
+        !changed
+        Thread.interrupted()
+    }
+
+    private void changeLater(Closure change) {
+        Thread.start {
+            Thread.sleep(100)
+            change.call()
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.peformance
+
+import org.gradle.api.logging.Logging
+import org.gradle.cache.DefaultSerializer
+import org.gradle.cache.internal.btree.BTreePersistentIndexedCache
+import org.gradle.cache.internal.btree.BlockStore
+import org.gradle.cache.internal.btree.FileBackedBlockStore
+import org.gradle.cache.internal.btree.MappedFileBlockStore
+import org.gradle.peformance.fixture.MeasuredOperation
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Compares the file backed and memory-mapped block stores of the indexed caches for sequential puts, random gets and a mixed
+ * workload.
+ */
+class BlockStorePerformanceTest extends Specification {
+    private final static LOGGER = Logging.getLogger(BlockStorePerformanceTest.class)
+    static final int ENTRIES = 20000
+    @Rule final TemporaryFolder tmpDir = new TemporaryFolder()
+
+    @Unroll({"Accesses indexed cache using $store block store"})
+    def "access"() {
+        given:
+        def cacheFile = tmpDir.file("${store}.bin")
+        def cache = new BTreePersistentIndexedCache<String, Integer>(cacheFile, blockStore(store, cacheFile), new DefaultSerializer<String>(),
+                new DefaultSerializer<Integer>(), (short) 100, 100)
+        def random = new Random(42)
+
+        when:
+        def puts = MeasuredOperation.measure {
+            ENTRIES.times { cache.put("key_$it".toString(), it) }
+        }
+        def gets = MeasuredOperation.measure {
+            ENTRIES.times { cache.get("key_${random.nextInt(ENTRIES)}".toString()) }
+        }
+        def mixed = MeasuredOperation.measure {
+            ENTRIES.times {
+                def key = "key_${random.nextInt(ENTRIES)}".toString()
+                if (it % 4 == 0) {
+                    cache.put(key, it)
+                } else {
+                    cache.get(key)
+                }
+            }
+        }
+        LOGGER.lifecycle("{} block store: sequential puts in {}, random gets in {}, mixed workload in {}.", store, puts.prettyTime, gets.prettyTime, mixed.prettyTime)
+
+        then:
+        [puts, gets, mixed].every { it.exception == null }
+
+        cleanup:
+        cache?.close()
+
+        where:
+        store << ["file", "mapped"]
+    }
+
+    private BlockStore blockStore(String store, File cacheFile) {
+        return store == "mapped" ? new MappedFileBlockStore(cacheFile) : new FileBackedBlockStore(cacheFile)
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.peformance
+
+import java.lang.reflect.InvocationHandler
+import java.lang.reflect.Method
+import java.lang.reflect.Proxy
+import org.gradle.api.Task
+import org.gradle.api.internal.TaskInternal
+import org.gradle.api.logging.Logging
+import org.gradle.api.tasks.TaskDependency
+import org.gradle.execution.DefaultTaskGraphExecuter
+import org.gradle.listener.DefaultListenerManager
+import org.gradle.peformance.fixture.MeasuredOperation
+import spock.lang.Specification
+import spock.lang.Unroll
+
+/**
+ * Measures how long it takes to populate the task graph for synthetic builds of various sizes, and how much heap the
+ * populated graph retains.
+ *
+ * <p>Each generated project has the tasks of a typical Java project. The main compile and test tasks of each project
+ * depend on the jars of up to {@link #MAX_PROJECT_DEPENDENCIES} earlier projects, and the build task of every project is
+ * requested.</p>
+ */
+class TaskGraphPopulationPerformanceTest extends Specification {
+    private final static LOGGER = Logging.getLogger(TaskGraphPopulationPerformanceTest.class)
+    static final int TASKS_PER_PROJECT = 10
+    static final int MAX_PROJECT_DEPENDENCIES = 3
+
+    @Unroll({"Populates task graph with $tasks tasks"})
+    def "populate"() {
+        given:
+        populate(generateBuildTasks(10000 / TASKS_PER_PROJECT as int))
+        def buildTasks = generateBuildTasks(tasks / TASKS_PER_PROJECT as int)
+        def executer = new DefaultTaskGraphExecuter(new DefaultListenerManager())
+        long heapBefore = usedHeap()
+
+        when:
+        def result = MeasuredOperation.measure {
+            executer.addTasks(buildTasks)
+        }
+        long retainedHeap = usedHeap() - heapBefore
+        LOGGER.lifecycle("Populated task graph with {} tasks in {}, retaining {} KB of heap.", tasks, result.prettyTime, retainedHeap / 1024 as long)
+
+        then:
+        result.exception == null
+        executer.allTasks.size() == tasks
+
+        where:
+        tasks << [10000, 100000, 1000000]
+    }
+
+    private void populate(List<Task> tasks) {
+        new DefaultTaskGraphExecuter(new DefaultListenerManager()).addTasks(tasks)
+    }
+
+    private long usedHeap() {
+        def runtime = Runtime.runtime
+        3.times {
+            System.gc()
+        }
+        return runtime.totalMemory() - runtime.freeMemory()
+    }
+
+    /**
+     * Generates the given number of projects, and returns the build task of each project.
+     */
+    private List<Task> generateBuildTasks(int projects) {
+        def random = new Random(projects)
+        def jars = []
+        def buildTasks = []
+        projects.times { index ->
+            def path = ":project$index"
+            def projectJars = []
+            Math.min(jars.size(), random.nextInt(MAX_PROJECT_DEPENDENCIES + 1)).times {
+                projectJars << jars[random.nextInt(jars.size())]
+            }
+
+            def compileJava = task("$path:compileJava", projectJars)
+            def processResources = task("$path:processResources")
+            def classes = task("$path:classes", [compileJava, processResources])
+            def jar = task("$path:jar", [classes])
+            def compileTestJava = task("$path:compileTestJava", [classes] + projectJars)
+            def processTestResources = task("$path:processTestResources")
+            def testClasses = task("$path:testClasses", [compileTestJava, processTestResources])
+            def test = task("$path:test", [testClasses, classes])
+            def check = task("$path:check", [test])
+            buildTasks << task("$path:build", [check, jar])
+            jars << jar
+        }
+        return buildTasks
+    }
+
+    private Task task(String path, List<Task> dependencies = []) {
+        def handler = new StubTaskHandler(path: path, dependencies: dependencies as Set)
+        return (Task) Proxy.newProxyInstance(getClass().classLoader, [TaskInternal] as Class[], handler)
+    }
+
+    private static class StubTaskHandler implements InvocationHandler, TaskDependency {
+        String path
+        Set<Task> dependencies
+
+        Object invoke(Object proxy, Method method, Object[] args) {
+            switch (method.name) {
+                case 'getPath':
+                case 'toString':
+                    return path
+                case 'getTaskDependencies':
+                    return this
+                case 'compareTo':
+                    return path.compareTo(((Task) args[0]).path)
+                case 'hashCode':
+                    return System.identityHashCode(proxy)
+                case 'equals':
+                    return proxy.is(args[0])
+                default:
+                    throw new UnsupportedOperationException(method.name)
+            }
+        }
+
+        Set<? extends Task> getDependencies(Task task) {
+            return dependencies
+        }
+    }
+}
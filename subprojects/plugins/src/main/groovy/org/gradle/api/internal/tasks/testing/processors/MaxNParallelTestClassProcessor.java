@@ -20,6 +20,8 @@ import org.gradle.internal.Factory;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.worker.ReplayingTestResultProcessor;
+import org.gradle.api.internal.tasks.testing.worker.TestResultBatchProcessor;
 import org.gradle.internal.CompositeStoppable;
 import org.gradle.internal.UncheckedException;
 import org.gradle.messaging.actor.Actor;
@@ -27,18 +29,33 @@ import org.gradle.messaging.actor.ActorFactory;
 import org.gradle.messaging.dispatch.DispatchException;
 
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Manages a set of parallel TestClassProcessors. Uses a simple round-robin algorithm to assign test classes to
- * processors.
+ * Manages a set of parallel TestClassProcessors. Assigns test classes to processors on demand: a test class is given to a
+ * processor only once that processor has finished its previous test class, so that a processor which is busy with a
+ * slow test class does not hold up the test classes that follow it. Requires that {@link
+ * TestClassProcessor#processTestClass(TestClassRunInfo)} of the processors blocks until the processor is ready for more
+ * work. A processor which fails to process a test class is not given any more test classes, and a new processor may be
+ * started in its place. At most {@link #MAX_REPLACED_PROCESSORS} failed processors are replaced, so that a failure which
+ * affects every processor does not start a new processor for each remaining test class. Once no processor is left, the
+ * remaining test classes are discarded, and the failures are reported when this processor is stopped.
  */
 public class MaxNParallelTestClassProcessor implements TestClassProcessor {
+    static final int MAX_REPLACED_PROCESSORS = 2;
     private final int maxProcessors;
     private final Factory<TestClassProcessor> factory;
     private final ActorFactory actorFactory;
+    private final Lock lock = new ReentrantLock();
+    private final Condition condition = lock.newCondition();
+    private final LinkedList<TestClassProcessor> idleProcessors = new LinkedList<TestClassProcessor>();
+    private int activeProcessors;
+    private int startedProcessors;
     private TestResultProcessor resultProcessor;
-    private int pos;
     private List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
     private List<Actor> actors = new ArrayList<Actor>();
     private Actor resultProcessorActor;
@@ -50,26 +67,75 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     }
 
     public void startProcessing(TestResultProcessor resultProcessor) {
-        resultProcessorActor = actorFactory.createActor(resultProcessor);
-        this.resultProcessor = resultProcessorActor.getProxy(TestResultProcessor.class);
+        // Accept whole batches of results through the actor, and replay them on the actor thread
+        resultProcessorActor = actorFactory.createActor(new ReplayingTestResultProcessor(resultProcessor));
+        this.resultProcessor = resultProcessorActor.getProxy(TestResultBatchProcessor.class);
     }
 
     public void processTestClass(TestClassRunInfo testClass) {
         TestClassProcessor processor;
-        if (processors.size() < maxProcessors) {
-            processor = factory.create();
-            Actor actor = actorFactory.createActor(processor);
-            processor = actor.getProxy(TestClassProcessor.class);
-            actors.add(actor);
-            processors.add(processor);
-            processor.startProcessing(resultProcessor);
-        } else {
-            processor = processors.get(pos);
-            pos = (pos + 1) % processors.size();
+        lock.lock();
+        try {
+            while (!canStartProcessor() && idleProcessors.isEmpty() && activeProcessors > 0) {
+                condition.await();
+            }
+            if (canStartProcessor()) {
+                activeProcessors++;
+                startedProcessors++;
+                processor = null;
+            } else if (!idleProcessors.isEmpty()) {
+                processor = idleProcessors.removeFirst();
+            } else {
+                // Every processor has failed, and no more may be started
+                return;
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.asUncheckedException(e);
+        } finally {
+            lock.unlock();
+        }
+
+        if (processor == null) {
+            processor = startProcessor();
         }
         processor.processTestClass(testClass);
     }
 
+    private boolean canStartProcessor() {
+        return activeProcessors < maxProcessors && startedProcessors < maxProcessors + MAX_REPLACED_PROCESSORS;
+    }
+
+    private TestClassProcessor startProcessor() {
+        DemandTrackingTestClassProcessor demandTrackingProcessor = new DemandTrackingTestClassProcessor(factory.create());
+        Actor actor = actorFactory.createActor(demandTrackingProcessor);
+        TestClassProcessor processor = actor.getProxy(TestClassProcessor.class);
+        demandTrackingProcessor.asyncProcessor = processor;
+        actors.add(actor);
+        processors.add(processor);
+        processor.startProcessing(resultProcessor);
+        return processor;
+    }
+
+    private void processorFinished(TestClassProcessor processor) {
+        lock.lock();
+        try {
+            idleProcessors.add(processor);
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void processorFailed() {
+        lock.lock();
+        try {
+            activeProcessors--;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
     public void stop() {
         try {
             new CompositeStoppable(processors).add(actors).add(resultProcessorActor).stop();
@@ -77,4 +143,39 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
             throw UncheckedException.asUncheckedException(e.getCause());
         }
     }
+
+    /**
+     * Runs in the actor of a processor. Notifies this processor when the processor is ready for more work, or has failed.
+     * The failure itself is reported when the processor is stopped.
+     */
+    private class DemandTrackingTestClassProcessor implements TestClassProcessor {
+        private final TestClassProcessor processor;
+        private TestClassProcessor asyncProcessor;
+
+        public DemandTrackingTestClassProcessor(TestClassProcessor processor) {
+            this.processor = processor;
+        }
+
+        public void startProcessing(TestResultProcessor resultProcessor) {
+            processor.startProcessing(resultProcessor);
+        }
+
+        public void processTestClass(TestClassRunInfo testClass) {
+            boolean succeeded = false;
+            try {
+                processor.processTestClass(testClass);
+                succeeded = true;
+            } finally {
+                if (succeeded) {
+                    processorFinished(asyncProcessor);
+                } else {
+                    processorFailed();
+                }
+            }
+        }
+
+        public void stop() {
+            processor.stop();
+        }
+    }
 }
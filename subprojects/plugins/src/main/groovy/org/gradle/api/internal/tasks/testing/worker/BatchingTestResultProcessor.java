@@ -0,0 +1,123 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+import org.gradle.internal.Stoppable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * A {@link TestResultProcessor} which collects events into batches, and forwards each batch to a {@link
+ * RemoteTestResultProcessor}. A batch is forwarded when it contains a certain number of events or amount of output, or
+ * when its first event has been waiting for a certain time. The events are forwarded in the order they were received.
+ */
+public class BatchingTestResultProcessor implements TestResultProcessor, Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchingTestResultProcessor.class);
+    public static final int DEFAULT_MAX_EVENTS = 500;
+    public static final int DEFAULT_MAX_OUTPUT_LENGTH = 64 * 1024;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 100;
+    private final RemoteTestResultProcessor processor;
+    private final int maxEvents;
+    private final int maxOutputLength;
+    private final long maxDelayMillis;
+    private final Timer timer = new Timer("Test result batching", true);
+    private TestResultBatch batch = new TestResultBatch();
+    private boolean flushScheduled;
+    private boolean stopped;
+
+    public BatchingTestResultProcessor(RemoteTestResultProcessor processor) {
+        this(processor, DEFAULT_MAX_EVENTS, DEFAULT_MAX_OUTPUT_LENGTH, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    public BatchingTestResultProcessor(RemoteTestResultProcessor processor, int maxEvents, int maxOutputLength, long maxDelayMillis) {
+        this.processor = processor;
+        this.maxEvents = maxEvents;
+        this.maxOutputLength = maxOutputLength;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    public synchronized void started(TestDescriptorInternal test, TestStartEvent event) {
+        batch.started(test, event);
+        added();
+    }
+
+    public synchronized void completed(Object testId, TestCompleteEvent event) {
+        batch.completed(testId, event);
+        added();
+    }
+
+    public synchronized void output(Object testId, TestOutputEvent event) {
+        batch.output(testId, event);
+        added();
+    }
+
+    public synchronized void failure(Object testId, Throwable result) {
+        batch.failure(testId, result);
+        added();
+    }
+
+    private void added() {
+        if (stopped || batch.size() >= maxEvents || batch.getOutputLength() >= maxOutputLength) {
+            flush();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            timer.schedule(new FlushTask(), maxDelayMillis);
+        }
+    }
+
+    /**
+     * Forwards the current batch, if not empty.
+     */
+    public synchronized void flush() {
+        if (batch.isEmpty()) {
+            return;
+        }
+        TestResultBatch current = batch;
+        batch = new TestResultBatch();
+        processor.process(current);
+    }
+
+    /**
+     * Forwards the current batch, and forwards any later events immediately.
+     */
+    public synchronized void stop() {
+        stopped = true;
+        timer.cancel();
+        flush();
+    }
+
+    private class FlushTask extends TimerTask {
+        @Override
+        public void run() {
+            synchronized (BatchingTestResultProcessor.this) {
+                flushScheduled = false;
+                try {
+                    flush();
+                } catch (RuntimeException e) {
+                    LOGGER.error("Could not forward test results.", e);
+                }
+            }
+        }
+    }
+}
@@ -22,13 +22,30 @@ import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
+import org.gradle.internal.UncheckedException;
+import org.gradle.process.ExecResult;
 import org.gradle.process.JavaForkOptions;
+import org.gradle.process.internal.ExecException;
+import org.gradle.process.internal.ExecHandle;
+import org.gradle.process.internal.ExecHandleListener;
 import org.gradle.process.internal.WorkerProcess;
 import org.gradle.process.internal.WorkerProcessBuilder;
 
 import java.io.File;
+import java.util.LinkedList;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
-public class ForkingTestClassProcessor implements TestClassProcessor {
+/**
+ * Processes test classes in a worker process. The worker process is sent at most one test class ahead of the test class it
+ * is running, so that it can start the next test class without waiting for a round trip. {@link
+ * #processTestClass(TestClassRunInfo)} blocks until the worker process has finished with all test classes but the given
+ * one, so that the caller can tell when the worker process is ready for more work.
+ */
+public class ForkingTestClassProcessor implements TestClassProcessor, RemoteTestClassProcessorListener {
+    private final Lock lock = new ReentrantLock();
+    private final Condition condition = lock.newCondition();
     private final Factory<WorkerProcessBuilder> workerFactory;
     private final WorkerTestClassProcessorFactory processorFactory;
     private final JavaForkOptions options;
@@ -37,6 +54,8 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     private RemoteTestClassProcessor remoteProcessor;
     private WorkerProcess workerProcess;
     private TestResultProcessor resultProcessor;
+    private final LinkedList<TestClassRunInfo> outstandingTestClasses = new LinkedList<TestClassRunInfo>();
+    private boolean workerStopped;
 
     public ForkingTestClassProcessor(Factory<WorkerProcessBuilder> workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction) {
         this.workerFactory = workerFactory;
@@ -57,18 +76,75 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
             builder.setLoadApplicationInSystemClassLoader(true);
             builder.worker(new TestWorker(processorFactory));
             options.copyTo(builder.getJavaCommand());
+            builder.getJavaCommand().listener(new ExecHandleListener() {
+                public void executionStarted(ExecHandle execHandle) {
+                }
+
+                public void executionFinished(ExecHandle execHandle, ExecResult execResult) {
+                    onWorkerStopped();
+                }
+            });
             buildConfigAction.execute(builder);
             
             workerProcess = builder.build();
             workerProcess.start();
 
-            workerProcess.getConnection().addIncoming(TestResultProcessor.class, resultProcessor);
+            // Hand each batch to the result processor as a whole when it can take one, rather than replaying it here
+            RemoteTestResultProcessor batchProcessor = resultProcessor instanceof RemoteTestResultProcessor
+                    ? (RemoteTestResultProcessor) resultProcessor
+                    : new ReplayingTestResultProcessor(resultProcessor);
+            workerProcess.getConnection().addIncoming(RemoteTestResultProcessor.class, batchProcessor);
+            workerProcess.getConnection().addIncoming(RemoteTestClassProcessorListener.class, this);
             remoteProcessor = workerProcess.getConnection().addOutgoing(RemoteTestClassProcessor.class);
 
             remoteProcessor.startProcessing();
         }
 
+        lock.lock();
+        try {
+            outstandingTestClasses.add(testClass);
+        } finally {
+            lock.unlock();
+        }
         remoteProcessor.processTestClass(testClass);
+        waitForPreviousTestClasses();
+    }
+
+    public void testClassProcessed() {
+        lock.lock();
+        try {
+            outstandingTestClasses.removeFirst();
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onWorkerStopped() {
+        lock.lock();
+        try {
+            workerStopped = true;
+            condition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void waitForPreviousTestClasses() {
+        lock.lock();
+        try {
+            while (outstandingTestClasses.size() > 1 && !workerStopped) {
+                condition.await();
+            }
+            if (workerStopped && !outstandingTestClasses.isEmpty()) {
+                throw new ExecException(String.format("%s stopped before it finished processing test class '%s'.", workerProcess,
+                        outstandingTestClasses.getFirst().getTestClassName()));
+            }
+        } catch (InterruptedException e) {
+            throw UncheckedException.asUncheckedException(e);
+        } finally {
+            lock.unlock();
+        }
     }
 
     public void stop() {
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+
+/**
+ * Replays the batches of test results received from a test worker to a {@link TestResultProcessor}. Other test results
+ * are passed straight through.
+ */
+public class ReplayingTestResultProcessor implements TestResultBatchProcessor {
+    private final TestResultProcessor processor;
+
+    public ReplayingTestResultProcessor(TestResultProcessor processor) {
+        this.processor = processor;
+    }
+
+    public void process(TestResultBatch batch) {
+        batch.replay(processor);
+    }
+
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        processor.started(test, event);
+    }
+
+    public void completed(Object testId, TestCompleteEvent event) {
+        processor.completed(testId, event);
+    }
+
+    public void output(Object testId, TestOutputEvent event) {
+        processor.output(testId, event);
+    }
+
+    public void failure(Object testId, Throwable result) {
+        processor.failure(testId, result);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.worker;
+
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.TestStartEvent;
+import org.gradle.api.tasks.testing.TestOutputEvent;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A sequence of test result events, which can be sent to another process as a single message and replayed there in the
+ * order they were received.
+ */
+public class TestResultBatch implements TestResultProcessor, Serializable {
+    private final List<Event> events = new ArrayList<Event>();
+    private int outputLength;
+
+    public void started(TestDescriptorInternal test, TestStartEvent event) {
+        events.add(new StartedEvent(test, event));
+    }
+
+    public void completed(Object testId, TestCompleteEvent event) {
+        events.add(new CompletedEvent(testId, event));
+    }
+
+    public void output(Object testId, TestOutputEvent event) {
+        events.add(new OutputEvent(testId, event));
+        if (event.getMessage() != null) {
+            outputLength += event.getMessage().length();
+        }
+    }
+
+    public void failure(Object testId, Throwable result) {
+        events.add(new FailureEvent(testId, result));
+    }
+
+    public boolean isEmpty() {
+        return events.isEmpty();
+    }
+
+    /**
+     * Returns the number of events in this batch.
+     */
+    public int size() {
+        return events.size();
+    }
+
+    /**
+     * Returns the total length of the output messages in this batch.
+     */
+    public int getOutputLength() {
+        return outputLength;
+    }
+
+    /**
+     * Notifies the given processor of the events in this batch, in order.
+     */
+    public void replay(TestResultProcessor processor) {
+        for (Event event : events) {
+            event.replay(processor);
+        }
+    }
+
+    private static abstract class Event implements Serializable {
+        abstract void replay(TestResultProcessor processor);
+    }
+
+    private static class StartedEvent extends Event {
+        private final TestDescriptorInternal test;
+        private final TestStartEvent event;
+
+        private StartedEvent(TestDescriptorInternal test, TestStartEvent event) {
+            this.test = test;
+            this.event = event;
+        }
+
+        void replay(TestResultProcessor processor) {
+            processor.started(test, event);
+        }
+    }
+
+    private static class CompletedEvent extends Event {
+        private final Object testId;
+        private final TestCompleteEvent event;
+
+        private CompletedEvent(Object testId, TestCompleteEvent event) {
+            this.testId = testId;
+            this.event = event;
+        }
+
+        void replay(TestResultProcessor processor) {
+            processor.completed(testId, event);
+        }
+    }
+
+    private static class OutputEvent extends Event {
+        private final Object testId;
+        private final TestOutputEvent event;
+
+        private OutputEvent(Object testId, TestOutputEvent event) {
+            this.testId = testId;
+            this.event = event;
+        }
+
+        void replay(TestResultProcessor processor) {
+            processor.output(testId, event);
+        }
+    }
+
+    private static class FailureEvent extends Event {
+        private final Object testId;
+        private final Throwable failure;
+
+        private FailureEvent(Object testId, Throwable failure) {
+            this.testId = testId;
+            this.failure = failure;
+        }
+
+        void replay(TestResultProcessor processor) {
+            processor.failure(testId, failure);
+        }
+    }
+}
@@ -19,6 +19,8 @@ package org.gradle.api.internal.tasks.testing.processors
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo
 import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.worker.ReplayingTestResultProcessor
+import org.gradle.api.internal.tasks.testing.worker.TestResultBatchProcessor
 import org.gradle.messaging.actor.Actor
 import org.gradle.messaging.actor.ActorFactory
 import spock.lang.Specification
@@ -27,7 +29,7 @@ import org.gradle.internal.Factory
 class MaxNParallelTestClassProcessorTest extends Specification {
     private final Factory<TestClassProcessor> factory = Mock()
     private final TestResultProcessor resultProcessor = Mock()
-    private final TestResultProcessor asyncResultProcessor = Mock()
+    private final TestResultBatchProcessor asyncResultProcessor = Mock()
     private final Actor resultProcessorActor = Mock()
     private final ActorFactory actorFactory = Mock()
     private final MaxNParallelTestClassProcessor processor = new MaxNParallelTestClassProcessor(2, factory, actorFactory)
@@ -37,8 +39,8 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         processor.startProcessing(resultProcessor)
 
         then:
-        1 * actorFactory.createActor(resultProcessor) >> resultProcessorActor
-        1 * resultProcessorActor.getProxy(TestResultProcessor) >> asyncResultProcessor
+        1 * actorFactory.createActor(_ as ReplayingTestResultProcessor) >> resultProcessorActor
+        1 * resultProcessorActor.getProxy(TestResultBatchProcessor) >> asyncResultProcessor
     }
 
     def doesNothingWhenNoTestsProcessed() {
@@ -53,8 +55,8 @@ class MaxNParallelTestClassProcessorTest extends Specification {
     }
 
     def startProcessor() {
-        1 * actorFactory.createActor(resultProcessor) >> resultProcessorActor
-        1 * resultProcessorActor.getProxy(TestResultProcessor) >> asyncResultProcessor
+        1 * actorFactory.createActor(_ as ReplayingTestResultProcessor) >> resultProcessorActor
+        1 * resultProcessorActor.getProxy(TestResultBatchProcessor) >> asyncResultProcessor
         processor.startProcessing(resultProcessor)
     }
 
@@ -71,7 +73,7 @@ class MaxNParallelTestClassProcessorTest extends Specification {
 
         then:
         1 * factory.create() >> processor1
-        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actorFactory.createActor(_ as TestClassProcessor) >> actor1
         1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
         1 * asyncProcessor1.startProcessing(asyncResultProcessor)
         1 * asyncProcessor1.processTestClass(test)
@@ -101,7 +103,7 @@ class MaxNParallelTestClassProcessorTest extends Specification {
 
         then:
         1 * factory.create() >> processor1
-        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actorFactory.createActor(_ as TestClassProcessor) >> actor1
         1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
         1 * asyncProcessor1.startProcessing(asyncResultProcessor)
         1 * asyncProcessor1.processTestClass(test)
@@ -111,7 +113,7 @@ class MaxNParallelTestClassProcessorTest extends Specification {
 
         then:
         1 * factory.create() >> processor2
-        1 * actorFactory.createActor(processor2) >> actor2
+        1 * actorFactory.createActor(_ as TestClassProcessor) >> actor2
         1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
         1 * asyncProcessor2.startProcessing(asyncResultProcessor)
         1 * asyncProcessor2.processTestClass(test)
@@ -124,47 +126,134 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         1 * asyncProcessor2.stop()
     }
 
-    def roundRobinsTestClassesToProcessors() {
-        TestClassRunInfo test = Mock()
+    def assignsTestClassesToProcessorsWhenTheyAreReadyForMoreWork() {
+        TestClassRunInfo slowTest = Mock()
+        TestClassRunInfo test1 = Mock()
+        TestClassRunInfo test2 = Mock()
         TestClassProcessor processor1 = Mock()
         TestClassProcessor processor2 = Mock()
         TestClassProcessor asyncProcessor1 = Mock()
         TestClassProcessor asyncProcessor2 = Mock()
+        TestClassProcessor actorProcessor2
         Actor actor1 = Mock()
         Actor actor2 = Mock()
 
         startProcessor()
 
         when:
-        processor.processTestClass(test)
+        processor.processTestClass(slowTest)
 
         then:
         1 * factory.create() >> processor1
-        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actorFactory.createActor(_ as TestClassProcessor) >> actor1
         1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
         1 * asyncProcessor1.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor1.processTestClass(test)
+        1 * asyncProcessor1.processTestClass(slowTest)
 
         when:
-        processor.processTestClass(test)
+        processor.processTestClass(test1)
 
         then:
         1 * factory.create() >> processor2
-        1 * actorFactory.createActor(processor2) >> actor2
+        1 * actorFactory.createActor(_ as TestClassProcessor) >> { args -> actorProcessor2 = args[0]; actor2 }
         1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
         1 * asyncProcessor2.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor2.processTestClass(test)
+        1 * asyncProcessor2.processTestClass(test1) >> { args -> actorProcessor2.processTestClass(args[0]) }
+        1 * processor2.processTestClass(test1)
 
         when:
-        processor.processTestClass(test)
+        processor.processTestClass(test2)
 
         then:
-        1 * asyncProcessor1.processTestClass(test)
+        1 * asyncProcessor2.processTestClass(test2) >> { args -> actorProcessor2.processTestClass(args[0]) }
+        1 * processor2.processTestClass(test2)
+        0 * asyncProcessor1._
+        0 * factory._
+    }
+
+    def replacesProcessorWhichFailsToProcessTestClass() {
+        TestClassRunInfo test1 = Mock()
+        TestClassRunInfo test2 = Mock()
+        TestClassRunInfo test3 = Mock()
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor processor2 = Mock()
+        TestClassProcessor processor3 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+        TestClassProcessor asyncProcessor3 = Mock()
+        TestClassProcessor actorProcessor1
+        Actor actor1 = Mock()
+        Actor actor2 = Mock()
+        Actor actor3 = Mock()
+
+        startProcessor()
 
         when:
-        processor.processTestClass(test)
+        processor.processTestClass(test1)
 
         then:
-        1 * asyncProcessor2.processTestClass(test)
+        1 * factory.create() >> processor1
+        1 * actorFactory.createActor(_ as TestClassProcessor) >> { args -> actorProcessor1 = args[0]; actor1 }
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        1 * asyncProcessor1.startProcessing(asyncResultProcessor)
+        1 * asyncProcessor1.processTestClass(test1) >> { args ->
+            try {
+                actorProcessor1.processTestClass(args[0])
+            } catch (RuntimeException e) {
+                // Reported by the actor when it is stopped
+            }
+        }
+        1 * processor1.processTestClass(test1) >> { throw new RuntimeException("broken") }
+
+        when:
+        processor.processTestClass(test2)
+
+        then:
+        1 * factory.create() >> processor2
+        1 * actorFactory.createActor(_ as TestClassProcessor) >> actor2
+        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
+        1 * asyncProcessor2.startProcessing(asyncResultProcessor)
+        1 * asyncProcessor2.processTestClass(test2)
+
+        when:
+        processor.processTestClass(test3)
+
+        then:
+        1 * factory.create() >> processor3
+        1 * actorFactory.createActor(_ as TestClassProcessor) >> actor3
+        1 * actor3.getProxy(TestClassProcessor) >> asyncProcessor3
+        1 * asyncProcessor3.startProcessing(asyncResultProcessor)
+        1 * asyncProcessor3.processTestClass(test3)
+        0 * asyncProcessor1._
+    }
+
+    def stopsReplacingFailedProcessorsOnceLimitIsReached() {
+        TestClassRunInfo test = Mock()
+        TestClassProcessor failingProcessor = Mock()
+        Actor actor = Mock()
+        TestClassProcessor actorProcessor
+        def processor = new MaxNParallelTestClassProcessor(1, factory, actorFactory)
+        _ * actorFactory.createActor(_ as ReplayingTestResultProcessor) >> resultProcessorActor
+        _ * resultProcessorActor.getProxy(TestResultBatchProcessor) >> asyncResultProcessor
+        processor.startProcessing(resultProcessor)
+
+        when:
+        5.times { processor.processTestClass(test) }
+
+        then:
+        (MaxNParallelTestClassProcessor.MAX_REPLACED_PROCESSORS + 1) * factory.create() >> failingProcessor
+        _ * actorFactory.createActor(_ as TestClassProcessor) >> { args -> actorProcessor = args[0]; actor }
+        _ * actor.getProxy(TestClassProcessor) >> {
+            def target = actorProcessor
+            [startProcessing: { resultProcessor -> },
+                    processTestClass: { testClass ->
+                        try {
+                            target.processTestClass(testClass)
+                        } catch (RuntimeException e) {
+                            // Reported by the actor when it is stopped
+                        }
+                    }] as TestClassProcessor
+        }
+        (MaxNParallelTestClassProcessor.MAX_REPLACED_PROCESSORS + 1) * failingProcessor.processTestClass(test) >> { throw new RuntimeException("broken") }
     }
 }
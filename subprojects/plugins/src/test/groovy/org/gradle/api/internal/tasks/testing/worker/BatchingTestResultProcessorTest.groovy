@@ -0,0 +1,147 @@
+/*
+ * Copyright 2012 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.worker
+
+import org.gradle.api.internal.tasks.testing.DefaultTestDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.api.tasks.testing.TestOutputEvent
+import spock.lang.Specification
+
+import java.util.concurrent.LinkedBlockingQueue
+import java.util.concurrent.TimeUnit
+
+class BatchingTestResultProcessorTest extends Specification {
+    final def batches = new LinkedBlockingQueue<TestResultBatch>()
+    final RemoteTestResultProcessor remote = { batches.add(it) } as RemoteTestResultProcessor
+    final TestResultProcessor target = Mock()
+
+    def "forwards batch when it contains max number of events"() {
+        def processor = new BatchingTestResultProcessor(remote, 3, 1000, 10000)
+        def test = new DefaultTestDescriptor(1, "Class", "method")
+        def startEvent = new TestStartEvent(100)
+        def outputEvent = new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "output")
+        def completeEvent = new TestCompleteEvent(200)
+
+        when:
+        processor.started(test, startEvent)
+        processor.output(1, outputEvent)
+
+        then:
+        batches.empty
+
+        when:
+        processor.completed(1, completeEvent)
+
+        then:
+        batches.size() == 1
+
+        when:
+        batches.poll().replay(target)
+
+        then:
+        1 * target.started(test, startEvent)
+
+        then:
+        1 * target.output(1, outputEvent)
+
+        then:
+        1 * target.completed(1, completeEvent)
+        0 * target._
+
+        cleanup:
+        processor.stop()
+    }
+
+    def "forwards batch when it contains max amount of output"() {
+        def processor = new BatchingTestResultProcessor(remote, 1000, 10, 10000)
+
+        when:
+        processor.output(1, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdOut, "12345"))
+
+        then:
+        batches.empty
+
+        when:
+        processor.output(1, new DefaultTestOutputEvent(TestOutputEvent.Destination.StdErr, "67890"))
+
+        then:
+        batches.size() == 1
+        batches.peek().size() == 2
+
+        cleanup:
+        processor.stop()
+    }
+
+    def "forwards batch when first event has waited for max delay"() {
+        def processor = new BatchingTestResultProcessor(remote, 1000, 1000, 50)
+        def failure = new RuntimeException()
+
+        when:
+        processor.failure(1, failure)
+        def batch = batches.poll(10, TimeUnit.SECONDS)
+        batch.replay(target)
+
+        then:
+        1 * target.failure(1, failure)
+        0 * target._
+
+        cleanup:
+        processor.stop()
+    }
+
+    def "forwards batch on stop and forwards later events immediately"() {
+        def processor = new BatchingTestResultProcessor(remote, 1000, 1000, 10000)
+
+        when:
+        processor.completed(1, new TestCompleteEvent(100))
+        processor.stop()
+
+        then:
+        batches.size() == 1
+
+        when:
+        processor.completed(2, new TestCompleteEvent(200))
+
+        then:
+        batches.size() == 2
+    }
+
+    def "does not forward empty batch"() {
+        def processor = new BatchingTestResultProcessor(remote, 1000, 1000, 10000)
+
+        when:
+        processor.flush()
+        processor.stop()
+
+        then:
+        batches.empty
+    }
+
+    def "replays batch to target processor"() {
+        def batch = new TestResultBatch()
+        batch.completed(1, new TestCompleteEvent(100))
+
+        when:
+        new ReplayingTestResultProcessor(target).process(batch)
+
+        then:
+        1 * target.completed(1, { it.endTime == 100 })
+        0 * target._
+    }
+}
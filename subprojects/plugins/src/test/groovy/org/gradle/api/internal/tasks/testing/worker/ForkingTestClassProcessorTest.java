@@ -23,13 +23,18 @@ import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.messaging.remote.ObjectConnection;
 import org.gradle.process.JavaForkOptions;
+import org.gradle.process.internal.ExecException;
+import org.gradle.process.internal.ExecHandleListener;
 import org.gradle.process.internal.JavaExecHandleBuilder;
 import org.gradle.process.internal.WorkerProcess;
 import org.gradle.process.internal.WorkerProcessBuilder;
 import org.gradle.util.JUnit4GroovyMockery;
+import org.hamcrest.Matcher;
 import org.jmock.Expectations;
+import org.jmock.api.Invocation;
 import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -37,7 +42,12 @@ import java.io.File;
 import java.util.List;
 
 import static java.util.Arrays.asList;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 @RunWith(JMock.class)
 public class ForkingTestClassProcessorTest {
@@ -55,12 +65,14 @@ public class ForkingTestClassProcessorTest {
     @SuppressWarnings("unchecked")
     private final Action<WorkerProcessBuilder> action = context.mock(Action.class);
     private final ForkingTestClassProcessor processor = new ForkingTestClassProcessor(workerFactory, processorFactory, options, appClassPath, action);
+    private ExecHandleListener execHandleListener;
 
     @Test
     public void onFirstTestCaseStartsWorkerProcess() {
         expectWorkerProcessStarted();
         context.checking(new Expectations() {{
             one(worker).processTestClass(test1);
+            will(finishTestClass());
         }});
 
         processor.startProcessing(resultProcessor);
@@ -72,7 +84,9 @@ public class ForkingTestClassProcessorTest {
         expectWorkerProcessStarted();
         context.checking(new Expectations() {{
             one(worker).processTestClass(test1);
+            will(finishTestClass());
             one(worker).processTestClass(test2);
+            will(finishTestClass());
         }});
 
         processor.startProcessing(resultProcessor);
@@ -80,11 +94,53 @@ public class ForkingTestClassProcessorTest {
         processor.processTestClass(test2);
     }
 
+    @Test
+    public void sendsNextTestClassToWorkerProcessBeforePreviousTestClassHasFinished() {
+        expectWorkerProcessStarted();
+        context.checking(new Expectations() {{
+            one(worker).processTestClass(test1);
+            one(worker).processTestClass(test2);
+            will(finishTestClass());
+        }});
+
+        processor.startProcessing(resultProcessor);
+        processor.processTestClass(test1);
+        processor.processTestClass(test2);
+    }
+
+    @Test
+    public void failsWhenWorkerProcessStopsBeforeItHasFinishedWithPreviousTestClass() {
+        expectWorkerProcessStarted();
+        context.checking(new Expectations() {{
+            one(worker).processTestClass(test1);
+            one(worker).processTestClass(test2);
+            will(new CustomAction("stop worker process") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    execHandleListener.executionFinished(null, null);
+                    return null;
+                }
+            });
+
+            allowing(test1).getTestClassName();
+            will(returnValue("org.gradle.SomeTest"));
+        }});
+
+        processor.startProcessing(resultProcessor);
+        processor.processTestClass(test1);
+        try {
+            processor.processTestClass(test2);
+            fail();
+        } catch (ExecException e) {
+            assertThat(e.getMessage(), equalTo(String.format("%s stopped before it finished processing test class 'org.gradle.SomeTest'.", workerProcess)));
+        }
+    }
+
     @Test
     public void onEndProcessingWaitsForWorkerProcessToStop() {
         expectWorkerProcessStarted();
         context.checking(new Expectations() {{
             one(worker).processTestClass(test1);
+            will(finishTestClass());
             one(worker).stop();
             one(workerProcess).waitForStop();
         }});
@@ -94,6 +150,44 @@ public class ForkingTestClassProcessorTest {
         processor.stop();
     }
 
+    @Test
+    public void failsWhenWorkerProcessStopsBeforeItHasFinishedWithTestClass() {
+        expectWorkerProcessStarted();
+        context.checking(new Expectations() {{
+            one(worker).processTestClass(test1);
+            will(new CustomAction("stop worker process") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    execHandleListener.executionFinished(null, null);
+                    return null;
+                }
+            });
+
+            allowing(test1).getTestClassName();
+            will(returnValue("org.gradle.SomeTest"));
+        }});
+
+        processor.startProcessing(resultProcessor);
+        try {
+            processor.processTestClass(test1);
+            fail();
+        } catch (ExecException e) {
+            assertThat(e.getMessage(), equalTo(String.format("%s stopped before it finished processing test class 'org.gradle.SomeTest'.", workerProcess)));
+        }
+    }
+
+    @Test
+    public void passesTestResultBatchesStraightToResultProcessorWhichAcceptsThem() {
+        final TestResultBatchProcessor batchProcessor = context.mock(TestResultBatchProcessor.class);
+        expectWorkerProcessStarted(sameInstance(batchProcessor));
+        context.checking(new Expectations() {{
+            one(worker).processTestClass(test1);
+            will(finishTestClass());
+        }});
+
+        processor.startProcessing(batchProcessor);
+        processor.processTestClass(test1);
+    }
+
     @Test
     public void onEndProcessingDoesNothingIfNoTestsProcessed() {
         processor.startProcessing(resultProcessor);
@@ -101,6 +195,11 @@ public class ForkingTestClassProcessorTest {
     }
 
     private void expectWorkerProcessStarted() {
+        expectWorkerProcessStarted(instanceOf(ReplayingTestResultProcessor.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expectWorkerProcessStarted(final Matcher<?> resultProcessorMatcher) {
         context.checking(new Expectations() {{
             WorkerProcessBuilder builder = context.mock(WorkerProcessBuilder.class);
             ObjectConnection connection = context.mock(ObjectConnection.class);
@@ -122,13 +221,23 @@ public class ForkingTestClassProcessorTest {
 
             one(options).copyTo(javaCommandBuilder);
 
+            one(javaCommandBuilder).listener(with(notNullValue(ExecHandleListener.class)));
+            will(new CustomAction("register listener") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    execHandleListener = (ExecHandleListener) invocation.getParameter(0);
+                    return null;
+                }
+            });
+
             one(builder).build();
             will(returnValue(workerProcess));
 
             allowing(workerProcess).getConnection();
             will(returnValue(connection));
 
-            one(connection).addIncoming(TestResultProcessor.class, resultProcessor);
+            one(connection).addIncoming(with(equalTo(RemoteTestResultProcessor.class)), with((Matcher<RemoteTestResultProcessor>) resultProcessorMatcher));
+
+            one(connection).addIncoming(RemoteTestClassProcessorListener.class, processor);
             
             one(connection).addOutgoing(RemoteTestClassProcessor.class);
             will(returnValue(worker));
@@ -138,4 +247,13 @@ public class ForkingTestClassProcessorTest {
             one(worker).startProcessing();
         }});
     }
+
+    private CustomAction finishTestClass() {
+        return new CustomAction("finish test class") {
+            public Object invoke(Invocation invocation) throws Throwable {
+                processor.testClassProcessed();
+                return null;
+            }
+        };
+    }
 }